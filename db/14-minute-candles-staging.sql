@@ -0,0 +1,36 @@
+-- Staging-таблица для пакетной загрузки минутных свечей через COPY
+-- Используется в режиме stream.candles.ingest-mode=COPY:
+-- свечи загружаются сюда командой COPY без проверки конфликтов, после чего
+-- периодически переносятся в invest_candles.minute_candles одним INSERT ... ON CONFLICT.
+-- Таблица нежурналируемая: после аварийного рестарта PostgreSQL содержимое теряется,
+-- что допустимо для буфера, который очищается каждую секунду.
+
+create unlogged table if not exists invest_candles.minute_candles_staging
+(
+    seq                  bigserial                   not null,
+    figi                 varchar(255)                not null,
+    time                 timestamp(6) with time zone not null,
+    open                 numeric(18, 9)              not null,
+    high                 numeric(18, 9)              not null,
+    low                  numeric(18, 9)              not null,
+    close                numeric(18, 9)              not null,
+    volume               bigint                      not null,
+    is_complete          boolean                     not null,
+    price_change         numeric(18, 9),
+    price_change_percent numeric(18, 4),
+    candle_type          varchar(20),
+    body_size            numeric(18, 9),
+    upper_shadow         numeric(18, 9),
+    lower_shadow         numeric(18, 9),
+    high_low_range       numeric(18, 9),
+    average_price        numeric(18, 2),
+    created_at           timestamp(6) with time zone not null,
+    updated_at           timestamp(6) with time zone not null
+);
+
+comment on table invest_candles.minute_candles_staging is 'Буфер загрузки минутных свечей через COPY перед переносом в minute_candles';
+
+comment on column invest_candles.minute_candles_staging.seq is 'Порядковый номер загрузки: при дубликатах (figi, time) переносится запись с наибольшим номером';
+
+alter table invest_candles.minute_candles_staging
+    owner to postgres;
@@ -0,0 +1,130 @@
+-- Свечи 5m, 15m, 1h и 1d, инкрементально собираемые из минутных свечей
+-- Заполняется CandleRollupWriter: после записи минутной свечи затронутые интервалы
+-- помечаются и периодически пересчитываются одним пакетным INSERT ... ON CONFLICT
+-- на интервал. Пересчитывается интервал целиком, поэтому повторная запись той же
+-- минуты (обновление незавершенной свечи) не приводит к двойному учету объема.
+-- Интервалы 5m, 15m и 1h строятся из invest_candles.minute_candles, дневной интервал -
+-- из часовых строк этой же таблицы. Границы дня - по московскому времени.
+
+create table if not exists invest_candles.candle_rollups
+(
+    figi         varchar(255)                              not null,
+    timeframe    varchar(8)                                not null,
+    time         timestamp(6) with time zone               not null,
+    open         numeric(18, 9)                            not null,
+    high         numeric(18, 9)                            not null,
+    low          numeric(18, 9)                            not null,
+    close        numeric(18, 9)                            not null,
+    volume       bigint                                    not null,
+    minute_count integer                                   not null,
+    is_complete  boolean                                   not null,
+    updated_at   timestamp(6) with time zone default now() not null,
+    primary key (figi, timeframe, time)
+);
+
+create index if not exists idx_candle_rollups_timeframe_time
+    on invest_candles.candle_rollups (timeframe, time);
+
+comment on table invest_candles.candle_rollups is 'Свечи 5m/15m/1h/1d, собранные из минутных свечей';
+
+comment on column invest_candles.candle_rollups.timeframe is 'Интервал свечи: 5m, 15m, 1h, 1d';
+comment on column invest_candles.candle_rollups.time is 'Начало интервала (для 1d - полночь по московскому времени)';
+comment on column invest_candles.candle_rollups.minute_count is 'Количество минутных свечей, вошедших в интервал';
+comment on column invest_candles.candle_rollups.is_complete is 'Интервал закончился на момент последнего пересчета';
+
+alter table invest_candles.candle_rollups
+    owner to postgres;
+
+create or replace view invest.candle_rollups as
+select
+    figi,
+    timeframe,
+    time,
+    open,
+    high,
+    low,
+    close,
+    volume,
+    minute_count,
+    is_complete,
+    updated_at
+from invest_candles.candle_rollups;
+
+comment on view invest.candle_rollups is 'Синоним для таблицы candle_rollups из схемы invest_candles';
+
+alter view invest.candle_rollups owner to postgres;
+
+-- Полный пересчет за период (первичное заполнение по уже загруженным минутным свечам).
+-- Период расширяется до границ московских суток, чтобы дневные свечи были полными.
+create or replace function invest_candles.rebuild_candle_rollups(p_from timestamptz, p_to timestamptz)
+    returns integer
+    language plpgsql
+as
+$$
+declare
+    v_from  timestamptz := date_trunc('day', p_from at time zone 'Europe/Moscow') at time zone 'Europe/Moscow';
+    v_to    timestamptz := (date_trunc('day', p_to at time zone 'Europe/Moscow') + interval '1 day') at time zone 'Europe/Moscow';
+    v_total integer     := 0;
+    v_rows  integer;
+    v_tf    record;
+begin
+    for v_tf in select * from (values ('5m', 300), ('15m', 900), ('1h', 3600)) as t(code, seconds)
+        loop
+            insert into invest_candles.candle_rollups
+            (figi, timeframe, time, open, high, low, close, volume, minute_count, is_complete, updated_at)
+            select m.figi,
+                   v_tf.code,
+                   b.bucket,
+                   (array_agg(m.open order by m.time))[1],
+                   max(m.high),
+                   min(m.low),
+                   (array_agg(m.close order by m.time desc))[1],
+                   sum(m.volume),
+                   count(*),
+                   b.bucket + make_interval(secs => v_tf.seconds) <= now(),
+                   now()
+            from invest_candles.minute_candles m
+                     cross join lateral (select to_timestamp(floor(extract(epoch from m.time) / v_tf.seconds) * v_tf.seconds) as bucket) b
+            where m.time >= v_from
+              and m.time < v_to
+            group by m.figi, b.bucket
+            on conflict (figi, timeframe, time) do update set
+                open = excluded.open, high = excluded.high, low = excluded.low, close = excluded.close,
+                volume = excluded.volume, minute_count = excluded.minute_count,
+                is_complete = excluded.is_complete, updated_at = excluded.updated_at;
+            get diagnostics v_rows = row_count;
+            v_total := v_total + v_rows;
+        end loop;
+
+    insert into invest_candles.candle_rollups
+    (figi, timeframe, time, open, high, low, close, volume, minute_count, is_complete, updated_at)
+    select h.figi,
+           '1d',
+           b.bucket,
+           (array_agg(h.open order by h.time))[1],
+           max(h.high),
+           min(h.low),
+           (array_agg(h.close order by h.time desc))[1],
+           sum(h.volume),
+           sum(h.minute_count),
+           b.bucket + interval '1 day' <= now(),
+           now()
+    from invest_candles.candle_rollups h
+             cross join lateral (select date_trunc('day', h.time at time zone 'Europe/Moscow') at time zone 'Europe/Moscow' as bucket) b
+    where h.timeframe = '1h'
+      and h.time >= v_from
+      and h.time < v_to
+    group by h.figi, b.bucket
+    on conflict (figi, timeframe, time) do update set
+        open = excluded.open, high = excluded.high, low = excluded.low, close = excluded.close,
+        volume = excluded.volume, minute_count = excluded.minute_count,
+        is_complete = excluded.is_complete, updated_at = excluded.updated_at;
+    get diagnostics v_rows = row_count;
+
+    return v_total + v_rows;
+end;
+$$;
+
+comment on function invest_candles.rebuild_candle_rollups(timestamptz, timestamptz) is 'Полный пересчет candle_rollups по минутным свечам за период (границы - московские сутки)';
+
+alter function invest_candles.rebuild_candle_rollups(timestamptz, timestamptz) owner to postgres;
@@ -0,0 +1,55 @@
+-- Исторические экстремумы, обновленные сервисом в течение дня
+-- HistoricalExtremeTracker записывает сюда новый максимум или минимум сразу после сделки
+-- или минутной свечи, вышедшей за известный экстремум. Материализованное представление
+-- invest_views.historical_price_extremes по-прежнему обновляется ночью (pg_cron) и остается
+-- базой, а представление invest.historical_price_extremes объединяет его с этой таблицей,
+-- поэтому новый экстремум виден в БД, не дожидаясь REFRESH MATERIALIZED VIEW.
+
+create table if not exists invest_views.historical_price_extremes_live
+(
+    figi                 varchar(255)                              not null primary key,
+    historical_high      numeric(18, 9),
+    historical_high_date timestamp(6) with time zone,
+    historical_low       numeric(18, 9),
+    historical_low_date  timestamp(6) with time zone,
+    updated_at           timestamp(6) with time zone default now() not null
+);
+
+comment on table invest_views.historical_price_extremes_live is 'Исторические экстремумы, достигнутые после последнего обновления материализованного представления historical_price_extremes';
+
+comment on column invest_views.historical_price_extremes_live.historical_high is 'Максимальная цена сделки или минутной свечи, превысившая исторический максимум';
+comment on column invest_views.historical_price_extremes_live.historical_high_date is 'Время нового исторического максимума';
+comment on column invest_views.historical_price_extremes_live.historical_low is 'Минимальная цена сделки или минутной свечи, ниже исторического минимума';
+comment on column invest_views.historical_price_extremes_live.historical_low_date is 'Время нового исторического минимума';
+
+alter table invest_views.historical_price_extremes_live
+    owner to postgres;
+
+-- Синоним в схеме invest: ночной максимум/минимум, уточненный экстремумами за день
+create or replace view invest.historical_price_extremes as
+select
+    mv.figi,
+    mv.ticker,
+    mv.instrument_type,
+    case
+        when l.historical_high > mv.historical_high then l.historical_high
+        else mv.historical_high
+    end as historical_high,
+    case
+        when l.historical_high > mv.historical_high then l.historical_high_date
+        else mv.historical_high_date
+    end as historical_high_date,
+    case
+        when l.historical_low < mv.historical_low then l.historical_low
+        else mv.historical_low
+    end as historical_low,
+    case
+        when l.historical_low < mv.historical_low then l.historical_low_date
+        else mv.historical_low_date
+    end as historical_low_date
+from invest_views.historical_price_extremes mv
+left join invest_views.historical_price_extremes_live l on l.figi = mv.figi;
+
+comment on view invest.historical_price_extremes is 'Исторические экстремумы: материализованное представление historical_price_extremes с учетом экстремумов, достигнутых за день (historical_price_extremes_live)';
+
+alter view invest.historical_price_extremes owner to postgres;
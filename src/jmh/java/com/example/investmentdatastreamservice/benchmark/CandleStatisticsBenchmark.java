@@ -0,0 +1,68 @@
+package com.example.investmentdatastreamservice.benchmark;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.investmentdatastreamservice.dto.MinuteCandleDto;
+import com.example.investmentdatastreamservice.entity.MinuteCandleEntity;
+import com.example.investmentdatastreamservice.service.CandleService;
+
+/**
+ * Расчет расширенной статистики свечи: в сущности (MinuteCandleEntity) и в сервисе (CandleService)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CandleStatisticsBenchmark {
+
+    private final CandleService candleService = new CandleService();
+
+    private BigDecimal open;
+    private BigDecimal high;
+    private BigDecimal low;
+    private BigDecimal close;
+    private Instant time;
+    private MinuteCandleEntity entity;
+
+    @Setup
+    public void setUp() {
+        open = new BigDecimal("285.470000000");
+        high = new BigDecimal("286.120000000");
+        low = new BigDecimal("285.010000000");
+        close = new BigDecimal("285.930000000");
+        time = Instant.parse("2024-06-03T07:15:00Z");
+        entity = new MinuteCandleEntity("BBG004730N88", 15_420, high, low, time, close, open, true);
+    }
+
+    @Benchmark
+    public MinuteCandleEntity createEntity() {
+        // Конструктор включает calculateExtendedStatistics и перевод времени в московское
+        return new MinuteCandleEntity("BBG004730N88", 15_420, high, low, time, close, open, true);
+    }
+
+    @Benchmark
+    public MinuteCandleEntity calculateExtendedStatistics() {
+        entity.calculateExtendedStatistics();
+        return entity;
+    }
+
+    @Benchmark
+    public MinuteCandleDto enrichCandleWithTechnicalIndicators() {
+        return candleService.enrichCandleWithTechnicalIndicators(open, high, low, close);
+    }
+}
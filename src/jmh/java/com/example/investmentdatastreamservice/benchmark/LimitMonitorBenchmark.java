@@ -0,0 +1,149 @@
+package com.example.investmentdatastreamservice.benchmark;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.investmentdatastreamservice.config.LimitMonitorProperties;
+import com.example.investmentdatastreamservice.dto.HistoricalPriceDto;
+import com.example.investmentdatastreamservice.dto.LimitsDto;
+import com.example.investmentdatastreamservice.service.HistoricalExtremeTracker;
+import com.example.investmentdatastreamservice.service.HistoricalPricesService;
+import com.example.investmentdatastreamservice.service.InstrumentMetadataIndex;
+import com.example.investmentdatastreamservice.service.LimitAlertDedupTable;
+import com.example.investmentdatastreamservice.service.LimitAlertBandRegistry;
+import com.example.investmentdatastreamservice.service.LimitMonitorService;
+import com.example.investmentdatastreamservice.service.LimitsService;
+import com.example.investmentdatastreamservice.service.SessionPriceTracker;
+import com.example.investmentdatastreamservice.service.TelegramAlertDispatcher;
+import com.example.investmentdatastreamservice.service.streaming.StreamWriteExecutor;
+import com.example.investmentdatastreamservice.service.streaming.push.PushHub;
+import com.example.investmentdatastreamservice.utils.FixedPointPrice;
+
+/**
+ * Проверка тика мониторингом лимитов (LimitMonitorService.processLastPrice)
+ *
+ * Внешние зависимости (API лимитов, Telegram, БД, push-API) заменены заглушками Mockito.
+ * - tickInsideBand - основной путь: цена далеко от лимитов, полоса уже собрана;
+ * - tickInsideBandBigDecimal - тот же путь через перегрузку с BigDecimal;
+ * - tickWithBandRecompile - первый тик после инвалидации полос (сборка полосы);
+ * - tickNearLimitDeduplicated - цена у лимита, уведомление уже отправлено сегодня
+ *   (сработавшая полоса и отказ {@link LimitAlertDedupTable#tryMark}).
+ *
+ * Каждый тик также сверяется с историческими экстремумами {@link HistoricalExtremeTracker},
+ * заполненными из тестовых данных; цены бенчмарка внутри диапазона, запись в БД не выполняется.
+ *
+ * Таблица уведомлений настоящая (без снимка на диске), чтобы повторы отсекались так же,
+ * как в работающем сервисе.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LimitMonitorBenchmark {
+
+    private static final String FIGI = "BBG004730N88";
+
+    private LimitMonitorService limitMonitorService;
+    private LimitAlertBandRegistry bandRegistry;
+    private LocalDateTime eventTime;
+    private long priceInsideBand;
+    private BigDecimal priceInsideBandDecimal;
+    private long priceNearLimit;
+
+    @Setup
+    public void setUp() {
+        LimitsService limitsService = mock(LimitsService.class);
+        LimitsDto limits = new LimitsDto(FIGI,
+            new BigDecimal("256.92"), new BigDecimal("314.02"), new BigDecimal("285.47"),
+            new BigDecimal("271.20"), new BigDecimal("299.74"));
+        when(limitsService.getLimitsFromCache(anyString())).thenReturn(limits);
+
+        HistoricalPricesService historicalPricesService = mock(HistoricalPricesService.class);
+        HistoricalPriceDto extremes = HistoricalPriceDto.builder()
+            .figi(FIGI)
+            .ticker("SBER")
+            .instrumentType("share")
+            .historicalHigh(new BigDecimal("350.10"))
+            .historicalHighDate(OffsetDateTime.of(2024, 5, 20, 12, 0, 0, 0, ZoneOffset.ofHours(3)))
+            .historicalLow(new BigDecimal("180.25"))
+            .historicalLowDate(OffsetDateTime.of(2022, 2, 24, 12, 0, 0, 0, ZoneOffset.ofHours(3)))
+            .build();
+        when(historicalPricesService.getHistoricalPriceByFigi(anyString())).thenReturn(extremes);
+
+        LimitMonitorProperties properties = new LimitMonitorProperties();
+        properties.getDedup().setSnapshotPath("");
+
+        bandRegistry = new LimitAlertBandRegistry();
+        HistoricalExtremeTracker historicalExtremeTracker = new HistoricalExtremeTracker(
+            historicalPricesService,
+            bandRegistry,
+            new ConcurrentMapCacheManager("historicalPricesCache"),
+            mock(JdbcTemplate.class),
+            mock(StreamWriteExecutor.class));
+        limitMonitorService = new LimitMonitorService(
+            limitsService,
+            mock(TelegramAlertDispatcher.class),
+            new LimitAlertDedupTable(properties),
+            mock(SessionPriceTracker.class),
+            historicalPricesService,
+            properties,
+            bandRegistry,
+            new InstrumentMetadataIndex(),
+            historicalExtremeTracker,
+            mock(PushHub.class));
+        limitMonitorService.afterPropertiesSet();
+
+        eventTime = LocalDateTime.of(2024, 6, 3, 12, 30);
+        priceInsideBandDecimal = new BigDecimal("285.93");
+        priceInsideBand = FixedPointPrice.fromBigDecimal(priceInsideBandDecimal);
+
+        priceNearLimit = FixedPointPrice.fromBigDecimal(new BigDecimal("313.00"));
+
+        // Первый тик собирает полосу, тик у лимита отмечает уведомление в таблице
+        limitMonitorService.processLastPrice(FIGI, priceInsideBand, eventTime);
+        limitMonitorService.processLastPrice(FIGI, priceNearLimit, eventTime);
+    }
+
+    @Benchmark
+    public void tickInsideBand() {
+        limitMonitorService.processLastPrice(FIGI, priceInsideBand, eventTime);
+    }
+
+    @Benchmark
+    public void tickInsideBandBigDecimal() {
+        limitMonitorService.processLastPrice(FIGI, priceInsideBandDecimal, eventTime);
+    }
+
+    @Benchmark
+    public void tickNearLimitDeduplicated() {
+        limitMonitorService.processLastPrice(FIGI, priceNearLimit, eventTime);
+    }
+
+    @Benchmark
+    public void tickWithBandRecompile() {
+        bandRegistry.invalidateAll("benchmark");
+        limitMonitorService.processLastPrice(FIGI, priceInsideBand, eventTime);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.investmentdatastreamservice.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Timestamp;
+
+import ru.tinkoff.piapi.contract.v1.Candle;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+import ru.tinkoff.piapi.contract.v1.Quotation;
+import ru.tinkoff.piapi.contract.v1.SubscriptionInterval;
+
+/**
+ * Декодирование сообщений MarketDataResponse из gRPC потока (LastPrice и Candle)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarketDataDecodeBenchmark {
+
+    private byte[] lastPriceBytes;
+    private byte[] candleBytes;
+
+    @Setup
+    public void setUp() {
+        Timestamp time = Timestamp.newBuilder().setSeconds(1_717_398_900L).setNanos(123_000_000).build();
+
+        lastPriceBytes = MarketDataResponse.newBuilder()
+            .setLastPrice(LastPrice.newBuilder()
+                .setFigi("BBG004730N88")
+                .setPrice(quotation(285, 470_000_000))
+                .setTime(time))
+            .build()
+            .toByteArray();
+
+        candleBytes = MarketDataResponse.newBuilder()
+            .setCandle(Candle.newBuilder()
+                .setFigi("BBG004730N88")
+                .setInterval(SubscriptionInterval.SUBSCRIPTION_INTERVAL_ONE_MINUTE)
+                .setOpen(quotation(285, 470_000_000))
+                .setHigh(quotation(286, 120_000_000))
+                .setLow(quotation(285, 10_000_000))
+                .setClose(quotation(285, 930_000_000))
+                .setVolume(15_420)
+                .setTime(Timestamp.newBuilder().setSeconds(1_717_398_900L))
+                .setLastTradeTs(time))
+            .build()
+            .toByteArray();
+    }
+
+    private static Quotation quotation(long units, int nano) {
+        return Quotation.newBuilder().setUnits(units).setNano(nano).build();
+    }
+
+    @Benchmark
+    public MarketDataResponse decodeLastPrice() throws InvalidProtocolBufferException {
+        return MarketDataResponse.parseFrom(lastPriceBytes);
+    }
+
+    @Benchmark
+    public MarketDataResponse decodeCandle() throws InvalidProtocolBufferException {
+        return MarketDataResponse.parseFrom(candleBytes);
+    }
+}
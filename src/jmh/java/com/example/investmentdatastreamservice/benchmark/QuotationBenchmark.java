@@ -0,0 +1,63 @@
+package com.example.investmentdatastreamservice.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.investmentdatastreamservice.utils.FixedPointPrice;
+import com.example.investmentdatastreamservice.utils.QuotationUtils;
+
+import ru.tinkoff.piapi.contract.v1.Quotation;
+
+/**
+ * Преобразование Quotation в цену: BigDecimal (QuotationUtils) и фиксированная точка (FixedPointPrice)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuotationBenchmark {
+
+    private Quotation price;
+    private Quotation otherPrice;
+    private long fixedPrice;
+
+    @Setup
+    public void setUp() {
+        price = Quotation.newBuilder().setUnits(285).setNano(470_000_000).build();
+        otherPrice = Quotation.newBuilder().setUnits(285).setNano(480_000_000).build();
+        fixedPrice = FixedPointPrice.fromQuotation(price);
+    }
+
+    @Benchmark
+    public BigDecimal quotationToBigDecimal() {
+        return QuotationUtils.toBigDecimal(price);
+    }
+
+    @Benchmark
+    public long quotationToFixedPoint() {
+        return FixedPointPrice.fromQuotation(price);
+    }
+
+    @Benchmark
+    public int compareQuotations() {
+        return QuotationUtils.compare(price, otherPrice);
+    }
+
+    @Benchmark
+    public BigDecimal fixedPointToBigDecimal() {
+        return FixedPointPrice.toBigDecimal(fixedPrice);
+    }
+}
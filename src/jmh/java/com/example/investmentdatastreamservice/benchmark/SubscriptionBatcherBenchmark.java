@@ -0,0 +1,50 @@
+package com.example.investmentdatastreamservice.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.investmentdatastreamservice.service.streaming.SubscriptionBatcher;
+
+/**
+ * Разбиение списка инструментов на батчи подписки
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubscriptionBatcherBenchmark {
+
+    @Param({ "300", "3000" })
+    private int instrumentCount;
+
+    private final SubscriptionBatcher batcher = new SubscriptionBatcher();
+    private List<String> instruments;
+
+    @Setup
+    public void setUp() {
+        instruments = new ArrayList<>(instrumentCount);
+        for (int i = 0; i < instrumentCount; i++) {
+            instruments.add(String.format("BBG%09d", i));
+        }
+    }
+
+    @Benchmark
+    public List<List<String>> createBatches() {
+        return batcher.createBatches(instruments);
+    }
+}
@@ -36,6 +36,8 @@ public class ApiSecurityConfig {
                 "/api/cache/**",
                 "/api/stream/**",
                 "/api/limit-monitor/**",
+                "/api/push/stats",
+                "/api/prices/latest/stats",
                 "/api/instruments/limits/cache-stats",
                 "/actuator/**");
 
@@ -19,7 +19,6 @@ import com.github.benmanes.caffeine.cache.Caffeine;
  * <li><strong>futuresCache</strong> - кэш фьючерсов</li>
  * <li><strong>indicativesCache</strong> - кэш индикативных инструментов</li>
  * <li><strong>limitsCache</strong> - кэш лимитов инструментов</li>
- * <li><strong>notificationsCache</strong> - кэш уведомлений о лимитах</li>
  * <li><strong>historicalPricesCache</strong> - кэш исторических экстремумов цен</li>
  * </ul>
  * 
@@ -60,7 +59,6 @@ public class CacheConfig {
                  "futuresCache", 
                  "indicativesCache",
                   "limitsCache",
-                  "notificationsCache",
                   "historicalPricesCache");
 
         cacheManager.setCaffeine(
@@ -0,0 +1,77 @@
+package com.example.investmentdatastreamservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Конфигурационные свойства фейкового сервера рыночных данных
+ *
+ * <p>
+ * Встроенный gRPC сервер, реализующий MarketDataStreamService (LastPrice и Candle) и
+ * MarketDataService.GetOrderBook (лимиты). Используется для нагрузочного тестирования
+ * конвейера прием → БД → алерты без подключения к T-Invest API.
+ * </p>
+ *
+ * <p>
+ * Структура свойств в конфигурационных файлах:
+ * <ul>
+ * <li>fake.market.enabled - запуск фейкового сервера</li>
+ * <li>fake.market.in-process-name - имя in-process сервера (tinkoff.api.in-process-name)</li>
+ * <li>fake.market.port - порт сетевого сервера без TLS (0 - только in-process)</li>
+ * <li>fake.market.ticks-per-second - суммарный поток LastPrice по всем подпискам</li>
+ * <li>fake.market.candles-per-second - суммарный поток Candle по всем подпискам</li>
+ * <li>fake.market.tick-interval-ms - период генерации</li>
+ * <li>fake.market.volatility - относительное стандартное отклонение цены за тик</li>
+ * <li>fake.market.limit-percent - ширина лимитов вокруг текущей цены, %</li>
+ * </ul>
+ * </p>
+ *
+ * @author InvestmentDataStreamService
+ * @version 1.0
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "fake.market")
+public class FakeMarketProperties {
+
+    /**
+     * Запуск фейкового сервера
+     */
+    private boolean enabled = false;
+
+    /**
+     * Имя in-process сервера
+     */
+    private String inProcessName = "fake-market";
+
+    /**
+     * Порт сетевого сервера без TLS (0 - не запускать)
+     */
+    private int port = 0;
+
+    /**
+     * Суммарное количество LastPrice в секунду
+     */
+    private int ticksPerSecond = 50_000;
+
+    /**
+     * Суммарное количество Candle в секунду
+     */
+    private int candlesPerSecond = 3_000;
+
+    /**
+     * Период генерации, мс
+     */
+    private long tickIntervalMs = 10;
+
+    /**
+     * Относительное стандартное отклонение цены за тик
+     */
+    private double volatility = 0.0005;
+
+    /**
+     * Ширина лимитов вокруг текущей цены, %
+     */
+    private double limitPercent = 20.0;
+}
@@ -0,0 +1,91 @@
+package com.example.investmentdatastreamservice.config;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Component;
+
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Metadata;
+import io.grpc.inprocess.InProcessChannelBuilder;
+
+/**
+ * Фабрика gRPC каналов к T-Invest API
+ *
+ * Единое место выбора адреса подключения ({@link TinkoffApiProperties}): боевой сервер
+ * по TLS, произвольный адрес (в том числе без TLS) или in-process сервер. Используется
+ * общим каналом {@link GrpcConfig} и отдельными каналами stream-соединений
+ * {@link com.example.investmentdatastreamservice.service.streaming.MultiStreamManager}.
+ */
+@Component
+public class GrpcChannelFactory {
+
+    private static final Metadata.Key<String> AUTHORIZATION =
+        Metadata.Key.of("Authorization", Metadata.ASCII_STRING_MARSHALLER);
+
+    private final TinkoffApiProperties apiProperties;
+
+    public GrpcChannelFactory(TinkoffApiProperties apiProperties) {
+        this.apiProperties = apiProperties;
+    }
+
+    /**
+     * Создает канал с аутентификацией по токену и настройками для потоковых данных
+     *
+     * @param token токен T-Invest API
+     */
+    public ManagedChannel createChannel(String token) {
+        if (apiProperties.isInProcess()) {
+            return InProcessChannelBuilder.forName(apiProperties.getInProcessName())
+                .intercept(bearerAuth(token))
+                .maxInboundMessageSize(4 * 1024 * 1024) // 4MB
+                .build();
+        }
+
+        ManagedChannelBuilder<?> builder = ManagedChannelBuilder
+            .forAddress(apiProperties.getBaseUrl(), apiProperties.getPort());
+        if (apiProperties.isPlaintext()) {
+            builder.usePlaintext();
+        } else {
+            builder.useTransportSecurity();
+        }
+        return builder
+            .intercept(bearerAuth(token))
+            // Оптимизация для потоковых данных с минимальными задержками
+            .keepAliveTime(30, TimeUnit.SECONDS)
+            .keepAliveTimeout(5, TimeUnit.SECONDS)
+            .keepAliveWithoutCalls(true)
+            .maxInboundMessageSize(4 * 1024 * 1024) // 4MB
+            .maxInboundMetadataSize(8 * 1024) // 8KB
+            .enableRetry()
+            .maxRetryAttempts(3)
+            .build();
+    }
+
+    /**
+     * Interceptor, добавляющий заголовок Authorization: Bearer &lt;token&gt;
+     */
+    public static ClientInterceptor bearerAuth(String token) {
+        return new ClientInterceptor() {
+            @Override
+            public <ReqT, RespT> io.grpc.ClientCall<ReqT, RespT> interceptCall(
+                    io.grpc.MethodDescriptor<ReqT, RespT> method, io.grpc.CallOptions callOptions,
+                    io.grpc.Channel next) {
+                return new ForwardingClientCall.SimpleForwardingClientCall<>(
+                        next.newCall(method, callOptions)) {
+                    @Override
+                    public void start(Listener<RespT> responseListener, Metadata headers) {
+                        headers.put(AUTHORIZATION, "Bearer " + token);
+                        super.start(responseListener, headers);
+                    }
+                };
+            }
+        };
+    }
+
+    public TinkoffApiProperties getApiProperties() {
+        return apiProperties;
+    }
+}
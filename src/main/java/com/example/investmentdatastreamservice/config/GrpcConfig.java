@@ -5,11 +5,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import io.grpc.ClientInterceptor;
-import io.grpc.ForwardingClientCall;
 import io.grpc.ManagedChannel;
-import io.grpc.ManagedChannelBuilder;
-import io.grpc.Metadata;
 import ru.tinkoff.piapi.contract.v1.InstrumentsServiceGrpc;
 import ru.tinkoff.piapi.contract.v1.MarketDataServiceGrpc;
 import ru.tinkoff.piapi.contract.v1.MarketDataStreamServiceGrpc;
@@ -37,33 +33,9 @@ public class GrpcConfig {
      * @return настроенный ManagedChannel с аутентификацией и оптимизацией для минимальных задержек
      */
     @Bean
-    public ManagedChannel investChannel() {
-        ClientInterceptor authInterceptor = new ClientInterceptor() {
-            @Override
-            public <ReqT, RespT> io.grpc.ClientCall<ReqT, RespT> interceptCall(
-                    io.grpc.MethodDescriptor<ReqT, RespT> method, io.grpc.CallOptions callOptions,
-                    io.grpc.Channel next) {
-                return new ForwardingClientCall.SimpleForwardingClientCall<>(
-                        next.newCall(method, callOptions)) {
-                    @Override
-                    public void start(Listener<RespT> responseListener, Metadata headers) {
-                        headers.put(
-                                Metadata.Key.of("Authorization", Metadata.ASCII_STRING_MARSHALLER),
-                                "Bearer " + token);
-                        super.start(responseListener, headers);
-                    }
-                };
-            }
-        };
-
-        return ManagedChannelBuilder.forAddress("invest-public-api.tinkoff.ru", 443)
-                .useTransportSecurity().intercept(authInterceptor)
-                // Оптимизация для потоковых данных с минимальными задержками
-                .keepAliveTime(30, java.util.concurrent.TimeUnit.SECONDS)
-                .keepAliveTimeout(5, java.util.concurrent.TimeUnit.SECONDS)
-                .keepAliveWithoutCalls(true).maxInboundMessageSize(4 * 1024 * 1024) // 4MB
-                .maxInboundMetadataSize(8 * 1024) // 8KB
-                .enableRetry().maxRetryAttempts(3).build();
+    public ManagedChannel investChannel(GrpcChannelFactory channelFactory) {
+        logger.info("T-Invest API endpoint: {}", channelFactory.getApiProperties().describeTarget());
+        return channelFactory.createChannel(token);
     }
 
     /**
@@ -116,11 +88,19 @@ public class GrpcConfig {
     /**
      * Создает InvestApi с токеном аутентификации
      * 
+     * Для небоевого адреса (фейковый сервер, профиль fake) InvestApi строится поверх
+     * общего канала, и проверка токена не выполняется.
+     * 
      * @return настроенный InvestApi для работы с T-Invest API
      */
     @Bean
-    public InvestApi investApi() {
+    public InvestApi investApi(ManagedChannel investChannel, TinkoffApiProperties apiProperties) {
         logger.info("=== CREATING INVEST API ===");
+        if (!apiProperties.isLiveEndpoint()) {
+            logger.warn("InvestApi is connected to non-production endpoint: {}", apiProperties.describeTarget());
+            return InvestApi.create(investChannel);
+        }
+
         logger.info("Tinkoff API token configured: {}", token != null && !token.trim().isEmpty() && !"your-token-here".equals(token));
         
         if (token == null || token.trim().isEmpty() || "your-token-here".equals(token)) {
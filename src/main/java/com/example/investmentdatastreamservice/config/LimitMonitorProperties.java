@@ -30,6 +30,20 @@ import java.math.RoundingMode;
  * <ul>
  * <li>limit.monitor.approach.threshold - порог приближения к биржевым лимитам (в процентах)</li>
  * <li>limit.monitor.historical.approach.threshold - порог приближения к историческим экстремумам (в процентах)</li>
+ * <li>limit.monitor.refresh.max-in-flight - максимум одновременных запросов лимитов к API</li>
+ * <li>limit.monitor.refresh.requests-per-second - ограничение частоты запросов лимитов (квота API)</li>
+ * <li>limit.monitor.refresh.burst - допустимая пачка запросов сверх средней частоты</li>
+ * <li>limit.monitor.refresh.max-retries - количество повторов запроса лимитов инструмента</li>
+ * <li>limit.monitor.refresh.retry-backoff-ms - начальная пауза перед повтором (удваивается)</li>
+ * <li>limit.monitor.refresh.request-timeout-ms - таймаут одного запроса лимитов</li>
+ * <li>limit.monitor.alerts.queue-capacity - емкость очереди уведомлений в Telegram</li>
+ * <li>limit.monitor.alerts.messages-per-minute - ограничение сообщений в один чат</li>
+ * <li>limit.monitor.alerts.burst - сообщения в чат, отправляемые подряд без ожидания</li>
+ * <li>limit.monitor.alerts.coalesce-window-ms - окно объединения уведомлений в сводку</li>
+ * <li>limit.monitor.alerts.max-retries - количество повторов отправки сообщения</li>
+ * <li>limit.monitor.alerts.retry-backoff-ms - начальная пауза перед повтором (удваивается)</li>
+ * <li>limit.monitor.dedup.snapshot-path - файл снимка отправленных за день уведомлений</li>
+ * <li>limit.monitor.dedup.snapshot-interval-ms - интервал сохранения снимка</li>
  * </ul>
  * </p>
  * 
@@ -53,6 +67,21 @@ public class LimitMonitorProperties {
      */
     private Historical historical = new Historical();
     
+    /**
+     * Настройки планового обновления кэша лимитов
+     */
+    private Refresh refresh = new Refresh();
+    
+    /**
+     * Настройки отправки уведомлений в Telegram
+     */
+    private Alerts alerts = new Alerts();
+    
+    /**
+     * Настройки таблицы отправленных за день уведомлений
+     */
+    private Dedup dedup = new Dedup();
+    
     /**
      * Устанавливает порог приближения к биржевым лимитам
      * 
@@ -161,5 +190,95 @@ public class LimitMonitorProperties {
          */
         private ApproachThreshold approach = new ApproachThreshold();
     }
+    
+    /**
+     * Класс для настроек параллельного обновления кэша лимитов
+     */
+    @Data
+    public static class Refresh {
+        /**
+         * Максимальное количество одновременно выполняющихся запросов GetOrderBook
+         */
+        private int maxInFlight = 8;
+        
+        /**
+         * Средняя частота запросов GetOrderBook в секунду.
+         * Должна соответствовать квоте T-Invest API на сервис котировок.
+         */
+        private double requestsPerSecond = 10.0;
+        
+        /**
+         * Емкость ведра токенов: сколько запросов можно отправить подряд без ожидания
+         */
+        private int burst = 10;
+        
+        /**
+         * Количество повторов запроса лимитов одного инструмента после ошибки
+         */
+        private int maxRetries = 3;
+        
+        /**
+         * Пауза перед первым повтором, для каждого следующего повтора удваивается
+         */
+        private long retryBackoffMs = 500;
+        
+        /**
+         * Таймаут одного запроса GetOrderBook
+         */
+        private long requestTimeoutMs = 10_000;
+    }
+    
+    /**
+     * Класс для настроек асинхронной отправки уведомлений в Telegram
+     */
+    @Data
+    public static class Alerts {
+        /**
+         * Максимальное количество уведомлений, ожидающих отправки.
+         * При заполнении очереди новые уведомления отбрасываются.
+         */
+        private int queueCapacity = 10_000;
+        
+        /**
+         * Средняя частота сообщений в один чат в минуту (лимит Telegram для групп и каналов - 20)
+         */
+        private int messagesPerMinute = 20;
+        
+        /**
+         * Емкость ведра токенов чата: сколько сообщений можно отправить подряд без ожидания
+         */
+        private int burst = 3;
+        
+        /**
+         * Уведомления, поступившие в течение окна, отправляются одним сообщением-сводкой
+         */
+        private long coalesceWindowMs = 2_000;
+        
+        /**
+         * Количество повторов отправки сообщения после ошибки
+         */
+        private int maxRetries = 5;
+        
+        /**
+         * Пауза перед первым повтором, для каждого следующего повтора удваивается.
+         * При ответе 429 используется retry_after из ответа Telegram.
+         */
+        private long retryBackoffMs = 1_000;
+    }
+    
+    /**
+     * Класс для настроек таблицы отправленных за день уведомлений
+     */
+    @Data
+    public static class Dedup {
+        /**
+         * Файл снимка, переживающего перезапуск. Пустое значение отключает снимок.
+         */
+        private String snapshotPath = "data/limit-alert-dedup.snapshot";
+        
+        /**
+         * Интервал сохранения снимка (только при появлении новых отметок)
+         */
+        private long snapshotIntervalMs = 5_000;
+    }
 }
-
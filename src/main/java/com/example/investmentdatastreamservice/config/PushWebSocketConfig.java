@@ -0,0 +1,29 @@
+package com.example.investmentdatastreamservice.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+import com.example.investmentdatastreamservice.controller.PushWebSocketHandler;
+
+/**
+ * Конфигурация WebSocket для push-API
+ *
+ * Регистрирует обработчик {@link PushWebSocketHandler} по адресу /ws/push.
+ */
+@Configuration
+@EnableWebSocket
+public class PushWebSocketConfig implements WebSocketConfigurer {
+
+    private final PushWebSocketHandler pushWebSocketHandler;
+
+    public PushWebSocketConfig(PushWebSocketHandler pushWebSocketHandler) {
+        this.pushWebSocketHandler = pushWebSocketHandler;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(pushWebSocketHandler, "/ws/push");
+    }
+}
@@ -0,0 +1,367 @@
+package com.example.investmentdatastreamservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Конфигурационные свойства потоковой обработки данных
+ *
+ * <p>
+ * Структура свойств в конфигурационных файлах:
+ * <ul>
+ * <li>stream.last-price.batch-size - максимальный размер пакета записи в invest.last_prices</li>
+ * <li>stream.last-price.flush-interval-ms - максимальное время ожидания записи в буфере</li>
+ * <li>stream.last-price.queue-capacity - емкость буфера отложенной записи</li>
+ * <li>stream.last-price.writer-threads - количество потоков записи пакетов</li>
+ * <li>stream.last-price.coalesce-enabled - схлопывание цен по FIGI перед записью</li>
+ * <li>stream.last-price.coalesce-bucket-ms - окно схлопывания</li>
+ * <li>stream.last-price.coalesce-grace-ms - ожидание запоздавших сделок после конца окна</li>
+ * <li>stream.last-price.write-retries - число повторов записи пакета после ошибки</li>
+ * <li>stream.last-price.write-retry-backoff-ms - начальная пауза перед повтором (удваивается)</li>
+ * <li>stream.dispatch.ring-size - емкость кольцевого буфера между gRPC потоком и обработчиками</li>
+ * <li>stream.dispatch.max-batch - максимальная пачка событий, забираемая из кольцевого буфера</li>
+ * <li>stream.candles.ingest-mode - режим записи минутных свечей: UPSERT или COPY</li>
+ * <li>stream.candles.batch-size - размер пакета COPY в staging-таблицу</li>
+ * <li>stream.candles.flush-interval-ms - максимальное время ожидания свечи в буфере COPY</li>
+ * <li>stream.candles.queue-capacity - емкость буфера COPY</li>
+ * <li>stream.candles.writer-threads - количество потоков COPY</li>
+ * <li>stream.candles.merge-interval-ms - период переноса свечей из staging в invest.minute_candles</li>
+ * <li>stream.candles.backfill-enabled - дозагрузка пропущенных свечей после переподключения stream'а</li>
+ * <li>stream.candles.backfill-requests-per-second - ограничение запросов GetCandles при дозагрузке</li>
+ * <li>stream.candles.backfill-max-in-flight - максимальное число одновременных запросов GetCandles</li>
+ * <li>stream.candles.backfill-max-gap-minutes - максимальная длина дозагружаемого пропуска</li>
+ * <li>stream.writer.mode - потоки записи в БД: VIRTUAL (виртуальные) или PLATFORM</li>
+ * <li>stream.writer.max-concurrency - одновременные записи в БД (0 - размер пула stream)</li>
+ * <li>stream.writer.queue-capacity - записи, ожидающие свободного соединения</li>
+ * <li>stream.universe.refresh-enabled - периодическая синхронизация подписок с инструментами в БД</li>
+ * <li>stream.universe.refresh-interval-ms - период синхронизации подписок</li>
+ * <li>stream.aggregator.enabled - сборка свечей 1m/5m/15m/1h из потока LastPrice</li>
+ * <li>stream.aggregator.finalize-delay-ms - задержка завершения свечи после границы интервала</li>
+ * <li>stream.aggregator.persist-minute-candles - запись собранных минутных свечей при отсутствии свечей API</li>
+ * </ul>
+ * </p>
+ *
+ * @author InvestmentDataStreamService
+ * @version 1.0
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "stream")
+public class StreamingProperties {
+
+    /**
+     * Настройки записи цен последних сделок
+     */
+    private LastPrice lastPrice = new LastPrice();
+
+    /**
+     * Настройки записи минутных свечей
+     */
+    private Candles candles = new Candles();
+
+    /**
+     * Настройки передачи событий от gRPC потоков к обработчикам
+     */
+    private Dispatch dispatch = new Dispatch();
+
+    /**
+     * Настройки выполнения записей в БД
+     */
+    private Writer writer = new Writer();
+
+    /**
+     * Настройки синхронизации подписок с набором инструментов в БД
+     */
+    private Universe universe = new Universe();
+
+    /**
+     * Настройки сборки свечей из потока LastPrice
+     */
+    private Aggregator aggregator = new Aggregator();
+
+    /**
+     * Настройки сборки свечей 5m/15m/1h/1d из минутных свечей
+     */
+    private Rollup rollup = new Rollup();
+
+    /**
+     * Настройки push-API (SSE и WebSocket)
+     */
+    private Push push = new Push();
+
+    /**
+     * Настройки отложенной пакетной записи цен последних сделок
+     */
+    @Data
+    public static class LastPrice {
+        /**
+         * Пакет сбрасывается в БД при достижении этого количества записей
+         */
+        private int batchSize = 500;
+
+        /**
+         * Пакет сбрасывается в БД не позднее чем через указанное время
+         * после поступления первой записи
+         */
+        private long flushIntervalMs = 50;
+
+        /**
+         * Емкость очереди записей, ожидающих сохранения.
+         * Тики отбрасываются только при полном заполнении очереди.
+         */
+        private int queueCapacity = 200_000;
+
+        /**
+         * Количество потоков, параллельно сбрасывающих пакеты в БД
+         */
+        private int writerThreads = 2;
+
+        /**
+         * Сохранять только последнюю цену FIGI в каждом окне coalesceBucketMs
+         */
+        private boolean coalesceEnabled = false;
+
+        /**
+         * Длительность окна схлопывания по времени сделки
+         */
+        private long coalesceBucketMs = 100;
+
+        /**
+         * Сколько ждать запоздавшие сделки после конца окна по времени сделки,
+         * прежде чем окно неликвидного инструмента будет сброшено на запись
+         */
+        private long coalesceGraceMs = 1_000;
+
+        /**
+         * Сколько раз повторить запись пакета после ошибки БД
+         */
+        private int writeRetries = 3;
+
+        /**
+         * Пауза перед первым повтором записи пакета (удваивается с каждой попыткой)
+         */
+        private long writeRetryBackoffMs = 100;
+    }
+
+    /**
+     * Настройки кольцевого буфера между gRPC потоками и обработчиками
+     */
+    @Data
+    public static class Dispatch {
+        /**
+         * Емкость кольцевого буфера (округляется вверх до степени двойки).
+         * При заполнении новые события отбрасываются, gRPC поток не блокируется.
+         */
+        private int ringSize = 65_536;
+
+        /**
+         * Максимальное число событий, обрабатываемых потребителем за один проход
+         */
+        private int maxBatch = 256;
+    }
+
+    /**
+     * Потоки, выполняющие записи в БД
+     */
+    public enum WriterMode {
+        /**
+         * Виртуальные потоки: ожидание соединения не занимает поток ОС
+         */
+        VIRTUAL,
+
+        /**
+         * Пул платформенных потоков размером max-concurrency
+         */
+        PLATFORM
+    }
+
+    /**
+     * Настройки выполнения записей в БД
+     *
+     * Число одновременных записей ограничено числом соединений пула stream,
+     * а не числом потоков: записи сверх него ждут соединения в очереди.
+     */
+    @Data
+    public static class Writer {
+        /**
+         * Потоки, выполняющие записи
+         */
+        private WriterMode mode = WriterMode.VIRTUAL;
+
+        /**
+         * Максимальное число одновременных записей; 0 - maximum-pool-size пула stream
+         */
+        private int maxConcurrency = 0;
+
+        /**
+         * Записи, ожидающие свободного соединения; сверх этого записи отбрасываются
+         */
+        private int queueCapacity = 100_000;
+    }
+
+    /**
+     * Настройки синхронизации подписок с набором инструментов в БД
+     */
+    @Data
+    public static class Universe {
+        /**
+         * Периодически подписывать новые инструменты и отписывать удаленные без перезапуска потоков
+         */
+        private boolean refreshEnabled = true;
+
+        /**
+         * Период сравнения инструментов в БД с текущими подписками
+         */
+        private long refreshIntervalMs = 300_000;
+    }
+
+    /**
+     * Настройки сборки свечей из потока LastPrice
+     */
+    @Data
+    public static class Aggregator {
+        /**
+         * Собирать свечи 1m, 5m, 15m и 1h из цен последних сделок
+         */
+        private boolean enabled = true;
+
+        /**
+         * Свеча без сделок следующего интервала завершается через указанное время
+         * после границы интервала (запас для запоздавших сделок)
+         */
+        private long finalizeDelayMs = 2_000;
+
+        /**
+         * Записывать завершенные минутные свечи в invest.minute_candles, если свечи API
+         * за эту минуту нет (ON CONFLICT DO NOTHING; volume=0 - LastPrice не содержит объема)
+         */
+        private boolean persistMinuteCandles = false;
+    }
+
+    /**
+     * Настройки инкрементальной сборки свечей 5m/15m/1h/1d в invest_candles.candle_rollups
+     */
+    @Data
+    public static class Rollup {
+        /**
+         * Пересчитывать интервалы, затронутые записанными минутными свечами
+         */
+        private boolean enabled = true;
+
+        /**
+         * Интервал пакетного пересчета помеченных интервалов (мс)
+         */
+        private long flushIntervalMs = 5_000;
+
+        /**
+         * Максимум интервалов в одном INSERT ... ON CONFLICT
+         */
+        private int batchSize = 1_000;
+    }
+
+    /**
+     * Настройки раздачи цен, свечей и уведомлений через SSE и WebSocket
+     */
+    @Data
+    public static class Push {
+        /**
+         * Принимать подключения и раздавать события
+         */
+        private boolean enabled = true;
+
+        /**
+         * Максимум одновременных подключений
+         */
+        private int maxClients = 100;
+
+        /**
+         * Максимум неотправленных ключей (FIGI, FIGI:интервал) на клиента;
+         * значения по одному ключу схлопываются, новые ключи сверх лимита отбрасываются
+         */
+        private int maxPendingKeys = 10_000;
+
+        /**
+         * Емкость очереди неотправленных уведомлений на клиента
+         */
+        private int alertBufferSize = 1_000;
+
+        /**
+         * Интервал служебного события heartbeat (мс): поддерживает соединение
+         * через прокси и обнаруживает отключившихся клиентов
+         */
+        private long heartbeatIntervalMs = 15_000;
+    }
+
+    /**
+     * Режим записи минутных свечей
+     */
+    public enum CandleIngestMode {
+        /**
+         * Построчный INSERT ... ON CONFLICT в invest.minute_candles
+         */
+        UPSERT,
+
+        /**
+         * Пакетный COPY в staging-таблицу с периодическим переносом в invest.minute_candles
+         */
+        COPY
+    }
+
+    /**
+     * Настройки записи минутных свечей
+     */
+    @Data
+    public static class Candles {
+        /**
+         * Режим записи свечей
+         */
+        private CandleIngestMode ingestMode = CandleIngestMode.UPSERT;
+
+        /**
+         * Максимальное количество свечей в одном COPY
+         */
+        private int batchSize = 5_000;
+
+        /**
+         * COPY выполняется не позднее чем через указанное время
+         * после поступления первой свечи пакета
+         */
+        private long flushIntervalMs = 200;
+
+        /**
+         * Емкость очереди свечей, ожидающих COPY
+         */
+        private int queueCapacity = 200_000;
+
+        /**
+         * Количество потоков, параллельно выполняющих COPY
+         */
+        private int writerThreads = 2;
+
+        /**
+         * Период переноса свечей из staging-таблицы в invest.minute_candles
+         */
+        private long mergeIntervalMs = 1_000;
+
+        /**
+         * Дозагрузка пропущенных свечей после переподключения stream'а
+         */
+        private boolean backfillEnabled = true;
+
+        /**
+         * Ограничение запросов GetCandles в секунду при дозагрузке
+         */
+        private double backfillRequestsPerSecond = 5.0;
+
+        /**
+         * Максимальное число одновременных запросов GetCandles
+         */
+        private int backfillMaxInFlight = 4;
+
+        /**
+         * Максимальная длина дозагружаемого пропуска, минут (GetCandles 1m - не более суток)
+         */
+        private long backfillMaxGapMinutes = 1_440;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.investmentdatastreamservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Конфигурационные свойства подключения к T-Invest API
+ *
+ * <p>
+ * Структура свойств в конфигурационных файлах:
+ * <ul>
+ * <li>tinkoff.api.base-url - адрес gRPC сервера API</li>
+ * <li>tinkoff.api.port - порт gRPC сервера API</li>
+ * <li>tinkoff.api.plaintext - подключение без TLS (локальный фейковый сервер)</li>
+ * <li>tinkoff.api.in-process-name - имя in-process сервера; если задано, адрес и порт не используются</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * По умолчанию используется боевой адрес invest-public-api.tinkoff.ru:443 с TLS.
+ * Профиль fake переключает подключение на встроенный фейковый сервер рыночных данных.
+ * </p>
+ *
+ * @author InvestmentDataStreamService
+ * @version 1.0
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "tinkoff.api")
+public class TinkoffApiProperties {
+
+    public static final String DEFAULT_BASE_URL = "invest-public-api.tinkoff.ru";
+    public static final int DEFAULT_PORT = 443;
+
+    /**
+     * Адрес gRPC сервера API
+     */
+    private String baseUrl = DEFAULT_BASE_URL;
+
+    /**
+     * Порт gRPC сервера API
+     */
+    private int port = DEFAULT_PORT;
+
+    /**
+     * Подключение без TLS
+     */
+    private boolean plaintext = false;
+
+    /**
+     * Имя in-process gRPC сервера (пусто - сетевое подключение)
+     */
+    private String inProcessName = "";
+
+    /**
+     * Используется ли боевой адрес T-Invest API
+     */
+    public boolean isLiveEndpoint() {
+        return !isInProcess() && !plaintext && DEFAULT_BASE_URL.equals(baseUrl) && port == DEFAULT_PORT;
+    }
+
+    public boolean isInProcess() {
+        return inProcessName != null && !inProcessName.isBlank();
+    }
+
+    /**
+     * Описание адреса подключения для логов
+     */
+    public String describeTarget() {
+        return isInProcess()
+            ? "in-process:" + inProcessName
+            : baseUrl + ":" + port + (plaintext ? " (plaintext)" : " (TLS)");
+    }
+}
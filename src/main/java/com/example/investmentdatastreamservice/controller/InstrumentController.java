@@ -26,6 +26,7 @@ import com.example.investmentdatastreamservice.mapper.FutureMapper;
 import com.example.investmentdatastreamservice.mapper.IndicativeMapper;
 import com.example.investmentdatastreamservice.mapper.ShareMapper;
 import com.example.investmentdatastreamservice.service.CacheWarmupService;
+import com.example.investmentdatastreamservice.service.InstrumentMetadataIndex;
 import com.example.investmentdatastreamservice.service.LimitsService;
 
 /**
@@ -59,15 +60,17 @@ public class InstrumentController {
     private final FutureMapper futureMapper;
     private final IndicativeMapper indicativeMapper;
     private final LimitsService limitsService;
+    private final InstrumentMetadataIndex instrumentIndex;
 
     public InstrumentController(CacheWarmupService cacheWarmupService, ShareMapper shareMapper, 
                                FutureMapper futureMapper, IndicativeMapper indicativeMapper,
-                               LimitsService limitsService) {
+                               LimitsService limitsService, InstrumentMetadataIndex instrumentIndex) {
         this.cacheWarmupService = cacheWarmupService;
         this.shareMapper = shareMapper;
         this.futureMapper = futureMapper;
         this.indicativeMapper = indicativeMapper;
         this.limitsService = limitsService;
+        this.instrumentIndex = instrumentIndex;
     }
 
     /**
@@ -127,8 +130,9 @@ public class InstrumentController {
     @GetMapping("/shares/{figi}")
     public ResponseEntity<Map<String, Object>> getShareByFigi(@PathVariable String figi) {
         try {
-            Optional<ShareEntity> share = cacheWarmupService.getAllShares().stream()
-                    .filter(s -> s.getFigi().equals(figi)).findFirst();
+            Optional<ShareEntity> share = Optional.ofNullable(instrumentIndex.getShare(figi))
+                    .or(() -> cacheWarmupService.getAllShares().stream()
+                            .filter(s -> s.getFigi().equals(figi)).findFirst());
 
             if (share.isPresent()) {
                 ShareDto shareDto = shareMapper.toDto(share.get());
@@ -211,8 +215,9 @@ public class InstrumentController {
     @GetMapping("/futures/{figi}")
     public ResponseEntity<Map<String, Object>> getFutureByFigi(@PathVariable String figi) {
         try {
-            Optional<FutureEntity> future = cacheWarmupService.getAllFutures().stream()
-                    .filter(f -> f.getFigi().equals(figi)).findFirst();
+            Optional<FutureEntity> future = Optional.ofNullable(instrumentIndex.getFuture(figi))
+                    .or(() -> cacheWarmupService.getAllFutures().stream()
+                            .filter(f -> f.getFigi().equals(figi)).findFirst());
 
             if (future.isPresent()) {
                 FutureDto futureDto = futureMapper.toDto(future.get());
@@ -295,8 +300,9 @@ public class InstrumentController {
     @GetMapping("/indicatives/{figi}")
     public ResponseEntity<Map<String, Object>> getIndicativeByFigi(@PathVariable String figi) {
         try {
-            Optional<IndicativeEntity> indicative = cacheWarmupService.getAllIndicatives().stream()
-                    .filter(i -> i.getFigi().equals(figi)).findFirst();
+            Optional<IndicativeEntity> indicative = Optional.ofNullable(instrumentIndex.getIndicative(figi))
+                    .or(() -> cacheWarmupService.getAllIndicatives().stream()
+                            .filter(i -> i.getFigi().equals(figi)).findFirst());
 
             if (indicative.isPresent()) {
                 IndicativeDto indicativeDto = indicativeMapper.toDto(indicative.get());
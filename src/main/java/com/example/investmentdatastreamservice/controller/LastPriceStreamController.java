@@ -1,5 +1,6 @@
 package com.example.investmentdatastreamservice.controller;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.springframework.http.ResponseEntity;
@@ -8,7 +9,10 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.investmentdatastreamservice.service.streaming.InstrumentUniverseRefresher;
+import com.example.investmentdatastreamservice.service.streaming.StreamWriteExecutor;
 import com.example.investmentdatastreamservice.service.streaming.StreamingMetrics;
+import com.example.investmentdatastreamservice.service.streaming.UniverseSyncResult;
 import com.example.investmentdatastreamservice.service.streaming.impl.LastPriceStreamingService;
 
 /**
@@ -22,9 +26,14 @@ import com.example.investmentdatastreamservice.service.streaming.impl.LastPriceS
 public class LastPriceStreamController {
 
     private final LastPriceStreamingService lastPriceStreamingService;
+    private final InstrumentUniverseRefresher universeRefresher;
+    private final StreamWriteExecutor writeExecutor;
 
-    public LastPriceStreamController(LastPriceStreamingService lastPriceStreamingService) {
+    public LastPriceStreamController(LastPriceStreamingService lastPriceStreamingService,
+            InstrumentUniverseRefresher universeRefresher, StreamWriteExecutor writeExecutor) {
         this.lastPriceStreamingService = lastPriceStreamingService;
+        this.universeRefresher = universeRefresher;
+        this.writeExecutor = writeExecutor;
     }
 
     /**
@@ -110,6 +119,35 @@ public class LastPriceStreamController {
         }
     }
 
+    /**
+     * Синхронизация подписок с инструментами в БД без перезапуска стрима
+     * 
+     * @return количество подписанных, отписанных и перенесенных инструментов
+     */
+    @PostMapping("/sync")
+    public ResponseEntity<Map<String, Object>> syncInstruments() {
+        try {
+            UniverseSyncResult result = lastPriceStreamingService.syncInstruments().join();
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("success", true);
+            response.put("service", "LastPriceStreamingService");
+            response.put("added", result.added());
+            response.put("removed", result.removed());
+            response.put("relocated", result.relocated());
+            response.put("closedStreams", result.closedStreams());
+            response.put("streams", result.streams());
+            response.put("timestamp", java.time.LocalDateTime.now().toString());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = Map.of(
+                "success", false,
+                "message", "Error syncing last price instruments",
+                "timestamp", java.time.LocalDateTime.now().toString()
+            );
+            return ResponseEntity.status(500).body(response);
+        }
+    }
+
     /**
      * Получить состояние стрима
      * 
@@ -138,16 +176,22 @@ public class LastPriceStreamController {
     public ResponseEntity<Map<String, Object>> getMetrics() {
         StreamingMetrics metrics = lastPriceStreamingService.getMetrics();
         
-        Map<String, Object> response = Map.of(
-            "service", "LastPriceStreamingService",
-            "running", metrics.isRunning(),
-            "connected", metrics.isConnected(),
-            "totalReceived", metrics.getTotalReceived(),
-            "totalProcessed", metrics.getTotalProcessed(),
-            "totalErrors", metrics.getTotalErrors(),
-            "totalDropped", metrics.getTotalDropped(),
-            "timestamp", java.time.LocalDateTime.now().toString()
-        );
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("service", "LastPriceStreamingService");
+        response.put("running", metrics.isRunning());
+        response.put("connected", metrics.isConnected());
+        response.put("totalReceived", metrics.getTotalReceived());
+        response.put("totalProcessed", metrics.getTotalProcessed());
+        response.put("totalErrors", metrics.getTotalErrors());
+        response.put("totalDropped", metrics.getTotalDropped());
+        response.put("rates", metrics.getRates());
+        response.put("latency", lastPriceStreamingService.getLatencySnapshot());
+        response.put("ringBuffer", lastPriceStreamingService.getRingBuffer().getMetricsSnapshot());
+        response.put("subscriptions", lastPriceStreamingService.getSubscriptionTracker().getStats());
+        response.put("failedSubscriptions", lastPriceStreamingService.getSubscriptionTracker().getFailedInstruments());
+        response.put("universe", universeRefresher.getStats());
+        response.put("dbWriter", writeExecutor.getStats());
+        response.put("timestamp", java.time.LocalDateTime.now().toString());
         return ResponseEntity.ok(response);
     }
 }
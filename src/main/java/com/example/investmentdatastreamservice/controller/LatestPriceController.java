@@ -0,0 +1,132 @@
+package com.example.investmentdatastreamservice.controller;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.investmentdatastreamservice.service.LatestPriceStore;
+
+/**
+ * REST контроллер последних цен инструментов
+ *
+ * <p>
+ * Цены отдаются из {@link LatestPriceStore} - снимков в памяти, обновляемых потоком
+ * LastPrice; запросы к БД не выполняются. Каждый снимок имеет версию, ответ содержит
+ * текущую версию хранилища: переданная в следующий запрос как sinceVersion, она
+ * ограничивает ответ изменившимися с тех пор ценами.
+ * </p>
+ */
+@RestController
+@RequestMapping("/api/prices")
+public class LatestPriceController {
+
+    private final LatestPriceStore latestPriceStore;
+
+    public LatestPriceController(LatestPriceStore latestPriceStore) {
+        this.latestPriceStore = latestPriceStore;
+    }
+
+    /**
+     * Последние цены по списку FIGI
+     *
+     * <p>
+     * <strong>Пример запроса:</strong>
+     * </p>
+     *
+     * <pre>
+     * GET /api/prices/latest?figi=BBG004730N88,BBG004730ZJ9&amp;sinceVersion=1520
+     * </pre>
+     *
+     * @param figi FIGI через запятую (параметр можно повторять); по умолчанию - все инструменты
+     * @param sinceVersion вернуть только цены с версией больше указанной
+     * @return снимки цен, FIGI без цены и текущая версия
+     */
+    @GetMapping("/latest")
+    public ResponseEntity<Map<String, Object>> getLatest(@RequestParam(required = false) List<String> figi,
+                                                         @RequestParam(defaultValue = "0") long sinceVersion) {
+        return ResponseEntity.ok(buildResponse(figi, sinceVersion));
+    }
+
+    /**
+     * Последние цены по списку FIGI в теле запроса - для списков, не помещающихся в URL
+     *
+     * <p>
+     * <strong>Пример запроса:</strong>
+     * </p>
+     *
+     * <pre>
+     * POST /api/prices/latest?sinceVersion=1520
+     * ["BBG004730N88", "BBG004730ZJ9"]
+     * </pre>
+     *
+     * @param figis список FIGI; пустой список - все инструменты
+     * @param sinceVersion вернуть только цены с версией больше указанной
+     * @return снимки цен, FIGI без цены и текущая версия
+     */
+    @PostMapping("/latest")
+    public ResponseEntity<Map<String, Object>> getLatestBulk(@RequestBody(required = false) List<String> figis,
+                                                             @RequestParam(defaultValue = "0") long sinceVersion) {
+        return ResponseEntity.ok(buildResponse(figis, sinceVersion));
+    }
+
+    /**
+     * Состояние хранилища последних цен
+     */
+    @GetMapping("/latest/stats")
+    public ResponseEntity<Map<String, Object>> getStats() {
+        return ResponseEntity.ok(latestPriceStore.getStats());
+    }
+
+    private Map<String, Object> buildResponse(Collection<String> figis, long sinceVersion) {
+        Set<String> requested = normalize(figis);
+        // Версия читается до выборки: цены, обновленные во время выборки, попадут в следующий ответ
+        long version = latestPriceStore.getVersion();
+        List<String> missing = new ArrayList<>();
+        List<Map<String, Object>> data = new ArrayList<>();
+        for (LatestPriceStore.PriceSnapshot snapshot : latestPriceStore.getAll(requested, sinceVersion, missing)) {
+            data.add(snapshot.toMap());
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("success", true);
+        response.put("version", version);
+        response.put("count", data.size());
+        response.put("data", data);
+        if (!missing.isEmpty()) {
+            response.put("missing", missing);
+        }
+        response.put("timestamp", java.time.LocalDateTime.now().toString());
+        return response;
+    }
+
+    private static Set<String> normalize(Collection<String> figis) {
+        Set<String> result = new LinkedHashSet<>();
+        if (figis == null) {
+            return result;
+        }
+        for (String value : figis) {
+            if (value == null) {
+                continue;
+            }
+            for (String figi : value.split(",")) {
+                String trimmed = figi.trim();
+                if (!trimmed.isEmpty()) {
+                    result.add(trimmed);
+                }
+            }
+        }
+        return result;
+    }
+}
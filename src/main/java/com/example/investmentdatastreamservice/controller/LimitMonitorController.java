@@ -2,7 +2,10 @@ package com.example.investmentdatastreamservice.controller;
 
 import com.example.investmentdatastreamservice.dto.ThresholdUpdateRequest;
 import com.example.investmentdatastreamservice.dto.ThresholdsUpdateRequest;
+import com.example.investmentdatastreamservice.service.HistoricalExtremeTracker;
+import com.example.investmentdatastreamservice.service.LimitAlertDedupTable;
 import com.example.investmentdatastreamservice.service.LimitMonitorService;
+import com.example.investmentdatastreamservice.service.TelegramAlertDispatcher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -29,9 +32,18 @@ import java.util.Map;
 public class LimitMonitorController {
 
     private final LimitMonitorService limitMonitorService;
+    private final TelegramAlertDispatcher alertDispatcher;
+    private final LimitAlertDedupTable dedupTable;
+    private final HistoricalExtremeTracker historicalExtremeTracker;
 
-    public LimitMonitorController(LimitMonitorService limitMonitorService) {
+    public LimitMonitorController(LimitMonitorService limitMonitorService,
+                                  TelegramAlertDispatcher alertDispatcher,
+                                  LimitAlertDedupTable dedupTable,
+                                  HistoricalExtremeTracker historicalExtremeTracker) {
         this.limitMonitorService = limitMonitorService;
+        this.alertDispatcher = alertDispatcher;
+        this.dedupTable = dedupTable;
+        this.historicalExtremeTracker = historicalExtremeTracker;
     }
 
     /**
@@ -285,6 +297,9 @@ public class LimitMonitorController {
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("data", statistics);
+            response.put("telegram", alertDispatcher.getStats());
+            response.put("dedup", dedupTable.getStats());
+            response.put("historicalExtremes", historicalExtremeTracker.getStats());
             response.put("timestamp", java.time.LocalDateTime.now().toString());
             
             return ResponseEntity.ok(response);
@@ -1,5 +1,6 @@
 package com.example.investmentdatastreamservice.controller;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.springframework.http.ResponseEntity;
@@ -138,16 +139,17 @@ public class LimitStreamController {
     public ResponseEntity<Map<String, Object>> getMetrics() {
         StreamingMetrics metrics = limitMonitoringService.getMetrics();
         
-        Map<String, Object> response = Map.of(
-            "service", "LimitMonitoringStreamingService",
-            "running", metrics.isRunning(),
-            "connected", metrics.isConnected(),
-            "totalReceived", metrics.getTotalReceived(),
-            "totalProcessed", metrics.getTotalProcessed(),
-            "totalErrors", metrics.getTotalErrors(),
-            "totalDropped", metrics.getTotalDropped(),
-            "timestamp", java.time.LocalDateTime.now().toString()
-        );
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("service", "LimitMonitoringStreamingService");
+        response.put("running", metrics.isRunning());
+        response.put("connected", metrics.isConnected());
+        response.put("totalReceived", metrics.getTotalReceived());
+        response.put("totalProcessed", metrics.getTotalProcessed());
+        response.put("totalErrors", metrics.getTotalErrors());
+        response.put("totalDropped", metrics.getTotalDropped());
+        response.put("rates", metrics.getRates());
+        response.put("latency", metrics.getLatencySnapshot());
+        response.put("timestamp", java.time.LocalDateTime.now().toString());
         return ResponseEntity.ok(response);
     }
 }
@@ -1,15 +1,25 @@
 package com.example.investmentdatastreamservice.controller;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.investmentdatastreamservice.service.streaming.AggregatedBar;
+import com.example.investmentdatastreamservice.service.streaming.CandleTimeframe;
+import com.example.investmentdatastreamservice.service.streaming.InstrumentUniverseRefresher;
+import com.example.investmentdatastreamservice.service.streaming.StreamWriteExecutor;
 import com.example.investmentdatastreamservice.service.streaming.StreamingMetrics;
+import com.example.investmentdatastreamservice.service.streaming.TickCandleAggregator;
+import com.example.investmentdatastreamservice.service.streaming.UniverseSyncResult;
 import com.example.investmentdatastreamservice.service.streaming.impl.MinuteCandleStreamingService;
+import com.example.investmentdatastreamservice.service.streaming.processor.CandleRollupWriter;
 
 /**
  * REST контроллер для управления стримом минутных свечей
@@ -22,9 +32,19 @@ import com.example.investmentdatastreamservice.service.streaming.impl.MinuteCand
 public class MinuteCandleStreamController {
 
     private final MinuteCandleStreamingService candleStreamingService;
+    private final InstrumentUniverseRefresher universeRefresher;
+    private final StreamWriteExecutor writeExecutor;
+    private final TickCandleAggregator candleAggregator;
+    private final CandleRollupWriter rollupWriter;
 
-    public MinuteCandleStreamController(MinuteCandleStreamingService candleStreamingService) {
+    public MinuteCandleStreamController(MinuteCandleStreamingService candleStreamingService,
+            InstrumentUniverseRefresher universeRefresher, StreamWriteExecutor writeExecutor,
+            TickCandleAggregator candleAggregator, CandleRollupWriter rollupWriter) {
         this.candleStreamingService = candleStreamingService;
+        this.universeRefresher = universeRefresher;
+        this.writeExecutor = writeExecutor;
+        this.candleAggregator = candleAggregator;
+        this.rollupWriter = rollupWriter;
     }
 
     /**
@@ -110,6 +130,35 @@ public class MinuteCandleStreamController {
         }
     }
 
+    /**
+     * Синхронизация подписок с инструментами в БД без перезапуска стрима
+     * 
+     * @return количество подписанных, отписанных и перенесенных инструментов
+     */
+    @PostMapping("/sync")
+    public ResponseEntity<Map<String, Object>> syncInstruments() {
+        try {
+            UniverseSyncResult result = candleStreamingService.syncInstruments().join();
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("success", true);
+            response.put("service", "MinuteCandleStreamingService");
+            response.put("added", result.added());
+            response.put("removed", result.removed());
+            response.put("relocated", result.relocated());
+            response.put("closedStreams", result.closedStreams());
+            response.put("streams", result.streams());
+            response.put("timestamp", java.time.LocalDateTime.now().toString());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            Map<String, Object> response = Map.of(
+                "success", false,
+                "message", "Error syncing minute candle instruments",
+                "timestamp", java.time.LocalDateTime.now().toString()
+            );
+            return ResponseEntity.status(500).body(response);
+        }
+    }
+
     /**
      * Получить состояние стрима
      * 
@@ -138,16 +187,78 @@ public class MinuteCandleStreamController {
     public ResponseEntity<Map<String, Object>> getMetrics() {
         StreamingMetrics metrics = candleStreamingService.getMetrics();
         
-        Map<String, Object> response = Map.of(
-            "service", "MinuteCandleStreamingService",
-            "running", metrics.isRunning(),
-            "connected", metrics.isConnected(),
-            "totalReceived", metrics.getTotalReceived(),
-            "totalProcessed", metrics.getTotalProcessed(),
-            "totalErrors", metrics.getTotalErrors(),
-            "totalDropped", metrics.getTotalDropped(),
-            "timestamp", java.time.LocalDateTime.now().toString()
-        );
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("service", "MinuteCandleStreamingService");
+        response.put("running", metrics.isRunning());
+        response.put("connected", metrics.isConnected());
+        response.put("totalReceived", metrics.getTotalReceived());
+        response.put("totalProcessed", metrics.getTotalProcessed());
+        response.put("totalErrors", metrics.getTotalErrors());
+        response.put("totalDropped", metrics.getTotalDropped());
+        response.put("rates", metrics.getRates());
+        response.put("latency", metrics.getLatencySnapshot());
+        response.put("ringBuffer", candleStreamingService.getRingBuffer().getMetricsSnapshot());
+        response.put("subscriptions", candleStreamingService.getSubscriptionTracker().getStats());
+        response.put("failedSubscriptions", candleStreamingService.getSubscriptionTracker().getFailedInstruments());
+        response.put("backfill", candleStreamingService.getBackfillStats());
+        response.put("universe", universeRefresher.getStats());
+        response.put("dbWriter", writeExecutor.getStats());
+        response.put("aggregator", candleAggregator.getStats());
+        response.put("rollups", rollupWriter.getStats());
+        response.put("timestamp", java.time.LocalDateTime.now().toString());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Свечи, собранные из потока LastPrice
+     * 
+     * <p>
+     * Возвращает текущую (isComplete=false) и последнюю завершенную свечу инструмента
+     * для указанного интервала или для всех интервалов (1m, 5m, 15m, 1h).
+     * </p>
+     * 
+     * <pre>
+     * GET /api/stream/minute-candles/aggregated/{figi}?interval=5m
+     * </pre>
+     * 
+     * @param figi FIGI инструмента
+     * @param interval интервал (1m, 5m, 15m, 1h); без параметра - все интервалы
+     * @return свечи по интервалам или 400 при неизвестном интервале
+     */
+    @GetMapping("/aggregated/{figi}")
+    public ResponseEntity<Map<String, Object>> getAggregatedBars(@PathVariable String figi,
+            @RequestParam(required = false) String interval) {
+        CandleTimeframe[] timeframes;
+        if (interval == null) {
+            timeframes = CandleTimeframe.values();
+        } else {
+            CandleTimeframe timeframe = CandleTimeframe.fromCode(interval);
+            if (timeframe == null) {
+                Map<String, Object> response = Map.of(
+                    "success", false,
+                    "message", "Unknown interval: " + interval + " (expected 1m, 5m, 15m or 1h)",
+                    "timestamp", java.time.LocalDateTime.now().toString()
+                );
+                return ResponseEntity.badRequest().body(response);
+            }
+            timeframes = new CandleTimeframe[] { timeframe };
+        }
+
+        Map<String, Object> bars = new LinkedHashMap<>();
+        for (CandleTimeframe timeframe : timeframes) {
+            AggregatedBar current = candleAggregator.getCurrentBar(figi, timeframe);
+            AggregatedBar completed = candleAggregator.getLastCompletedBar(figi, timeframe);
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("current", current != null ? current.toMap() : null);
+            entry.put("lastCompleted", completed != null ? completed.toMap() : null);
+            bars.put(timeframe.getCode(), entry);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("success", true);
+        response.put("figi", figi);
+        response.put("bars", bars);
+        response.put("timestamp", java.time.LocalDateTime.now().toString());
         return ResponseEntity.ok(response);
     }
 }
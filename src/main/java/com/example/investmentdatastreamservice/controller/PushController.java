@@ -0,0 +1,109 @@
+package com.example.investmentdatastreamservice.controller;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.investmentdatastreamservice.service.streaming.push.PushChannel;
+import com.example.investmentdatastreamservice.service.streaming.push.PushClient;
+import com.example.investmentdatastreamservice.service.streaming.push.PushHub;
+import com.example.investmentdatastreamservice.service.streaming.push.PushSink;
+
+/**
+ * Push-API: цены последних сделок, завершенные свечи и уведомления через Server-Sent Events
+ *
+ * Замена периодического опроса invest.last_prices и REST: события приходят из того же
+ * внутрипроцессного потока, что и запись в БД. WebSocket-вариант - /ws/push
+ * ({@link PushWebSocketHandler}) с теми же параметрами.
+ */
+@RestController
+@RequestMapping("/api/push")
+public class PushController {
+
+    private final PushHub pushHub;
+
+    public PushController(PushHub pushHub) {
+        this.pushHub = pushHub;
+    }
+
+    /**
+     * Подписка на события через SSE
+     *
+     * <p>
+     * <strong>Пример запроса:</strong>
+     * </p>
+     * <pre>
+     * curl -N "http://localhost:8080/api/push/sse?channels=price,alert&amp;figi=BBG004730N88,BBG004730ZJ9"
+     * </pre>
+     *
+     * <p>
+     * События: price, candle, alert и служебное heartbeat; данные - JSON.
+     * </p>
+     *
+     * @param channels каналы через запятую (price, candle, alert); по умолчанию - все
+     * @param figi FIGI через запятую; по умолчанию - все инструменты
+     * @return поток событий, 400 при неизвестном канале, 503 при превышении числа подключений
+     */
+    @GetMapping(path = "/sse", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribe(@RequestParam(required = false) String channels,
+                                                @RequestParam(required = false) String figi) {
+        Set<PushChannel> parsedChannels;
+        try {
+            parsedChannels = PushChannel.parse(channels);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // Без таймаута: соединение живет, пока его не закроет клиент
+        SseEmitter emitter = new SseEmitter(0L);
+        PushClient client = pushHub.subscribe("sse", new SseSink(emitter), parsedChannels,
+            PushHub.parseFigis(figi));
+        if (client == null) {
+            return ResponseEntity.status(503).build();
+        }
+        emitter.onCompletion(() -> pushHub.unsubscribe(client));
+        emitter.onTimeout(() -> pushHub.unsubscribe(client));
+        emitter.onError(error -> pushHub.unsubscribe(client));
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * Статистика push-API: подключенные клиенты, схлопнутые и отброшенные события
+     *
+     * @return статистика
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getStats() {
+        return ResponseEntity.ok(pushHub.getStats());
+    }
+
+    /**
+     * Доставка событий через SseEmitter
+     */
+    private static final class SseSink implements PushSink {
+
+        private final SseEmitter emitter;
+
+        SseSink(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void send(String event, String json) throws IOException {
+            emitter.send(SseEmitter.event().name(event).data(json, MediaType.APPLICATION_JSON));
+        }
+
+        @Override
+        public void close() {
+            emitter.complete();
+        }
+    }
+}
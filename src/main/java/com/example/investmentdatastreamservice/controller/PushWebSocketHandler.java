@@ -0,0 +1,144 @@
+package com.example.investmentdatastreamservice.controller;
+
+import java.io.IOException;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.example.investmentdatastreamservice.service.streaming.push.PushChannel;
+import com.example.investmentdatastreamservice.service.streaming.push.PushClient;
+import com.example.investmentdatastreamservice.service.streaming.push.PushHub;
+import com.example.investmentdatastreamservice.service.streaming.push.PushSink;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Push-API через WebSocket (/ws/push)
+ *
+ * Фильтры задаются параметрами подключения, как в SSE:
+ * <pre>
+ * ws://localhost:8080/ws/push?channels=price,candle&amp;figi=BBG004730N88
+ * </pre>
+ * и могут быть заменены сообщением клиента:
+ * <pre>
+ * {"channels": ["price", "alert"], "figis": ["BBG004730N88", "BBG004730ZJ9"]}
+ * </pre>
+ * Сервер отправляет события в виде {"type": "price", "data": {...}}.
+ */
+@Component
+public class PushWebSocketHandler extends TextWebSocketHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(PushWebSocketHandler.class);
+
+    private static final String CLIENT_ATTRIBUTE = "pushClient";
+
+    private final PushHub pushHub;
+    private final ObjectMapper objectMapper;
+
+    public PushWebSocketHandler(PushHub pushHub, ObjectMapper objectMapper) {
+        this.pushHub = pushHub;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        MultiValueMap<String, String> params = session.getUri() != null
+            ? UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams()
+            : null;
+        Set<PushChannel> channels;
+        try {
+            channels = PushChannel.parse(params != null ? params.getFirst("channels") : null);
+        } catch (IllegalArgumentException e) {
+            session.close(CloseStatus.BAD_DATA.withReason(e.getMessage()));
+            return;
+        }
+        Set<String> figis = PushHub.parseFigis(params != null ? params.getFirst("figi") : null);
+
+        PushClient client = pushHub.subscribe("websocket", new WebSocketSink(session), channels, figis);
+        if (client == null) {
+            session.close(CloseStatus.SERVICE_OVERLOAD);
+            return;
+        }
+        session.getAttributes().put(CLIENT_ATTRIBUTE, client);
+    }
+
+    /**
+     * Замена фильтров клиентом: {"channels": [...], "figis": [...]}
+     */
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        PushClient client = (PushClient) session.getAttributes().get(CLIENT_ATTRIBUTE);
+        if (client == null) {
+            return;
+        }
+        try {
+            JsonNode request = objectMapper.readTree(message.getPayload());
+            Set<PushChannel> channels = PushChannel.parse(joinArray(request.get("channels")));
+            Set<String> figis = PushHub.parseFigis(joinArray(request.get("figis")));
+            pushHub.updateFilter(client, channels, figis);
+            log.debug("Push client {} filter updated: channels={}, figis={}", client.getId(), channels, figis.size());
+        } catch (Exception e) {
+            log.debug("Invalid push filter from client {}: {}", client.getId(), e.getMessage());
+        }
+    }
+
+    private static String joinArray(JsonNode node) {
+        if (node == null || !node.isArray()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (JsonNode item : node) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(item.asText());
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        pushHub.unsubscribe((PushClient) session.getAttributes().get(CLIENT_ATTRIBUTE));
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        pushHub.unsubscribe((PushClient) session.getAttributes().get(CLIENT_ATTRIBUTE));
+    }
+
+    /**
+     * Доставка событий в WebSocket-сессию
+     */
+    private static final class WebSocketSink implements PushSink {
+
+        private final WebSocketSession session;
+
+        WebSocketSink(WebSocketSession session) {
+            this.session = session;
+        }
+
+        @Override
+        public void send(String event, String json) throws IOException {
+            session.sendMessage(new TextMessage("{\"type\":\"" + event + "\",\"data\":" + json + "}"));
+        }
+
+        @Override
+        public void close() {
+            if (session.isOpen()) {
+                try {
+                    session.close(CloseStatus.NORMAL);
+                } catch (IOException e) {
+                    log.debug("Error closing WebSocket session {}: {}", session.getId(), e.getMessage());
+                }
+            }
+        }
+    }
+}
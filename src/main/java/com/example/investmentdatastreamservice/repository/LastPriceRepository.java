@@ -24,6 +24,8 @@ public interface LastPriceRepository extends JpaRepository<LastPriceEntity, Last
     /**
      * Найти последнюю цену по FIGI инструмента
      * 
+     * Для текущей цены в потоке используйте LatestPriceStore - он не обращается к БД.
+     * 
      * @param figi идентификатор инструмента
      * @return последняя цена или empty, если не найдена
      */
@@ -62,6 +64,47 @@ public interface LastPriceRepository extends JpaRepository<LastPriceEntity, Last
     List<LastPriceEntity> findByFigiAndTimeBetween(@Param("figi") String figi,
             @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
 
+    /**
+     * Найти последнюю цену каждого инструмента в указанном временном диапазоне
+     * 
+     * @param from начальное время
+     * @param to конечное время
+     * @return по одной записи на FIGI - самая поздняя в диапазоне
+     */
+    @Query(value = "SELECT DISTINCT ON (figi) * FROM invest.last_prices WHERE time BETWEEN :from AND :to ORDER BY figi, time DESC",
+            nativeQuery = true)
+    List<LastPriceEntity> findLatestPerFigiBetween(@Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to);
+
+    /**
+     * Есть ли сделки в полуинтервале [from, to)
+     * 
+     * Для границ одного дня план читает только его партицию и останавливается
+     * на первой найденной строке.
+     * 
+     * @param from начальное время (включительно)
+     * @param to конечное время (исключительно)
+     * @return true, если в интервале есть хотя бы одна сделка
+     */
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM invest.last_prices WHERE time >= :from AND time < :to)",
+            nativeQuery = true)
+    boolean existsInRange(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /**
+     * Найти последнюю цену каждого инструмента в полуинтервале [from, to)
+     * 
+     * В отличие от {@link #findLatestPerFigiBetween} правая граница не включается,
+     * поэтому запрос за день не затрагивает партицию следующего дня.
+     * 
+     * @param from начальное время (включительно)
+     * @param to конечное время (исключительно)
+     * @return по одной записи на FIGI - самая поздняя в интервале
+     */
+    @Query(value = "SELECT DISTINCT ON (figi) * FROM invest.last_prices WHERE time >= :from AND time < :to ORDER BY figi, time DESC",
+            nativeQuery = true)
+    List<LastPriceEntity> findLatestPerFigiInRange(@Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to);
+
     /**
      * Подсчитать количество цен в временном диапазоне
      * 
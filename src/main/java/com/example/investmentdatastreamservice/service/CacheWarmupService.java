@@ -54,16 +54,24 @@ public class CacheWarmupService {
     private final LimitsService limitsService;
     private final HistoricalPriceRepository historicalPriceRepository;
     private final CacheManager cacheManager;
+    private final LimitAlertBandRegistry bandRegistry;
+    private final InstrumentMetadataIndex instrumentIndex;
+    private final HistoricalExtremeTracker historicalExtremeTracker;
     
     public CacheWarmupService(ShareRepository shareRepository, FutureRepository futureRepository,
             IndicativeRepository indicativeRepository, LimitsService limitsService, 
-            HistoricalPriceRepository historicalPriceRepository, CacheManager cacheManager) {
+            HistoricalPriceRepository historicalPriceRepository, CacheManager cacheManager,
+            LimitAlertBandRegistry bandRegistry, InstrumentMetadataIndex instrumentIndex,
+            HistoricalExtremeTracker historicalExtremeTracker) {
         this.shareRepository = shareRepository;
         this.futureRepository = futureRepository;
         this.indicativeRepository = indicativeRepository;
         this.limitsService = limitsService;
         this.historicalPriceRepository = historicalPriceRepository;
         this.cacheManager = cacheManager;
+        this.bandRegistry = bandRegistry;
+        this.instrumentIndex = instrumentIndex;
+        this.historicalExtremeTracker = historicalExtremeTracker;
     }
 
     /**
@@ -97,6 +105,9 @@ public class CacheWarmupService {
             List<IndicativeEntity> indicatives = getAllIndicatives();
             logger.info("Загружено {} индикативных инструментов в кэш", indicatives.size());
 
+            // Строим индекс метаданных инструментов
+            instrumentIndex.rebuild(shares, futures, indicatives);
+
             // Прогреваем кэш лимитов для акций и фьючерсов
             warmupLimitsCache(shares, futures);
             
@@ -146,6 +157,9 @@ public class CacheWarmupService {
             List<IndicativeEntity> indicatives = getAllIndicatives();
             logger.info("Загружено {} индикативных инструментов в кэш", indicatives.size());
 
+            // Перестраиваем индекс метаданных инструментов
+            instrumentIndex.rebuild(shares, futures, indicatives);
+
             // Прогреваем кэш лимитов для акций и фьючерсов
             warmupLimitsCache(shares, futures);
 
@@ -215,10 +229,14 @@ public class CacheWarmupService {
      * 
      * <p>
      * Удаляет все записи из кэшей акций, фьючерсов, индикативных инструментов и исторических цен.
+     * Кэши очищаются до вызова метода, поэтому полосы оповещений сбрасываются уже после
+     * очистки и не собираются заново из прежних значений кэша.
      * </p>
      */
-    @CacheEvict(value = {"sharesCache", "futuresCache", "indicativesCache", "historicalPricesCache"}, allEntries = true)
+    @CacheEvict(value = {"sharesCache", "futuresCache", "indicativesCache", "historicalPricesCache"},
+            allEntries = true, beforeInvocation = true)
     public void evictAllCaches() {
+        bandRegistry.invalidateAll("очищены кэши инструментов");
         logger.info("Все кэши инструментов очищены");
     }
 
@@ -363,8 +381,10 @@ public class CacheWarmupService {
     /**
      * Обновление кэша исторических цен
      * 
-     * Очищает кэш и загружает данные заново из БД.
-     * Использует принудительное сохранение через CacheManager для гарантированного попадания в кэш.
+     * Выполняется после ночного обновления материализованного представления. Кэш не очищается:
+     * экстремумы каждого инструмента сверяются с {@link HistoricalExtremeTracker}, который
+     * в течение дня обновлял их по ценам сделок, и в кэш записывается более широкий диапазон.
+     * Полосы уведомлений сбрасываются только у инструментов, экстремумы которых изменились.
      * 
      * @return статистика обновления
      */
@@ -383,10 +403,7 @@ public class CacheWarmupService {
                 );
             }
             
-            // Очищаем кэш
-            evictHistoricalPricesCache();
-            
-            // Загружаем данные заново напрямую из репозитория (без сервиса, чтобы избежать лишних вызовов)
+            // Загружаем данные напрямую из репозитория (без сервиса, чтобы избежать лишних вызовов)
             List<HistoricalPriceDto> historicalPrices = historicalPriceRepository.findAll().stream()
                     .map(HistoricalPriceMapper.INSTANCE::toDto)
                     .toList();
@@ -395,13 +412,18 @@ public class CacheWarmupService {
             // Сохраняем весь список в кэш с ключом 'all'
             cache.put("all", historicalPrices);
             
-            // Сохраняем каждую запись по FIGI для быстрого доступа
+            // Сверяем и сохраняем каждую запись по FIGI
             int successCount = 0;
+            int changedCount = 0;
             for (HistoricalPriceDto historicalPrice : historicalPrices) {
                 if (historicalPrice != null && historicalPrice.getFigi() != null) {
                     try {
-                        // Принудительно сохраняем в кэш по ключу FIGI
-                        cache.put(historicalPrice.getFigi(), historicalPrice);
+                        HistoricalExtremeTracker.ReconcileResult result = historicalExtremeTracker.reconcile(historicalPrice);
+                        cache.put(historicalPrice.getFigi(), result.historicalPrice());
+                        if (result.changed()) {
+                            bandRegistry.invalidate(historicalPrice.getFigi(), "обновлены исторические экстремумы");
+                            changedCount++;
+                        }
                         successCount++;
                     } catch (Exception e) {
                         logger.debug("❌ Ошибка при сохранении исторических цен для {} в кэш: {}", 
@@ -411,12 +433,13 @@ public class CacheWarmupService {
             }
             
             long duration = System.currentTimeMillis() - startTime;
-            logger.info("✅ Обновление кэша исторических цен завершено за {} мс. Сохранено записей: {} (всего: {})", 
-                    duration, successCount, historicalPrices.size());
+            logger.info("✅ Обновление кэша исторических цен завершено за {} мс. Сохранено записей: {} (всего: {}, изменилось: {})", 
+                    duration, successCount, historicalPrices.size(), changedCount);
             
             return java.util.Map.of(
                 "success", true,
                 "successCount", successCount,
+                "changedCount", changedCount,
                 "totalCount", historicalPrices.size(),
                 "durationMs", duration
             );
@@ -430,11 +453,66 @@ public class CacheWarmupService {
         }
     }
     
+    /**
+     * Обновление кэшей и индекса инструментов из БД
+     * 
+     * Загружает акции, фьючерсы и индикативы напрямую из репозиториев, сохраняет
+     * списки в кэши и атомарно заменяет снимок {@link InstrumentMetadataIndex}.
+     * Читатели индекса все время видят либо старый, либо новый снимок целиком.
+     * 
+     * @return статистика обновления
+     */
+    public java.util.Map<String, Object> refreshInstrumentIndex() {
+        logger.info("🔄 Начинается обновление индекса инструментов...");
+        
+        long startTime = System.currentTimeMillis();
+        try {
+            List<ShareEntity> shares = shareRepository.findAll();
+            List<FutureEntity> futures = futureRepository.findAll();
+            List<IndicativeEntity> indicatives = indicativeRepository.findAll();
+            
+            // Принудительно сохраняем списки в кэш (как при прогреве по ключу 'all')
+            putToCache("sharesCache", shares);
+            putToCache("futuresCache", futures);
+            putToCache("indicativesCache", indicatives);
+            
+            instrumentIndex.rebuild(shares, futures, indicatives);
+            
+            long duration = System.currentTimeMillis() - startTime;
+            return java.util.Map.of(
+                "success", true,
+                "totalCount", instrumentIndex.size(),
+                "durationMs", duration
+            );
+        } catch (Exception e) {
+            logger.error("❌ Ошибка при обновлении индекса инструментов: {}", e.getMessage(), e);
+            return java.util.Map.of(
+                "success", false,
+                "error", String.valueOf(e.getMessage()),
+                "durationMs", System.currentTimeMillis() - startTime
+            );
+        }
+    }
+    
+    private void putToCache(String cacheName, Object value) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.put("all", value);
+        } else {
+            logger.error("❌ Кэш '{}' не найден!", cacheName);
+        }
+    }
+    
     /**
      * Очистить кэш исторических цен
+     * 
+     * <p>
+     * Кэш очищается до вызова метода, чтобы полосы оповещений сбрасывались после очистки.
+     * </p>
      */
-    @CacheEvict(value = "historicalPricesCache", allEntries = true)
+    @CacheEvict(value = "historicalPricesCache", allEntries = true, beforeInvocation = true)
     public void evictHistoricalPricesCache() {
+        bandRegistry.invalidateAll("очищен кэш исторических цен");
         logger.info("🗑️ Кэш исторических цен очищен");
     }
 }
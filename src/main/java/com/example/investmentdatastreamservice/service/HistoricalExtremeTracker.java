@@ -0,0 +1,387 @@
+package com.example.investmentdatastreamservice.service;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.example.investmentdatastreamservice.dto.HistoricalPriceDto;
+import com.example.investmentdatastreamservice.service.streaming.StreamWriteExecutor;
+import com.example.investmentdatastreamservice.utils.FixedPointPrice;
+
+/**
+ * Инкрементальное обновление исторических максимумов и минимумов
+ *
+ * Материализованное представление invest_views.historical_price_extremes обновляется
+ * раз в сутки, поэтому новый исторический экстремум, достигнутый в течение сессии,
+ * раньше становился известен мониторингу лимитов только на следующую ночь.
+ * Трекер хранит для каждого FIGI текущие экстремумы в формате {@link FixedPointPrice}
+ * и сравнивает с ними цены сделок ({@link LimitMonitorService}) и минутные свечи API
+ * (CandleProcessor). Проверка внутри известного диапазона - два сравнения long.
+ *
+ * При выходе за экстремум:
+ * - обновляется запись кэша historicalPricesCache по FIGI;
+ * - сбрасывается полоса уведомлений только этого инструмента ({@link LimitAlertBandRegistry});
+ * - новый экстремум сразу записывается в invest_views.historical_price_extremes_live
+ *   (db/16-historical-price-extremes-live.sql), которую учитывает invest.historical_price_extremes.
+ *   Пока запись инструмента ждет соединения, следующие экстремумы в нее же и попадут.
+ *
+ * Нулевые и отрицательные цены (LastPrice без цены) пропускаются: UPSERT берет
+ * LEAST, и такой минимум остался бы в БД навсегда.
+ *
+ * Экстремумы инструмента загружаются из кэша при первой цене. Инструменты без истории
+ * не отслеживаются: иначе каждая сделка нового инструмента была бы "историческим" уровнем.
+ */
+@Component
+public class HistoricalExtremeTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(HistoricalExtremeTracker.class);
+
+    private static final ZoneOffset MOSCOW_OFFSET = ZoneOffset.ofHours(3);
+    private static final String CACHE_NAME = "historicalPricesCache";
+
+    /**
+     * Запись только расширяет диапазон: параллельные записи одного FIGI не откатывают экстремум
+     */
+    private static final String UPSERT_SQL = """
+        INSERT INTO invest_views.historical_price_extremes_live AS l
+        (figi, historical_high, historical_high_date, historical_low, historical_low_date, updated_at)
+        VALUES (?, ?, ?, ?, ?, now())
+        ON CONFLICT (figi) DO UPDATE SET
+        historical_high = GREATEST(l.historical_high, EXCLUDED.historical_high),
+        historical_high_date = CASE WHEN l.historical_high IS NULL OR EXCLUDED.historical_high > l.historical_high
+            THEN EXCLUDED.historical_high_date ELSE l.historical_high_date END,
+        historical_low = LEAST(l.historical_low, EXCLUDED.historical_low),
+        historical_low_date = CASE WHEN l.historical_low IS NULL OR EXCLUDED.historical_low < l.historical_low
+            THEN EXCLUDED.historical_low_date ELSE l.historical_low_date END,
+        updated_at = now()
+        """;
+
+    /**
+     * Текущие экстремумы одного инструмента
+     */
+    private static final class Extremes {
+        private final String ticker;
+        private final String instrumentType;
+        private volatile long high;
+        private volatile long low;
+        private OffsetDateTime highDate;
+        private OffsetDateTime lowDate;
+        private final AtomicBoolean writePending = new AtomicBoolean(false);
+
+        Extremes(HistoricalPriceDto dto) {
+            this.ticker = dto.getTicker();
+            this.instrumentType = dto.getInstrumentType();
+            this.high = FixedPointPrice.fromBigDecimal(dto.getHistoricalHigh());
+            this.low = FixedPointPrice.fromBigDecimal(dto.getHistoricalLow());
+            this.highDate = dto.getHistoricalHighDate();
+            this.lowDate = dto.getHistoricalLowDate();
+        }
+
+        boolean contains(long highPrice, long lowPrice) {
+            return highPrice <= high && lowPrice >= low;
+        }
+
+        HistoricalPriceDto toDto(String figi) {
+            return HistoricalPriceDto.builder()
+                .figi(figi)
+                .ticker(ticker)
+                .instrumentType(instrumentType)
+                .historicalHigh(FixedPointPrice.toBigDecimal(high))
+                .historicalHighDate(highDate)
+                .historicalLow(FixedPointPrice.toBigDecimal(low))
+                .historicalLowDate(lowDate)
+                .build();
+        }
+    }
+
+    /**
+     * Инструмент без исторических экстремумов (не отслеживается до ночной сверки)
+     */
+    private static final Extremes ABSENT = new Extremes(HistoricalPriceDto.builder()
+        .historicalHigh(BigDecimal.ZERO)
+        .historicalLow(BigDecimal.ZERO)
+        .build());
+
+    private final HistoricalPricesService historicalPricesService;
+    private final LimitAlertBandRegistry bandRegistry;
+    private final CacheManager cacheManager;
+    private final JdbcTemplate streamJdbcTemplate;
+    private final StreamWriteExecutor writeExecutor;
+    private final Map<String, Extremes> extremes = new ConcurrentHashMap<>();
+
+    // Метрики
+    private final AtomicLong newHighs = new AtomicLong(0);
+    private final AtomicLong newLows = new AtomicLong(0);
+    private final AtomicLong persisted = new AtomicLong(0);
+    private final AtomicLong writesCoalesced = new AtomicLong(0);
+    private final AtomicLong persistRejected = new AtomicLong(0);
+    private final AtomicLong persistErrors = new AtomicLong(0);
+    private final AtomicLong reconciled = new AtomicLong(0);
+
+    public HistoricalExtremeTracker(HistoricalPricesService historicalPricesService,
+                                    LimitAlertBandRegistry bandRegistry,
+                                    CacheManager cacheManager,
+                                    @Qualifier("streamJdbcTemplate") JdbcTemplate streamJdbcTemplate,
+                                    StreamWriteExecutor writeExecutor) {
+        this.historicalPricesService = historicalPricesService;
+        this.bandRegistry = bandRegistry;
+        this.cacheManager = cacheManager;
+        this.streamJdbcTemplate = streamJdbcTemplate;
+        this.writeExecutor = writeExecutor;
+    }
+
+    /**
+     * Цена сделки
+     *
+     * @param figi FIGI инструмента
+     * @param price цена в формате {@link FixedPointPrice}
+     * @param eventTime время сделки (московское)
+     */
+    public void onPrice(String figi, long price, LocalDateTime eventTime) {
+        if (price <= 0) {
+            return;
+        }
+        Extremes state = stateFor(figi);
+        if (state == null || state.contains(price, price)) {
+            return;
+        }
+        update(figi, state, price, price, eventTime != null
+            ? OffsetDateTime.of(eventTime, MOSCOW_OFFSET)
+            : OffsetDateTime.now(MOSCOW_OFFSET));
+    }
+
+    /**
+     * Минутная свеча: максимум и минимум свечи могут выйти за цены полученных сделок
+     *
+     * @param figi FIGI инструмента
+     * @param high максимальная цена свечи в формате {@link FixedPointPrice}
+     * @param low минимальная цена свечи в формате {@link FixedPointPrice}
+     * @param time начало свечи
+     */
+    public void onCandle(String figi, long high, long low, Instant time) {
+        if (low <= 0) {
+            return;
+        }
+        Extremes state = stateFor(figi);
+        if (state == null || state.contains(high, low)) {
+            return;
+        }
+        update(figi, state, high, low, OffsetDateTime.ofInstant(time, MOSCOW_OFFSET));
+    }
+
+    private Extremes stateFor(String figi) {
+        Extremes state = extremes.get(figi);
+        if (state == null) {
+            state = seed(figi);
+        }
+        return state == ABSENT ? null : state;
+    }
+
+    /**
+     * Загрузка экстремумов инструмента из кэша historicalPricesCache (прогрет при старте)
+     */
+    private Extremes seed(String figi) {
+        HistoricalPriceDto dto;
+        try {
+            dto = historicalPricesService.getHistoricalPriceByFigi(figi);
+        } catch (Exception e) {
+            logger.debug("Не удалось получить исторические экстремумы для {}: {}", figi, e.getMessage());
+            return ABSENT;
+        }
+        Extremes state = dto != null && dto.getHistoricalHigh() != null && dto.getHistoricalLow() != null
+            ? new Extremes(dto)
+            : ABSENT;
+        Extremes existing = extremes.putIfAbsent(figi, state);
+        return existing != null ? existing : state;
+    }
+
+    private void update(String figi, Extremes state, long high, long low, OffsetDateTime time) {
+        HistoricalPriceDto dto;
+        synchronized (state) {
+            boolean changed = false;
+            if (high > state.high) {
+                state.high = high;
+                state.highDate = time;
+                newHighs.incrementAndGet();
+                changed = true;
+                logger.debug("🏆 Новый исторический максимум {} ({}): {}", state.ticker, figi,
+                    FixedPointPrice.toBigDecimal(high));
+            }
+            if (low < state.low) {
+                state.low = low;
+                state.lowDate = time;
+                newLows.incrementAndGet();
+                changed = true;
+                logger.debug("🏆 Новый исторический минимум {} ({}): {}", state.ticker, figi,
+                    FixedPointPrice.toBigDecimal(low));
+            }
+            if (!changed) {
+                return;
+            }
+            dto = state.toDto(figi);
+        }
+
+        // Полоса собирается заново из кэша уже с новым экстремумом
+        putToCache(dto);
+        bandRegistry.invalidate(figi, "новый исторический экстремум");
+        persist(figi, state);
+    }
+
+    private void putToCache(HistoricalPriceDto dto) {
+        Cache cache = cacheManager.getCache(CACHE_NAME);
+        if (cache != null) {
+            cache.put(dto.getFigi(), dto);
+            // Полный список перечитывается из БД (представление уже учитывает новые экстремумы)
+            cache.evict("all");
+        }
+    }
+
+    /**
+     * Запись экстремумов инструмента в invest_views.historical_price_extremes_live
+     *
+     * Пока запись ждет соединения, новые экстремумы не ставят вторую: задача
+     * читает состояние в момент выполнения.
+     */
+    private void persist(String figi, Extremes state) {
+        if (!state.writePending.compareAndSet(false, true)) {
+            writesCoalesced.incrementAndGet();
+            return;
+        }
+        boolean accepted = writeExecutor.submit(() -> {
+            state.writePending.set(false);
+            HistoricalPriceDto dto;
+            synchronized (state) {
+                dto = state.toDto(figi);
+            }
+            try {
+                streamJdbcTemplate.update(UPSERT_SQL,
+                    figi,
+                    dto.getHistoricalHigh(),
+                    toTimestamp(dto.getHistoricalHighDate()),
+                    dto.getHistoricalLow(),
+                    toTimestamp(dto.getHistoricalLowDate()));
+                persisted.incrementAndGet();
+            } catch (Exception e) {
+                persistErrors.incrementAndGet();
+                logger.error("❌ Ошибка записи исторических экстремумов для {}: {}", figi, e.getMessage(), e);
+            }
+        });
+        if (!accepted) {
+            state.writePending.set(false);
+            persistRejected.incrementAndGet();
+            logger.warn("Очередь записи в БД заполнена, экстремумы {} будут записаны при следующем обновлении", figi);
+        }
+    }
+
+    private static Timestamp toTimestamp(OffsetDateTime time) {
+        return time != null ? Timestamp.from(time.toInstant()) : null;
+    }
+
+    /**
+     * Сверка с экстремумами из БД (ночное обновление материализованного представления)
+     *
+     * Из БД и из памяти берется более широкий диапазон: запись нового экстремума
+     * могла еще не выполниться к моменту чтения.
+     *
+     * @param dto экстремумы из invest.historical_price_extremes
+     * @return экстремумы для кэша и признак изменения по сравнению с памятью
+     */
+    public ReconcileResult reconcile(HistoricalPriceDto dto) {
+        String figi = dto.getFigi();
+        Extremes state = extremes.get(figi);
+        if (state == null) {
+            return new ReconcileResult(dto, false);
+        }
+        if (state == ABSENT) {
+            // Появилась история - инструмент загрузится заново при следующей цене
+            extremes.remove(figi, ABSENT);
+            return new ReconcileResult(dto, dto.getHistoricalHigh() != null && dto.getHistoricalLow() != null);
+        }
+        if (dto.getHistoricalHigh() == null || dto.getHistoricalLow() == null) {
+            HistoricalPriceDto current;
+            synchronized (state) {
+                current = state.toDto(figi);
+            }
+            return new ReconcileResult(current, false);
+        }
+
+        long dbHigh = FixedPointPrice.fromBigDecimal(dto.getHistoricalHigh());
+        long dbLow = FixedPointPrice.fromBigDecimal(dto.getHistoricalLow());
+        HistoricalPriceDto merged;
+        boolean changed = false;
+        boolean memoryAhead;
+        synchronized (state) {
+            if (dbHigh > state.high) {
+                state.high = dbHigh;
+                state.highDate = dto.getHistoricalHighDate();
+                changed = true;
+            }
+            if (dbLow < state.low) {
+                state.low = dbLow;
+                state.lowDate = dto.getHistoricalLowDate();
+                changed = true;
+            }
+            memoryAhead = state.high > dbHigh || state.low < dbLow;
+            merged = state.toDto(figi);
+        }
+        if (changed) {
+            reconciled.incrementAndGet();
+        }
+        if (memoryAhead) {
+            // Запись была отклонена или еще не выполнена - повторяем
+            persist(figi, state);
+        }
+        return new ReconcileResult(merged, changed);
+    }
+
+    /**
+     * Результат сверки одного инструмента
+     *
+     * @param historicalPrice экстремумы для кэша
+     * @param changed экстремумы в памяти изменились - полосу уведомлений нужно собрать заново
+     */
+    public record ReconcileResult(HistoricalPriceDto historicalPrice, boolean changed) {}
+
+    /**
+     * Статистика трекера
+     */
+    public Map<String, Object> getStats() {
+        int tracked = 0;
+        for (Extremes state : extremes.values()) {
+            if (state != ABSENT) {
+                tracked++;
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("trackedInstruments", tracked);
+        stats.put("withoutHistory", extremes.size() - tracked);
+        stats.put("newHighs", newHighs.get());
+        stats.put("newLows", newLows.get());
+        stats.put("persisted", persisted.get());
+        stats.put("writesCoalesced", writesCoalesced.get());
+        stats.put("persistRejected", persistRejected.get());
+        stats.put("persistErrors", persistErrors.get());
+        stats.put("reconciled", reconciled.get());
+        return stats;
+    }
+
+    // Getters для метрик
+    public long getNewHighs() { return newHighs.get(); }
+    public long getNewLows() { return newLows.get(); }
+}
@@ -0,0 +1,135 @@
+package com.example.investmentdatastreamservice.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.example.investmentdatastreamservice.entity.FutureEntity;
+import com.example.investmentdatastreamservice.entity.IndicativeEntity;
+import com.example.investmentdatastreamservice.entity.ShareEntity;
+
+/**
+ * Индекс метаданных инструментов FIGI -> тикер, название, тип
+ *
+ * Неизменяемый снимок строится {@link CacheWarmupService} из тех же списков акций,
+ * фьючерсов и индикативов, что прогреваются в кэш, и атомарно заменяется при
+ * прогреве и плановом обновлении. Чтение не обращается к БД и не берет блокировок,
+ * поэтому индекс используется на пути обработки каждого тика вместо findById.
+ *
+ * Если FIGI встречается в нескольких списках, приоритет как у прежних поисков:
+ * акция, затем фьючерс, затем индикатив.
+ */
+@Component
+public class InstrumentMetadataIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(InstrumentMetadataIndex.class);
+
+    /**
+     * Тип инструмента
+     */
+    public enum InstrumentType {
+        SHARE, FUTURE, INDICATIVE
+    }
+
+    /**
+     * Метаданные инструмента. Для фьючерсов названием служит тикер.
+     */
+    public record InstrumentMetadata(String figi, String ticker, String name, InstrumentType type) {}
+
+    /**
+     * Неизменяемый снимок индекса
+     */
+    private record Snapshot(Map<String, InstrumentMetadata> metadata,
+                            Map<String, ShareEntity> shares,
+                            Map<String, FutureEntity> futures,
+                            Map<String, IndicativeEntity> indicatives,
+                            long builtAtMillis) {
+
+        static Snapshot empty() {
+            return new Snapshot(Map.of(), Map.of(), Map.of(), Map.of(), 0L);
+        }
+    }
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.empty());
+
+    /**
+     * Построение нового снимка и атомарная замена текущего
+     */
+    public void rebuild(List<ShareEntity> shares, List<FutureEntity> futures, List<IndicativeEntity> indicatives) {
+        long startTime = System.currentTimeMillis();
+
+        Map<String, InstrumentMetadata> metadata = new HashMap<>();
+        Map<String, ShareEntity> shareMap = new HashMap<>();
+        Map<String, FutureEntity> futureMap = new HashMap<>();
+        Map<String, IndicativeEntity> indicativeMap = new HashMap<>();
+
+        for (ShareEntity share : shares) {
+            if (isValidFigi(share.getFigi())) {
+                shareMap.putIfAbsent(share.getFigi(), share);
+                metadata.putIfAbsent(share.getFigi(), new InstrumentMetadata(
+                    share.getFigi(), share.getTicker(), share.getName(), InstrumentType.SHARE));
+            }
+        }
+        for (FutureEntity future : futures) {
+            if (isValidFigi(future.getFigi())) {
+                futureMap.putIfAbsent(future.getFigi(), future);
+                metadata.putIfAbsent(future.getFigi(), new InstrumentMetadata(
+                    future.getFigi(), future.getTicker(), future.getTicker(), InstrumentType.FUTURE));
+            }
+        }
+        for (IndicativeEntity indicative : indicatives) {
+            if (isValidFigi(indicative.getFigi())) {
+                indicativeMap.putIfAbsent(indicative.getFigi(), indicative);
+                metadata.putIfAbsent(indicative.getFigi(), new InstrumentMetadata(
+                    indicative.getFigi(), indicative.getTicker(), indicative.getName(), InstrumentType.INDICATIVE));
+            }
+        }
+
+        snapshot.set(new Snapshot(Map.copyOf(metadata), Map.copyOf(shareMap), Map.copyOf(futureMap),
+            Map.copyOf(indicativeMap), System.currentTimeMillis()));
+
+        logger.info("📇 Индекс инструментов обновлен за {} мс: акций={}, фьючерсов={}, индикативов={}",
+            System.currentTimeMillis() - startTime, shareMap.size(), futureMap.size(), indicativeMap.size());
+    }
+
+    private static boolean isValidFigi(String figi) {
+        return figi != null && !figi.isBlank();
+    }
+
+    /**
+     * Метаданные инструмента или null, если FIGI не найден
+     */
+    public InstrumentMetadata get(String figi) {
+        return figi != null ? snapshot.get().metadata().get(figi) : null;
+    }
+
+    /**
+     * Тип инструмента или null, если FIGI не найден
+     */
+    public InstrumentType getType(String figi) {
+        InstrumentMetadata metadata = get(figi);
+        return metadata != null ? metadata.type() : null;
+    }
+
+    public ShareEntity getShare(String figi) {
+        return figi != null ? snapshot.get().shares().get(figi) : null;
+    }
+
+    public FutureEntity getFuture(String figi) {
+        return figi != null ? snapshot.get().futures().get(figi) : null;
+    }
+
+    public IndicativeEntity getIndicative(String figi) {
+        return figi != null ? snapshot.get().indicatives().get(figi) : null;
+    }
+
+    // Getters для метрик
+    public int size() { return snapshot.get().metadata().size(); }
+    public long getBuiltAtMillis() { return snapshot.get().builtAtMillis(); }
+    public boolean isEmpty() { return snapshot.get().metadata().isEmpty(); }
+}
@@ -0,0 +1,276 @@
+package com.example.investmentdatastreamservice.service;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.example.investmentdatastreamservice.entity.LastPriceEntity;
+import com.example.investmentdatastreamservice.repository.LastPriceRepository;
+import com.example.investmentdatastreamservice.service.streaming.LastPriceConsumer;
+import com.example.investmentdatastreamservice.service.streaming.LastPriceDispatcher;
+import com.example.investmentdatastreamservice.utils.FixedPointPrice;
+import com.example.investmentdatastreamservice.utils.TimeZoneUtils;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+
+/**
+ * Последняя цена каждого инструмента в памяти
+ *
+ * Заменяет чтение текущей цены из invest.last_prices
+ * ({@link LastPriceRepository#findLastByFigi}): хранилище подписано на
+ * {@link LastPriceDispatcher} и для каждого FIGI держит неизменяемый снимок
+ * последней сделки. Снимок заменяется через CAS без блокировок, более ранняя сделка
+ * не вытесняет более позднюю, поэтому порядок доставки и заполнение из БД
+ * не конфликтуют с потоком.
+ *
+ * Каждая замена снимка получает номер версии из общей возрастающей последовательности:
+ * клиент, опрашивающий тысячи инструментов, передает последнюю полученную версию
+ * и получает только изменившиеся снимки.
+ *
+ * При старте хранилище один раз заполняется из последней дневной партиции
+ * invest.last_prices; чтение в БД не обращается. Индекса по time у таблицы нет,
+ * поэтому день последней сделки не ищется через MAX(time) по всем партициям:
+ * дни перебираются назад от текущего (не дальше {@value #SEED_LOOKBACK_DAYS}),
+ * и каждый запрос ограничен границами одного дня - план читает одну партицию.
+ */
+@Component
+public class LatestPriceStore implements LastPriceConsumer {
+
+    private static final Logger logger = LoggerFactory.getLogger(LatestPriceStore.class);
+
+    // Время в invest.last_prices - московское (UTC+3)
+    private static final ZoneOffset MOSCOW_OFFSET = ZoneOffset.ofHours(3);
+    // Глубина поиска последней непустой партиции (праздники и длинные выходные)
+    static final int SEED_LOOKBACK_DAYS = 14;
+
+    /**
+     * Снимок последней сделки инструмента
+     *
+     * @param figi идентификатор инструмента
+     * @param price цена с фиксированной точкой ({@link FixedPointPrice})
+     * @param timeNanos время сделки, нс от эпохи
+     * @param version номер версии снимка
+     */
+    public record PriceSnapshot(String figi, long price, long timeNanos, long version) {
+
+        public BigDecimal getPrice() {
+            return FixedPointPrice.toBigDecimal(price);
+        }
+
+        /**
+         * Время сделки по Москве, как в invest.last_prices
+         */
+        public LocalDateTime getTime() {
+            return LocalDateTime.ofEpochSecond(Math.floorDiv(timeNanos, 1_000_000_000L),
+                (int) Math.floorMod(timeNanos, 1_000_000_000L), MOSCOW_OFFSET);
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("figi", figi);
+            map.put("price", getPrice());
+            map.put("time", getTime().toString());
+            map.put("version", version);
+            return map;
+        }
+    }
+
+    private final LastPriceRepository lastPriceRepository;
+    private final LastPriceDispatcher dispatcher;
+    private final Map<String, AtomicReference<PriceSnapshot>> snapshots = new ConcurrentHashMap<>();
+    private final AtomicLong versions = new AtomicLong(0);
+    // Версия, все снимки до которой уже видны читателям (обновляется после CAS)
+    private final AtomicLong publishedVersion = new AtomicLong(0);
+    // Часы для определения текущего московского дня (подменяются в тестах)
+    private Clock clock = Clock.system(TimeZoneUtils.getMoscowZone());
+
+    // Метрики
+    private final AtomicLong updates = new AtomicLong(0);
+    private final AtomicLong staleTicks = new AtomicLong(0);
+    private final AtomicLong seededInstruments = new AtomicLong(0);
+
+    public LatestPriceStore(LastPriceRepository lastPriceRepository, LastPriceDispatcher dispatcher) {
+        this.lastPriceRepository = lastPriceRepository;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Подписка на общий поток LastPrice и заполнение из БД
+     */
+    @PostConstruct
+    public void init() {
+        dispatcher.register(this);
+        seedFromDatabase();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.unregister(this);
+    }
+
+    private void seedFromDatabase() {
+        long startTime = System.currentTimeMillis();
+        try {
+            LocalDate day = findLastTradingDay();
+            if (day == null) {
+                logger.info("💾 Хранилище последних цен: в invest.last_prices нет данных за {} дн. для заполнения",
+                    SEED_LOOKBACK_DAYS);
+                return;
+            }
+            List<LastPriceEntity> rows = lastPriceRepository.findLatestPerFigiInRange(
+                day.atStartOfDay(), day.plusDays(1).atStartOfDay());
+            for (LastPriceEntity row : rows) {
+                LocalDateTime time = row.getId().getTime();
+                long timeNanos = time.toEpochSecond(MOSCOW_OFFSET) * 1_000_000_000L + time.getNano();
+                if (update(row.getId().getFigi(), FixedPointPrice.fromBigDecimal(row.getPrice()), timeNanos)) {
+                    seededInstruments.incrementAndGet();
+                }
+            }
+            logger.info("💾 Хранилище последних цен заполнено из партиции за {} за {} мс: инструментов={}",
+                day, System.currentTimeMillis() - startTime, seededInstruments.get());
+        } catch (Exception e) {
+            logger.warn("⚠️ Не удалось заполнить хранилище последних цен из БД: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Последний день со сделками: проверка дней от текущего назад, по одной партиции за запрос
+     *
+     * @return день или null, если сделок не было за {@value #SEED_LOOKBACK_DAYS} дней
+     */
+    private LocalDate findLastTradingDay() {
+        LocalDate today = LocalDate.now(clock);
+        for (int i = 0; i < SEED_LOOKBACK_DAYS; i++) {
+            LocalDate day = today.minusDays(i);
+            if (lastPriceRepository.existsInRange(day.atStartOfDay(), day.plusDays(1).atStartOfDay())) {
+                return day;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String getConsumerName() {
+        return "LatestPriceStore";
+    }
+
+    @Override
+    public void onLastPrice(LastPrice lastPrice) {
+        if (!lastPrice.hasTime() || !lastPrice.hasPrice()) {
+            return;
+        }
+        long timeNanos = lastPrice.getTime().getSeconds() * 1_000_000_000L + lastPrice.getTime().getNanos();
+        update(lastPrice.getFigi(), FixedPointPrice.fromQuotation(lastPrice.getPrice()), timeNanos);
+    }
+
+    /**
+     * Замена снимка, если сделка не старше текущей
+     *
+     * @return true, если снимок заменен
+     */
+    private boolean update(String figi, long price, long timeNanos) {
+        AtomicReference<PriceSnapshot> ref = snapshots.get(figi);
+        if (ref == null) {
+            ref = snapshots.computeIfAbsent(figi, key -> new AtomicReference<>());
+        }
+        while (true) {
+            PriceSnapshot current = ref.get();
+            if (current != null && (timeNanos < current.timeNanos()
+                    || (timeNanos == current.timeNanos() && price == current.price()))) {
+                staleTicks.incrementAndGet();
+                return false;
+            }
+            PriceSnapshot next = new PriceSnapshot(figi, price, timeNanos, versions.incrementAndGet());
+            if (ref.compareAndSet(current, next)) {
+                publishedVersion.accumulateAndGet(next.version(), Math::max);
+                updates.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Последняя цена инструмента
+     *
+     * @param figi идентификатор инструмента
+     * @return снимок или null, если сделок по инструменту не было
+     */
+    public PriceSnapshot get(String figi) {
+        AtomicReference<PriceSnapshot> ref = figi != null ? snapshots.get(figi) : null;
+        return ref != null ? ref.get() : null;
+    }
+
+    /**
+     * Последние цены набора инструментов
+     *
+     * @param figis идентификаторы инструментов; пустой набор - все инструменты
+     * @param sinceVersion вернуть только снимки с версией больше указанной (0 - все)
+     * @param missing сюда добавляются FIGI без цены (если не null)
+     * @return снимки в порядке запроса
+     */
+    public List<PriceSnapshot> getAll(Collection<String> figis, long sinceVersion, List<String> missing) {
+        List<PriceSnapshot> result = new ArrayList<>(figis.isEmpty() ? snapshots.size() : figis.size());
+        if (figis.isEmpty()) {
+            for (AtomicReference<PriceSnapshot> ref : snapshots.values()) {
+                PriceSnapshot snapshot = ref.get();
+                if (snapshot != null && snapshot.version() > sinceVersion) {
+                    result.add(snapshot);
+                }
+            }
+            return result;
+        }
+        for (String figi : figis) {
+            PriceSnapshot snapshot = get(figi);
+            if (snapshot == null) {
+                if (missing != null) {
+                    missing.add(figi);
+                }
+            } else if (snapshot.version() > sinceVersion) {
+                result.add(snapshot);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Текущая версия хранилища для передачи клиенту как sinceVersion следующего запроса
+     *
+     * Читается до выборки снимков: снимок, опубликованный во время выборки, получит
+     * большую версию и попадет в следующий ответ. Снимки обновляет один поток
+     * потребителя LastPrice, поэтому версии публикуются по порядку.
+     */
+    public long getVersion() {
+        return publishedVersion.get();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("instruments", snapshots.size());
+        stats.put("version", publishedVersion.get());
+        stats.put("updates", updates.get());
+        stats.put("staleTicks", staleTicks.get());
+        stats.put("seededInstruments", seededInstruments.get());
+        return stats;
+    }
+
+    // Getters для метрик
+    public int size() { return snapshots.size(); }
+    public long getUpdates() { return updates.get(); }
+    public long getStaleTicks() { return staleTicks.get(); }
+}
@@ -0,0 +1,192 @@
+package com.example.investmentdatastreamservice.service;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import com.example.investmentdatastreamservice.dto.HistoricalPriceDto;
+import com.example.investmentdatastreamservice.dto.LimitsDto;
+import com.example.investmentdatastreamservice.utils.FixedPointPrice;
+
+/**
+ * Скомпилированная "полоса уведомлений" инструмента
+ *
+ * Для каждого из четырех уровней (биржевые лимиты UP/DOWN, исторические экстремумы UP/DOWN)
+ * заранее рассчитаны в формате {@link FixedPointPrice}:
+ * - цена достижения уровня (сам лимит или экстремум);
+ * - цена срабатывания уведомления о приближении.
+ *
+ * Проверка тика сводится к сравнению long с двумя границами полосы, а в редком случае
+ * выхода за них - к нескольким сравнениям по уровням. Полоса неизменяема и
+ * пересобирается {@link LimitMonitorService} при изменении лимитов, экстремумов или порогов.
+ *
+ * Цена срабатывания эквивалентна прежнему правилу
+ * round(|уровень - цена| / цена, 4) <= порог (HALF_UP):
+ * - UP: цена * (20001 + 2t) > уровень * 20000;
+ * - DOWN: цена * (19999 - 2t) < уровень * 20000,
+ * где t - порог в десятитысячных долях (1% -> 100).
+ */
+public final class LimitAlertBand {
+
+    public static final int EXCHANGE_UP = 0;
+    public static final int EXCHANGE_DOWN = 1;
+    public static final int HISTORICAL_UP = 2;
+    public static final int HISTORICAL_DOWN = 3;
+
+    private static final int LEVELS = 4;
+    private static final BigInteger SCALE_20000 = BigInteger.valueOf(20_000);
+
+    private final String figi;
+    private final long generation;
+    private final long validUntilMillis;
+
+    // Цены достижения и срабатывания по уровням (индексы EXCHANGE_UP ... HISTORICAL_DOWN)
+    private final long[] reachedPrices = new long[LEVELS];
+    private final long[] approachPrices = new long[LEVELS];
+
+    // Границы полосы: внутри (lowerTrigger, upperTrigger) ни один уровень не срабатывает
+    private final long upperTrigger;
+    private final long lowerTrigger;
+
+    // Исходные данные - нужны только для формирования уведомления
+    private final LimitsDto limits;
+    private final BigDecimal limitDown;
+    private final BigDecimal limitUp;
+    private final HistoricalPriceDto historicalPrice;
+
+    private LimitAlertBand(String figi, long generation, long validUntilMillis,
+                           LimitsDto limits, BigDecimal limitDown, BigDecimal limitUp,
+                           HistoricalPriceDto historicalPrice,
+                           long approachThresholdBp, long historicalApproachThresholdBp) {
+        this.figi = figi;
+        this.generation = generation;
+        this.validUntilMillis = validUntilMillis;
+        this.limits = limits;
+        this.limitDown = limitDown;
+        this.limitUp = limitUp;
+        this.historicalPrice = historicalPrice;
+
+        setLevel(EXCHANGE_UP, limitUp, approachThresholdBp);
+        setLevel(EXCHANGE_DOWN, limitDown, approachThresholdBp);
+        setLevel(HISTORICAL_UP, historicalPrice != null ? historicalPrice.getHistoricalHigh() : null,
+            historicalApproachThresholdBp);
+        setLevel(HISTORICAL_DOWN, historicalPrice != null ? historicalPrice.getHistoricalLow() : null,
+            historicalApproachThresholdBp);
+
+        this.upperTrigger = Math.min(approachPrices[EXCHANGE_UP], approachPrices[HISTORICAL_UP]);
+        this.lowerTrigger = Math.max(approachPrices[EXCHANGE_DOWN], approachPrices[HISTORICAL_DOWN]);
+    }
+
+    /**
+     * Полоса с биржевыми лимитами и (при наличии) историческими экстремумами
+     */
+    public static LimitAlertBand compile(String figi, long generation, long validUntilMillis,
+                                         LimitsDto limits, BigDecimal limitDown, BigDecimal limitUp,
+                                         HistoricalPriceDto historicalPrice,
+                                         long approachThresholdBp, long historicalApproachThresholdBp) {
+        HistoricalPriceDto extremes = historicalPrice != null
+                && historicalPrice.getHistoricalHigh() != null
+                && historicalPrice.getHistoricalLow() != null ? historicalPrice : null;
+        return new LimitAlertBand(figi, generation, validUntilMillis, limits, limitDown, limitUp,
+            extremes, approachThresholdBp, historicalApproachThresholdBp);
+    }
+
+    /**
+     * Пустая полоса (лимиты не определены): тики не проверяются до истечения validUntilMillis
+     */
+    public static LimitAlertBand empty(String figi, long generation, long validUntilMillis) {
+        return new LimitAlertBand(figi, generation, validUntilMillis, null, null, null, null, 0, 0);
+    }
+
+    private void setLevel(int level, BigDecimal price, long thresholdBp) {
+        boolean up = level == EXCHANGE_UP || level == HISTORICAL_UP;
+        if (price == null) {
+            // Отсутствующий уровень никогда не срабатывает
+            reachedPrices[level] = up ? Long.MAX_VALUE : Long.MIN_VALUE;
+            approachPrices[level] = reachedPrices[level];
+            return;
+        }
+        long reached = FixedPointPrice.fromBigDecimal(price);
+        reachedPrices[level] = reached;
+        approachPrices[level] = up ? approachAbove(reached, thresholdBp) : approachBelow(reached, thresholdBp);
+    }
+
+    /**
+     * Минимальная цена p, при которой p * (20001 + 2t) > level * 20000
+     */
+    static long approachAbove(long level, long thresholdBp) {
+        if (level <= 0) {
+            return level;
+        }
+        BigInteger divisor = BigInteger.valueOf(20_001 + 2 * thresholdBp);
+        long trigger = BigInteger.valueOf(level).multiply(SCALE_20000).divide(divisor).longValueExact() + 1;
+        return Math.min(trigger, level);
+    }
+
+    /**
+     * Максимальная цена p, при которой p * (19999 - 2t) < level * 20000
+     */
+    static long approachBelow(long level, long thresholdBp) {
+        if (level <= 0) {
+            return level;
+        }
+        long divisor = 19_999 - 2 * thresholdBp;
+        if (divisor <= 0) {
+            // Порог 100% и выше - любая цена считается приближением
+            return Long.MAX_VALUE;
+        }
+        BigInteger[] qr = BigInteger.valueOf(level).multiply(SCALE_20000)
+            .divideAndRemainder(BigInteger.valueOf(divisor));
+        // ceil(level * 20000 / divisor) - 1
+        long ceil = qr[0].longValueExact() + (qr[1].signum() > 0 ? 1 : 0);
+        return Math.max(ceil - 1, level);
+    }
+
+    /**
+     * Быстрая проверка тика: true, если цена вышла за границы полосы
+     * и хотя бы один уровень может сработать
+     */
+    public boolean isTriggered(long price) {
+        return price >= upperTrigger || price <= lowerTrigger;
+    }
+
+    /**
+     * Сработало ли уведомление (приближение или достижение) по уровню
+     */
+    public boolean isApproached(int level, long price) {
+        return isUpLevel(level) ? price >= approachPrices[level] : price <= approachPrices[level];
+    }
+
+    /**
+     * Достигнут ли уровень
+     */
+    public boolean isReached(int level, long price) {
+        return isUpLevel(level) ? price >= reachedPrices[level] : price <= reachedPrices[level];
+    }
+
+    public static boolean isUpLevel(int level) {
+        return level == EXCHANGE_UP || level == HISTORICAL_UP;
+    }
+
+    public static boolean isHistoricalLevel(int level) {
+        return level == HISTORICAL_UP || level == HISTORICAL_DOWN;
+    }
+
+    public boolean isExpired(long nowMillis) {
+        return nowMillis >= validUntilMillis;
+    }
+
+    public static int levelCount() {
+        return LEVELS;
+    }
+
+    // Getters
+    public String getFigi() { return figi; }
+    public long getGeneration() { return generation; }
+    public long getValidUntilMillis() { return validUntilMillis; }
+    public long getReachedPrice(int level) { return reachedPrices[level]; }
+    public long getApproachPrice(int level) { return approachPrices[level]; }
+    public LimitsDto getLimits() { return limits; }
+    public BigDecimal getLimitDown() { return limitDown; }
+    public BigDecimal getLimitUp() { return limitUp; }
+    public HistoricalPriceDto getHistoricalPrice() { return historicalPrice; }
+}
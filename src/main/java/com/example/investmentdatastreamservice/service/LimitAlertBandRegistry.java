@@ -0,0 +1,109 @@
+package com.example.investmentdatastreamservice.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Хранилище скомпилированных полос уведомлений {@link LimitAlertBand} по FIGI
+ *
+ * Полосы собираются лениво в {@link LimitMonitorService} при первом тике инструмента.
+ * Каждая полоса помечена отметкой {@link #currentGeneration()}, взятой до чтения
+ * исходных данных. Изменение общих данных (пороги, очистка кэшей) вызывает
+ * {@link #invalidateAll(String)}: полосы с отметкой старше сброса перестают
+ * возвращаться, даже если были записаны параллельно с ним. Изменение данных одного
+ * инструмента (новые лимиты, исторический экстремум) сбрасывает только его полосу
+ * через {@link #invalidate(String, String)}; полоса, сборка которой началась до
+ * такого сброса, не сохраняется.
+ */
+@Component
+public class LimitAlertBandRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(LimitAlertBandRegistry.class);
+
+    private final Map<String, LimitAlertBand> bands = new ConcurrentHashMap<>();
+    // Отметки сбросов: общий счетчик, отметка последнего общего сброса и сбросов по FIGI
+    private final AtomicLong sequence = new AtomicLong(0);
+    private final AtomicLong generation = new AtomicLong(0);
+    private final Map<String, Long> figiGenerations = new ConcurrentHashMap<>();
+
+    // Метрики
+    private final AtomicLong compiledCount = new AtomicLong(0);
+    private final AtomicLong invalidationCount = new AtomicLong(0);
+    private final AtomicLong figiInvalidationCount = new AtomicLong(0);
+
+    /**
+     * Актуальная полоса инструмента
+     *
+     * @return полоса текущего поколения или null, если ее нужно собрать заново
+     */
+    public LimitAlertBand get(String figi, long nowMillis) {
+        LimitAlertBand band = bands.get(figi);
+        if (band == null || band.getGeneration() < generation.get() || band.isExpired(nowMillis)) {
+            return null;
+        }
+        return band;
+    }
+
+    /**
+     * Текущая отметка (фиксируется перед чтением исходных данных для сборки полосы)
+     */
+    public long currentGeneration() {
+        return sequence.get();
+    }
+
+    /**
+     * Сохранение собранной полосы
+     *
+     * Если после начала сборки полоса инструмента была сброшена, полоса не сохраняется:
+     * она могла быть собрана по прежним данным. Проверка выполняется после записи,
+     * поэтому параллельный сброс либо увидит полосу и удалит ее, либо будет замечен здесь.
+     */
+    public void put(LimitAlertBand band) {
+        String figi = band.getFigi();
+        bands.put(figi, band);
+        Long figiGeneration = figiGenerations.get(figi);
+        if (figiGeneration != null && band.getGeneration() < figiGeneration) {
+            bands.remove(figi, band);
+            return;
+        }
+        compiledCount.incrementAndGet();
+    }
+
+    /**
+     * Сброс всех полос после изменения лимитов, экстремумов или порогов
+     *
+     * @param reason причина (для логирования)
+     */
+    public void invalidateAll(String reason) {
+        generation.set(sequence.incrementAndGet());
+        bands.clear();
+        invalidationCount.incrementAndGet();
+        logger.debug("🔄 Полосы уведомлений сброшены: {}", reason);
+    }
+
+    /**
+     * Сброс полосы одного инструмента: при следующем тике она собирается заново
+     *
+     * @param figi FIGI инструмента
+     * @param reason причина (для логирования)
+     */
+    public void invalidate(String figi, String reason) {
+        figiGenerations.merge(figi, sequence.incrementAndGet(), Math::max);
+        if (bands.remove(figi) != null) {
+            figiInvalidationCount.incrementAndGet();
+            logger.debug("🔄 Полоса уведомлений {} сброшена: {}", figi, reason);
+        }
+    }
+
+    // Getters для метрик
+    public int size() { return bands.size(); }
+    public long getGeneration() { return generation.get(); }
+    public long getCompiledCount() { return compiledCount.get(); }
+    public long getInvalidationCount() { return invalidationCount.get(); }
+    public long getFigiInvalidationCount() { return figiInvalidationCount.get(); }
+}
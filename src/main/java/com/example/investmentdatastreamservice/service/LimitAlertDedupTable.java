@@ -0,0 +1,340 @@
+package com.example.investmentdatastreamservice.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.example.investmentdatastreamservice.config.LimitMonitorProperties;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Таблица отправленных за торговый день уведомлений о лимитах
+ *
+ * Каждому FIGI один раз назначается слот. В слоте хранится long: в старших битах
+ * эпоха торгового дня, в младших - битовая маска типов уведомлений
+ * (биржевой лимит / исторический экстремум × UP / DOWN × приближение / достижение).
+ * Биты, записанные в прошлой эпохе, считаются сброшенными, поэтому ежедневная
+ * очистка - это увеличение эпохи за O(1). Отметка выполняется CAS без блокировок
+ * и без создания строковых ключей; из двух одновременных отметок одного уведомления
+ * успешна только одна.
+ *
+ * Отметки текущего дня сохраняются в файл снимка (limit.monitor.dedup.snapshot-path)
+ * каждые limit.monitor.dedup.snapshot-interval-ms и при остановке. При старте снимок
+ * текущего дня загружается, и после перезапуска уведомления не повторяются.
+ */
+@Component
+public class LimitAlertDedupTable {
+
+    private static final Logger logger = LoggerFactory.getLogger(LimitAlertDedupTable.class);
+
+    private static final ZoneId MOSCOW_ZONE = ZoneId.of("Europe/Moscow");
+
+    /**
+     * Количество типов уведомлений (бит маски на слот)
+     */
+    public static final int ALERT_TYPES = 8;
+
+    private static final int EPOCH_SHIFT = 8;
+    private static final long BITS_MASK = (1L << EPOCH_SHIFT) - 1;
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int MAX_CHUNKS = 256;
+
+    private final LimitMonitorProperties.Dedup config;
+    private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+    private final AtomicInteger nextSlot = new AtomicInteger(0);
+    private final AtomicReferenceArray<AtomicLongArray> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+    private final AtomicLong epoch = new AtomicLong(1);
+    private volatile LocalDate tradingDay = LocalDate.now(MOSCOW_ZONE);
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+    private final ScheduledExecutorService snapshotScheduler;
+
+    // Метрики
+    private final AtomicLong marked = new AtomicLong(0);
+    private final AtomicLong suppressed = new AtomicLong(0);
+    private final AtomicLong overflow = new AtomicLong(0);
+    private final AtomicLong snapshotsWritten = new AtomicLong(0);
+
+    public LimitAlertDedupTable(LimitMonitorProperties limitMonitorProperties) {
+        this.config = limitMonitorProperties.getDedup();
+        this.snapshotScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "limit-alert-dedup-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    public void init() {
+        loadSnapshot();
+        if (isSnapshotEnabled()) {
+            long interval = Math.max(100, config.getSnapshotIntervalMs());
+            snapshotScheduler.scheduleWithFixedDelay(this::flushIfDirty, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Номер бита типа уведомления
+     *
+     * @param historical исторический экстремум (иначе биржевой лимит)
+     * @param up верхний лимит / максимум (иначе нижний / минимум)
+     * @param reached достижение (иначе приближение)
+     */
+    public static int alertBit(boolean historical, boolean up, boolean reached) {
+        return (historical ? 4 : 0) | (up ? 2 : 0) | (reached ? 1 : 0);
+    }
+
+    /**
+     * Отметка уведомления как отправленного в текущий торговый день
+     *
+     * @return true, если уведомление еще не отправлялось (его нужно отправить);
+     *         false, если уже отмечено
+     */
+    public boolean tryMark(String figi, int alertBit) {
+        int slot = slotOf(figi);
+        if (slot < 0) {
+            return true;
+        }
+        AtomicLongArray chunk = chunk(slot);
+        int offset = slot & (CHUNK_SIZE - 1);
+        long currentEpoch = epoch.get();
+        long mask = 1L << alertBit;
+        while (true) {
+            long value = chunk.get(offset);
+            long bits = bitsOf(value, currentEpoch);
+            if ((bits & mask) != 0) {
+                suppressed.incrementAndGet();
+                return false;
+            }
+            if (chunk.compareAndSet(offset, value, (currentEpoch << EPOCH_SHIFT) | bits | mask)) {
+                marked.incrementAndGet();
+                dirty.set(true);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Снятие отметки (уведомление не удалось поставить в очередь отправки)
+     */
+    public void unmark(String figi, int alertBit) {
+        Integer slot = slots.get(figi);
+        if (slot == null) {
+            return;
+        }
+        AtomicLongArray chunk = chunk(slot);
+        int offset = slot & (CHUNK_SIZE - 1);
+        long currentEpoch = epoch.get();
+        long mask = 1L << alertBit;
+        while (true) {
+            long value = chunk.get(offset);
+            long bits = bitsOf(value, currentEpoch);
+            if ((bits & mask) == 0
+                || chunk.compareAndSet(offset, value, (currentEpoch << EPOCH_SHIFT) | (bits & ~mask))) {
+                dirty.set(true);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Переход к новому торговому дню: все отметки сбрасываются за O(1)
+     */
+    public void advanceTradingDay() {
+        long newEpoch = epoch.incrementAndGet();
+        tradingDay = LocalDate.now(MOSCOW_ZONE);
+        dirty.set(true);
+        flushIfDirty();
+        logger.info("📅 Таблица уведомлений переключена на торговый день {} (эпоха {})", tradingDay, newEpoch);
+    }
+
+    private static long bitsOf(long value, long currentEpoch) {
+        return (value >>> EPOCH_SHIFT) == currentEpoch ? value & BITS_MASK : 0;
+    }
+
+    /**
+     * Слот инструмента (назначается при первом обращении) или -1, если таблица заполнена
+     */
+    private int slotOf(String figi) {
+        Integer slot = slots.get(figi);
+        if (slot != null) {
+            return slot;
+        }
+        slot = slots.computeIfAbsent(figi, k -> {
+            int next = nextSlot.getAndIncrement();
+            return next < CHUNK_SIZE * MAX_CHUNKS ? next : -1;
+        });
+        if (slot < 0) {
+            slots.remove(figi, slot);
+            if (overflow.getAndIncrement() == 0) {
+                logger.warn("⚠️ Таблица уведомлений заполнена ({} инструментов), повторные уведомления не подавляются",
+                    CHUNK_SIZE * MAX_CHUNKS);
+            }
+        }
+        return slot;
+    }
+
+    private AtomicLongArray chunk(int slot) {
+        int index = slot >>> CHUNK_BITS;
+        AtomicLongArray chunk = chunks.get(index);
+        if (chunk == null) {
+            chunks.compareAndSet(index, null, new AtomicLongArray(CHUNK_SIZE));
+            chunk = chunks.get(index);
+        }
+        return chunk;
+    }
+
+    /**
+     * Маска отметок инструмента в текущем торговом дне
+     */
+    private long currentBits(int slot) {
+        AtomicLongArray chunk = chunks.get(slot >>> CHUNK_BITS);
+        return chunk != null ? bitsOf(chunk.get(slot & (CHUNK_SIZE - 1)), epoch.get()) : 0;
+    }
+
+    /**
+     * Количество отмеченных за день уведомлений
+     */
+    public long getActiveCount() {
+        long count = 0;
+        for (Integer slot : slots.values()) {
+            count += Long.bitCount(currentBits(slot));
+        }
+        return count;
+    }
+
+    private boolean isSnapshotEnabled() {
+        return config.getSnapshotPath() != null && !config.getSnapshotPath().isBlank();
+    }
+
+    /**
+     * Загрузка отметок текущего торгового дня из снимка
+     *
+     * Формат: первая строка - дата торгового дня, далее строки "FIGI маска".
+     */
+    private void loadSnapshot() {
+        if (!isSnapshotEnabled()) {
+            return;
+        }
+        Path path = Path.of(config.getSnapshotPath());
+        if (!Files.exists(path)) {
+            return;
+        }
+        try {
+            List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+            if (lines.isEmpty()) {
+                return;
+            }
+            LocalDate snapshotDay = LocalDate.parse(lines.get(0).trim());
+            if (!snapshotDay.equals(tradingDay)) {
+                logger.info("📂 Снимок уведомлений за {} устарел, загрузка пропущена", snapshotDay);
+                return;
+            }
+            int restored = 0;
+            for (int i = 1; i < lines.size(); i++) {
+                String[] parts = lines.get(i).trim().split("\\s+");
+                if (parts.length != 2) {
+                    continue;
+                }
+                long bits = Long.parseLong(parts[1]) & BITS_MASK;
+                for (int bit = 0; bit < ALERT_TYPES; bit++) {
+                    if ((bits & (1L << bit)) != 0 && tryMark(parts[0], bit)) {
+                        restored++;
+                    }
+                }
+            }
+            marked.addAndGet(-restored);
+            dirty.set(false);
+            logger.info("📂 Загружено {} отметок уведомлений за {} из {}", restored, snapshotDay, path);
+        } catch (IOException | DateTimeParseException | NumberFormatException e) {
+            logger.warn("⚠️ Не удалось загрузить снимок уведомлений {}: {}", path, e.getMessage());
+        }
+    }
+
+    private void flushIfDirty() {
+        if (isSnapshotEnabled() && dirty.getAndSet(false)) {
+            try {
+                writeSnapshot();
+            } catch (IOException e) {
+                dirty.set(true);
+                logger.warn("⚠️ Не удалось сохранить снимок уведомлений: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Запись снимка во временный файл с атомарной заменой
+     */
+    private synchronized void writeSnapshot() throws IOException {
+        Path path = Path.of(config.getSnapshotPath()).toAbsolutePath();
+        Files.createDirectories(path.getParent());
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            writer.write(tradingDay.toString());
+            writer.newLine();
+            for (Map.Entry<String, Integer> entry : slots.entrySet()) {
+                long bits = currentBits(entry.getValue());
+                if (bits != 0) {
+                    writer.write(entry.getKey());
+                    writer.write(' ');
+                    writer.write(Long.toString(bits));
+                    writer.newLine();
+                }
+            }
+        }
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        snapshotsWritten.incrementAndGet();
+    }
+
+    /**
+     * Статистика таблицы уведомлений
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("tradingDay", tradingDay.toString());
+        stats.put("epoch", epoch.get());
+        stats.put("instruments", slots.size());
+        stats.put("activeNotifications", getActiveCount());
+        stats.put("marked", marked.get());
+        stats.put("suppressed", suppressed.get());
+        stats.put("overflow", overflow.get());
+        stats.put("snapshotPath", config.getSnapshotPath());
+        stats.put("snapshotsWritten", snapshotsWritten.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        snapshotScheduler.shutdownNow();
+        flushIfDirty();
+    }
+}
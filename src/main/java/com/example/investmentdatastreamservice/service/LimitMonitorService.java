@@ -4,18 +4,12 @@ import com.example.investmentdatastreamservice.config.LimitMonitorProperties;
 import com.example.investmentdatastreamservice.dto.LimitAlertDto;
 import com.example.investmentdatastreamservice.dto.LimitsDto;
 import com.example.investmentdatastreamservice.dto.HistoricalPriceDto;
-import com.example.investmentdatastreamservice.entity.ShareEntity;
-import com.example.investmentdatastreamservice.entity.FutureEntity;
-import com.example.investmentdatastreamservice.repository.ShareRepository;
-import com.example.investmentdatastreamservice.repository.FutureRepository;
-import com.example.investmentdatastreamservice.repository.LastPriceRepository;
-import com.example.investmentdatastreamservice.entity.LastPriceEntity;
+import com.example.investmentdatastreamservice.service.streaming.push.PushHub;
+import com.example.investmentdatastreamservice.utils.FixedPointPrice;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.Cache;
-import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -24,6 +18,7 @@ import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
@@ -41,13 +36,19 @@ public class LimitMonitorService implements InitializingBean {
     private static final Logger logger = LoggerFactory.getLogger(LimitMonitorService.class);
     
     private final LimitsService limitsService;
-    private final TgBotService telegramBotService;
-    private final ShareRepository shareRepository;
-    private final FutureRepository futureRepository;
-    private final LastPriceRepository lastPriceRepository;
-    private final CacheManager cacheManager;
+    private final TelegramAlertDispatcher alertDispatcher;
+    private final LimitAlertDedupTable dedupTable;
+    private final SessionPriceTracker sessionPriceTracker;
     private final HistoricalPricesService historicalPricesService;
     private final LimitMonitorProperties limitMonitorProperties;
+    private final LimitAlertBandRegistry bandRegistry;
+    private final InstrumentMetadataIndex instrumentIndex;
+    private final HistoricalExtremeTracker historicalExtremeTracker;
+    private final PushHub pushHub;
+    
+    // Повторная сборка полосы без лимитов и максимальный срок жизни полосы
+    private static final long INCOMPLETE_BAND_RETRY_MS = 30_000;
+    private static final long BAND_MAX_AGE_MS = 5 * 60_000;
     
     // Счетчики для статистики
     private final AtomicLong totalAlertsProcessed = new AtomicLong(0);
@@ -70,23 +71,31 @@ public class LimitMonitorService implements InitializingBean {
     private volatile BigDecimal approachThresholdPercent;
     private volatile BigDecimal historicalApproachThresholdPercent;
     
+    // Пороги в десятитысячных долях (0.0100 -> 100) для проверок над ценами с фиксированной точкой
+    private volatile long approachThresholdBp;
+    private volatile long historicalApproachThresholdBp;
+    
     public LimitMonitorService(
             LimitsService limitsService,
-            TgBotService telegramBotService,
-            ShareRepository shareRepository,
-            FutureRepository futureRepository,
-            LastPriceRepository lastPriceRepository,
-            CacheManager cacheManager,
+            TelegramAlertDispatcher alertDispatcher,
+            LimitAlertDedupTable dedupTable,
+            SessionPriceTracker sessionPriceTracker,
             HistoricalPricesService historicalPricesService,
-            LimitMonitorProperties limitMonitorProperties) {
+            LimitMonitorProperties limitMonitorProperties,
+            LimitAlertBandRegistry bandRegistry,
+            InstrumentMetadataIndex instrumentIndex,
+            HistoricalExtremeTracker historicalExtremeTracker,
+            PushHub pushHub) {
         this.limitsService = limitsService;
-        this.telegramBotService = telegramBotService;
-        this.shareRepository = shareRepository;
-        this.futureRepository = futureRepository;
-        this.lastPriceRepository = lastPriceRepository;
-        this.cacheManager = cacheManager;
+        this.alertDispatcher = alertDispatcher;
+        this.dedupTable = dedupTable;
+        this.sessionPriceTracker = sessionPriceTracker;
         this.historicalPricesService = historicalPricesService;
         this.limitMonitorProperties = limitMonitorProperties;
+        this.bandRegistry = bandRegistry;
+        this.instrumentIndex = instrumentIndex;
+        this.historicalExtremeTracker = historicalExtremeTracker;
+        this.pushHub = pushHub;
     }
     
     /**
@@ -101,6 +110,8 @@ public class LimitMonitorService implements InitializingBean {
         // Конвертируем проценты в десятичный формат для расчетов
         approachThreshold = approachThresholdPercent.divide(new BigDecimal("100"), 4, RoundingMode.HALF_UP);
         historicalApproachThreshold = historicalApproachThresholdPercent.divide(new BigDecimal("100"), 4, RoundingMode.HALF_UP);
+        approachThresholdBp = approachThreshold.unscaledValue().longValueExact();
+        historicalApproachThresholdBp = historicalApproachThreshold.unscaledValue().longValueExact();
         
         // Логируем информацию о настройке Telegram канала и пороге приближения
         logger.info("================================================================");
@@ -162,69 +173,51 @@ public class LimitMonitorService implements InitializingBean {
      * @param eventTime время события
      */
     public void processLastPrice(String figi, BigDecimal currentPrice, LocalDateTime eventTime) {
+        if (currentPrice == null) {
+            return;
+        }
+        processLastPrice(figi, FixedPointPrice.fromBigDecimal(currentPrice), eventTime);
+    }
+    
+    /**
+     * Обработка данных LAST_PRICE для мониторинга лимитов (цена с фиксированной точкой)
+     * 
+     * Тик проверяется по скомпилированной полосе уведомлений {@link LimitAlertBand}:
+     * если цена внутри полосы, проверка завершается двумя сравнениями long.
+     * Полоса собирается при первом тике инструмента и пересобирается после
+     * изменения лимитов, экстремумов, порогов или смены дня. Новый исторический
+     * экстремум {@link HistoricalExtremeTracker} сбрасывает полосу инструмента сразу.
+     * 
+     * @param figi FIGI инструмента
+     * @param currentPrice текущая цена в формате {@link FixedPointPrice}
+     * @param eventTime время события
+     */
+    public void processLastPrice(String figi, long currentPrice, LocalDateTime eventTime) {
         try {
             totalAlertsProcessed.incrementAndGet();
             
-            // Получаем лимиты для инструмента
-            LimitsDto limits = limitsService.getLimitsFromCache(figi);
-            if (limits == null) {
-                logger.debug("Лимиты не найдены для инструмента: {} (порог приближения: {}%)", 
-                           figi, approachThresholdPercent.setScale(2, RoundingMode.HALF_UP));
-                return;
+            long now = System.currentTimeMillis();
+            LimitAlertBand band = bandRegistry.get(figi, now);
+            if (band == null) {
+                band = compileAlertBand(figi, now);
             }
             
-            // Получаем актуальные лимиты для текущего дня недели
-            BigDecimal[] actualLimits = getActualLimits(limits);
-            BigDecimal limitDown = actualLimits[0];
-            BigDecimal limitUp = actualLimits[1];
-            
-            // Проверяем, что лимиты определены
-            if (limitUp == null || limitDown == null) {
-                logger.debug("Лимиты не определены для инструмента: {} (порог приближения: {}%)", 
-                           figi, approachThresholdPercent.setScale(2, RoundingMode.HALF_UP));
-                return;
+            // Цена внутри полосы - ни один лимит и экстремум не срабатывает
+            if (band.isTriggered(currentPrice)) {
+                // Получаем информацию об инструменте (только при срабатывании)
+                String ticker = getTickerByFigi(figi);
+                String instrumentName = getInstrumentNameByFigi(figi);
+                
+                for (int level = 0; level < LimitAlertBand.levelCount(); level++) {
+                    if (band.isApproached(level, currentPrice)) {
+                        notifyLevel(band, level, ticker, instrumentName, currentPrice, eventTime);
+                    }
+                }
             }
             
-            // Получаем информацию об инструменте
-            String ticker = getTickerByFigi(figi);
-            String instrumentName = getInstrumentNameByFigi(figi);
-            
-            // Получаем актуальные значения порогов для логирования
-            BigDecimal currentApproachThresholdPercent = approachThresholdPercent != null 
-                ? approachThresholdPercent 
-                : limitMonitorProperties.getApproachThreshold();
-            BigDecimal currentApproachThresholdDecimal = approachThreshold != null 
-                ? approachThreshold 
-                : currentApproachThresholdPercent.divide(new BigDecimal("100"), 4, RoundingMode.HALF_UP);
-            
-            BigDecimal currentHistoricalThresholdPercent = historicalApproachThresholdPercent != null 
-                ? historicalApproachThresholdPercent 
-                : limitMonitorProperties.getHistoricalApproachThreshold();
-            BigDecimal currentHistoricalThresholdDecimal = historicalApproachThreshold != null 
-                ? historicalApproachThreshold 
-                : currentHistoricalThresholdPercent.divide(new BigDecimal("100"), 4, RoundingMode.HALF_UP);
-            
-            // Логируем используемые пороги перед проверкой
-            logger.debug("📊 Используемые пороги для {} ({}): биржевые лимиты={}% (десятичное: {}), исторические экстремумы={}% (десятичное: {})", 
-                       ticker, figi,
-                       currentApproachThresholdPercent.setScale(2, RoundingMode.HALF_UP),
-                       currentApproachThresholdDecimal.setScale(4, RoundingMode.HALF_UP),
-                       currentHistoricalThresholdPercent.setScale(2, RoundingMode.HALF_UP),
-                       currentHistoricalThresholdDecimal.setScale(4, RoundingMode.HALF_UP));
-            
-            // Проверяем приближение к верхнему лимиту
-            checkLimitApproach(figi, ticker, instrumentName, currentPrice, 
-                             limitUp, "UP", eventTime, limits);
-            
-            // Проверяем приближение к нижнему лимиту
-            checkLimitApproach(figi, ticker, instrumentName, currentPrice, 
-                             limitDown, "DOWN", eventTime, limits);
-            
-            // Проверяем исторические экстремумы
-            processHistoricalExtremes(figi, ticker, instrumentName, currentPrice, eventTime);
-            
-            logger.debug("Обработка лимитов для {} ({}): текущая цена={}, порог приближения={}%", 
-                       ticker, figi, currentPrice, currentApproachThresholdPercent.setScale(2, RoundingMode.HALF_UP));
+            // Новый экстремум учитывается после проверки: уведомление о его достижении
+            // формируется по прежнему значению, следующие тики - по новой полосе
+            historicalExtremeTracker.onPrice(figi, currentPrice, eventTime);
             
         } catch (Exception e) {
             String thresholdInfo = approachThresholdPercent != null 
@@ -236,64 +229,114 @@ public class LimitMonitorService implements InitializingBean {
     }
     
     /**
-     * Проверка приближения к лимиту и достижения лимита
+     * Сборка полосы уведомлений инструмента из кэша лимитов и исторических экстремумов
+     * 
+     * Если лимиты не найдены или не определены, собирается пустая полоса, которая
+     * перепроверяется через {@link #INCOMPLETE_BAND_RETRY_MS}: исторические экстремумы,
+     * как и раньше, проверяются только при наличии биржевых лимитов.
      */
-    private void checkLimitApproach(String figi, String ticker, String instrumentName,
-                                   BigDecimal currentPrice, BigDecimal limitPrice, 
-                                   String limitType, LocalDateTime eventTime, LimitsDto limits) {
-        
-        if (limitPrice == null) {
-            return;
+    private LimitAlertBand compileAlertBand(String figi, long now) {
+        // Поколение фиксируется до чтения данных: инвалидация во время сборки отбросит эту полосу
+        long generation = bandRegistry.currentGeneration();
+        LimitAlertBand band;
+        
+        LimitsDto limits = limitsService.getLimitsFromCache(figi);
+        BigDecimal[] actualLimits = limits != null ? getActualLimits(limits) : null;
+        if (actualLimits == null || actualLimits[0] == null || actualLimits[1] == null) {
+            logger.debug("Лимиты не найдены или не определены для инструмента: {} (порог приближения: {}%)", 
+                       figi, approachThresholdPercent);
+            band = LimitAlertBand.empty(figi, generation, now + INCOMPLETE_BAND_RETRY_MS);
+        } else {
+            HistoricalPriceDto historicalPrice = null;
+            try {
+                historicalPrice = historicalPricesService.getHistoricalPriceByFigi(figi);
+            } catch (Exception e) {
+                logger.error("Ошибка при получении исторических экстремумов для {}: {}", figi, e.getMessage(), e);
+            }
+            if (historicalPrice == null || historicalPrice.getHistoricalHigh() == null 
+                    || historicalPrice.getHistoricalLow() == null) {
+                logger.debug("Исторические экстремумы не найдены для инструмента: {}", figi);
+            }
+            
+            // Лимиты зависят от дня недели - полоса действует до конца дня
+            long validUntil = Math.min(
+                LocalDate.now().plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+                now + BAND_MAX_AGE_MS);
+            band = LimitAlertBand.compile(figi, generation, validUntil, limits, 
+                                          actualLimits[0], actualLimits[1], historicalPrice,
+                                          approachThresholdBp, historicalApproachThresholdBp);
+            
+            if (logger.isDebugEnabled()) {
+                logger.debug("🧭 Полоса уведомлений для {}: UP приближение от {} (лимит {}), DOWN приближение до {} (лимит {}), пороги={}%/{}%", 
+                           figi,
+                           FixedPointPrice.toBigDecimal(band.getApproachPrice(LimitAlertBand.EXCHANGE_UP)), actualLimits[1],
+                           FixedPointPrice.toBigDecimal(band.getApproachPrice(LimitAlertBand.EXCHANGE_DOWN)), actualLimits[0],
+                           approachThresholdPercent, historicalApproachThresholdPercent);
+            }
         }
         
-        // Вычисляем расстояние до лимита в процентах
-        BigDecimal distanceToLimit = calculateDistanceToLimit(currentPrice, limitPrice);
+        bandRegistry.put(band);
+        return band;
+    }
+    
+    /**
+     * Отправка уведомления по сработавшему уровню полосы
+     * 
+     * Приоритет: достижение уровня, затем приближение к нему.
+     */
+    private void notifyLevel(LimitAlertBand band, int level, String ticker, String instrumentName,
+                             long currentPrice, LocalDateTime eventTime) {
+        String figi = band.getFigi();
+        boolean historical = LimitAlertBand.isHistoricalLevel(level);
+        boolean up = LimitAlertBand.isUpLevel(level);
+        String limitType = up ? "UP" : "DOWN";
+        boolean isLimitReached = band.isReached(level, currentPrice);
+        
+        // Уведомление: материализуем BigDecimal только здесь
+        BigDecimal price = FixedPointPrice.toBigDecimal(currentPrice);
+        BigDecimal distanceToLimit = FixedPointPrice.distance(currentPrice, band.getReachedPrice(level));
         BigDecimal distanceToLimitPercent = distanceToLimit.multiply(new BigDecimal("100"));
         
-        // Проверяем, достигнут ли лимит
-        boolean isLimitReached = isLimitReached(currentPrice, limitPrice, limitType);
-        
-        // Проверяем, приближается ли к лимиту (порог настраивается через конфигурацию)
-        // Используем локальную переменную для потокобезопасности
-        BigDecimal currentThreshold = approachThreshold != null ? approachThreshold : 
-            (approachThresholdPercent != null ? approachThresholdPercent.divide(new BigDecimal("100"), 4, RoundingMode.HALF_UP) :
-            limitMonitorProperties.getApproachThreshold().divide(new BigDecimal("100"), 4, RoundingMode.HALF_UP));
-        BigDecimal currentThresholdPercent = approachThresholdPercent != null ? approachThresholdPercent : 
-            limitMonitorProperties.getApproachThreshold();
-        
-        boolean isApproachingLimit = distanceToLimit.compareTo(currentThreshold) <= 0 && !isLimitReached;
-        
-        // Логируем информацию о проверке лимита с указанием используемого порога
-        logger.debug("Проверка лимита для {} ({}): текущая цена={}, лимит={}, расстояние={}%, используемый порог приближения={}% (десятичное значение: {})", 
-                    ticker, limitType, currentPrice, limitPrice, 
-                    distanceToLimitPercent.setScale(2, RoundingMode.HALF_UP),
-                    currentThresholdPercent.setScale(2, RoundingMode.HALF_UP),
-                    currentThreshold);
-        
-        // Логируем сравнение расстояния с порогом
-        logger.trace("Сравнение расстояния до лимита: расстояние={}% (десятичное: {}), порог={}% (десятичное: {}), результат={}", 
-                    distanceToLimitPercent.setScale(4, RoundingMode.HALF_UP),
-                    distanceToLimit.setScale(4, RoundingMode.HALF_UP),
-                    currentThresholdPercent.setScale(4, RoundingMode.HALF_UP),
-                    currentThreshold.setScale(4, RoundingMode.HALF_UP),
-                    isApproachingLimit ? "ПРИБЛИЖАЕТСЯ" : "НЕ ПРИБЛИЖАЕТСЯ");
-        
-        // Приоритет: сначала проверяем достижение лимита, затем приближение
-        if (isLimitReached) {
-            // Инструмент достиг лимита - отправляем уведомление о достижении
-            logger.info("🚨 Лимит {} достигнут для {} ({}): цена={}, лимит={}, порог приближения={}%", 
-                       limitType, ticker, figi, currentPrice, limitPrice,
-                       currentThresholdPercent.setScale(2, RoundingMode.HALF_UP));
-            sendLimitReachedNotification(figi, ticker, instrumentName, currentPrice, 
-                                       limitPrice, limitType, eventTime, limits, distanceToLimit);
-        } else if (isApproachingLimit) {
-            // Инструмент приближается к лимиту - отправляем уведомление о приближении
-            logger.info("⚠️ Приближение к лимиту {} для {} ({}): расстояние={}%, порог={}%", 
-                       limitType, ticker, figi, 
-                       distanceToLimitPercent.setScale(2, RoundingMode.HALF_UP),
-                       currentThresholdPercent.setScale(2, RoundingMode.HALF_UP));
-            sendApproachingLimitNotification(figi, ticker, instrumentName, currentPrice, 
-                                           limitPrice, limitType, eventTime, limits, distanceToLimit);
+        if (historical) {
+            HistoricalPriceDto historicalPrice = band.getHistoricalPrice();
+            BigDecimal extremePrice = up ? historicalPrice.getHistoricalHigh() : historicalPrice.getHistoricalLow();
+            OffsetDateTime extremeDate = up ? historicalPrice.getHistoricalHighDate() : historicalPrice.getHistoricalLowDate();
+            BigDecimal thresholdPercent = historicalApproachThresholdPercent.setScale(2, RoundingMode.HALF_UP);
+            
+            if (isLimitReached) {
+                // Инструмент достиг исторического экстремума - отправляем уведомление о достижении
+                logger.info("🏆 Исторический экстремум {} достигнут для {} ({}): цена={}, экстремум={}, порог приближения={}%", 
+                           limitType, ticker, figi, price, extremePrice, thresholdPercent);
+                sendHistoricalExtremeReachedNotification(figi, ticker, instrumentName, price, 
+                                                       extremePrice, limitType, eventTime, extremeDate, 
+                                                       historicalPrice, distanceToLimit);
+            } else {
+                // Инструмент приближается к историческому экстремуму - отправляем уведомление о приближении
+                logger.info("📈 Приближение к историческому экстремуму {} для {} ({}): расстояние={}%, порог={}%", 
+                           limitType, ticker, figi, 
+                           distanceToLimitPercent.setScale(2, RoundingMode.HALF_UP), thresholdPercent);
+                sendHistoricalExtremeApproachingNotification(figi, ticker, instrumentName, price, 
+                                                            extremePrice, limitType, eventTime, extremeDate, 
+                                                            historicalPrice, distanceToLimit);
+            }
+        } else {
+            BigDecimal limitPrice = up ? band.getLimitUp() : band.getLimitDown();
+            BigDecimal thresholdPercent = approachThresholdPercent.setScale(2, RoundingMode.HALF_UP);
+            
+            if (isLimitReached) {
+                // Инструмент достиг лимита - отправляем уведомление о достижении
+                logger.info("🚨 Лимит {} достигнут для {} ({}): цена={}, лимит={}, порог приближения={}%", 
+                           limitType, ticker, figi, price, limitPrice, thresholdPercent);
+                sendLimitReachedNotification(figi, ticker, instrumentName, price, limitPrice, limitType, 
+                                           eventTime, band.getLimitDown(), band.getLimitUp(), distanceToLimit);
+            } else {
+                // Инструмент приближается к лимиту - отправляем уведомление о приближении
+                logger.info("⚠️ Приближение к лимиту {} для {} ({}): расстояние={}%, порог={}%", 
+                           limitType, ticker, figi, 
+                           distanceToLimitPercent.setScale(2, RoundingMode.HALF_UP), thresholdPercent);
+                sendApproachingLimitNotification(figi, ticker, instrumentName, price, limitPrice, limitType, 
+                                               eventTime, band.getLimitDown(), band.getLimitUp(), distanceToLimit);
+            }
         }
     }
     
@@ -303,16 +346,12 @@ public class LimitMonitorService implements InitializingBean {
     private void sendLimitReachedNotification(String figi, String ticker, String instrumentName,
                                             BigDecimal currentPrice, BigDecimal limitPrice,
                                             String limitType, LocalDateTime eventTime, 
-                                            LimitsDto limits, BigDecimal distanceToLimit) {
+                                            BigDecimal limitDown, BigDecimal limitUp,
+                                            BigDecimal distanceToLimit) {
         // Получаем цены закрытия
         BigDecimal closePriceOs = getLastClosePrice(figi, "OS");
         BigDecimal closePriceEvening = getLastClosePrice(figi, "EVENING");
         
-        // Получаем актуальные лимиты для текущего дня недели
-        BigDecimal[] actualLimits = getActualLimits(limits);
-        BigDecimal limitDown = actualLimits[0];
-        BigDecimal limitUp = actualLimits[1];
-        
         // Создаем DTO для уведомления о достижении лимита
         LimitAlertDto alert = LimitAlertDto.builder()
             .figi(figi)
@@ -342,16 +381,12 @@ public class LimitMonitorService implements InitializingBean {
     private void sendApproachingLimitNotification(String figi, String ticker, String instrumentName,
                                                  BigDecimal currentPrice, BigDecimal limitPrice,
                                                  String limitType, LocalDateTime eventTime, 
-                                                 LimitsDto limits, BigDecimal distanceToLimit) {
+                                                 BigDecimal limitDown, BigDecimal limitUp,
+                                                 BigDecimal distanceToLimit) {
         // Получаем цены закрытия
         BigDecimal closePriceOs = getLastClosePrice(figi, "OS");
         BigDecimal closePriceEvening = getLastClosePrice(figi, "EVENING");
         
-        // Получаем актуальные лимиты для текущего дня недели
-        BigDecimal[] actualLimits = getActualLimits(limits);
-        BigDecimal limitDown = actualLimits[0];
-        BigDecimal limitUp = actualLimits[1];
-        
         // Создаем DTO для уведомления о приближении к лимиту
         LimitAlertDto alert = LimitAlertDto.builder()
             .figi(figi)
@@ -374,98 +409,31 @@ public class LimitMonitorService implements InitializingBean {
         sendLimitAlert(alert);
     }
     
-    /**
-     * Вычисление расстояния до лимита в процентах
-     */
-    private BigDecimal calculateDistanceToLimit(BigDecimal currentPrice, BigDecimal limitPrice) {
-        if (currentPrice == null || limitPrice == null || currentPrice.compareTo(BigDecimal.ZERO) == 0) {
-            return BigDecimal.ZERO;
-        }
-        
-        BigDecimal difference = limitPrice.subtract(currentPrice).abs();
-        return difference.divide(currentPrice, 4, RoundingMode.HALF_UP);
-    }
-    
-    /**
-     * Проверка, достигнут ли лимит
-     */
-    private boolean isLimitReached(BigDecimal currentPrice, BigDecimal limitPrice, String limitType) {
-        if ("UP".equals(limitType)) {
-            return currentPrice.compareTo(limitPrice) >= 0;
-        } else if ("DOWN".equals(limitType)) {
-            return currentPrice.compareTo(limitPrice) <= 0;
-        }
-        return false;
-    }
-    
     /**
      * Получение последней цены закрытия
+     *
+     * Цена берется из {@link SessionPriceTracker} без обращения к БД
      */
     private BigDecimal getLastClosePrice(String figi, String sessionType) {
-        try {
-            // Получаем последние цены для инструмента
-            LocalDateTime today = LocalDateTime.now().withHour(0).withMinute(0).withSecond(0);
-            
-            // Для ОС сессии ищем цены с 9:00 до 18:45
-            if ("OS".equals(sessionType)) {
-                LocalDateTime sessionStart = today.withHour(9).withMinute(0).withSecond(0);
-                LocalDateTime sessionEnd = today.withHour(18).withMinute(45).withSecond(0);
-                
-                return lastPriceRepository.findByFigiAndTimeBetween(figi, sessionStart, sessionEnd)
-                    .stream()
-                    .findFirst()
-                    .map(LastPriceEntity::getPrice)
-                    .orElse(null);
-            }
-            
-            // Для вечерней сессии ищем цены с 19:05 до 23:50
-            if ("EVENING".equals(sessionType)) {
-                LocalDateTime sessionStart = today.withHour(19).withMinute(5).withSecond(0);
-                LocalDateTime sessionEnd = today.withHour(23).withMinute(50).withSecond(0);
-                
-                return lastPriceRepository.findByFigiAndTimeBetween(figi, sessionStart, sessionEnd)
-                    .stream()
-                    .findFirst()
-                    .map(LastPriceEntity::getPrice)
-                    .orElse(null);
-            }
-            
-            return null;
-        } catch (Exception e) {
-            logger.warn("Ошибка при получении цены закрытия для {}: {}", figi, e.getMessage());
-            return null;
-        }
+        return sessionPriceTracker.getLastPrice(figi, sessionType);
     }
     
     /**
      * Отправка уведомления о лимите (достижении или приближении)
      * 
      * Использует существующие методы для получения данных и форматирования сообщения.
-     * Для достижения лимита и приближения к лимиту используются разные ключи кэша.
+     * Повторы за торговый день отсекаются {@link LimitAlertDedupTable}: для каждого
+     * сочетания типа (лимит / экстремум), направления и достижения / приближения
+     * уведомление отправляется один раз.
      */
     private void sendLimitAlert(LimitAlertDto alert) {
+        int alertBit = LimitAlertDedupTable.alertBit(
+            alert.isHistorical(), "UP".equals(alert.getLimitType()), alert.isLimitReached());
+        if (!dedupTable.tryMark(alert.getFigi(), alertBit)) {
+            logger.debug("Уведомление {} для {} уже отправлено сегодня", alert.getLimitType(), alert.getFigi());
+            return;
+        }
         try {
-            // Формируем ключ кэша: для достижения лимита и приближения используются разные ключи
-            // Для исторических экстремумов добавляем префикс HISTORICAL_
-            String prefix = alert.isHistorical() ? "HISTORICAL_" : "";
-            String alertKey = prefix + alert.getFigi() + "_" + alert.getLimitType() + "_" + 
-                            (alert.isLimitReached() ? "REACHED" : "APPROACHING");
-            LocalDate today = LocalDate.now();
-            
-            // Проверяем кэш уведомлений в Caffeine
-            Cache notificationsCache = cacheManager.getCache("notificationsCache");
-            if (notificationsCache != null) {
-                Cache.ValueWrapper wrapper = notificationsCache.get(alertKey);
-                if (wrapper != null && wrapper.get() != null) {
-                    LocalDate cachedDate = (LocalDate) wrapper.get();
-                    if (cachedDate.equals(today)) {
-                        String alertType = alert.isLimitReached() ? "достижении лимита" : "приближении к лимиту";
-                        logger.debug("Уведомление о {} для {} уже отправлено сегодня", alertType, alertKey);
-                        return;
-                    }
-                }
-            }
-            
             // Формируем сообщение используя существующий метод
             String message = formatLimitAlertMessage(alert);
             
@@ -490,12 +458,18 @@ public class LimitMonitorService implements InitializingBean {
                                ? "limit.monitor.historical.approach.threshold" 
                                : "limit.monitor.approach.threshold");
                 
-                telegramBotService.sendText(telegramChannelId, message);
+                // Отправка выполняется асинхронно: поток обработки цен не ждет Telegram
+                if (!alertDispatcher.enqueue(telegramChannelId, message, alert.getFigi(), alertBit)) {
+                    logger.warn("⚠️ Очередь уведомлений Telegram заполнена, уведомление для тикера {} отброшено", 
+                               alert.getTicker());
+                    dedupTable.unmark(alert.getFigi(), alertBit);
+                    return;
+                }
                 
                 String statusEmoji = alert.isLimitReached() 
                     ? (alert.isHistorical() ? "🏆" : "🚨") 
                     : (alert.isHistorical() ? "📈" : "⚠️");
-                logger.info("{} Уведомление о {} успешно отправлено в Telegram канал: {} для тикера: {}", 
+                logger.info("{} Уведомление о {} поставлено в очередь отправки в Telegram канал: {} для тикера: {}", 
                            statusEmoji, alertType, telegramChannelId, alert.getTicker());
             } else {
                 logger.warn("❌ Telegram channel ID не настроен (значение: '{}'), уведомление не отправлено", 
@@ -503,6 +477,9 @@ public class LimitMonitorService implements InitializingBean {
                 logger.warn("💡 Для настройки добавьте переменную TELEGRAM_LIMIT_CHANNEL_ID в .env файл");
             }
             
+            // Подписчики push-API получают уведомление без опроса REST
+            pushHub.publishAlert(alert);
+            
             // Обновляем счетчики
             if (alert.isHistorical()) {
                 // Счетчики для исторических экстремумов
@@ -521,13 +498,8 @@ public class LimitMonitorService implements InitializingBean {
             }
             notificationsSent.incrementAndGet();
             
-            // Сохраняем информацию об отправленном уведомлении в кэш Caffeine
-            if (notificationsCache != null) {
-                notificationsCache.put(alertKey, today);
-                logger.debug("Уведомление для {} сохранено в кэш Caffeine", alertKey);
-            }
-            
         } catch (Exception e) {
+            dedupTable.unmark(alert.getFigi(), alertBit);
             logger.error("Ошибка при отправке уведомления о лимите: {}", e.getMessage(), e);
         }
     }
@@ -597,167 +569,38 @@ public class LimitMonitorService implements InitializingBean {
     }
     
     /**
-     * Получение тикера по FIGI
+     * Получение тикера по FIGI (из индекса инструментов, без обращения к БД)
      */
     private String getTickerByFigi(String figi) {
-        try {
-            ShareEntity share = shareRepository.findById(figi).orElse(null);
-            if (share != null) {
-                return share.getTicker();
-            }
-            
-            FutureEntity future = futureRepository.findById(figi).orElse(null);
-            if (future != null) {
-                return future.getTicker();
-            }
-            
-            return "UNKNOWN";
-        } catch (Exception e) {
-            logger.warn("Ошибка при получении тикера для {}: {}", figi, e.getMessage());
-            return "UNKNOWN";
-        }
+        InstrumentMetadataIndex.InstrumentMetadata metadata = instrumentIndex.get(figi);
+        return metadata != null && metadata.ticker() != null ? metadata.ticker() : "UNKNOWN";
     }
     
     /**
-     * Получение названия инструмента по FIGI
+     * Получение названия инструмента по FIGI (из индекса инструментов, без обращения к БД)
      */
     private String getInstrumentNameByFigi(String figi) {
-        try {
-            ShareEntity share = shareRepository.findById(figi).orElse(null);
-            if (share != null) {
-                return share.getName();
-            }
-            
-            FutureEntity future = futureRepository.findById(figi).orElse(null);
-            if (future != null) {
-                return future.getTicker();
-            }
-            
-            return "Unknown Instrument";
-        } catch (Exception e) {
-            logger.warn("Ошибка при получении названия инструмента для {}: {}", figi, e.getMessage());
-            return "Unknown Instrument";
-        }
+        InstrumentMetadataIndex.InstrumentMetadata metadata = instrumentIndex.get(figi);
+        return metadata != null && metadata.name() != null ? metadata.name() : "Unknown Instrument";
     }
     
     /**
-     * Очистка кэша уведомлений (вызывается ежедневно)
+     * Очистка отправленных уведомлений (вызывается ежедневно)
      * 
      * <p>
-     * Удаляет все записи из кэша уведомлений. Caffeine автоматически удалит
-     * записи по истечении TTL (24 часа), но для гарантированной очистки
-     * старых записей выполняется ручная очистка.
+     * Переключает {@link LimitAlertDedupTable} на новый торговый день:
+     * отметки прошлого дня сбрасываются увеличением эпохи.
      * </p>
      */
     public void clearDailyNotifications() {
         try {
-            Cache notificationsCache = cacheManager.getCache("notificationsCache");
-            if (notificationsCache != null) {
-                // Очищаем весь кэш уведомлений
-                notificationsCache.clear();
-                logger.info("✅ Кэш уведомлений (Caffeine) очищен");
-            } else {
-                logger.warn("⚠️ Кэш 'notificationsCache' не найден");
-            }
+            dedupTable.advanceTradingDay();
+            logger.info("✅ Отметки отправленных уведомлений сброшены");
         } catch (Exception e) {
             logger.error("❌ Ошибка при очистке кэша уведомлений: {}", e.getMessage(), e);
         }
     }
     
-    /**
-     * Обработка исторических экстремумов для мониторинга приближения
-     */
-    private void processHistoricalExtremes(String figi, String ticker, String instrumentName, 
-                                           BigDecimal currentPrice, LocalDateTime eventTime) {
-        try {
-            // Получаем исторические экстремумы для инструмента
-            HistoricalPriceDto historicalPrice = historicalPricesService.getHistoricalPriceByFigi(figi);
-            if (historicalPrice == null || historicalPrice.getHistoricalHigh() == null || 
-                historicalPrice.getHistoricalLow() == null) {
-                logger.debug("Исторические экстремумы не найдены для инструмента: {}", figi);
-                return;
-            }
-            
-            // Проверяем приближение к историческому максимуму
-            checkHistoricalExtremeApproach(figi, ticker, instrumentName, currentPrice, 
-                                         historicalPrice.getHistoricalHigh(), "UP", eventTime, 
-                                         historicalPrice.getHistoricalHighDate(), historicalPrice);
-            
-            // Проверяем приближение к историческому минимуму
-            checkHistoricalExtremeApproach(figi, ticker, instrumentName, currentPrice, 
-                                         historicalPrice.getHistoricalLow(), "DOWN", eventTime, 
-                                         historicalPrice.getHistoricalLowDate(), historicalPrice);
-            
-        } catch (Exception e) {
-            logger.error("Ошибка при обработке исторических экстремумов для {}: {}", figi, e.getMessage(), e);
-        }
-    }
-    
-    /**
-     * Проверка приближения к историческому экстремуму и его достижения
-     */
-    private void checkHistoricalExtremeApproach(String figi, String ticker, String instrumentName,
-                                               BigDecimal currentPrice, BigDecimal extremePrice, 
-                                               String limitType, LocalDateTime eventTime, 
-                                               OffsetDateTime extremeDate, HistoricalPriceDto historicalPrice) {
-        
-        if (extremePrice == null) {
-            return;
-        }
-        
-        // Вычисляем расстояние до экстремума в процентах
-        BigDecimal distanceToLimit = calculateDistanceToLimit(currentPrice, extremePrice);
-        BigDecimal distanceToLimitPercent = distanceToLimit.multiply(new BigDecimal("100"));
-        
-        // Проверяем, достигнут ли экстремум
-        boolean isLimitReached = isLimitReached(currentPrice, extremePrice, limitType);
-        
-        // Проверяем, приближается ли к экстремуму
-        // Используем локальную переменную для потокобезопасности
-        BigDecimal currentHistoricalThreshold = historicalApproachThreshold != null ? historicalApproachThreshold : 
-            (historicalApproachThresholdPercent != null ? historicalApproachThresholdPercent.divide(new BigDecimal("100"), 4, RoundingMode.HALF_UP) :
-            limitMonitorProperties.getHistoricalApproachThreshold().divide(new BigDecimal("100"), 4, RoundingMode.HALF_UP));
-        BigDecimal currentHistoricalThresholdPercent = historicalApproachThresholdPercent != null ? historicalApproachThresholdPercent : 
-            limitMonitorProperties.getHistoricalApproachThreshold();
-        
-        boolean isApproachingLimit = distanceToLimit.compareTo(currentHistoricalThreshold) <= 0 && !isLimitReached;
-        
-        // Логируем информацию о проверке исторического экстремума с указанием используемого порога
-        logger.debug("Проверка исторического экстремума {} для {} ({}): текущая цена={}, экстремум={}, расстояние={}%, используемый порог приближения={}% (десятичное значение: {})", 
-                    limitType, ticker, figi, currentPrice, extremePrice, 
-                    distanceToLimitPercent.setScale(2, RoundingMode.HALF_UP),
-                    currentHistoricalThresholdPercent.setScale(2, RoundingMode.HALF_UP),
-                    currentHistoricalThreshold);
-        
-        // Логируем сравнение расстояния с порогом
-        logger.trace("Сравнение расстояния до исторического экстремума: расстояние={}% (десятичное: {}), порог={}% (десятичное: {}), результат={}", 
-                    distanceToLimitPercent.setScale(4, RoundingMode.HALF_UP),
-                    distanceToLimit.setScale(4, RoundingMode.HALF_UP),
-                    currentHistoricalThresholdPercent.setScale(4, RoundingMode.HALF_UP),
-                    currentHistoricalThreshold.setScale(4, RoundingMode.HALF_UP),
-                    isApproachingLimit ? "ПРИБЛИЖАЕТСЯ" : "НЕ ПРИБЛИЖАЕТСЯ");
-        
-        // Приоритет: сначала проверяем достижение экстремума, затем приближение
-        if (isLimitReached) {
-            // Инструмент достиг исторического экстремума - отправляем уведомление о достижении
-            logger.info("🏆 Исторический экстремум {} достигнут для {} ({}): цена={}, экстремум={}, порог приближения={}%", 
-                       limitType, ticker, figi, currentPrice, extremePrice,
-                       currentHistoricalThresholdPercent.setScale(2, RoundingMode.HALF_UP));
-            sendHistoricalExtremeReachedNotification(figi, ticker, instrumentName, currentPrice, 
-                                                   extremePrice, limitType, eventTime, extremeDate, 
-                                                   historicalPrice, distanceToLimit);
-        } else if (isApproachingLimit) {
-            // Инструмент приближается к историческому экстремуму - отправляем уведомление о приближении
-            logger.info("📈 Приближение к историческому экстремуму {} для {} ({}): расстояние={}%, порог={}%", 
-                       limitType, ticker, figi, 
-                       distanceToLimitPercent.setScale(2, RoundingMode.HALF_UP),
-                       currentHistoricalThresholdPercent.setScale(2, RoundingMode.HALF_UP));
-            sendHistoricalExtremeApproachingNotification(figi, ticker, instrumentName, currentPrice, 
-                                                        extremePrice, limitType, eventTime, extremeDate, 
-                                                        historicalPrice, distanceToLimit);
-        }
-    }
-    
     /**
      * Отправка уведомления о достижении исторического экстремума
      */
@@ -834,21 +677,6 @@ public class LimitMonitorService implements InitializingBean {
      * Получение статистики мониторинга лимитов
      */
     public Map<String, Object> getStatistics() {
-        // Получаем размер кэша уведомлений из Caffeine
-        long notificationsCacheSize = 0;
-        try {
-            Cache notificationsCache = cacheManager.getCache("notificationsCache");
-            if (notificationsCache != null && notificationsCache.getNativeCache() instanceof 
-                    com.github.benmanes.caffeine.cache.Cache) {
-                @SuppressWarnings("unchecked")
-                com.github.benmanes.caffeine.cache.Cache<String, LocalDate> caffeineCache = 
-                    (com.github.benmanes.caffeine.cache.Cache<String, LocalDate>) notificationsCache.getNativeCache();
-                notificationsCacheSize = caffeineCache.estimatedSize();
-            }
-        } catch (Exception e) {
-            logger.debug("Ошибка при получении размера кэша уведомлений: {}", e.getMessage());
-        }
-        
         return Map.of(
             "totalAlertsProcessed", totalAlertsProcessed.get(),
             "approachingLimitAlerts", approachingLimitAlerts.get(),
@@ -856,7 +684,7 @@ public class LimitMonitorService implements InitializingBean {
             "historicalExtremeAlerts", historicalExtremeAlerts.get(),
             "historicalExtremeReachedAlerts", historicalExtremeReachedAlerts.get(),
             "notificationsSent", notificationsSent.get(),
-            "dailyNotificationsCount", notificationsCacheSize,
+            "dailyNotificationsCount", dedupTable.getActiveCount(),
             "telegramChannelConfigured", telegramChannelId != null && !telegramChannelId.trim().isEmpty(),
             "approachThresholdPercent", approachThresholdPercent != null ? approachThresholdPercent.setScale(2, RoundingMode.HALF_UP) : BigDecimal.ZERO,
             "historicalApproachThresholdPercent", historicalApproachThresholdPercent != null ? historicalApproachThresholdPercent.setScale(2, RoundingMode.HALF_UP) : BigDecimal.ZERO
@@ -881,6 +709,8 @@ public class LimitMonitorService implements InitializingBean {
             // Синхронизируем внутренние значения
             approachThresholdPercent = threshold;
             approachThreshold = threshold.divide(new BigDecimal("100"), 4, RoundingMode.HALF_UP);
+            approachThresholdBp = FixedPointPrice.percentToBasisPoints(threshold);
+            bandRegistry.invalidateAll("изменен порог биржевых лимитов");
             
             logger.info("✅ Порог приближения к биржевым лимитам обновлен:");
             logger.info("   Старое значение: {}% (десятичное: {})", 
@@ -915,6 +745,8 @@ public class LimitMonitorService implements InitializingBean {
             // Синхронизируем внутренние значения
             historicalApproachThresholdPercent = threshold;
             historicalApproachThreshold = threshold.divide(new BigDecimal("100"), 4, RoundingMode.HALF_UP);
+            historicalApproachThresholdBp = FixedPointPrice.percentToBasisPoints(threshold);
+            bandRegistry.invalidateAll("изменен порог исторических экстремумов");
             
             logger.info("✅ Порог приближения к историческим экстремумам обновлен:");
             logger.info("   Старое значение: {}% (десятичное: {})", 
@@ -967,6 +799,9 @@ public class LimitMonitorService implements InitializingBean {
         
         approachThreshold = approachThresholdPercent.divide(new BigDecimal("100"), 4, RoundingMode.HALF_UP);
         historicalApproachThreshold = historicalApproachThresholdPercent.divide(new BigDecimal("100"), 4, RoundingMode.HALF_UP);
+        approachThresholdBp = FixedPointPrice.percentToBasisPoints(approachThresholdPercent);
+        historicalApproachThresholdBp = FixedPointPrice.percentToBasisPoints(historicalApproachThresholdPercent);
+        bandRegistry.invalidateAll("пороги синхронизированы с конфигурацией");
         
         logger.info("🔄 Пороги синхронизированы с конфигурацией: биржевые={}%, исторические={}%", 
                    approachThresholdPercent.setScale(2, RoundingMode.HALF_UP),
@@ -125,14 +125,25 @@ public class LimitMonitoringScheduler {
      * Обновление кэша исторических цен в 2:00 ежедневно
      * 
      * Выполняется каждый день в 2:00 по московскому времени
-     * для обновления кэша исторических экстремумов после обновления материализованного представления.
+     * для сверки кэша исторических экстремумов с обновленным материализованным представлением.
      * 
-     * Исторические цены загружаются все сразу из БД и обновляются только в 2:00, как и остальные кэши.
-     * TTL кэша: 24 часа, поэтому обновление ночью гарантирует актуальность данных на весь день.
+     * В течение дня экстремумы обновляет {@link HistoricalExtremeTracker} по ценам сделок и свечам,
+     * ночная сверка добавляет экстремумы из дневных свечей без полной перезагрузки кэша.
+     * 
+     * Перед историческими ценами обновляется индекс инструментов, чтобы подхватить
+     * инструменты, добавленные в БД за день.
      */
     @Scheduled(cron = "0 0 2 * * *", zone = "Europe/Moscow")
     public void refreshHistoricalPricesCacheAt2() {
         try {
+            var indexStats = cacheWarmupService.refreshInstrumentIndex();
+            if ((Boolean) indexStats.get("success")) {
+                logger.info("📇 [02:00] Индекс инструментов обновлен: {} инструментов за {} мс", 
+                           indexStats.get("totalCount"), indexStats.get("durationMs"));
+            } else {
+                logger.error("❌ Ошибка при обновлении индекса инструментов [02:00]: {}", indexStats.get("error"));
+            }
+            
             logger.info("🔄 [02:00] Начинается запланированное обновление кэша исторических цен");
             var stats = cacheWarmupService.refreshHistoricalPricesCache();
             
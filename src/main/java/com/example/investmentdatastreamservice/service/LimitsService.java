@@ -8,8 +8,10 @@ import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 
+import com.example.investmentdatastreamservice.config.LimitMonitorProperties;
 import com.example.investmentdatastreamservice.dto.LimitsDto;
 import com.example.investmentdatastreamservice.utils.QuotationUtils;
+import com.example.investmentdatastreamservice.utils.TokenBucket;
 import com.google.protobuf.Timestamp;
 import com.example.investmentdatastreamservice.repository.ShareRepository;
 import com.example.investmentdatastreamservice.repository.FutureRepository;
@@ -22,9 +24,17 @@ import ru.tinkoff.piapi.contract.v1.Quotation;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class LimitsService {
@@ -33,13 +43,23 @@ public class LimitsService {
     private final CacheManager cacheManager;
     private final ShareRepository shareRepository;
     private final FutureRepository futureRepository;
+    private final LimitAlertBandRegistry bandRegistry;
+    private final LimitMonitorProperties limitMonitorProperties;
+    
+    // Защита от одновременного запуска двух обновлений кэша лимитов
+    private final AtomicBoolean refreshInProgress = new AtomicBoolean(false);
+    
+    private static final String AUTH_ERROR_MESSAGE = "Токен доступа не найден или не активен";
     
     public LimitsService(MarketDataService marketDataService, CacheManager cacheManager,
-                        ShareRepository shareRepository, FutureRepository futureRepository) {
+                        ShareRepository shareRepository, FutureRepository futureRepository,
+                        LimitAlertBandRegistry bandRegistry, LimitMonitorProperties limitMonitorProperties) {
         this.marketDataService = marketDataService;
         this.cacheManager = cacheManager;
         this.shareRepository = shareRepository;
         this.futureRepository = futureRepository;
+        this.bandRegistry = bandRegistry;
+        this.limitMonitorProperties = limitMonitorProperties;
     }
 
     /**
@@ -60,51 +80,13 @@ public class LimitsService {
             }
             
             GetOrderBookResponse limitsResponse = marketDataService.getOrderBook(instrumentId, 1).join();
-
-            // Получаем protobuf Timestamp из GetOrderBookResponse
-            Timestamp closePriceTs = limitsResponse.getClosePriceTs();
-            
-            String dateString = null;
-            if (closePriceTs != null) {
-                // Конвертируем protobuf Timestamp в Instant, затем в LocalDate
-                Instant instant = Instant.ofEpochSecond(
-                    closePriceTs.getSeconds(), 
-                    closePriceTs.getNanos()
-                );
-                dateString = instant
-                    .atZone(ZoneId.of("Europe/Moscow"))
-                    .toLocalDate()
-                    .format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-            }
-            logger.info("Получен ответ OrderBook для инструмента {}: hasLimitUp={}, hasLimitDown={}, closePriceDate={}, closePrice={}",
-                    instrumentId, limitsResponse.hasLimitUp(), limitsResponse.hasLimitDown(), dateString, QuotationUtils.toBigDecimal(limitsResponse.getClosePrice()));
-
-            if (limitsResponse.hasLimitUp() && limitsResponse.hasLimitDown()) { 
-                Quotation limitUp = limitsResponse.getLimitUp();
-                Quotation limitDown = limitsResponse.getLimitDown();
-                Quotation closePrice = limitsResponse.getClosePrice();
-
-                BigDecimal limitDownDecimal = QuotationUtils.toBigDecimal(limitDown);
-                BigDecimal limitUpDecimal = QuotationUtils.toBigDecimal(limitUp);
-                BigDecimal closePriceDecimal = QuotationUtils.toBigDecimal(closePrice);
-
-                BigDecimal limitUpOverExchangeTrades = closePriceDecimal.add(closePriceDecimal.multiply(BigDecimal.valueOf(0.05)));
-                BigDecimal limitDownOverExchangeTrades = closePriceDecimal.subtract(closePriceDecimal.multiply(BigDecimal.valueOf(0.05)));
-
-                LimitsDto limits = new LimitsDto(instrumentId, limitDownDecimal, limitUpDecimal, closePriceDecimal, limitDownOverExchangeTrades, limitUpOverExchangeTrades);
-                
-                logger.info(
-                        "✅ Лимиты для инструмента {}: limitDown={}, limitUp={}, limitDownOverExchangeTrades={}, limitUpOverExchangeTrades={} - БУДЕТ СОХРАНЕНО В КЭШ",
-                        instrumentId, limitDownDecimal, limitUpDecimal, limitDownOverExchangeTrades, limitUpOverExchangeTrades);
-
+            LimitsDto limits = toLimitsDto(instrumentId, limitsResponse);
+            if (limits != null) {
                 return limits;
-            } else {
-                logger.warn("Лимиты не найдены в OrderBook для инструмента {}: hasLimitUp={}, hasLimitDown={}",
-                        instrumentId, limitsResponse.hasLimitUp(), limitsResponse.hasLimitDown());
             }
 
         } catch (Exception ex) {
-            if (ex.getMessage() != null && ex.getMessage().contains("Токен доступа не найден или не активен")) {
+            if (isAuthError(ex)) {
                 logger.error("Ошибка аутентификации при получении лимитов для инструмента {}: {}", instrumentId, ex.getMessage());
                 logger.error("Проверьте правильность токена Tinkoff API в переменных окружения");
             } else {
@@ -116,6 +98,65 @@ public class LimitsService {
     }
 
 
+    /**
+     * Преобразование ответа GetOrderBook в лимиты инструмента
+     * 
+     * @return лимиты или null, если в стакане нет биржевых лимитов
+     */
+    private LimitsDto toLimitsDto(String instrumentId, GetOrderBookResponse limitsResponse) {
+        // Получаем protobuf Timestamp из GetOrderBookResponse
+        Timestamp closePriceTs = limitsResponse.getClosePriceTs();
+        
+        String dateString = null;
+        if (closePriceTs != null) {
+            // Конвертируем protobuf Timestamp в Instant, затем в LocalDate
+            Instant instant = Instant.ofEpochSecond(
+                closePriceTs.getSeconds(), 
+                closePriceTs.getNanos()
+            );
+            dateString = instant
+                .atZone(ZoneId.of("Europe/Moscow"))
+                .toLocalDate()
+                .format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+        }
+        logger.info("Получен ответ OrderBook для инструмента {}: hasLimitUp={}, hasLimitDown={}, closePriceDate={}, closePrice={}",
+                instrumentId, limitsResponse.hasLimitUp(), limitsResponse.hasLimitDown(), dateString, QuotationUtils.toBigDecimal(limitsResponse.getClosePrice()));
+
+        if (limitsResponse.hasLimitUp() && limitsResponse.hasLimitDown()) { 
+            Quotation limitUp = limitsResponse.getLimitUp();
+            Quotation limitDown = limitsResponse.getLimitDown();
+            Quotation closePrice = limitsResponse.getClosePrice();
+
+            BigDecimal limitDownDecimal = QuotationUtils.toBigDecimal(limitDown);
+            BigDecimal limitUpDecimal = QuotationUtils.toBigDecimal(limitUp);
+            BigDecimal closePriceDecimal = QuotationUtils.toBigDecimal(closePrice);
+
+            BigDecimal limitUpOverExchangeTrades = closePriceDecimal.add(closePriceDecimal.multiply(BigDecimal.valueOf(0.05)));
+            BigDecimal limitDownOverExchangeTrades = closePriceDecimal.subtract(closePriceDecimal.multiply(BigDecimal.valueOf(0.05)));
+
+            LimitsDto limits = new LimitsDto(instrumentId, limitDownDecimal, limitUpDecimal, closePriceDecimal, limitDownOverExchangeTrades, limitUpOverExchangeTrades);
+            
+            logger.info(
+                    "✅ Лимиты для инструмента {}: limitDown={}, limitUp={}, limitDownOverExchangeTrades={}, limitUpOverExchangeTrades={} - БУДЕТ СОХРАНЕНО В КЭШ",
+                    instrumentId, limitDownDecimal, limitUpDecimal, limitDownOverExchangeTrades, limitUpOverExchangeTrades);
+
+            return limits;
+        } else {
+            logger.warn("Лимиты не найдены в OrderBook для инструмента {}: hasLimitUp={}, hasLimitDown={}",
+                    instrumentId, limitsResponse.hasLimitUp(), limitsResponse.hasLimitDown());
+        }
+        return null;
+    }
+
+    private static boolean isAuthError(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t.getMessage() != null && t.getMessage().contains(AUTH_ERROR_MESSAGE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Принудительно сохранить лимиты в кэш
      * 
@@ -126,7 +167,12 @@ public class LimitsService {
         try {
             Cache cache = cacheManager.getCache("limitsCache");
             if (cache != null) {
+                LimitsDto previous = cache.get(instrumentId, LimitsDto.class);
                 cache.put(instrumentId, limits);
+                // Полоса уведомлений инструмента пересобирается, только если лимиты изменились
+                if (!limits.equals(previous)) {
+                    bandRegistry.invalidate(instrumentId, "обновлены лимиты");
+                }
                 logger.debug("✅ Лимиты для инструмента {} принудительно сохранены в кэш", instrumentId);
             } else {
                 logger.error("❌ Кэш 'limitsCache' не найден!");
@@ -236,6 +282,38 @@ public class LimitsService {
         return stats;
     }
 
+    /**
+     * Задача обновления лимитов одного инструмента
+     */
+    private record LimitsRefreshTask(String figi, String description, int attempt) {
+
+        LimitsRefreshTask nextAttempt() {
+            return new LimitsRefreshTask(figi, description, attempt + 1);
+        }
+    }
+
+    /**
+     * Состояние одного запуска обновления кэша лимитов
+     */
+    private static final class LimitsRefreshRun {
+        final int total;
+        final long startTime = System.currentTimeMillis();
+        final int progressStep;
+        final BlockingQueue<LimitsRefreshTask> queue;
+        final AtomicInteger remaining;
+        final AtomicInteger completed = new AtomicInteger(0);
+        final AtomicInteger successCount = new AtomicInteger(0);
+        final AtomicInteger errorCount = new AtomicInteger(0);
+        final AtomicInteger retryCount = new AtomicInteger(0);
+
+        LimitsRefreshRun(List<LimitsRefreshTask> tasks) {
+            this.total = tasks.size();
+            this.progressStep = Math.max(1, total / 10);
+            this.queue = new LinkedBlockingQueue<>(tasks);
+            this.remaining = new AtomicInteger(total);
+        }
+    }
+
     /**
      * Обновить кэш лимитов для всех инструментов (акций и фьючерсов)
      * 
@@ -244,86 +322,164 @@ public class LimitsService {
      * Используется для периодического обновления кэша в рабочее время.
      * </p>
      * 
-     * @return статистика обновления: количество успешно обновленных, ошибок и пропущенных инструментов
+     * <p>
+     * Запросы GetOrderBook выполняются асинхронно: одновременно в работе не более
+     * limit.monitor.refresh.max-in-flight запросов, а частота отправки ограничена
+     * ведром токенов по квоте API (limit.monitor.refresh.requests-per-second).
+     * Неудачный запрос повторяется с удваивающейся паузой, ошибка аутентификации
+     * не повторяется. Ход обновления логируется каждые 10% инструментов.
+     * </p>
+     * 
+     * @return статистика обновления: количество успешно обновленных, ошибок, повторов и пропущенных инструментов
      */
     public Map<String, Integer> refreshLimitsCache() {
-        logger.info("🔄 Начинается обновление кэша лимитов для всех инструментов...");
+        Map<String, Integer> stats = new HashMap<>();
+        if (!refreshInProgress.compareAndSet(false, true)) {
+            logger.warn("⚠️ Обновление кэша лимитов уже выполняется, повторный запуск пропущен");
+            stats.put("alreadyRunning", 1);
+            return stats;
+        }
         
-        long startTime = System.currentTimeMillis();
-        int successCount = 0;
-        int errorCount = 0;
-        int skippedCount = 0;
-
-        // Обновляем лимиты для акций
-        logger.info("📈 Обновление лимитов для акций...");
-        List<ShareEntity> shares = shareRepository.findAll();
-        for (ShareEntity share : shares) {
-            if (share.getFigi() != null && !share.getFigi().trim().isEmpty()) {
-                try {
-                    logger.debug("🔄 Обновление лимитов для акции: {} ({})", share.getTicker(), share.getFigi());
-                    // Вызываем getLimits - получаем данные из API и сохраняем в кэш
-                    LimitsDto limits = getLimits(share.getFigi());
-                    if (limits != null && limits.getLimitDown() != null && limits.getLimitUp() != null) {
-                        // Принудительно сохраняем в кэш (так как @Cacheable не работает при вызове изнутри класса)
-                        saveLimitsToCache(share.getFigi(), limits);
-                        successCount++;
-                        logger.debug("✅ Акция {} - лимиты обновлены и сохранены в кэш", share.getTicker());
-                    } else {
-                        errorCount++;
-                        logger.debug("⚠️ Акция {} - лимиты пустые", share.getTicker());
-                    }
-                } catch (Exception e) {
-                    errorCount++;
-                    logger.debug("❌ Ошибка при обновлении лимитов для акции {}: {}", 
-                            share.getFigi(), e.getMessage());
+        try {
+            logger.info("🔄 Начинается обновление кэша лимитов для всех инструментов...");
+            
+            int skippedCount = 0;
+            List<LimitsRefreshTask> tasks = new ArrayList<>();
+            
+            for (ShareEntity share : shareRepository.findAll()) {
+                if (share.getFigi() != null && !share.getFigi().trim().isEmpty()) {
+                    tasks.add(new LimitsRefreshTask(share.getFigi(), "акция " + share.getTicker(), 0));
+                } else {
+                    skippedCount++;
                 }
+            }
+            for (FutureEntity future : futureRepository.findAll()) {
+                if (future.getFigi() != null && !future.getFigi().trim().isEmpty()) {
+                    tasks.add(new LimitsRefreshTask(future.getFigi(), "фьючерс " + future.getTicker(), 0));
+                } else {
+                    skippedCount++;
+                }
+            }
+            
+            LimitsRefreshRun run = new LimitsRefreshRun(tasks);
+            if (marketDataService == null) {
+                logger.error("MarketDataService не инициализирован. Проверьте конфигурацию Tinkoff API.");
+                run.errorCount.set(run.total);
             } else {
-                skippedCount++;
+                executeLimitsRefresh(run);
             }
+            
+            long duration = System.currentTimeMillis() - run.startTime;
+            logger.info("✅ Обновление кэша лимитов завершено за {} мс. Успешно: {}, Ошибок: {}, Повторов: {}, Пропущено: {}", 
+                    duration, run.successCount.get(), run.errorCount.get(), run.retryCount.get(), skippedCount);
+            
+            if (run.errorCount.get() > 0) {
+                logger.warn("⚠️ При обновлении кэша лимитов произошло {} ошибок. Проверьте подключение к Tinkoff API и токен аутентификации.", run.errorCount.get());
+            }
+            
+            stats.put("successCount", run.successCount.get());
+            stats.put("errorCount", run.errorCount.get());
+            stats.put("retryCount", run.retryCount.get());
+            stats.put("skippedCount", skippedCount);
+            stats.put("durationMs", (int) duration);
+            return stats;
+        } finally {
+            refreshInProgress.set(false);
         }
+    }
 
-        // Обновляем лимиты для фьючерсов
-        logger.info("📈 Обновление лимитов для фьючерсов...");
-        List<FutureEntity> futures = futureRepository.findAll();
-        for (FutureEntity future : futures) {
-            if (future.getFigi() != null && !future.getFigi().trim().isEmpty()) {
+    /**
+     * Отправка запросов лимитов с ограничением параллельности и частоты
+     * 
+     * Возвращает управление, когда все инструменты обработаны (успешно или с ошибкой
+     * после исчерпания повторов).
+     */
+    private void executeLimitsRefresh(LimitsRefreshRun run) {
+        LimitMonitorProperties.Refresh config = limitMonitorProperties.getRefresh();
+        TokenBucket rateLimiter = new TokenBucket(config.getRequestsPerSecond(), config.getBurst());
+        Semaphore inFlight = new Semaphore(Math.max(1, config.getMaxInFlight()));
+        
+        logger.info("📈 Обновление лимитов для {} инструментов: до {} запросов одновременно, {} запросов/с",
+                run.total, config.getMaxInFlight(), config.getRequestsPerSecond());
+        
+        try {
+            while (run.remaining.get() > 0) {
+                LimitsRefreshTask task = run.queue.poll(100, TimeUnit.MILLISECONDS);
+                if (task == null) {
+                    // Очередь пуста: ждем завершения запросов в работе или повторов
+                    continue;
+                }
+                inFlight.acquire();
+                rateLimiter.acquire();
+                
+                CompletableFuture<GetOrderBookResponse> request;
                 try {
-                    logger.debug("🔄 Обновление лимитов для фьючерса: {} ({})", future.getTicker(), future.getFigi());
-                    // Вызываем getLimits - получаем данные из API и сохраняем в кэш
-                    LimitsDto limits = getLimits(future.getFigi());
-                    if (limits != null && limits.getLimitDown() != null && limits.getLimitUp() != null) {
-                        // Принудительно сохраняем в кэш (так как @Cacheable не работает при вызове изнутри класса)
-                        saveLimitsToCache(future.getFigi(), limits);
-                        successCount++;
-                        logger.debug("✅ Фьючерс {} - лимиты обновлены и сохранены в кэш", future.getTicker());
-                    } else {
-                        errorCount++;
-                        logger.debug("⚠️ Фьючерс {} - лимиты пустые", future.getTicker());
-                    }
+                    request = marketDataService.getOrderBook(task.figi(), 1)
+                            .orTimeout(config.getRequestTimeoutMs(), TimeUnit.MILLISECONDS);
                 } catch (Exception e) {
-                    errorCount++;
-                    logger.debug("❌ Ошибка при обновлении лимитов для фьючерса {}: {}", 
-                            future.getFigi(), e.getMessage());
+                    request = CompletableFuture.failedFuture(e);
                 }
-            } else {
-                skippedCount++;
+                request.whenComplete((response, error) -> {
+                    try {
+                        onLimitsResponse(run, config, task, response, error);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("⚠️ Обновление кэша лимитов прервано: обработано {} из {}", run.completed.get(), run.total);
         }
+    }
 
-        long duration = System.currentTimeMillis() - startTime;
-        logger.info("✅ Обновление кэша лимитов завершено за {} мс. Успешно: {}, Ошибок: {}, Пропущено: {}", 
-                duration, successCount, errorCount, skippedCount);
+    private void onLimitsResponse(LimitsRefreshRun run, LimitMonitorProperties.Refresh config,
+                                  LimitsRefreshTask task, GetOrderBookResponse response, Throwable error) {
+        if (error == null) {
+            try {
+                LimitsDto limits = toLimitsDto(task.figi(), response);
+                if (limits != null && limits.getLimitDown() != null && limits.getLimitUp() != null) {
+                    saveLimitsToCache(task.figi(), limits);
+                    run.successCount.incrementAndGet();
+                    logger.debug("✅ {} - лимиты обновлены и сохранены в кэш", task.description());
+                } else {
+                    run.errorCount.incrementAndGet();
+                    logger.debug("⚠️ {} - лимиты пустые", task.description());
+                }
+            } catch (Exception e) {
+                run.errorCount.incrementAndGet();
+                logger.debug("❌ Ошибка при разборе лимитов ({}): {}", task.description(), e.getMessage());
+            }
+            completeLimitsTask(run);
+            return;
+        }
         
-        if (errorCount > 0) {
-            logger.warn("⚠️ При обновлении кэша лимитов произошло {} ошибок. Проверьте подключение к Tinkoff API и токен аутентификации.", errorCount);
+        if (task.attempt() < config.getMaxRetries() && !isAuthError(error)) {
+            long delayMs = config.getRetryBackoffMs() << task.attempt();
+            run.retryCount.incrementAndGet();
+            logger.debug("🔁 Повтор запроса лимитов ({}) через {} мс, попытка {}: {}",
+                    task.description(), delayMs, task.attempt() + 2, error.getMessage());
+            CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS)
+                    .execute(() -> run.queue.offer(task.nextAttempt()));
+            return;
         }
-
-        Map<String, Integer> stats = new HashMap<>();
-        stats.put("successCount", successCount);
-        stats.put("errorCount", errorCount);
-        stats.put("skippedCount", skippedCount);
-        stats.put("durationMs", (int) duration);
         
-        return stats;
+        run.errorCount.incrementAndGet();
+        if (isAuthError(error)) {
+            logger.error("Ошибка аутентификации при получении лимитов для инструмента {}: {}", task.figi(), error.getMessage());
+        } else {
+            logger.debug("❌ Ошибка при обновлении лимитов ({}): {}", task.description(), error.getMessage());
+        }
+        completeLimitsTask(run);
+    }
+
+    private void completeLimitsTask(LimitsRefreshRun run) {
+        int done = run.completed.incrementAndGet();
+        run.remaining.decrementAndGet();
+        if (done % run.progressStep == 0 || done == run.total) {
+            logger.info("📊 Обновление лимитов: {}/{} ({}%), успешно={}, ошибок={}, повторов={}, прошло {} мс",
+                    done, run.total, done * 100 / run.total, run.successCount.get(), run.errorCount.get(),
+                    run.retryCount.get(), System.currentTimeMillis() - run.startTime);
+        }
     }
 }
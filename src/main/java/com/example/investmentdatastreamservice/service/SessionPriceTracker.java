@@ -0,0 +1,219 @@
+package com.example.investmentdatastreamservice.service;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.example.investmentdatastreamservice.entity.LastPriceEntity;
+import com.example.investmentdatastreamservice.repository.LastPriceRepository;
+import com.example.investmentdatastreamservice.service.streaming.LastPriceConsumer;
+import com.example.investmentdatastreamservice.service.streaming.LastPriceDispatcher;
+import com.example.investmentdatastreamservice.utils.FixedPointPrice;
+import com.example.investmentdatastreamservice.utils.TimeZoneUtils;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+
+/**
+ * Последние цены торговых сессий текущего дня по FIGI
+ *
+ * Заменяет сканирование invest.last_prices за всю сессию при формировании уведомлений.
+ * Трекер подписан на {@link LastPriceDispatcher} и инкрементально хранит для каждого
+ * инструмента последнюю сделку основной сессии (9:00-18:45) и вечерней (19:05-23:50)
+ * по московскому времени. При старте состояние один раз заполняется из БД за
+ * прошедшую часть текущего дня.
+ *
+ * Цена сессии отдается только за текущий день - после полуночи значения прошлого дня
+ * считаются отсутствующими, как и при прежнем запросе к БД.
+ */
+@Component
+public class SessionPriceTracker implements LastPriceConsumer {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionPriceTracker.class);
+
+    // Время в invest.last_prices и в окнах сессий - московское (UTC+3)
+    private static final long MOSCOW_OFFSET_SECONDS = 3 * 3600;
+    private static final ZoneOffset MOSCOW_OFFSET = ZoneOffset.ofTotalSeconds((int) MOSCOW_OFFSET_SECONDS);
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    /**
+     * Торговая сессия и ее окно в секундах от начала московских суток (границы включительно)
+     */
+    public enum Session {
+        MAIN("OS", 9 * 3600, 18 * 3600 + 45 * 60),
+        EVENING("EVENING", 19 * 3600 + 5 * 60, 23 * 3600 + 50 * 60);
+
+        private final String code;
+        private final int startSecond;
+        private final int endSecond;
+
+        Session(String code, int startSecond, int endSecond) {
+            this.code = code;
+            this.startSecond = startSecond;
+            this.endSecond = endSecond;
+        }
+
+        public String getCode() { return code; }
+
+        /**
+         * Сессия, в окно которой попадает момент, или null
+         */
+        static Session of(int secondOfDay, int nanos) {
+            for (Session session : values()) {
+                if (secondOfDay >= session.startSecond
+                        && (secondOfDay < session.endSecond || (secondOfDay == session.endSecond && nanos == 0))) {
+                    return session;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Сессия по коду ("OS", "EVENING") или null
+         */
+        public static Session fromCode(String code) {
+            for (Session session : values()) {
+                if (session.code.equals(code)) {
+                    return session;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Последние сделки сессий одного инструмента: московский день, время (нс от эпохи) и цена
+     */
+    private static final class SessionPrices {
+        private final long[] days = { Long.MIN_VALUE, Long.MIN_VALUE };
+        private final long[] timesNanos = new long[2];
+        private final long[] prices = new long[2];
+
+        synchronized void update(int session, long epochDay, long timeNanos, long price) {
+            if (epochDay < days[session] || (epochDay == days[session] && timeNanos < timesNanos[session])) {
+                return;
+            }
+            days[session] = epochDay;
+            timesNanos[session] = timeNanos;
+            prices[session] = price;
+        }
+
+        synchronized long priceFor(int session, long epochDay) {
+            return days[session] == epochDay ? prices[session] : FixedPointPrice.NONE;
+        }
+    }
+
+    private final LastPriceRepository lastPriceRepository;
+    private final LastPriceDispatcher dispatcher;
+    private final Map<String, SessionPrices> prices = new ConcurrentHashMap<>();
+    // Часы для определения текущего московского дня (подменяются в тестах)
+    private Clock clock = Clock.system(TimeZoneUtils.getMoscowZone());
+
+    public SessionPriceTracker(LastPriceRepository lastPriceRepository, LastPriceDispatcher dispatcher) {
+        this.lastPriceRepository = lastPriceRepository;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Заполнение из БД и подписка на общий поток LastPrice
+     */
+    @PostConstruct
+    public void init() {
+        dispatcher.register(this);
+        seedFromDatabase();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.unregister(this);
+    }
+
+    private void seedFromDatabase() {
+        long startTime = System.currentTimeMillis();
+        LocalDate today = LocalDate.now(clock);
+        int seeded = 0;
+        for (Session session : Session.values()) {
+            LocalDateTime from = today.atStartOfDay().plusSeconds(session.startSecond);
+            LocalDateTime to = today.atStartOfDay().plusSeconds(session.endSecond);
+            try {
+                List<LastPriceEntity> rows = lastPriceRepository.findLatestPerFigiBetween(from, to);
+                for (LastPriceEntity row : rows) {
+                    LocalDateTime time = row.getId().getTime();
+                    long timeNanos = time.toEpochSecond(MOSCOW_OFFSET) * 1_000_000_000L + time.getNano();
+                    update(row.getId().getFigi(), session, today.toEpochDay(), timeNanos,
+                        FixedPointPrice.fromBigDecimal(row.getPrice()));
+                }
+                seeded += rows.size();
+            } catch (Exception e) {
+                logger.warn("⚠️ Не удалось загрузить цены сессии {} из БД: {}", session, e.getMessage());
+            }
+        }
+        logger.info("🕒 Трекер цен сессий заполнен из БД за {} мс: записей={}, инструментов={}",
+            System.currentTimeMillis() - startTime, seeded, prices.size());
+    }
+
+    @Override
+    public String getConsumerName() {
+        return "SessionPriceTracker";
+    }
+
+    @Override
+    public void onLastPrice(LastPrice lastPrice) {
+        if (!lastPrice.hasTime() || !lastPrice.hasPrice()) {
+            return;
+        }
+        long seconds = lastPrice.getTime().getSeconds();
+        int nanos = lastPrice.getTime().getNanos();
+        long localSeconds = seconds + MOSCOW_OFFSET_SECONDS;
+        Session session = Session.of((int) Math.floorMod(localSeconds, SECONDS_PER_DAY), nanos);
+        if (session == null) {
+            return;
+        }
+        update(lastPrice.getFigi(), session, Math.floorDiv(localSeconds, SECONDS_PER_DAY),
+            seconds * 1_000_000_000L + nanos, FixedPointPrice.fromQuotation(lastPrice.getPrice()));
+    }
+
+    private void update(String figi, Session session, long epochDay, long timeNanos, long price) {
+        SessionPrices holder = prices.get(figi);
+        if (holder == null) {
+            holder = prices.computeIfAbsent(figi, key -> new SessionPrices());
+        }
+        holder.update(session.ordinal(), epochDay, timeNanos, price);
+    }
+
+    /**
+     * Последняя цена сессии за текущий московский день
+     *
+     * @param figi идентификатор инструмента
+     * @param session сессия
+     * @return цена или null, если сделок в сессии сегодня не было
+     */
+    public BigDecimal getLastPrice(String figi, Session session) {
+        SessionPrices holder = figi != null && session != null ? prices.get(figi) : null;
+        if (holder == null) {
+            return null;
+        }
+        long epochDay = LocalDate.now(clock).toEpochDay();
+        return FixedPointPrice.toBigDecimal(holder.priceFor(session.ordinal(), epochDay));
+    }
+
+    /**
+     * Последняя цена сессии по коду ("OS", "EVENING")
+     */
+    public BigDecimal getLastPrice(String figi, String sessionCode) {
+        return getLastPrice(figi, Session.fromCode(sessionCode));
+    }
+
+    // Getters для метрик
+    public int size() { return prices.size(); }
+}
@@ -0,0 +1,388 @@
+package com.example.investmentdatastreamservice.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import com.example.investmentdatastreamservice.config.LimitMonitorProperties;
+import com.example.investmentdatastreamservice.service.streaming.LatencyHistogram;
+import com.example.investmentdatastreamservice.utils.TokenBucket;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Асинхронная отправка уведомлений в Telegram
+ *
+ * Уведомления ставятся в ограниченную очередь без блокировки - поток обработки цен
+ * никогда не ждет Telegram. Отдельный поток-отправитель:
+ * - объединяет уведомления, поступившие в течение limit.monitor.alerts.coalesce-window-ms,
+ *   в одно сообщение-сводку для каждого чата (с разбиением по лимиту длины сообщения);
+ * - ограничивает частоту сообщений в каждый чат ведром токенов
+ *   (limit.monitor.alerts.messages-per-minute, limit.monitor.alerts.burst); сводки чата,
+ *   исчерпавшего лимит, откладываются до появления токена, а отправитель переходит
+ *   к следующему чату;
+ * - при ответе 429 повторяет отправку после retry_after, при сетевых ошибках -
+ *   с экспоненциальной задержкой; прочие ошибки API не повторяются.
+ *
+ * Уведомление, которое так и не удалось отправить, снимается с отметки в
+ * {@link LimitAlertDedupTable}, чтобы следующая цена могла отправить его повторно.
+ *
+ * Публикуются глубина очереди, время отправки сообщения и задержка доставки уведомления.
+ */
+@Service
+public class TelegramAlertDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(TelegramAlertDispatcher.class);
+
+    private static final int MAX_MESSAGE_LENGTH = 4096;
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final String DIGEST_SEPARATOR = "\n\n➖➖➖➖➖\n\n";
+    private static final long SHUTDOWN_TIMEOUT_MS = 5_000;
+
+    /**
+     * Уведомление в очереди отправки
+     *
+     * @param figi и alertBit - ключ отметки в {@link LimitAlertDedupTable}
+     * @param deferred уведомление уже откладывалось (учтено в deferredAlerts)
+     */
+    private record PendingAlert(String chatId, String text, String figi, int alertBit, long enqueuedAtNanos,
+                                boolean deferred) {
+
+        PendingAlert asDeferred() {
+            return deferred ? this : new PendingAlert(chatId, text, figi, alertBit, enqueuedAtNanos, true);
+        }
+    }
+
+    private final TgBotService telegramBotService;
+    private final LimitAlertDedupTable dedupTable;
+    private final LimitMonitorProperties.Alerts config;
+    private final BlockingQueue<PendingAlert> queue;
+    private final Map<String, TokenBucket> chatBuckets = new ConcurrentHashMap<>();
+    // Уведомления чатов, исчерпавших лимит сообщений (только поток-отправитель)
+    private final List<PendingAlert> deferred = new ArrayList<>();
+    private final long tokenIntervalNanos;
+    private volatile boolean running;
+    private Thread senderThread;
+
+    // Метрики
+    private final AtomicLong enqueued = new AtomicLong(0);
+    private final AtomicLong dropped = new AtomicLong(0);
+    private final AtomicLong alertsSent = new AtomicLong(0);
+    private final AtomicLong messagesSent = new AtomicLong(0);
+    private final AtomicLong digestsSent = new AtomicLong(0);
+    private final AtomicLong failedMessages = new AtomicLong(0);
+    private final AtomicLong retries = new AtomicLong(0);
+    private final AtomicLong rateLimited = new AtomicLong(0);
+    private final AtomicLong deferredAlerts = new AtomicLong(0);
+    private final LatencyHistogram sendLatency = new LatencyHistogram();
+    private final LatencyHistogram deliveryLatency = new LatencyHistogram();
+
+    public TelegramAlertDispatcher(TgBotService telegramBotService, LimitAlertDedupTable dedupTable,
+                                   LimitMonitorProperties limitMonitorProperties) {
+        this.telegramBotService = telegramBotService;
+        this.dedupTable = dedupTable;
+        this.config = limitMonitorProperties.getAlerts();
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity()));
+        this.tokenIntervalNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(1, config.getMessagesPerMinute());
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        senderThread = new Thread(this::runSendLoop, "telegram-alert-sender");
+        senderThread.setDaemon(true);
+        senderThread.start();
+        logger.info("📮 Telegram alert dispatcher started: queue={}, {} msg/min per chat, coalesce window {}ms",
+            config.getQueueCapacity(), config.getMessagesPerMinute(), config.getCoalesceWindowMs());
+    }
+
+    /**
+     * Постановка уведомления в очередь отправки без блокировки
+     *
+     * @param figi инструмент уведомления - ключ отметки в {@link LimitAlertDedupTable}
+     * @param alertBit тип уведомления ({@link LimitAlertDedupTable#alertBit})
+     * @return false, если очередь заполнена и уведомление отброшено
+     */
+    public boolean enqueue(String chatId, String text, String figi, int alertBit) {
+        if (queue.offer(new PendingAlert(chatId, text, figi, alertBit, System.nanoTime(), false))) {
+            enqueued.incrementAndGet();
+            return true;
+        }
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Цикл отправителя: ждет первое уведомление, добирает уведомления до конца окна
+     * объединения и отправляет сводки по чатам. Отложенные уведомления повторяются
+     * через интервал пополнения ведра токенов вместе с поступившими за это время.
+     */
+    private void runSendLoop() {
+        List<PendingAlert> batch = new ArrayList<>();
+        long windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, config.getCoalesceWindowMs()));
+
+        while (running || !queue.isEmpty() || !deferred.isEmpty()) {
+            try {
+                if (deferred.isEmpty()) {
+                    PendingAlert first = queue.poll(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+
+                    long deadline = first.enqueuedAtNanos() + windowNanos;
+                    long remaining;
+                    while (running && (remaining = deadline - System.nanoTime()) > 0) {
+                        PendingAlert next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next != null) {
+                            batch.add(next);
+                        }
+                    }
+                } else {
+                    batch.addAll(deferred);
+                    deferred.clear();
+                    PendingAlert next = queue.poll(tokenIntervalNanos, TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                }
+                queue.drainTo(batch);
+
+                sendBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+
+        // Прерванная остановка: отложенные уведомления не отправлены - снимаем их отметки
+        if (!deferred.isEmpty()) {
+            logger.warn("⚠️ Telegram alert dispatcher stopped with {} deferred alerts", deferred.size());
+            release(deferred);
+            deferred.clear();
+        }
+    }
+
+    /**
+     * Отправка накопленных уведомлений: по одной или несколько сводок на чат
+     *
+     * Ведро токенов чата не ожидается: если токена нет, оставшиеся сводки чата
+     * откладываются, и отправитель переходит к следующему чату.
+     */
+    private void sendBatch(List<PendingAlert> batch) throws InterruptedException {
+        Map<String, List<PendingAlert>> byChat = new LinkedHashMap<>();
+        for (PendingAlert alert : batch) {
+            byChat.computeIfAbsent(alert.chatId(), k -> new ArrayList<>()).add(alert);
+        }
+
+        for (Map.Entry<String, List<PendingAlert>> entry : byChat.entrySet()) {
+            String chatId = entry.getKey();
+            TokenBucket bucket = chatBucket(chatId);
+            List<List<PendingAlert>> digests = splitDigests(entry.getValue());
+            for (int i = 0; i < digests.size(); i++) {
+                List<PendingAlert> digest = digests.get(i);
+                if (!bucket.tryAcquire()) {
+                    for (int j = i; j < digests.size(); j++) {
+                        defer(digests.get(j));
+                    }
+                    break;
+                }
+                String text = formatDigest(digest);
+                if (sendWithRetry(chatId, text)) {
+                    long now = System.nanoTime();
+                    for (PendingAlert alert : digest) {
+                        deliveryLatency.recordNanos(now - alert.enqueuedAtNanos());
+                    }
+                    alertsSent.addAndGet(digest.size());
+                    messagesSent.incrementAndGet();
+                    if (digest.size() > 1) {
+                        digestsSent.incrementAndGet();
+                        logger.info("📬 Сводка из {} уведомлений отправлена в Telegram", digest.size());
+                    }
+                } else {
+                    failedMessages.incrementAndGet();
+                    release(digest);
+                }
+            }
+        }
+    }
+
+    /**
+     * Откладывание сводки до появления токена у чата
+     *
+     * Отложенных уведомлений не больше емкости очереди: сверх нее уведомления
+     * отбрасываются так же, как при заполненной очереди. Уведомление, повторно
+     * отложенное при следующей попытке, в deferredAlerts не учитывается.
+     */
+    private void defer(List<PendingAlert> digest) {
+        for (PendingAlert alert : digest) {
+            if (deferred.size() < config.getQueueCapacity()) {
+                if (!alert.deferred()) {
+                    deferredAlerts.incrementAndGet();
+                }
+                deferred.add(alert.asDeferred());
+            } else {
+                dropped.incrementAndGet();
+                release(List.of(alert));
+            }
+        }
+    }
+
+    /**
+     * Снятие отметок неотправленных уведомлений: следующая цена отправит их заново
+     */
+    private void release(List<PendingAlert> alerts) {
+        for (PendingAlert alert : alerts) {
+            dedupTable.unmark(alert.figi(), alert.alertBit());
+        }
+    }
+
+    /**
+     * Разбиение уведомлений чата на сводки, помещающиеся в одно сообщение
+     */
+    private static List<List<PendingAlert>> splitDigests(List<PendingAlert> alerts) {
+        List<List<PendingAlert>> digests = new ArrayList<>();
+        List<PendingAlert> current = new ArrayList<>();
+        int length = 0;
+        for (PendingAlert alert : alerts) {
+            int added = alert.text().length() + DIGEST_SEPARATOR.length();
+            if (!current.isEmpty() && length + added > MAX_MESSAGE_LENGTH - 64) {
+                digests.add(current);
+                current = new ArrayList<>();
+                length = 0;
+            }
+            current.add(alert);
+            length += added;
+        }
+        if (!current.isEmpty()) {
+            digests.add(current);
+        }
+        return digests;
+    }
+
+    private static String formatDigest(List<PendingAlert> digest) {
+        if (digest.size() == 1) {
+            return digest.get(0).text();
+        }
+        StringBuilder text = new StringBuilder("📬 Сводка уведомлений: ").append(digest.size());
+        for (PendingAlert alert : digest) {
+            text.append(DIGEST_SEPARATOR).append(alert.text());
+        }
+        return text.toString();
+    }
+
+    /**
+     * Отправка сообщения с повторами
+     *
+     * @return true, если сообщение отправлено
+     */
+    private boolean sendWithRetry(String chatId, String text) throws InterruptedException {
+        long backoffMs = Math.max(1, config.getRetryBackoffMs());
+        for (int attempt = 0; ; attempt++) {
+            long start = System.nanoTime();
+            try {
+                telegramBotService.sendMessage(chatId, text);
+                sendLatency.recordNanos(System.nanoTime() - start);
+                return true;
+            } catch (TelegramApiRequestException e) {
+                sendLatency.recordNanos(System.nanoTime() - start);
+                if (e.getErrorCode() == null || e.getErrorCode() != TOO_MANY_REQUESTS) {
+                    logger.error("❌ Telegram отклонил сообщение ({}): {}", e.getErrorCode(), e.getApiResponse());
+                    return false;
+                }
+                rateLimited.incrementAndGet();
+                if (attempt >= config.getMaxRetries()) {
+                    logger.error("❌ Telegram rate limit: сообщение не отправлено после {} повторов", attempt);
+                    return false;
+                }
+                long waitMs = e.getParameters() != null && e.getParameters().getRetryAfter() != null
+                    ? TimeUnit.SECONDS.toMillis(e.getParameters().getRetryAfter())
+                    : backoffMs;
+                logger.warn("⏳ Telegram 429 Too Many Requests, повтор через {}ms", waitMs);
+                retries.incrementAndGet();
+                Thread.sleep(waitMs);
+            } catch (TelegramApiException e) {
+                sendLatency.recordNanos(System.nanoTime() - start);
+                if (attempt >= config.getMaxRetries()) {
+                    logger.error("❌ Ошибка при отправке сообщения в Telegram после {} повторов", attempt, e);
+                    return false;
+                }
+                logger.warn("⚠️ Ошибка при отправке сообщения в Telegram, повтор через {}ms: {}",
+                    backoffMs, e.getMessage());
+                retries.incrementAndGet();
+                Thread.sleep(backoffMs);
+            }
+            backoffMs *= 2;
+        }
+    }
+
+    private TokenBucket chatBucket(String chatId) {
+        return chatBuckets.computeIfAbsent(chatId, k -> new TokenBucket(
+            Math.max(1, config.getMessagesPerMinute()) / 60.0, Math.max(1, config.getBurst())));
+    }
+
+    /**
+     * Статистика отправки уведомлений
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queueDepth", queue.size());
+        stats.put("queueCapacity", config.getQueueCapacity());
+        stats.put("enqueued", enqueued.get());
+        stats.put("dropped", dropped.get());
+        stats.put("alertsSent", alertsSent.get());
+        stats.put("messagesSent", messagesSent.get());
+        stats.put("digestsSent", digestsSent.get());
+        stats.put("failedMessages", failedMessages.get());
+        stats.put("retries", retries.get());
+        stats.put("rateLimited", rateLimited.get());
+        stats.put("deferredAlerts", deferredAlerts.get());
+        stats.put("sendLatency", sendLatency.getRecent().toMap());
+        stats.put("deliveryLatency", deliveryLatency.getRecent().toMap());
+        return stats;
+    }
+
+    /**
+     * Завершение работы: отправка уже поставленных уведомлений с ограничением по времени
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (senderThread == null) {
+            return;
+        }
+        try {
+            senderThread.join(SHUTDOWN_TIMEOUT_MS);
+            if (senderThread.isAlive()) {
+                senderThread.interrupt();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            senderThread.interrupt();
+        }
+        if (!queue.isEmpty()) {
+            logger.warn("⚠️ Telegram alert dispatcher stopped with {} unsent alerts", queue.size());
+        }
+    }
+
+    // Getters для метрик
+    public int getQueueDepth() { return queue.size(); }
+    public long getDroppedCount() { return dropped.get(); }
+    public long getMessagesSentCount() { return messagesSent.get(); }
+    public LatencyHistogram getSendLatency() { return sendLatency; }
+}
@@ -115,6 +115,17 @@ public class TgBotService extends TelegramLongPollingBot {
         }
     }
 
+    /**
+     * Отправка сообщения с передачей ошибки вызывающему коду
+     * (повторы и ограничение частоты выполняет {@link TelegramAlertDispatcher})
+     */
+    public void sendMessage(String chatId, String text) throws TelegramApiException {
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId);
+        message.setText(text);
+        execute(message);
+    }
+
     public void sendText(String chatId, String text) {
         try {
             logger.info("📤 Sending message to configured Telegram destination");
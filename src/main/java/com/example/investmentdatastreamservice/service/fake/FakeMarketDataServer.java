@@ -0,0 +1,156 @@
+package com.example.investmentdatastreamservice.service.fake;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.example.investmentdatastreamservice.config.FakeMarketProperties;
+
+import io.grpc.Grpc;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessServerBuilder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Встроенный фейковый сервер рыночных данных для нагрузочного тестирования
+ *
+ * Поднимает in-process gRPC сервер (и, если задан порт, сетевой сервер без TLS)
+ * с фейковыми MarketDataStreamService и MarketDataService. Приложение подключается
+ * к нему через tinkoff.api.in-process-name (профиль fake), поэтому весь конвейер
+ * прием → БД → алерты работает без T-Invest API.
+ *
+ * Поток генератора каждые fake.market.tick-interval-ms рассылает по подпискам
+ * порцию LastPrice и Candle так, чтобы суммарный поток соответствовал
+ * fake.market.ticks-per-second и fake.market.candles-per-second.
+ */
+@Component
+@ConditionalOnProperty(prefix = "fake.market", name = "enabled", havingValue = "true")
+public class FakeMarketDataServer {
+
+    private static final Logger log = LoggerFactory.getLogger(FakeMarketDataServer.class);
+
+    private final FakeMarketProperties properties;
+    private final FakePriceModel priceModel;
+    private final FakeMarketDataStreamService streamService;
+    private final FakeMarketDataService marketDataService;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private Server inProcessServer;
+    private Server networkServer;
+    private Thread generatorThread;
+
+    public FakeMarketDataServer(FakeMarketProperties properties) {
+        this.properties = properties;
+        this.priceModel = new FakePriceModel(properties.getVolatility());
+        this.streamService = new FakeMarketDataStreamService(priceModel);
+        this.marketDataService = new FakeMarketDataService(priceModel, properties.getLimitPercent());
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        inProcessServer = InProcessServerBuilder.forName(properties.getInProcessName())
+            .addService(streamService)
+            .addService(marketDataService)
+            .build()
+            .start();
+
+        if (properties.getPort() > 0) {
+            networkServer = Grpc.newServerBuilderForPort(properties.getPort(), InsecureServerCredentials.create())
+                .addService(streamService)
+                .addService(marketDataService)
+                .build()
+                .start();
+        }
+
+        running.set(true);
+        generatorThread = new Thread(this::generateLoop, "fake-market-generator");
+        generatorThread.setDaemon(true);
+        generatorThread.start();
+
+        log.warn("🧪 Fake market data server started: in-process '{}'{}, {} ticks/s, {} candles/s",
+            properties.getInProcessName(),
+            networkServer != null ? ", port " + properties.getPort() : "",
+            properties.getTicksPerSecond(), properties.getCandlesPerSecond());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running.set(false);
+        if (generatorThread != null) {
+            generatorThread.interrupt();
+            generatorThread.join(1_000);
+        }
+        streamService.completeAll();
+        shutdown(inProcessServer);
+        shutdown(networkServer);
+        log.info("🧪 Fake market data server stopped: {}", getStats());
+    }
+
+    private static void shutdown(Server server) throws InterruptedException {
+        if (server != null) {
+            server.shutdown();
+            if (!server.awaitTermination(5, TimeUnit.SECONDS)) {
+                server.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Цикл генератора: бюджет сообщений пропорционален прошедшему времени,
+     * дробная часть переносится на следующую порцию
+     */
+    private void generateLoop() {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, properties.getTickIntervalMs()));
+        double lastPriceCarry = 0;
+        double candleCarry = 0;
+        long previous = System.nanoTime();
+
+        while (running.get()) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(intervalNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            long now = System.nanoTime();
+            double elapsedSeconds = (now - previous) / 1_000_000_000.0;
+            previous = now;
+
+            lastPriceCarry += properties.getTicksPerSecond() * elapsedSeconds;
+            candleCarry += properties.getCandlesPerSecond() * elapsedSeconds;
+            long lastPriceBudget = (long) lastPriceCarry;
+            long candleBudget = (long) candleCarry;
+            lastPriceCarry -= lastPriceBudget;
+            candleCarry -= candleBudget;
+
+            try {
+                streamService.emit(lastPriceBudget, candleBudget, System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                log.warn("Fake market generator error: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Статистика фейкового сервера
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sessions", streamService.getSessionCount());
+        stats.put("instruments", priceModel.size());
+        stats.put("sentLastPrices", streamService.getSentLastPrices());
+        stats.put("sentCandles", streamService.getSentCandles());
+        stats.put("skipped", streamService.getSkipped());
+        return stats;
+    }
+}
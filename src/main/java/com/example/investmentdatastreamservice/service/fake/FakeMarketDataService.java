@@ -0,0 +1,42 @@
+package com.example.investmentdatastreamservice.service.fake;
+
+import io.grpc.stub.StreamObserver;
+import ru.tinkoff.piapi.contract.v1.GetOrderBookRequest;
+import ru.tinkoff.piapi.contract.v1.GetOrderBookResponse;
+import ru.tinkoff.piapi.contract.v1.MarketDataServiceGrpc;
+
+/**
+ * Фейковая реализация MarketDataService
+ *
+ * Реализован только GetOrderBook - в нем LimitsService получает лимиты цены.
+ * Лимиты строятся симметрично вокруг текущей синтетической цены инструмента,
+ * остальные методы возвращают UNIMPLEMENTED.
+ */
+public class FakeMarketDataService extends MarketDataServiceGrpc.MarketDataServiceImplBase {
+
+    private final FakePriceModel priceModel;
+    private final double limitPercent;
+
+    public FakeMarketDataService(FakePriceModel priceModel, double limitPercent) {
+        this.priceModel = priceModel;
+        this.limitPercent = limitPercent;
+    }
+
+    @Override
+    public void getOrderBook(GetOrderBookRequest request, StreamObserver<GetOrderBookResponse> responseObserver) {
+        String figi = request.getInstrumentId().isEmpty() ? request.getFigi() : request.getInstrumentId();
+        long priceCents = priceModel.getPriceCents(figi);
+        long limitUpCents = Math.round(priceCents * (1 + limitPercent / 100.0));
+        long limitDownCents = Math.max(1, Math.round(priceCents * (1 - limitPercent / 100.0)));
+
+        responseObserver.onNext(GetOrderBookResponse.newBuilder()
+            .setFigi(figi)
+            .setDepth(request.getDepth())
+            .setLastPrice(FakePriceModel.toQuotation(priceCents))
+            .setClosePrice(FakePriceModel.toQuotation(priceCents))
+            .setLimitUp(FakePriceModel.toQuotation(limitUpCents))
+            .setLimitDown(FakePriceModel.toQuotation(limitDownCents))
+            .build());
+        responseObserver.onCompleted();
+    }
+}
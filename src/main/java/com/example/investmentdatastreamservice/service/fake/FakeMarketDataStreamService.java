@@ -0,0 +1,280 @@
+package com.example.investmentdatastreamservice.service.fake;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import ru.tinkoff.piapi.contract.v1.CandleInstrument;
+import ru.tinkoff.piapi.contract.v1.CandleSubscription;
+import ru.tinkoff.piapi.contract.v1.LastPriceInstrument;
+import ru.tinkoff.piapi.contract.v1.LastPriceSubscription;
+import ru.tinkoff.piapi.contract.v1.MarketDataRequest;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+import ru.tinkoff.piapi.contract.v1.MarketDataStreamServiceGrpc;
+import ru.tinkoff.piapi.contract.v1.SubscribeCandlesRequest;
+import ru.tinkoff.piapi.contract.v1.SubscribeCandlesResponse;
+import ru.tinkoff.piapi.contract.v1.SubscribeLastPriceRequest;
+import ru.tinkoff.piapi.contract.v1.SubscribeLastPriceResponse;
+import ru.tinkoff.piapi.contract.v1.SubscriptionAction;
+import ru.tinkoff.piapi.contract.v1.SubscriptionInterval;
+import ru.tinkoff.piapi.contract.v1.SubscriptionStatus;
+
+/**
+ * Фейковая реализация MarketDataStreamService
+ *
+ * Каждый вызов marketDataStream - отдельная сессия со своими подписками на LastPrice
+ * и минутные свечи. Запросы SUBSCRIBE/UNSUBSCRIBE применяются к сессии, в ответ
+ * отправляется статус SUCCESS по каждому инструменту. Данные по подпискам
+ * генерирует {@link #emit(long, long, long)}, вызываемый потоком генератора
+ * {@link FakeMarketDataServer}.
+ *
+ * Если клиент не успевает читать поток (transport не готов), сообщения не
+ * буферизуются, а отбрасываются и учитываются в счетчике skipped - так генератор
+ * не копит память и перегрузка клиента видна в метриках.
+ */
+public class FakeMarketDataStreamService extends MarketDataStreamServiceGrpc.MarketDataStreamServiceImplBase {
+
+    private static final Logger log = LoggerFactory.getLogger(FakeMarketDataStreamService.class);
+
+    private final FakePriceModel priceModel;
+    private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong sentLastPrices = new AtomicLong();
+    private final AtomicLong sentCandles = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    public FakeMarketDataStreamService(FakePriceModel priceModel) {
+        this.priceModel = priceModel;
+    }
+
+    @Override
+    public StreamObserver<MarketDataRequest> marketDataStream(StreamObserver<MarketDataResponse> responseObserver) {
+        Session session = new Session((ServerCallStreamObserver<MarketDataResponse>) responseObserver);
+        sessions.add(session);
+        session.out.setOnCancelHandler(() -> close(session, "cancelled"));
+        log.info("🧪 Fake market stream opened (sessions: {})", sessions.size());
+
+        return new StreamObserver<>() {
+            @Override
+            public void onNext(MarketDataRequest request) {
+                session.handle(request);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                close(session, "error: " + t.getMessage());
+            }
+
+            @Override
+            public void onCompleted() {
+                close(session, "completed by client");
+                session.complete();
+            }
+        };
+    }
+
+    private void close(Session session, String reason) {
+        if (sessions.remove(session)) {
+            log.info("🧪 Fake market stream closed ({}), sessions left: {}", reason, sessions.size());
+        }
+    }
+
+    /**
+     * Рассылка очередной порции данных по всем сессиям
+     *
+     * Бюджет распределяется между сессиями пропорционально количеству подписок.
+     *
+     * @param lastPriceBudget количество LastPrice на порцию
+     * @param candleBudget количество Candle на порцию
+     * @param epochMillis время сделок
+     */
+    public void emit(long lastPriceBudget, long candleBudget, long epochMillis) {
+        long totalLastPriceSubscriptions = 0;
+        long totalCandleSubscriptions = 0;
+        for (Session session : sessions) {
+            totalLastPriceSubscriptions += session.lastPriceFigis.length;
+            totalCandleSubscriptions += session.candleFigis.length;
+        }
+
+        for (Session session : sessions) {
+            if (totalLastPriceSubscriptions > 0 && lastPriceBudget > 0) {
+                long share = lastPriceBudget * session.lastPriceFigis.length / totalLastPriceSubscriptions;
+                session.emitLastPrices((int) share, epochMillis);
+            }
+            if (totalCandleSubscriptions > 0 && candleBudget > 0) {
+                long share = candleBudget * session.candleFigis.length / totalCandleSubscriptions;
+                session.emitCandles((int) share, epochMillis);
+            }
+        }
+    }
+
+    /**
+     * Закрытие всех сессий при остановке сервера
+     */
+    public void completeAll() {
+        for (Session session : sessions) {
+            session.complete();
+        }
+        sessions.clear();
+    }
+
+    // Getters для метрик
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public long getSentLastPrices() {
+        return sentLastPrices.get();
+    }
+
+    public long getSentCandles() {
+        return sentCandles.get();
+    }
+
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    /**
+     * Сессия одного stream-соединения клиента
+     */
+    private final class Session {
+
+        private final ServerCallStreamObserver<MarketDataResponse> out;
+        private final Map<String, Boolean> lastPriceSubscriptions = new ConcurrentHashMap<>();
+        private final Map<String, Boolean> candleSubscriptions = new ConcurrentHashMap<>();
+
+        // Снимки подписок для генератора, пересобираются при изменении
+        private volatile String[] lastPriceFigis = new String[0];
+        private volatile String[] candleFigis = new String[0];
+        private int lastPriceCursor;
+        private int candleCursor;
+        private boolean completed;
+
+        Session(ServerCallStreamObserver<MarketDataResponse> out) {
+            this.out = out;
+        }
+
+        void handle(MarketDataRequest request) {
+            if (request.hasSubscribeLastPriceRequest()) {
+                handleLastPriceRequest(request.getSubscribeLastPriceRequest());
+            } else if (request.hasSubscribeCandlesRequest()) {
+                handleCandlesRequest(request.getSubscribeCandlesRequest());
+            }
+        }
+
+        private void handleLastPriceRequest(SubscribeLastPriceRequest request) {
+            boolean subscribe = request.getSubscriptionAction() == SubscriptionAction.SUBSCRIPTION_ACTION_SUBSCRIBE;
+            SubscribeLastPriceResponse.Builder response = SubscribeLastPriceResponse.newBuilder()
+                .setTrackingId(UUID.randomUUID().toString());
+
+            for (LastPriceInstrument instrument : request.getInstrumentsList()) {
+                String figi = instrument.getInstrumentId().isEmpty() ? instrument.getFigi() : instrument.getInstrumentId();
+                if (subscribe) {
+                    lastPriceSubscriptions.put(figi, Boolean.TRUE);
+                } else {
+                    lastPriceSubscriptions.remove(figi);
+                }
+                response.addLastPriceSubscriptions(LastPriceSubscription.newBuilder()
+                    .setFigi(figi)
+                    .setSubscriptionStatus(SubscriptionStatus.SUBSCRIPTION_STATUS_SUCCESS));
+            }
+            lastPriceFigis = lastPriceSubscriptions.keySet().toArray(new String[0]);
+
+            send(MarketDataResponse.newBuilder().setSubscribeLastPriceResponse(response).build(), true);
+            log.info("🧪 Fake LastPrice {}: {} instruments (session total: {})",
+                request.getSubscriptionAction(), request.getInstrumentsCount(), lastPriceFigis.length);
+        }
+
+        private void handleCandlesRequest(SubscribeCandlesRequest request) {
+            boolean subscribe = request.getSubscriptionAction() == SubscriptionAction.SUBSCRIPTION_ACTION_SUBSCRIBE;
+            SubscribeCandlesResponse.Builder response = SubscribeCandlesResponse.newBuilder()
+                .setTrackingId(UUID.randomUUID().toString());
+
+            for (CandleInstrument instrument : request.getInstrumentsList()) {
+                String figi = instrument.getInstrumentId().isEmpty() ? instrument.getFigi() : instrument.getInstrumentId();
+                if (subscribe) {
+                    candleSubscriptions.put(figi, Boolean.TRUE);
+                } else {
+                    candleSubscriptions.remove(figi);
+                }
+                response.addCandlesSubscriptions(CandleSubscription.newBuilder()
+                    .setFigi(figi)
+                    .setInterval(SubscriptionInterval.SUBSCRIPTION_INTERVAL_ONE_MINUTE)
+                    .setSubscriptionStatus(SubscriptionStatus.SUBSCRIPTION_STATUS_SUCCESS));
+            }
+            candleFigis = candleSubscriptions.keySet().toArray(new String[0]);
+
+            send(MarketDataResponse.newBuilder().setSubscribeCandlesResponse(response).build(), true);
+            log.info("🧪 Fake Candle {}: {} instruments (session total: {})",
+                request.getSubscriptionAction(), request.getInstrumentsCount(), candleFigis.length);
+        }
+
+        void emitLastPrices(int count, long epochMillis) {
+            String[] figis = lastPriceFigis;
+            for (int i = 0; i < count && figis.length > 0; i++) {
+                lastPriceCursor = (lastPriceCursor + 1) % figis.length;
+                MarketDataResponse response = MarketDataResponse.newBuilder()
+                    .setLastPrice(priceModel.nextLastPrice(figis[lastPriceCursor], epochMillis))
+                    .build();
+                if (send(response, false)) {
+                    sentLastPrices.incrementAndGet();
+                } else {
+                    skipped.incrementAndGet();
+                }
+            }
+        }
+
+        void emitCandles(int count, long epochMillis) {
+            String[] figis = candleFigis;
+            for (int i = 0; i < count && figis.length > 0; i++) {
+                candleCursor = (candleCursor + 1) % figis.length;
+                MarketDataResponse response = MarketDataResponse.newBuilder()
+                    .setCandle(priceModel.nextCandle(figis[candleCursor], epochMillis))
+                    .build();
+                if (send(response, false)) {
+                    sentCandles.incrementAndGet();
+                } else {
+                    skipped.incrementAndGet();
+                }
+            }
+        }
+
+        /**
+         * Отправка сообщения клиенту. Ответы на подписку отправляются всегда,
+         * данные - только если transport готов принять их без буферизации.
+         */
+        synchronized boolean send(MarketDataResponse response, boolean force) {
+            if (completed || out.isCancelled() || (!force && !out.isReady())) {
+                return false;
+            }
+            try {
+                out.onNext(response);
+                return true;
+            } catch (RuntimeException e) {
+                log.debug("Fake market stream send failed: {}", e.getMessage());
+                completed = true;
+                return false;
+            }
+        }
+
+        synchronized void complete() {
+            if (completed) {
+                return;
+            }
+            completed = true;
+            try {
+                out.onCompleted();
+            } catch (RuntimeException e) {
+                log.debug("Fake market stream already closed: {}", e.getMessage());
+            }
+        }
+    }
+}
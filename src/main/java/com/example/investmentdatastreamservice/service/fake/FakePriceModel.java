@@ -0,0 +1,136 @@
+package com.example.investmentdatastreamservice.service.fake;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.google.protobuf.Timestamp;
+
+import ru.tinkoff.piapi.contract.v1.Candle;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.Quotation;
+import ru.tinkoff.piapi.contract.v1.SubscriptionInterval;
+
+/**
+ * Синтетические цены фейкового сервера рыночных данных
+ *
+ * Для каждого инструмента - случайное блуждание цены с шагом 0.01, начальная цена
+ * детерминированно зависит от FIGI. По тикам накапливается текущая минутная свеча.
+ * Состояние инструмента изменяется под его монитором, поэтому модель можно
+ * использовать из генератора и из обработчиков unary-запросов одновременно.
+ */
+public class FakePriceModel {
+
+    private final double volatility;
+    private final Map<String, InstrumentState> instruments = new ConcurrentHashMap<>();
+
+    public FakePriceModel(double volatility) {
+        this.volatility = volatility;
+    }
+
+    /**
+     * Очередная сделка по инструменту
+     */
+    public LastPrice nextLastPrice(String figi, long epochMillis) {
+        InstrumentState state = state(figi);
+        long priceCents;
+        synchronized (state) {
+            priceCents = state.step(volatility, epochMillis);
+        }
+        return LastPrice.newBuilder()
+            .setFigi(figi)
+            .setPrice(toQuotation(priceCents))
+            .setTime(toTimestamp(epochMillis))
+            .build();
+    }
+
+    /**
+     * Очередная сделка и текущая минутная свеча по инструменту
+     */
+    public Candle nextCandle(String figi, long epochMillis) {
+        InstrumentState state = state(figi);
+        Candle.Builder builder = Candle.newBuilder()
+            .setFigi(figi)
+            .setInterval(SubscriptionInterval.SUBSCRIPTION_INTERVAL_ONE_MINUTE)
+            .setLastTradeTs(toTimestamp(epochMillis));
+        synchronized (state) {
+            state.step(volatility, epochMillis);
+            builder.setOpen(toQuotation(state.openCents))
+                .setHigh(toQuotation(state.highCents))
+                .setLow(toQuotation(state.lowCents))
+                .setClose(toQuotation(state.priceCents))
+                .setVolume(state.volume)
+                .setTime(Timestamp.newBuilder().setSeconds(state.minuteStartMillis / 1000));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Текущая цена инструмента в копейках
+     */
+    public long getPriceCents(String figi) {
+        InstrumentState state = state(figi);
+        synchronized (state) {
+            return state.priceCents;
+        }
+    }
+
+    public int size() {
+        return instruments.size();
+    }
+
+    private InstrumentState state(String figi) {
+        return instruments.computeIfAbsent(figi, InstrumentState::new);
+    }
+
+    public static Quotation toQuotation(long cents) {
+        return Quotation.newBuilder()
+            .setUnits(cents / 100)
+            .setNano((int) (cents % 100) * 10_000_000)
+            .build();
+    }
+
+    private static Timestamp toTimestamp(long epochMillis) {
+        return Timestamp.newBuilder()
+            .setSeconds(epochMillis / 1000)
+            .setNanos((int) (epochMillis % 1000) * 1_000_000)
+            .build();
+    }
+
+    /**
+     * Состояние цены и минутной свечи одного инструмента
+     */
+    private static final class InstrumentState {
+        long priceCents;
+        long minuteStartMillis = -1;
+        long openCents;
+        long highCents;
+        long lowCents;
+        long volume;
+
+        InstrumentState(String figi) {
+            // От 10 до 5000 рублей в зависимости от FIGI
+            this.priceCents = 1_000 + Math.floorMod(figi.hashCode(), 499_000);
+        }
+
+        long step(double volatility, long epochMillis) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long delta = Math.round(random.nextGaussian() * volatility * priceCents);
+            priceCents = Math.max(1, priceCents + delta);
+
+            long minuteStart = epochMillis - Math.floorMod(epochMillis, 60_000L);
+            if (minuteStart != minuteStartMillis) {
+                minuteStartMillis = minuteStart;
+                openCents = priceCents;
+                highCents = priceCents;
+                lowCents = priceCents;
+                volume = 0;
+            } else {
+                highCents = Math.max(highCents, priceCents);
+                lowCents = Math.min(lowCents, priceCents);
+            }
+            volume += 1 + random.nextInt(100);
+            return priceCents;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.investmentdatastreamservice.service.streaming;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.example.investmentdatastreamservice.utils.FixedPointPrice;
+
+/**
+ * Свеча, собранная {@link TickCandleAggregator} из цен последних сделок
+ *
+ * Цены хранятся в формате {@link FixedPointPrice}. LastPrice не содержит объема
+ * сделки, поэтому вместо объема свеча хранит количество сделок (tickCount).
+ *
+ * @param figi FIGI инструмента
+ * @param timeframe интервал свечи
+ * @param startEpochSecond начало интервала, секунды epoch
+ * @param open цена открытия
+ * @param high максимальная цена
+ * @param low минимальная цена
+ * @param close цена закрытия
+ * @param tickCount количество сделок в интервале
+ * @param complete false - интервал еще формируется, true - свеча завершена
+ */
+public record AggregatedBar(String figi, CandleTimeframe timeframe, long startEpochSecond,
+        long open, long high, long low, long close, long tickCount, boolean complete) {
+
+    private static final ZoneOffset MOSCOW_OFFSET = ZoneOffset.of("+3");
+
+    public Instant startTime() {
+        return Instant.ofEpochSecond(startEpochSecond);
+    }
+
+    /**
+     * Представление для REST: цены - BigDecimal, время - московское
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("figi", figi);
+        map.put("interval", timeframe.getCode());
+        map.put("time", LocalDateTime.ofEpochSecond(startEpochSecond, 0, MOSCOW_OFFSET).toString());
+        map.put("open", FixedPointPrice.toBigDecimal(open));
+        map.put("high", FixedPointPrice.toBigDecimal(high));
+        map.put("low", FixedPointPrice.toBigDecimal(low));
+        map.put("close", FixedPointPrice.toBigDecimal(close));
+        map.put("tickCount", tickCount);
+        map.put("isComplete", complete);
+        return map;
+    }
+}
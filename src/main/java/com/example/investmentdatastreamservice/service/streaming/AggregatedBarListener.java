@@ -0,0 +1,30 @@
+package com.example.investmentdatastreamservice.service.streaming;
+
+/**
+ * Получатель свечей, собираемых {@link TickCandleAggregator}
+ *
+ * Вызывается в потоке обработки общего потока LastPrice (незавершенные свечи
+ * на каждой сделке) и в потоке завершения интервалов, поэтому реализация
+ * не должна блокироваться.
+ *
+ * Незавершенные свечи собираются на каждой сделке только для получателей,
+ * которым они нужны ({@link #wantsPartials()}).
+ */
+public interface AggregatedBarListener {
+
+    /**
+     * Обработка свечи
+     *
+     * @param bar незавершенная (complete=false) или завершенная свеча
+     */
+    void onBar(AggregatedBar bar);
+
+    /**
+     * Нужны ли получателю незавершенные свечи
+     *
+     * @return false, если получателю достаточно завершенных свечей
+     */
+    default boolean wantsPartials() {
+        return true;
+    }
+}
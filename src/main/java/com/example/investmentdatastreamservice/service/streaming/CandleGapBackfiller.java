@@ -0,0 +1,187 @@
+package com.example.investmentdatastreamservice.service.streaming;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.example.investmentdatastreamservice.config.StreamingProperties;
+import com.example.investmentdatastreamservice.service.streaming.processor.CandleProcessor;
+import com.example.investmentdatastreamservice.utils.TokenBucket;
+
+import jakarta.annotation.PreDestroy;
+import ru.tinkoff.piapi.contract.v1.Candle;
+import ru.tinkoff.piapi.contract.v1.CandleInterval;
+import ru.tinkoff.piapi.contract.v1.HistoricCandle;
+import ru.tinkoff.piapi.contract.v1.SubscriptionInterval;
+import ru.tinkoff.piapi.core.MarketDataService;
+
+/**
+ * Дозагрузка минутных свечей, пропущенных во время падения stream'а
+ *
+ * После переподключения stream'а для его инструментов запрашиваются свечи за период
+ * пропуска через MarketDataService.getCandles. Запросы ограничены по частоте
+ * ({@link TokenBucket}) и по числу одновременных вызовов, полученные свечи
+ * записываются тем же путем, что и потоковые - через {@link CandleProcessor}
+ * (INSERT ... ON CONFLICT или COPY), поэтому уже записанные свечи просто обновляются.
+ */
+@Component
+public class CandleGapBackfiller {
+
+    private static final Logger log = LoggerFactory.getLogger(CandleGapBackfiller.class);
+
+    private final MarketDataService marketDataService;
+    private final CandleProcessor candleProcessor;
+    private final StreamingProperties.Candles config;
+    private final TokenBucket rateLimiter;
+    private final Semaphore inFlight;
+    private final ExecutorService backfillExecutor;
+
+    private final AtomicLong backfillRuns = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong candles = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    public CandleGapBackfiller(MarketDataService marketDataService, CandleProcessor candleProcessor,
+            StreamingProperties streamingProperties) {
+        this.marketDataService = marketDataService;
+        this.candleProcessor = candleProcessor;
+        this.config = streamingProperties.getCandles();
+        this.rateLimiter = new TokenBucket(config.getBackfillRequestsPerSecond(),
+            Math.max(1, (int) Math.ceil(config.getBackfillRequestsPerSecond())));
+        this.inFlight = new Semaphore(Math.max(1, config.getBackfillMaxInFlight()));
+        this.backfillExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "candle-backfill");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Дозагрузка свечей по инструментам за период пропуска
+     *
+     * Период расширяется до границ минут и ограничивается stream.candles.backfill-max-gap-minutes
+     * (берутся последние минуты пропуска).
+     *
+     * @param figis инструменты упавшего stream'а
+     * @param gapStart момент падения stream'а
+     * @param gapEnd момент восстановления stream'а
+     * @return количество записанных свечей
+     */
+    public CompletableFuture<Integer> backfill(Collection<String> figis, Instant gapStart, Instant gapEnd) {
+        if (!config.isBackfillEnabled() || figis.isEmpty()) {
+            return CompletableFuture.completedFuture(0);
+        }
+
+        Instant to = gapEnd.truncatedTo(ChronoUnit.MINUTES).plus(1, ChronoUnit.MINUTES);
+        Instant from = gapStart.truncatedTo(ChronoUnit.MINUTES);
+        Instant earliest = to.minus(config.getBackfillMaxGapMinutes(), ChronoUnit.MINUTES);
+        if (from.isBefore(earliest)) {
+            log.warn("⚠️ Candle gap {} → {} exceeds {} minutes, backfilling only the last part",
+                from, to, config.getBackfillMaxGapMinutes());
+            from = earliest;
+        }
+
+        List<String> instruments = new ArrayList<>(figis);
+        Instant rangeFrom = from;
+        backfillRuns.incrementAndGet();
+        log.info("🧩 Backfilling minute candles for {} instruments: {} → {} ({} min)",
+            instruments.size(), rangeFrom, to, Duration.between(rangeFrom, to).toMinutes());
+
+        return CompletableFuture.supplyAsync(() -> runBackfill(instruments, rangeFrom, to), backfillExecutor);
+    }
+
+    private int runBackfill(List<String> instruments, Instant from, Instant to) {
+        long startTime = System.currentTimeMillis();
+        AtomicInteger written = new AtomicInteger();
+        List<CompletableFuture<Void>> futures = new ArrayList<>(instruments.size());
+
+        try {
+            for (String figi : instruments) {
+                rateLimiter.acquire();
+                inFlight.acquire();
+                requests.incrementAndGet();
+
+                CompletableFuture<Void> future;
+                try {
+                    future = marketDataService.getCandles(figi, from, to, CandleInterval.CANDLE_INTERVAL_1_MIN)
+                        .thenAccept(historicCandles -> written.addAndGet(writeCandles(figi, historicCandles)));
+                } catch (Exception e) {
+                    future = CompletableFuture.failedFuture(e);
+                }
+
+                futures.add(future.whenComplete((result, throwable) -> {
+                    inFlight.release();
+                    if (throwable != null) {
+                        errors.incrementAndGet();
+                        log.warn("Failed to backfill candles for {}: {}", figi, throwable.getMessage());
+                    }
+                }).exceptionally(throwable -> null));
+            }
+
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Candle backfill interrupted");
+        }
+
+        log.info("✅ Candle backfill completed: {} candles for {} instruments in {}ms",
+            written.get(), instruments.size(), System.currentTimeMillis() - startTime);
+        return written.get();
+    }
+
+    private int writeCandles(String figi, List<HistoricCandle> historicCandles) {
+        for (HistoricCandle historic : historicCandles) {
+            candleProcessor.handle(Candle.newBuilder()
+                .setFigi(figi)
+                .setInterval(SubscriptionInterval.SUBSCRIPTION_INTERVAL_ONE_MINUTE)
+                .setOpen(historic.getOpen())
+                .setHigh(historic.getHigh())
+                .setLow(historic.getLow())
+                .setClose(historic.getClose())
+                .setVolume(historic.getVolume())
+                .setTime(historic.getTime())
+                .build());
+        }
+        candles.addAndGet(historicCandles.size());
+        return historicCandles.size();
+    }
+
+    /**
+     * Статистика дозагрузки
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", config.isBackfillEnabled());
+        stats.put("runs", backfillRuns.get());
+        stats.put("requests", requests.get());
+        stats.put("candles", candles.get());
+        stats.put("errors", errors.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        backfillExecutor.shutdownNow();
+        try {
+            backfillExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
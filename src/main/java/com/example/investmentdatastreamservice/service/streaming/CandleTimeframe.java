@@ -0,0 +1,48 @@
+package com.example.investmentdatastreamservice.service.streaming;
+
+/**
+ * Интервал свечей, собираемых {@link TickCandleAggregator}
+ *
+ * Границы интервалов выровнены по epoch: для интервалов до часа включительно они
+ * совпадают с границами по московскому времени (смещение UTC+3 кратно часу).
+ */
+public enum CandleTimeframe {
+    M1("1m", 60),
+    M5("5m", 300),
+    M15("15m", 900),
+    H1("1h", 3_600);
+
+    private final String code;
+    private final int seconds;
+
+    CandleTimeframe(String code, int seconds) {
+        this.code = code;
+        this.seconds = seconds;
+    }
+
+    public String getCode() { return code; }
+
+    public int getSeconds() { return seconds; }
+
+    /**
+     * Начало интервала, в который попадает момент
+     *
+     * @param epochSecond момент, секунды epoch
+     * @return начало интервала, секунды epoch
+     */
+    public long bucketStart(long epochSecond) {
+        return Math.floorDiv(epochSecond, seconds) * seconds;
+    }
+
+    /**
+     * Интервал по коду ("1m", "5m", "15m", "1h") или null
+     */
+    public static CandleTimeframe fromCode(String code) {
+        for (CandleTimeframe timeframe : values()) {
+            if (timeframe.code.equalsIgnoreCase(code)) {
+                return timeframe;
+            }
+        }
+        return null;
+    }
+}
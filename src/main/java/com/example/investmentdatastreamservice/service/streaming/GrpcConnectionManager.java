@@ -92,9 +92,6 @@ public class GrpcConnectionManager {
                 requestObserver.set(requestObs);
                 isConnected.set(true);
                 
-                // Сброс задержки переподключения при успешном подключении
-                currentReconnectDelay = INITIAL_RECONNECT_DELAY_MS;
-                
                 log.info("Successfully connected to T-Invest API");
                 
             } catch (Exception e) {
@@ -152,25 +149,36 @@ public class GrpcConnectionManager {
     /**
      * Планирование переподключения с экспоненциальной задержкой
      * 
+     * Каждая следующая попытка выполняется с увеличенной задержкой, в том числе если
+     * stream снова падает сразу после успешного переподключения. Задержка
+     * сбрасывается {@link #resetReconnectDelay()}, когда stream начинает отдавать данные.
+     * 
      * @param callback функция для выполнения при переподключении
      */
     public void scheduleReconnect(Runnable callback) {
         if (!isConnected.get()) {
-            log.info("Scheduling reconnect in {}ms", currentReconnectDelay);
+            int delay = currentReconnectDelay;
+            increaseReconnectDelay();
+            log.info("Scheduling reconnect in {}ms", delay);
             
             reconnectScheduler.schedule(() -> {
                 try {
                     callback.run();
                 } catch (Exception e) {
                     log.error("Error during reconnect callback", e);
-                    // Увеличиваем задержку при ошибке
-                    increaseReconnectDelay();
                     scheduleReconnect(callback);
                 }
-            }, currentReconnectDelay, TimeUnit.MILLISECONDS);
+            }, delay, TimeUnit.MILLISECONDS);
         }
     }
     
+    /**
+     * Сброс задержки переподключения (stream работает)
+     */
+    public void resetReconnectDelay() {
+        currentReconnectDelay = INITIAL_RECONNECT_DELAY_MS;
+    }
+    
     /**
      * Увеличение задержки переподключения
      */
@@ -181,6 +189,13 @@ public class GrpcConnectionManager {
         );
     }
     
+    /**
+     * Отметка о закрытии stream'а со стороны сервера (ошибка или завершение)
+     */
+    public void markDisconnected() {
+        isConnected.set(false);
+    }
+    
     /**
      * Проверка состояния подключения
      */
@@ -0,0 +1,111 @@
+package com.example.investmentdatastreamservice.service.streaming;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.example.investmentdatastreamservice.config.StreamingProperties;
+import com.example.investmentdatastreamservice.service.streaming.impl.MinuteCandleStreamingService;
+import com.example.investmentdatastreamservice.service.streaming.impl.SharedLastPriceStream;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Периодическая синхронизация подписок с набором инструментов в БД
+ *
+ * Раз в stream.universe.refresh-interval-ms сравнивает инструменты из БД с текущими
+ * подписками общего потока LastPrice и потока минутных свечей: новые листинги
+ * подписываются, истекшие фьючерсы и исключенные инструменты отписываются,
+ * недозаполненные stream'ы уплотняются. Работающие stream'ы не перезапускаются.
+ *
+ * Синхронизация выполняется собственным потоком: ожидание лимита запросов подписки
+ * не задерживает задачи Spring Scheduler.
+ */
+@Component
+public class InstrumentUniverseRefresher {
+
+    private static final Logger log = LoggerFactory.getLogger(InstrumentUniverseRefresher.class);
+
+    private final SharedLastPriceStream sharedLastPriceStream;
+    private final MinuteCandleStreamingService candleStreamingService;
+    private final StreamingProperties.Universe config;
+    private final ScheduledExecutorService refreshScheduler;
+
+    private final Map<String, UniverseSyncResult> lastResults = new ConcurrentHashMap<>();
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private volatile Instant lastRunAt;
+
+    public InstrumentUniverseRefresher(SharedLastPriceStream sharedLastPriceStream,
+            MinuteCandleStreamingService candleStreamingService, StreamingProperties streamingProperties) {
+        this.sharedLastPriceStream = sharedLastPriceStream;
+        this.candleStreamingService = candleStreamingService;
+        this.config = streamingProperties.getUniverse();
+        this.refreshScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "instrument-universe-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+
+        if (config.isRefreshEnabled()) {
+            long interval = Math.max(1_000, config.getRefreshIntervalMs());
+            refreshScheduler.scheduleWithFixedDelay(this::refresh, interval, interval, TimeUnit.MILLISECONDS);
+            log.info("Instrument universe refresh scheduled every {}ms", interval);
+        }
+    }
+
+    /**
+     * Синхронизация всех потоков (поток планировщика)
+     */
+    private void refresh() {
+        runs.incrementAndGet();
+        lastRunAt = Instant.now();
+        sync("lastprice", sharedLastPriceStream::syncInstruments);
+        sync("candle", candleStreamingService::syncInstruments);
+    }
+
+    private void sync(String stream, Supplier<CompletableFuture<UniverseSyncResult>> action) {
+        try {
+            UniverseSyncResult result = action.get().join();
+            lastResults.put(stream, result);
+            if (result.hasChanges()) {
+                log.info("🔄 [{}] Instrument universe synced: +{} / -{}, {} relocated, {} streams closed, {} streams open",
+                    stream, result.added(), result.removed(), result.relocated(), result.closedStreams(),
+                    result.streams());
+            }
+        } catch (Exception e) {
+            errors.incrementAndGet();
+            log.error("❌ [{}] Instrument universe sync failed", stream, e);
+        }
+    }
+
+    /**
+     * Статистика синхронизации
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", config.isRefreshEnabled());
+        stats.put("intervalMs", config.getRefreshIntervalMs());
+        stats.put("runs", runs.get());
+        stats.put("errors", errors.get());
+        stats.put("lastRunAt", lastRunAt != null ? lastRunAt.toString() : null);
+        stats.put("lastResults", Map.copyOf(lastResults));
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshScheduler.shutdownNow();
+    }
+}
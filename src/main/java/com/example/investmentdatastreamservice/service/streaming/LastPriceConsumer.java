@@ -0,0 +1,28 @@
+package com.example.investmentdatastreamservice.service.streaming;
+
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+
+/**
+ * Потребитель цен последних сделок из общего потока LastPrice
+ *
+ * Регистрируется в {@link LastPriceDispatcher} и получает каждую декодированную
+ * сделку общего gRPC потока. Вызывается в единственном потоке-потребителе кольцевого
+ * буфера (gRPC потоки только публикуют сделки в буфер), последовательно для всех
+ * потребителей. Блокировка реализации задерживает раздачу сделок остальным
+ * потребителям, буфер заполняется, и новые сделки отбрасываются: тяжелую работу
+ * следует передавать в собственные очереди.
+ */
+public interface LastPriceConsumer {
+
+    /**
+     * Имя потребителя (для логирования и метрик)
+     */
+    String getConsumerName();
+
+    /**
+     * Обработка сделки
+     *
+     * @param lastPrice цена последней сделки
+     */
+    void onLastPrice(LastPrice lastPrice);
+}
@@ -0,0 +1,84 @@
+package com.example.investmentdatastreamservice.service.streaming;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+
+/**
+ * Внутрипроцессная шина раздачи цен последних сделок
+ *
+ * Один общий поток LastPrice декодирует каждую сделку один раз и через эту шину
+ * раздает ее всем зарегистрированным потребителям (сохранение в БД, мониторинг
+ * лимитов и т.д.). Ошибка одного потребителя не влияет на остальных.
+ */
+@Component
+public class LastPriceDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(LastPriceDispatcher.class);
+
+    private final List<LastPriceConsumer> consumers = new CopyOnWriteArrayList<>();
+    private final StreamingMetrics metrics = new StreamingMetrics("LastPriceDispatcher");
+
+    /**
+     * Регистрация потребителя (повторная регистрация игнорируется)
+     */
+    public void register(LastPriceConsumer consumer) {
+        if (consumers.addIfAbsent(consumer)) {
+            log.info("➕ LastPrice consumer registered: {} (total: {})",
+                consumer.getConsumerName(), consumers.size());
+        }
+    }
+
+    /**
+     * Отмена регистрации потребителя
+     */
+    public void unregister(LastPriceConsumer consumer) {
+        if (consumers.remove(consumer)) {
+            log.info("➖ LastPrice consumer unregistered: {} (total: {})",
+                consumer.getConsumerName(), consumers.size());
+        }
+    }
+
+    /**
+     * Раздача сделки всем потребителям
+     */
+    public void dispatch(LastPrice lastPrice) {
+        metrics.incrementReceived();
+        boolean failed = false;
+        for (LastPriceConsumer consumer : consumers) {
+            try {
+                consumer.onLastPrice(lastPrice);
+            } catch (Exception e) {
+                failed = true;
+                log.error("Error dispatching LastPrice {} to consumer {}",
+                    lastPrice.getFigi(), consumer.getConsumerName(), e);
+            }
+        }
+        if (failed) {
+            metrics.incrementErrors();
+        } else {
+            metrics.incrementProcessed();
+        }
+    }
+
+    public boolean hasConsumers() {
+        return !consumers.isEmpty();
+    }
+
+    public int getConsumerCount() {
+        return consumers.size();
+    }
+
+    public List<String> getConsumerNames() {
+        return consumers.stream().map(LastPriceConsumer::getConsumerName).toList();
+    }
+
+    public StreamingMetrics getMetrics() {
+        return metrics;
+    }
+}
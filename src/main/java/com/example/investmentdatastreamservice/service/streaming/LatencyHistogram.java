@@ -0,0 +1,145 @@
+package com.example.investmentdatastreamservice.service.streaming;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Гистограмма задержек этапа обработки на базе HdrHistogram
+ *
+ * Запись выполняется без блокировок через {@link Recorder} и безопасна из любого
+ * числа потоков. При чтении накопленные с прошлого чтения значения переносятся
+ * в гистограмму за все время и в текущий 10-секундный срез; окно "recent"
+ * объединяет срезы за последнюю минуту.
+ *
+ * Значения хранятся в микросекундах с точностью 2 значащих цифры (1%),
+ * задержки больше часа записываются как час.
+ */
+public class LatencyHistogram {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1);
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    private static final long SLICE_MS = 10_000;
+    private static final int SLICES = 6;
+    // Снимок переиспользуется, чтобы частые чтения (REST, Prometheus) не пересчитывали перцентили
+    private static final long SNAPSHOT_TTL_MS = 1_000;
+
+    /**
+     * Перцентили задержки в микросекундах
+     */
+    public record Snapshot(long count, double meanMicros, long p50Micros, long p90Micros,
+                           long p99Micros, long p999Micros, long maxMicros) {
+
+        static final Snapshot EMPTY = new Snapshot(0, 0.0, 0, 0, 0, 0, 0);
+
+        static Snapshot of(Histogram histogram) {
+            if (histogram.getTotalCount() == 0) {
+                return EMPTY;
+            }
+            return new Snapshot(
+                histogram.getTotalCount(),
+                histogram.getMean(),
+                histogram.getValueAtPercentile(50.0),
+                histogram.getValueAtPercentile(90.0),
+                histogram.getValueAtPercentile(99.0),
+                histogram.getValueAtPercentile(99.9),
+                histogram.getMaxValue());
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("count", count);
+            map.put("meanMicros", Math.round(meanMicros));
+            map.put("p50Micros", p50Micros);
+            map.put("p90Micros", p90Micros);
+            map.put("p99Micros", p99Micros);
+            map.put("p999Micros", p999Micros);
+            map.put("maxMicros", maxMicros);
+            return map;
+        }
+    }
+
+    private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+
+    // Состояние чтения - защищено монитором this
+    private final Histogram total = newHistogram();
+    private final Histogram[] slices = new Histogram[SLICES];
+    private final Histogram window = newHistogram();
+    private Histogram interval;
+    private long currentSliceStartMs;
+    private int currentSlice;
+    private long snapshotAtMs;
+    private Snapshot recentSnapshot = Snapshot.EMPTY;
+    private Snapshot totalSnapshot = Snapshot.EMPTY;
+
+    public LatencyHistogram() {
+        for (int i = 0; i < SLICES; i++) {
+            slices[i] = newHistogram();
+        }
+        currentSliceStartMs = System.currentTimeMillis();
+    }
+
+    private static Histogram newHistogram() {
+        return new Histogram(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+    }
+
+    /**
+     * Запись задержки в микросекундах (отрицательные значения - расхождение часов - считаются нулем)
+     */
+    public void recordMicros(long micros) {
+        recorder.recordValue(Math.min(Math.max(micros, 0L), HIGHEST_TRACKABLE_MICROS));
+    }
+
+    public void recordNanos(long nanos) {
+        recordMicros(nanos / 1_000);
+    }
+
+    /**
+     * Перцентили за последнюю минуту
+     */
+    public synchronized Snapshot getRecent() {
+        refresh();
+        return recentSnapshot;
+    }
+
+    /**
+     * Перцентили за все время работы
+     */
+    public synchronized Snapshot getTotal() {
+        refresh();
+        return totalSnapshot;
+    }
+
+    private void refresh() {
+        long now = System.currentTimeMillis();
+        if (now - snapshotAtMs < SNAPSHOT_TTL_MS) {
+            return;
+        }
+        snapshotAtMs = now;
+
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+
+        // Сдвиг срезов: устаревшие срезы очищаются
+        long elapsedSlices = (now - currentSliceStartMs) / SLICE_MS;
+        if (elapsedSlices > 0) {
+            for (int i = 0; i < Math.min(elapsedSlices, SLICES); i++) {
+                currentSlice = (currentSlice + 1) % SLICES;
+                slices[currentSlice].reset();
+            }
+            currentSliceStartMs += elapsedSlices * SLICE_MS;
+        }
+        slices[currentSlice].add(interval);
+
+        window.reset();
+        for (Histogram slice : slices) {
+            window.add(slice);
+        }
+        recentSnapshot = Snapshot.of(window);
+        totalSnapshot = Snapshot.of(total);
+    }
+}
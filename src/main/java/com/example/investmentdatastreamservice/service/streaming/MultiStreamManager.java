@@ -2,20 +2,21 @@ package com.example.investmentdatastreamservice.service.streaming;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import io.grpc.ClientInterceptor;
-import io.grpc.ForwardingClientCall;
+import com.example.investmentdatastreamservice.config.GrpcChannelFactory;
+
 import io.grpc.ManagedChannel;
-import io.grpc.ManagedChannelBuilder;
-import io.grpc.Metadata;
 import io.grpc.stub.StreamObserver;
 import ru.tinkoff.piapi.contract.v1.MarketDataRequest;
 import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
@@ -25,23 +26,57 @@ import ru.tinkoff.piapi.contract.v1.MarketDataStreamServiceGrpc;
  * Менеджер множественных stream-соединений для обхода API лимита в 300 подписок
  * 
  * Управляет несколькими GrpcConnectionManager'ами, каждый из которых
- * обрабатывает свой батч инструментов (до 250 на stream).
+ * обрабатывает свой батч инструментов (до 300 подписок на stream).
+ * 
+ * Ошибка или завершение одного stream'а не затрагивает остальные: переподключается
+ * только упавшее соединение (с экспоненциальной задержкой
+ * {@link GrpcConnectionManager#scheduleReconnect(Runnable)}), после чего
+ * {@link StreamListener} получает уведомление и восстанавливает его подписки.
+ * 
+ * У каждого stream'а свой ManagedChannel; он закрывается вместе со stream'ом
+ * в {@link #closeLastStream()} и {@link #disconnectAll()}.
  */
 public class MultiStreamManager {
     
     private static final Logger log = LoggerFactory.getLogger(MultiStreamManager.class);
     
+    private static final long CHANNEL_SHUTDOWN_TIMEOUT_SECONDS = 5;
+    
+    /**
+     * Уведомления о состоянии отдельных stream'ов
+     */
+    public interface StreamListener {
+        
+        /**
+         * Stream упал (ошибка или завершение со стороны сервера)
+         */
+        void onStreamDown(int streamIndex, Throwable error);
+        
+        /**
+         * Stream переподключен, подписки нужно отправить заново
+         */
+        void onStreamRestored(int streamIndex);
+    }
+    
+    private final GrpcChannelFactory channelFactory;
+    private final SubscriptionRequestScheduler requestScheduler;
     private final String token;
     private final List<GrpcConnectionManager> connectionManagers;
+    private final Map<GrpcConnectionManager, ManagedChannel> channels = new ConcurrentHashMap<>();
     private final AtomicBoolean isRunning = new AtomicBoolean(false);
     private final AtomicInteger activeConnections = new AtomicInteger(0);
     
     /**
      * Общий observer для всех stream'ов
      */
-    private StreamObserver<MarketDataResponse> sharedResponseObserver;
+    private volatile StreamObserver<MarketDataResponse> sharedResponseObserver;
+    
+    private volatile StreamListener streamListener;
     
-    public MultiStreamManager(String token, int expectedBatchCount) {
+    public MultiStreamManager(GrpcChannelFactory channelFactory, SubscriptionRequestScheduler requestScheduler,
+            String token, int expectedBatchCount) {
+        this.channelFactory = channelFactory;
+        this.requestScheduler = requestScheduler;
         this.token = token;
         this.connectionManagers = new CopyOnWriteArrayList<>();
         
@@ -56,6 +91,13 @@ public class MultiStreamManager {
         log.info("Shared response observer set for all streams");
     }
     
+    /**
+     * Устанавливает слушатель падений и восстановлений отдельных stream'ов
+     */
+    public void setStreamListener(StreamListener listener) {
+        this.streamListener = listener;
+    }
+    
     /**
      * Создает новое stream-соединение для батча
      * 
@@ -63,39 +105,8 @@ public class MultiStreamManager {
      * @return новый GrpcConnectionManager
      */
     public GrpcConnectionManager createStreamForBatch(int batchIndex) {
-        // Создаем auth interceptor для токена
-        ClientInterceptor authInterceptor = new ClientInterceptor() {
-            @Override
-            public <ReqT, RespT> io.grpc.ClientCall<ReqT, RespT> interceptCall(
-                    io.grpc.MethodDescriptor<ReqT, RespT> method, 
-                    io.grpc.CallOptions callOptions,
-                    io.grpc.Channel next) {
-                return new ForwardingClientCall.SimpleForwardingClientCall<>(
-                        next.newCall(method, callOptions)) {
-                    @Override
-                    public void start(Listener<RespT> responseListener, Metadata headers) {
-                        headers.put(
-                                Metadata.Key.of("Authorization", Metadata.ASCII_STRING_MARSHALLER),
-                                "Bearer " + token);
-                        super.start(responseListener, headers);
-                    }
-                };
-            }
-        };
-        
         // Создаем новый channel для этого stream
-        ManagedChannel channel = ManagedChannelBuilder
-            .forAddress("invest-public-api.tinkoff.ru", 443)
-            .useTransportSecurity()
-            .intercept(authInterceptor)
-            .keepAliveTime(30, TimeUnit.SECONDS)
-            .keepAliveTimeout(5, TimeUnit.SECONDS)
-            .keepAliveWithoutCalls(true)
-            .maxInboundMessageSize(4 * 1024 * 1024) // 4MB
-            .maxInboundMetadataSize(8 * 1024) // 8KB
-            .enableRetry()
-            .maxRetryAttempts(3)
-            .build();
+        ManagedChannel channel = channelFactory.createChannel(token);
         
         // Создаем stub для этого channel
         MarketDataStreamServiceGrpc.MarketDataStreamServiceStub stub = 
@@ -103,11 +114,9 @@ public class MultiStreamManager {
         
         // Создаем connection manager с этим stub
         GrpcConnectionManager manager = new GrpcConnectionManager(stub);
+        manager.setResponseObserver(new StreamResponseObserver(batchIndex, manager));
         
-        if (sharedResponseObserver != null) {
-            manager.setResponseObserver(sharedResponseObserver);
-        }
-        
+        channels.put(manager, channel);
         connectionManagers.add(manager);
         
         log.info("Created stream connection #{} (total connections: {})", 
@@ -116,6 +125,84 @@ public class MultiStreamManager {
         return manager;
     }
     
+    /**
+     * Observer отдельного stream'а: данные передает общему observer'у,
+     * падение stream'а обрабатывает переподключением только этого соединения
+     */
+    private final class StreamResponseObserver implements StreamObserver<MarketDataResponse> {
+        
+        private final int streamIndex;
+        private final GrpcConnectionManager manager;
+        private volatile boolean recovering;
+        
+        StreamResponseObserver(int streamIndex, GrpcConnectionManager manager) {
+            this.streamIndex = streamIndex;
+            this.manager = manager;
+        }
+        
+        @Override
+        public void onNext(MarketDataResponse response) {
+            if (recovering) {
+                // Stream снова отдает данные - сбрасываем задержку переподключения
+                recovering = false;
+                manager.resetReconnectDelay();
+            }
+            StreamObserver<MarketDataResponse> observer = sharedResponseObserver;
+            if (observer != null) {
+                observer.onNext(response);
+            }
+        }
+        
+        @Override
+        public void onError(Throwable t) {
+            StreamObserver<MarketDataResponse> observer = sharedResponseObserver;
+            if (observer != null) {
+                observer.onError(t);
+            }
+            handleStreamDown(t);
+        }
+        
+        @Override
+        public void onCompleted() {
+            StreamObserver<MarketDataResponse> observer = sharedResponseObserver;
+            if (observer != null) {
+                observer.onCompleted();
+            }
+            handleStreamDown(null);
+        }
+        
+        private void handleStreamDown(Throwable error) {
+            manager.markDisconnected();
+            if (!isRunning.get() || !connectionManagers.contains(manager)) {
+                return;
+            }
+            log.warn("Stream connection #{} is down ({}), other streams are not affected",
+                streamIndex + 1, error != null ? error.getMessage() : "completed by server");
+            StreamListener listener = streamListener;
+            if (listener != null) {
+                listener.onStreamDown(streamIndex, error);
+            }
+            manager.scheduleReconnect(this::reconnect);
+        }
+        
+        /**
+         * Переподключение stream'а (выполняется планировщиком GrpcConnectionManager,
+         * исключение приводит к повтору с увеличенной задержкой)
+         */
+        private void reconnect() {
+            if (!isRunning.get() || !connectionManagers.contains(manager)) {
+                return;
+            }
+            manager.forceReconnect().join();
+            recovering = true;
+            log.info("Stream connection #{} re-established", streamIndex + 1);
+            StreamListener listener = streamListener;
+            if (listener != null) {
+                listener.onStreamRestored(streamIndex);
+            }
+        }
+    }
+    
     /**
      * Подключает все stream'ы
      */
@@ -158,14 +245,13 @@ public class MultiStreamManager {
     /**
      * Отправляет запрос на подписку через указанный stream
      * 
+     * Запрос ставится в очередь {@link SubscriptionRequestScheduler} и отправляется,
+     * когда это позволяет лимит API; вызывающий поток не блокируется.
+     * 
      * @param batchIndex индекс батча
      * @param request запрос на подписку
-     * @param delayMs задержка перед отправкой (для rate limiting)
      */
-    public CompletableFuture<Void> sendBatchSubscription(
-            int batchIndex, 
-            MarketDataRequest request,
-            long delayMs) {
+    public CompletableFuture<Void> sendBatchSubscription(int batchIndex, MarketDataRequest request) {
         
         if (batchIndex < 0 || batchIndex >= connectionManagers.size()) {
             return CompletableFuture.failedFuture(
@@ -173,30 +259,99 @@ public class MultiStreamManager {
         }
         
         GrpcConnectionManager manager = connectionManagers.get(batchIndex);
+        String description = String.format("%s %d instruments on stream %d/%d",
+            describeAction(request), countInstruments(request), batchIndex + 1, connectionManagers.size());
         
-        if (delayMs > 0) {
-            log.info("Waiting {}ms before subscribing batch {}/{} (rate limiting)...", 
-                delayMs, batchIndex + 1, connectionManagers.size());
-            
-            return CompletableFuture.runAsync(() -> {
-                try {
-                    TimeUnit.MILLISECONDS.sleep(delayMs);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    log.warn("Interrupted while waiting to send batch subscription");
-                }
-            }).thenCompose(v -> {
-                log.info("Subscribing batch {}/{} ({} instruments)", 
-                    batchIndex + 1, connectionManagers.size(), 
-                    request.getSubscribeLastPriceRequest().getInstrumentsCount());
-                return manager.sendRequest(request);
-            });
-        } else {
-            log.info("Subscribing batch {}/{} ({} instruments)", 
-                batchIndex + 1, connectionManagers.size(), 
-                request.getSubscribeLastPriceRequest().getInstrumentsCount());
+        return requestScheduler.submit(description, () -> {
+            log.info("Sending subscription: {}", description);
             return manager.sendRequest(request);
+        });
+    }
+    
+    /**
+     * Открывает дополнительный stream (при добавлении инструментов сверх емкости текущих)
+     * 
+     * @return индекс нового stream'а после подключения
+     */
+    public CompletableFuture<Integer> openStream() {
+        int streamIndex = connectionManagers.size();
+        GrpcConnectionManager manager = createStreamForBatch(streamIndex);
+        return manager.connect()
+            .thenApply(v -> {
+                activeConnections.incrementAndGet();
+                log.info("Additional stream connection #{} established", streamIndex + 1);
+                return streamIndex;
+            });
+    }
+    
+    /**
+     * Отправляет запросы по плану распределения инструментов
+     * 
+     * Недостающие stream'ы (индексы плана за пределами открытых) открываются по порядку.
+     * Вызывающий код отвечает за то, чтобы планы не применялись параллельно.
+     * 
+     * @param plan инструменты по индексам stream'ов
+     * @param requestFactory построение запроса (SUBSCRIBE/UNSUBSCRIBE) для списка инструментов
+     */
+    public CompletableFuture<Void> applySubscriptionPlan(Map<Integer, List<String>> plan,
+            Function<List<String>, MarketDataRequest> requestFactory) {
+        if (plan.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        int requiredStreams = plan.keySet().stream().mapToInt(index -> index + 1).max().orElse(0);
+        CompletableFuture<?> streamsReady = CompletableFuture.completedFuture(null);
+        for (int i = connectionManagers.size(); i < requiredStreams; i++) {
+            streamsReady = streamsReady.thenCompose(v -> openStream());
+        }
+        
+        return streamsReady.thenCompose(v -> CompletableFuture.allOf(plan.entrySet().stream()
+            .map(entry -> sendBatchSubscription(entry.getKey(), requestFactory.apply(entry.getValue())))
+            .toArray(CompletableFuture[]::new)));
+    }
+    
+    /**
+     * Закрывает последний stream (после переноса его инструментов в другие stream'ы)
+     * 
+     * Закрывается только последний stream, поэтому индексы остальных не меняются.
+     */
+    public CompletableFuture<Void> closeLastStream() {
+        if (connectionManagers.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        int streamIndex = connectionManagers.size() - 1;
+        // Удаляем до отключения: завершение stream'а не должно запускать переподключение
+        GrpcConnectionManager manager = connectionManagers.remove(streamIndex);
+        if (manager.isConnected()) {
+            activeConnections.decrementAndGet();
+        }
+        ManagedChannel channel = channels.remove(manager);
+        return CompletableFuture.runAsync(() -> {
+                manager.shutdown();
+                shutdownChannel(channel);
+            })
+            .thenRun(() -> log.info("Stream connection #{} closed (total connections: {})",
+                streamIndex + 1, connectionManagers.size()));
+    }
+    
+    private static String describeAction(MarketDataRequest request) {
+        if (request.hasSubscribeLastPriceRequest()) {
+            return "LastPrice " + request.getSubscribeLastPriceRequest().getSubscriptionAction();
+        }
+        if (request.hasSubscribeCandlesRequest()) {
+            return "Candles " + request.getSubscribeCandlesRequest().getSubscriptionAction();
+        }
+        return request.getPayloadCase().toString();
+    }
+    
+    private static int countInstruments(MarketDataRequest request) {
+        if (request.hasSubscribeLastPriceRequest()) {
+            return request.getSubscribeLastPriceRequest().getInstrumentsCount();
+        }
+        if (request.hasSubscribeCandlesRequest()) {
+            return request.getSubscribeCandlesRequest().getInstrumentsCount();
         }
+        return 0;
     }
     
     /**
@@ -211,8 +366,9 @@ public class MultiStreamManager {
         isRunning.set(false);
         
         List<CompletableFuture<Void>> futures = new ArrayList<>();
+        List<GrpcConnectionManager> managers = List.copyOf(connectionManagers);
         
-        for (GrpcConnectionManager manager : connectionManagers) {
+        for (GrpcConnectionManager manager : managers) {
             futures.add(manager.disconnect()
                 .exceptionally(throwable -> {
                     log.warn("Error disconnecting stream: {}", throwable.getMessage());
@@ -220,29 +376,37 @@ public class MultiStreamManager {
                 }));
         }
         
+        // Не в потоке менеджера: shutdown() дожидается завершения его executor'ов
         return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
-            .thenRun(() -> {
+            .thenRunAsync(() -> {
                 activeConnections.set(0);
-                connectionManagers.clear();
+                connectionManagers.removeAll(managers);
+                for (GrpcConnectionManager manager : managers) {
+                    manager.shutdown();
+                    shutdownChannel(channels.remove(manager));
+                }
                 log.info("All stream connections disconnected");
             });
     }
     
     /**
-     * Принудительное переподключение всех stream'ов
+     * Закрывает канал stream'а, дожидаясь завершения вызовов
      */
-    public CompletableFuture<Void> forceReconnectAll() {
-        log.info("Force reconnecting all streams...");
-        
-        return disconnectAll()
-            .thenCompose(v -> connectAll())
-            .whenComplete((result, throwable) -> {
-                if (throwable != null) {
-                    log.error("Failed to force reconnect all streams", throwable);
-                } else {
-                    log.info("All streams reconnected successfully");
-                }
-            });
+    private void shutdownChannel(ManagedChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        channel.shutdown();
+        try {
+            if (!channel.awaitTermination(CHANNEL_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Stream channel did not terminate in {} s, forcing shutdown",
+                    CHANNEL_SHUTDOWN_TIMEOUT_SECONDS);
+                channel.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            channel.shutdownNow();
+        }
     }
     
     /**
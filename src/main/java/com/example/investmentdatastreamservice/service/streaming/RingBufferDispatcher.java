@@ -0,0 +1,261 @@
+package com.example.investmentdatastreamservice.service.streaming;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Кольцевой буфер передачи событий от gRPC потоков к обработчику
+ *
+ * Заменяет цепочку CompletableFuture.runAsync + executor на пути каждого тика:
+ * - массив слотов выделяется один раз при создании, на публикацию не создается объектов;
+ * - производители (потоки gRPC соединений) занимают слоты через CAS по общему счетчику;
+ * - единственный поток-потребитель забирает все опубликованные события пачкой
+ *   (до maxBatch) и сдвигает курсор один раз на пачку.
+ *
+ * Если буфер заполнен, событие отбрасывается (rejected) - gRPC поток никогда не блокируется.
+ * Заполненность буфера и число отказов доступны как метрики.
+ *
+ * Для каждого слота запоминается момент публикации, поэтому обработчик может узнать
+ * время, прошедшее с получения события ({@link #getCurrentEventAgeNanos()}).
+ *
+ * @param <T> тип событий
+ */
+public class RingBufferDispatcher<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(RingBufferDispatcher.class);
+
+    private static final int SPIN_TRIES = 100;
+    private static final long IDLE_PARK_NANOS = 50_000; // 50 мкс
+
+    private final String name;
+    private final int capacity;
+    private final int mask;
+    private final int maxBatch;
+    private final AtomicReferenceArray<T> slots;
+    // Номер последовательности, опубликованной в слоте (-1 - слот не опубликован)
+    private final AtomicLongArray published;
+    // Момент публикации события в слоте (System.nanoTime()); видимость - через запись published
+    private final long[] publishedAtNanos;
+    private final Consumer<T> handler;
+
+    // Последняя занятая производителями последовательность
+    private final AtomicLong claimSequence = new AtomicLong(-1);
+    // Последняя обработанная потребителем последовательность
+    private final AtomicLong consumerSequence = new AtomicLong(-1);
+
+    private final AtomicBoolean isRunning = new AtomicBoolean(false);
+    private Thread consumerThread;
+    // Момент публикации события, обрабатываемого сейчас (читается только потоком-потребителем)
+    private long currentEventPublishedAtNanos;
+
+    // Метрики
+    private final AtomicLong publishedCount = new AtomicLong(0);
+    private final AtomicLong rejectedCount = new AtomicLong(0);
+    private final AtomicLong consumedCount = new AtomicLong(0);
+    private final AtomicLong handlerErrors = new AtomicLong(0);
+    private final AtomicLong batchCount = new AtomicLong(0);
+    private volatile int maxFillObserved = 0;
+
+    /**
+     * @param name имя буфера (для логирования и имени потока)
+     * @param requestedCapacity емкость, округляется вверх до степени двойки
+     * @param maxBatch максимальное число событий, обрабатываемых за один проход
+     * @param handler обработчик события (вызывается из потока-потребителя)
+     */
+    public RingBufferDispatcher(String name, int requestedCapacity, int maxBatch, Consumer<T> handler) {
+        if (requestedCapacity <= 0 || maxBatch <= 0) {
+            throw new IllegalArgumentException(String.format(
+                "Invalid ring buffer configuration for %s: capacity=%d, maxBatch=%d",
+                name, requestedCapacity, maxBatch));
+        }
+        this.name = name;
+        this.capacity = requestedCapacity == 1 ? 1 : Integer.highestOneBit(requestedCapacity - 1) << 1;
+        this.mask = capacity - 1;
+        this.maxBatch = maxBatch;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.published = new AtomicLongArray(capacity);
+        this.publishedAtNanos = new long[capacity];
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+        this.handler = handler;
+    }
+
+    /**
+     * Запуск потока-потребителя
+     */
+    public void start() {
+        if (!isRunning.compareAndSet(false, true)) {
+            return;
+        }
+        consumerThread = new Thread(this::runConsumerLoop, name + "-ring-consumer");
+        consumerThread.setDaemon(true);
+        consumerThread.start();
+        log.info("RingBufferDispatcher[{}] started: capacity={}, maxBatch={}", name, capacity, maxBatch);
+    }
+
+    /**
+     * Публикация события без блокировки
+     *
+     * @return false, если буфер заполнен и событие отброшено
+     */
+    public boolean publish(T event) {
+        long sequence;
+        while (true) {
+            long current = claimSequence.get();
+            sequence = current + 1;
+            if (sequence - consumerSequence.get() > capacity) {
+                rejectedCount.incrementAndGet();
+                return false;
+            }
+            if (claimSequence.compareAndSet(current, sequence)) {
+                break;
+            }
+        }
+
+        int index = (int) (sequence & mask);
+        slots.lazySet(index, event);
+        publishedAtNanos[index] = System.nanoTime();
+        // Публикация номера последовательности делает слот видимым потребителю
+        published.set(index, sequence);
+        publishedCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Цикл потребителя: забирает подряд опубликованные события пачкой
+     */
+    private void runConsumerLoop() {
+        int idleSpins = 0;
+
+        while (isRunning.get() || hasPending()) {
+            long next = consumerSequence.get() + 1;
+            long batchEnd = next - 1;
+
+            int batchSize = 0;
+            while (batchSize < maxBatch) {
+                long sequence = next + batchSize;
+                int index = (int) (sequence & mask);
+                if (published.get(index) != sequence) {
+                    break;
+                }
+                T event = slots.get(index);
+                slots.lazySet(index, null);
+                currentEventPublishedAtNanos = publishedAtNanos[index];
+                try {
+                    handler.accept(event);
+                } catch (Exception e) {
+                    handlerErrors.incrementAndGet();
+                    log.error("RingBufferDispatcher[{}] handler error", name, e);
+                }
+                batchEnd = sequence;
+                batchSize++;
+            }
+
+            if (batchSize > 0) {
+                int fill = (int) (claimSequence.get() - next + 1);
+                if (fill > maxFillObserved) {
+                    maxFillObserved = fill;
+                }
+                // Освобождаем слоты пачки одной записью курсора
+                consumerSequence.set(batchEnd);
+                consumedCount.addAndGet(batchSize);
+                batchCount.incrementAndGet();
+                idleSpins = 0;
+            } else if (idleSpins < SPIN_TRIES) {
+                idleSpins++;
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Время с момента публикации события, обрабатываемого сейчас
+     *
+     * Имеет смысл только при вызове из обработчика (в потоке-потребителе).
+     */
+    public long getCurrentEventAgeNanos() {
+        return System.nanoTime() - currentEventPublishedAtNanos;
+    }
+
+    private boolean hasPending() {
+        long next = consumerSequence.get() + 1;
+        return published.get((int) (next & mask)) == next;
+    }
+
+    /**
+     * Остановка с обработкой уже опубликованных событий
+     *
+     * @param timeoutMs максимальное время ожидания обработки
+     */
+    public void shutdown(long timeoutMs) {
+        if (!isRunning.compareAndSet(true, false)) {
+            return;
+        }
+        try {
+            consumerThread.join(timeoutMs);
+            if (consumerThread.isAlive()) {
+                consumerThread.interrupt();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("RingBufferDispatcher[{}] shutdown completed: published={}, consumed={}, rejected={}, errors={}",
+            name, publishedCount.get(), consumedCount.get(), rejectedCount.get(), handlerErrors.get());
+    }
+
+    // Getters для метрик
+    public String getName() { return name; }
+    public int getCapacity() { return capacity; }
+    public long getPublishedCount() { return publishedCount.get(); }
+    public long getRejectedCount() { return rejectedCount.get(); }
+    public long getConsumedCount() { return consumedCount.get(); }
+    public long getHandlerErrors() { return handlerErrors.get(); }
+    public long getBatchCount() { return batchCount.get(); }
+    public int getMaxFillObserved() { return maxFillObserved; }
+    public boolean isRunning() { return isRunning.get(); }
+
+    /**
+     * Текущее число событий, ожидающих обработки
+     */
+    public int getFillLevel() {
+        return (int) Math.max(0, claimSequence.get() - consumerSequence.get());
+    }
+
+    public double getFillRatio() {
+        return (double) getFillLevel() / capacity;
+    }
+
+    public double getAverageBatchSize() {
+        long batches = batchCount.get();
+        return batches > 0 ? (double) consumedCount.get() / batches : 0.0;
+    }
+
+    /**
+     * Снимок метрик буфера для REST ответов
+     */
+    public Map<String, Object> getMetricsSnapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("capacity", capacity);
+        snapshot.put("fillLevel", getFillLevel());
+        snapshot.put("fillRatio", getFillRatio());
+        snapshot.put("maxFillObserved", maxFillObserved);
+        snapshot.put("published", publishedCount.get());
+        snapshot.put("consumed", consumedCount.get());
+        snapshot.put("rejected", rejectedCount.get());
+        snapshot.put("handlerErrors", handlerErrors.get());
+        snapshot.put("averageBatchSize", getAverageBatchSize());
+        return snapshot;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.investmentdatastreamservice.service.streaming;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Частота событий в скользящем окне
+ *
+ * События считаются в посекундных ячейках кольцевого массива на 5 минут.
+ * Ячейка, принадлежащая прошедшей секунде, очищается при первой записи в новой
+ * секунде. Частота считается по завершенным секундам, поэтому окно 1s - это
+ * количество событий за предыдущую полную секунду.
+ */
+public class SlidingWindowRate {
+
+    private static final int MAX_WINDOW_SECONDS = 300;
+    // Лишняя ячейка - текущая, еще не завершенная секунда
+    private static final int SECONDS = MAX_WINDOW_SECONDS + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(SECONDS);
+    // Секунда epoch, к которой относится значение ячейки
+    private final AtomicLongArray stamps = new AtomicLongArray(SECONDS);
+
+    public void add(long events) {
+        long second = System.currentTimeMillis() / 1000;
+        int index = (int) (second % SECONDS);
+        long stamp = stamps.get(index);
+        if (stamp != second && stamps.compareAndSet(index, stamp, second)) {
+            // Небольшая гонка со сбросом допустима: метрика приблизительная
+            counts.set(index, 0);
+        }
+        counts.addAndGet(index, events);
+    }
+
+    /**
+     * Средняя частота событий в секунду за последние windowSeconds завершенных секунд
+     */
+    public double getRate(int windowSeconds) {
+        int window = Math.min(Math.max(windowSeconds, 1), MAX_WINDOW_SECONDS);
+        long current = System.currentTimeMillis() / 1000;
+        long sum = 0;
+        for (long second = current - window; second < current; second++) {
+            int index = (int) (second % SECONDS);
+            if (stamps.get(index) == second) {
+                sum += counts.get(index);
+            }
+        }
+        return (double) sum / window;
+    }
+}
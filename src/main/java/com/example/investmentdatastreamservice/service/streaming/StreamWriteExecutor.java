@@ -0,0 +1,205 @@
+package com.example.investmentdatastreamservice.service.streaming;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import com.example.investmentdatastreamservice.config.StreamingProperties;
+import com.zaxxer.hikari.HikariDataSource;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Выполнение записей потоковых данных в БД
+ *
+ * Единая точка, через которую процессоры пишут в пул stream. Число одновременных
+ * записей ограничено разрешениями, которых столько же, сколько соединений в пуле
+ * (stream.writer.max-concurrency, по умолчанию - maximum-pool-size). Поэтому
+ * записи не ждут соединения внутри Hikari. Записи сверх лимита ждут разрешения
+ * в очереди емкостью stream.writer.queue-capacity и отбрасываются только при ее
+ * заполнении.
+ *
+ * В режиме VIRTUAL каждая запись выполняется в отдельном виртуальном потоке:
+ * ожидание разрешения и JDBC не занимают потоки ОС, и отдельное число потоков
+ * настраивать не нужно. В режиме PLATFORM записи выполняет пул из max-concurrency потоков.
+ *
+ * Публикуются глубина очереди, число активных записей и время ожидания соединения.
+ */
+@Component
+public class StreamWriteExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(StreamWriteExecutor.class);
+
+    private static final int DEFAULT_POOL_SIZE = 10;
+    private static final long SHUTDOWN_TIMEOUT_MS = 30_000;
+
+    private final StreamingProperties.WriterMode mode;
+    private final int maxConcurrency;
+    private final int queueCapacity;
+    private final Semaphore permits;
+    private final ExecutorService executor;
+
+    // Метрики
+    private final AtomicInteger queued = new AtomicInteger(0);
+    private final AtomicInteger active = new AtomicInteger(0);
+    private final AtomicLong completed = new AtomicLong(0);
+    private final AtomicLong failed = new AtomicLong(0);
+    private final AtomicLong rejected = new AtomicLong(0);
+    private final LatencyHistogram waitTime = new LatencyHistogram();
+
+    public StreamWriteExecutor(StreamingProperties streamingProperties,
+                               @Qualifier("streamDataSource") DataSource streamDataSource) {
+        StreamingProperties.Writer config = streamingProperties.getWriter();
+        int poolSize = streamDataSource instanceof HikariDataSource hikari
+            ? hikari.getMaximumPoolSize()
+            : DEFAULT_POOL_SIZE;
+
+        this.mode = config.getMode();
+        this.maxConcurrency = config.getMaxConcurrency() > 0 ? config.getMaxConcurrency() : poolSize;
+        this.queueCapacity = Math.max(1, config.getQueueCapacity());
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.executor = mode == StreamingProperties.WriterMode.VIRTUAL
+            ? Executors.newThreadPerTaskExecutor(writerThreadFactory("db-write"))
+            : Executors.newFixedThreadPool(maxConcurrency, writerThreadFactory("db-write"));
+
+        if (maxConcurrency > poolSize) {
+            log.warn("⚠️ stream.writer.max-concurrency={} exceeds stream pool size {}: writes will wait inside Hikari",
+                maxConcurrency, poolSize);
+        }
+        log.info("StreamWriteExecutor initialized: mode={}, maxConcurrency={}, poolSize={}, queueCapacity={}",
+            mode, maxConcurrency, poolSize, queueCapacity);
+    }
+
+    /**
+     * Фабрика потоков записи в режиме исполнителя (виртуальные или платформенные потоки)
+     *
+     * @param name префикс имени потоков
+     */
+    public ThreadFactory writerThreadFactory(String name) {
+        if (mode == StreamingProperties.WriterMode.VIRTUAL) {
+            return Thread.ofVirtual().name(name + "-", 0).factory();
+        }
+        return Thread.ofPlatform().name(name + "-", 0).daemon(true).factory();
+    }
+
+    /**
+     * Асинхронная запись
+     *
+     * @param write запись (выполняется, когда есть свободное соединение)
+     * @return false, если очередь ожидания заполнена и запись отброшена
+     */
+    public boolean submit(Runnable write) {
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            return false;
+        }
+        long enqueuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                try {
+                    runWithPermit(write, enqueuedAt);
+                } catch (Exception e) {
+                    log.error("Unhandled error in DB write: {}", e.getMessage(), e);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * Синхронная запись в текущем потоке (потоки записи буферов)
+     *
+     * Ожидает свободного соединения; исключение записи передается вызывающему коду.
+     */
+    public void execute(Runnable write) {
+        queued.incrementAndGet();
+        runWithPermit(write, System.nanoTime());
+    }
+
+    private void runWithPermit(Runnable write, long enqueuedAt) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            queued.decrementAndGet();
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for DB connection", e);
+        }
+        queued.decrementAndGet();
+        waitTime.recordNanos(System.nanoTime() - enqueuedAt);
+        active.incrementAndGet();
+        try {
+            write.run();
+            completed.incrementAndGet();
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            throw e;
+        } finally {
+            active.decrementAndGet();
+            permits.release();
+        }
+    }
+
+    /**
+     * Статистика выполнения записей
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", mode.name());
+        stats.put("maxConcurrency", maxConcurrency);
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("queued", queued.get());
+        stats.put("active", active.get());
+        stats.put("completed", completed.get());
+        stats.put("failed", failed.get());
+        stats.put("rejected", rejected.get());
+        stats.put("waitTime", waitTime.getRecent().toMap());
+        return stats;
+    }
+
+    /**
+     * Завершение работы: ожидание уже принятых записей
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                log.warn("StreamWriteExecutor stopped with {} queued writes", queued.get());
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+        log.info("StreamWriteExecutor shutdown completed: completed={}, failed={}, rejected={}",
+            completed.get(), failed.get(), rejected.get());
+    }
+
+    // Getters для метрик
+    public StreamingProperties.WriterMode getMode() { return mode; }
+    public int getMaxConcurrency() { return maxConcurrency; }
+    public int getQueuedCount() { return queued.get(); }
+    public int getActiveCount() { return active.get(); }
+    public long getCompletedCount() { return completed.get(); }
+    public long getRejectedCount() { return rejected.get(); }
+    public LatencyHistogram getWaitTime() { return waitTime; }
+}
@@ -0,0 +1,205 @@
+package com.example.investmentdatastreamservice.service.streaming;
+
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+import org.springframework.stereotype.Component;
+
+import com.example.investmentdatastreamservice.service.streaming.impl.MinuteCandleStreamingService;
+import com.example.investmentdatastreamservice.service.streaming.impl.SharedLastPriceStream;
+import com.example.investmentdatastreamservice.service.streaming.processor.CandleProcessor;
+import com.example.investmentdatastreamservice.service.streaming.processor.CandleRollupWriter;
+import com.example.investmentdatastreamservice.service.streaming.processor.LastPriceProcessor;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Публикация метрик потоковых сервисов в Micrometer (Prometheus: /actuator/prometheus)
+ *
+ * Для каждого {@link StreamingMetrics} регистрируются с тегом service:
+ * - stream.events.* - счетчики полученных, обработанных, ошибочных и отброшенных событий;
+ * - stream.events.rate - частота событий в окнах 1s/1m/5m;
+ * - stream.latency - перцентили задержек этапов за последнюю минуту (в секундах).
+ * Для кольцевых буферов публикуются заполненность и число отказов,
+ * для {@link StreamWriteExecutor} - очередь ожидания соединения, активные записи,
+ * отказы и время ожидания соединения (stream.writer.*), для {@link TickCandleAggregator} -
+ * завершенные свечи, запоздавшие сделки и расхождения со свечами API (stream.aggregator.*),
+ * для {@link CandleRollupWriter} - ожидающие и пересчитанные интервалы (stream.rollup.*).
+ *
+ * Значения читаются из уже существующих счетчиков и гистограмм при каждом опросе,
+ * на пути обработки событий Micrometer не участвует.
+ */
+@Component
+public class StreamingMeterBinder implements MeterBinder {
+
+    private static final double MICROS_PER_SECOND = 1_000_000.0;
+
+    private final List<StreamingService<?>> streamingServices;
+    private final SharedLastPriceStream sharedLastPriceStream;
+    private final MinuteCandleStreamingService candleStreamingService;
+    private final LastPriceProcessor lastPriceProcessor;
+    private final CandleProcessor candleProcessor;
+    private final LastPriceDispatcher lastPriceDispatcher;
+    private final StreamWriteExecutor writeExecutor;
+    private final TickCandleAggregator candleAggregator;
+    private final CandleRollupWriter rollupWriter;
+
+    public StreamingMeterBinder(List<StreamingService<?>> streamingServices,
+                                SharedLastPriceStream sharedLastPriceStream,
+                                MinuteCandleStreamingService candleStreamingService,
+                                LastPriceProcessor lastPriceProcessor,
+                                CandleProcessor candleProcessor,
+                                LastPriceDispatcher lastPriceDispatcher,
+                                StreamWriteExecutor writeExecutor,
+                                TickCandleAggregator candleAggregator,
+                                CandleRollupWriter rollupWriter) {
+        this.streamingServices = streamingServices;
+        this.sharedLastPriceStream = sharedLastPriceStream;
+        this.candleStreamingService = candleStreamingService;
+        this.lastPriceProcessor = lastPriceProcessor;
+        this.candleProcessor = candleProcessor;
+        this.lastPriceDispatcher = lastPriceDispatcher;
+        this.writeExecutor = writeExecutor;
+        this.candleAggregator = candleAggregator;
+        this.rollupWriter = rollupWriter;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (StreamingService<?> service : streamingServices) {
+            bindStreamingMetrics(registry, service.getMetrics());
+        }
+        bindStreamingMetrics(registry, sharedLastPriceStream.getMetrics());
+        bindStreamingMetrics(registry, lastPriceProcessor.getMetrics());
+        bindStreamingMetrics(registry, candleProcessor.getMetrics());
+        bindStreamingMetrics(registry, lastPriceDispatcher.getMetrics());
+
+        bindRingBuffer(registry, sharedLastPriceStream.getRingBuffer());
+        bindRingBuffer(registry, candleStreamingService.getRingBuffer());
+        bindWriteExecutor(registry, writeExecutor);
+        bindCandleAggregator(registry, candleAggregator);
+        bindRollupWriter(registry, rollupWriter);
+    }
+
+    private void bindStreamingMetrics(MeterRegistry registry, StreamingMetrics metrics) {
+        String service = metrics.getServiceName();
+
+        counter(registry, "stream.events.received", service, metrics, StreamingMetrics::getTotalReceived);
+        counter(registry, "stream.events.processed", service, metrics, StreamingMetrics::getTotalProcessed);
+        counter(registry, "stream.events.errors", service, metrics, StreamingMetrics::getTotalErrors);
+        counter(registry, "stream.events.dropped", service, metrics, StreamingMetrics::getTotalDropped);
+
+        int[] windows = { 1, 60, 300 };
+        String[] windowNames = { "1s", "1m", "5m" };
+        for (int i = 0; i < windows.length; i++) {
+            int window = windows[i];
+            rate(registry, service, "received", windowNames[i], metrics, m -> m.getReceivedRate(window));
+            rate(registry, service, "processed", windowNames[i], metrics, m -> m.getProcessedRate(window));
+        }
+
+        for (StreamingMetrics.Stage stage : StreamingMetrics.Stage.values()) {
+            latency(registry, service, stage, "0.5", metrics, s -> s.p50Micros());
+            latency(registry, service, stage, "0.99", metrics, s -> s.p99Micros());
+            latency(registry, service, stage, "0.999", metrics, s -> s.p999Micros());
+            latency(registry, service, stage, "max", metrics, s -> s.maxMicros());
+        }
+    }
+
+    private static void counter(MeterRegistry registry, String name, String service,
+                                StreamingMetrics metrics, ToDoubleFunction<StreamingMetrics> value) {
+        FunctionCounter.builder(name, metrics, value)
+            .tag("service", service)
+            .register(registry);
+    }
+
+    private static void rate(MeterRegistry registry, String service, String type, String window,
+                             StreamingMetrics metrics, ToDoubleFunction<StreamingMetrics> value) {
+        Gauge.builder("stream.events.rate", metrics, value)
+            .tag("service", service)
+            .tag("type", type)
+            .tag("window", window)
+            .baseUnit("events/s")
+            .register(registry);
+    }
+
+    private static void latency(MeterRegistry registry, String service, StreamingMetrics.Stage stage,
+                                String quantile, StreamingMetrics metrics,
+                                ToDoubleFunction<LatencyHistogram.Snapshot> value) {
+        Gauge.builder("stream.latency", metrics, m -> {
+                LatencyHistogram histogram = m.getLatency(stage);
+                return histogram != null ? value.applyAsDouble(histogram.getRecent()) / MICROS_PER_SECOND : 0.0;
+            })
+            .tag("service", service)
+            .tag("stage", stage.getKey())
+            .tag("quantile", quantile)
+            .baseUnit("seconds")
+            .register(registry);
+    }
+
+    private static void bindWriteExecutor(MeterRegistry registry, StreamWriteExecutor executor) {
+        String mode = executor.getMode().name();
+        Gauge.builder("stream.writer.queued", executor, StreamWriteExecutor::getQueuedCount)
+            .tag("mode", mode)
+            .register(registry);
+        Gauge.builder("stream.writer.active", executor, StreamWriteExecutor::getActiveCount)
+            .tag("mode", mode)
+            .register(registry);
+        Gauge.builder("stream.writer.max.concurrency", executor, StreamWriteExecutor::getMaxConcurrency)
+            .tag("mode", mode)
+            .register(registry);
+        FunctionCounter.builder("stream.writer.completed", executor, StreamWriteExecutor::getCompletedCount)
+            .tag("mode", mode)
+            .register(registry);
+        FunctionCounter.builder("stream.writer.rejected", executor, StreamWriteExecutor::getRejectedCount)
+            .tag("mode", mode)
+            .register(registry);
+
+        String[] quantiles = { "0.5", "0.99", "max" };
+        List<ToDoubleFunction<LatencyHistogram.Snapshot>> values = List.of(
+            s -> s.p50Micros(), s -> s.p99Micros(), s -> s.maxMicros());
+        for (int i = 0; i < quantiles.length; i++) {
+            ToDoubleFunction<LatencyHistogram.Snapshot> value = values.get(i);
+            Gauge.builder("stream.writer.wait", executor,
+                    e -> value.applyAsDouble(e.getWaitTime().getRecent()) / MICROS_PER_SECOND)
+                .tag("mode", mode)
+                .tag("quantile", quantiles[i])
+                .baseUnit("seconds")
+                .register(registry);
+        }
+    }
+
+    private static void bindCandleAggregator(MeterRegistry registry, TickCandleAggregator aggregator) {
+        Gauge.builder("stream.aggregator.instruments", aggregator, TickCandleAggregator::getInstrumentCount)
+            .register(registry);
+        FunctionCounter.builder("stream.aggregator.bars.completed", aggregator, TickCandleAggregator::getBarsCompleted)
+            .register(registry);
+        FunctionCounter.builder("stream.aggregator.ticks.late", aggregator, TickCandleAggregator::getLateTicks)
+            .register(registry);
+        FunctionCounter.builder("stream.aggregator.crosscheck.mismatched", aggregator,
+                TickCandleAggregator::getCrossCheckMismatched)
+            .register(registry);
+    }
+
+    private static void bindRollupWriter(MeterRegistry registry, CandleRollupWriter writer) {
+        Gauge.builder("stream.rollup.pending", writer, CandleRollupWriter::getPendingBuckets)
+            .register(registry);
+        FunctionCounter.builder("stream.rollup.buckets.flushed", writer, CandleRollupWriter::getBucketsFlushed)
+            .register(registry);
+        FunctionCounter.builder("stream.rollup.rows.upserted", writer, CandleRollupWriter::getRowsUpserted)
+            .register(registry);
+        FunctionCounter.builder("stream.rollup.errors", writer, CandleRollupWriter::getFlushErrors)
+            .register(registry);
+    }
+
+    private static void bindRingBuffer(MeterRegistry registry, RingBufferDispatcher<?> ringBuffer) {
+        Gauge.builder("stream.ringbuffer.fill", ringBuffer, RingBufferDispatcher::getFillRatio)
+            .tag("buffer", ringBuffer.getName())
+            .register(registry);
+        FunctionCounter.builder("stream.ringbuffer.rejected", ringBuffer, RingBufferDispatcher::getRejectedCount)
+            .tag("buffer", ringBuffer.getName())
+            .register(registry);
+    }
+}
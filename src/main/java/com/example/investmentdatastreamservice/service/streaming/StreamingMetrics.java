@@ -1,16 +1,42 @@
 package com.example.investmentdatastreamservice.service.streaming;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Базовые метрики для потоковых сервисов
  * 
  * Предоставляет стандартный набор метрик для мониторинга производительности
- * потоковых сервисов.
+ * потоковых сервисов: счетчики, частоты в скользящих окнах 1s/1m/5m и
+ * гистограммы задержек по этапам обработки ({@link Stage}).
  */
 public class StreamingMetrics {
     
+    /**
+     * Этапы пути события, для которых измеряется задержка
+     */
+    public enum Stage {
+        /** Время биржи -> получение из gRPC потока */
+        EXCHANGE_TO_RECEIVE("exchangeToReceive"),
+        /** Получение из gRPC потока -> обработка (после кольцевого буфера) */
+        RECEIVE_TO_PROCESSED("receiveToProcessed"),
+        /** Обработка -> фиксация в БД */
+        PROCESSED_TO_COMMITTED("processedToCommitted"),
+        /** Время биржи -> фиксация в БД (полная задержка записи) */
+        EXCHANGE_TO_COMMITTED("exchangeToCommitted");
+        
+        private final String key;
+        
+        Stage(String key) {
+            this.key = key;
+        }
+        
+        public String getKey() { return key; }
+    }
+    
     private final AtomicLong totalReceived = new AtomicLong(0);
     private final AtomicLong totalProcessed = new AtomicLong(0);
     private final AtomicLong totalErrors = new AtomicLong(0);
@@ -18,6 +44,12 @@ public class StreamingMetrics {
     private final AtomicBoolean isRunning = new AtomicBoolean(false);
     private final AtomicBoolean isConnected = new AtomicBoolean(false);
     
+    private final SlidingWindowRate receivedRate = new SlidingWindowRate();
+    private final SlidingWindowRate processedRate = new SlidingWindowRate();
+    // Гистограммы создаются при первой записи этапа
+    private final AtomicReferenceArray<LatencyHistogram> stageLatencies =
+        new AtomicReferenceArray<>(Stage.values().length);
+    
     private final String serviceName;
     private final long startTime;
     
@@ -41,11 +73,22 @@ public class StreamingMetrics {
     public void setConnected(boolean connected) { this.isConnected.set(connected); }
     
     // Increment methods
-    public long incrementReceived() { return totalReceived.incrementAndGet(); }
-    public long incrementProcessed() { return totalProcessed.incrementAndGet(); }
+    public long incrementReceived() {
+        receivedRate.add(1);
+        return totalReceived.incrementAndGet();
+    }
+    public long incrementProcessed() {
+        processedRate.add(1);
+        return totalProcessed.incrementAndGet();
+    }
     public long incrementErrors() { return totalErrors.incrementAndGet(); }
     public long incrementDropped() { return totalDropped.incrementAndGet(); }
-    
+    public long addProcessed(long count) {
+        processedRate.add(count);
+        return totalProcessed.addAndGet(count);
+    }
+    public long addErrors(long count) { return totalErrors.addAndGet(count); }
+
     // Calculated metrics
     public long getPendingOperations() {
         return totalReceived.get() - totalProcessed.get() - totalErrors.get() - totalDropped.get();
@@ -66,6 +109,75 @@ public class StreamingMetrics {
         return uptimeSeconds > 0 ? (double) totalProcessed.get() / uptimeSeconds : 0.0;
     }
     
+    /**
+     * Частоты получения и обработки событий за 1s, 1m и 5m
+     */
+    public Map<String, Object> getRates() {
+        Map<String, Object> rates = new LinkedHashMap<>();
+        rates.put("received1s", receivedRate.getRate(1));
+        rates.put("received1m", receivedRate.getRate(60));
+        rates.put("received5m", receivedRate.getRate(300));
+        rates.put("processed1s", processedRate.getRate(1));
+        rates.put("processed1m", processedRate.getRate(60));
+        rates.put("processed5m", processedRate.getRate(300));
+        return rates;
+    }
+    
+    public double getReceivedRate(int windowSeconds) { return receivedRate.getRate(windowSeconds); }
+    public double getProcessedRate(int windowSeconds) { return processedRate.getRate(windowSeconds); }
+    
+    // Latency methods
+    
+    /**
+     * Запись задержки этапа в наносекундах (разность значений System.nanoTime())
+     */
+    public void recordLatencyNanos(Stage stage, long nanos) {
+        latency(stage).recordNanos(nanos);
+    }
+    
+    /**
+     * Запись задержки этапа от времени события на бирже до текущего момента
+     *
+     * @param eventSeconds время события, секунды epoch
+     * @param eventNanos время события, наносекунды
+     */
+    public void recordLatencySince(Stage stage, long eventSeconds, int eventNanos) {
+        long nowMicros = System.currentTimeMillis() * 1_000L;
+        latency(stage).recordMicros(nowMicros - (eventSeconds * 1_000_000L + eventNanos / 1_000));
+    }
+    
+    private LatencyHistogram latency(Stage stage) {
+        LatencyHistogram histogram = stageLatencies.get(stage.ordinal());
+        if (histogram == null) {
+            stageLatencies.compareAndSet(stage.ordinal(), null, new LatencyHistogram());
+            histogram = stageLatencies.get(stage.ordinal());
+        }
+        return histogram;
+    }
+    
+    /**
+     * Гистограмма этапа или null, если задержки этапа не записывались
+     */
+    public LatencyHistogram getLatency(Stage stage) {
+        return stageLatencies.get(stage.ordinal());
+    }
+    
+    /**
+     * Перцентили задержек записанных этапов: за последнюю минуту и за все время
+     */
+    public Map<String, Object> getLatencySnapshot() {
+        Map<String, Object> latency = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = stageLatencies.get(stage.ordinal());
+            if (histogram != null) {
+                latency.put(stage.getKey(), Map.of(
+                    "recent", histogram.getRecent().toMap(),
+                    "total", histogram.getTotal().toMap()));
+            }
+        }
+        return latency;
+    }
+    
     @Override
     public String toString() {
         return String.format(
@@ -10,26 +10,28 @@ import org.slf4j.LoggerFactory;
  * Утилита для разделения инструментов на батчи для подписки
  * 
  * API ограничивает 300 подписок на один stream (свечи + стаканы + ленты обезличенных сделок).
- * Этот класс разделяет инструменты на батчи, чтобы не превышать лимит.
+ * Этот класс разделяет инструменты на батчи, чтобы не превышать лимит: по умолчанию
+ * stream заполняется до лимита, чтобы открывать как можно меньше соединений.
+ * Частоту запросов подписки ограничивает {@link SubscriptionRequestScheduler}.
  */
 public class SubscriptionBatcher {
     
     private static final Logger log = LoggerFactory.getLogger(SubscriptionBatcher.class);
     
     /**
-     * Безопасный размер батча (меньше лимита API в 300)
+     * Лимит API на количество подписок в одном stream
      */
-    public static final int DEFAULT_BATCH_SIZE = 250;
+    public static final int MAX_SUBSCRIPTIONS_PER_STREAM = 300;
     
     /**
-     * Максимальное количество запросов подписки в минуту
+     * Размер батча по умолчанию - stream заполняется до лимита
      */
-    public static final int MAX_REQUESTS_PER_MINUTE = 100;
+    public static final int DEFAULT_BATCH_SIZE = MAX_SUBSCRIPTIONS_PER_STREAM;
     
     /**
-     * Задержка между батчами в миллисекундах (для соблюдения rate limit)
+     * Максимальное количество запросов подписки в минуту
      */
-    public static final long BATCH_DELAY_MS = 1000; // 1 секунда между батчами
+    public static final int MAX_REQUESTS_PER_MINUTE = 100;
     
     private final int batchSize;
     
@@ -38,8 +40,9 @@ public class SubscriptionBatcher {
     }
     
     public SubscriptionBatcher(int batchSize) {
-        if (batchSize <= 0 || batchSize > 300) {
-            throw new IllegalArgumentException("Batch size must be between 1 and 300, got: " + batchSize);
+        if (batchSize <= 0 || batchSize > MAX_SUBSCRIPTIONS_PER_STREAM) {
+            throw new IllegalArgumentException("Batch size must be between 1 and "
+                + MAX_SUBSCRIPTIONS_PER_STREAM + ", got: " + batchSize);
         }
         this.batchSize = batchSize;
         log.info("SubscriptionBatcher initialized with batch size: {}", batchSize);
@@ -77,6 +80,13 @@ public class SubscriptionBatcher {
         return batches;
     }
     
+    /**
+     * Максимальное количество инструментов в одном stream
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+    
     /**
      * Получает информацию о батчах для логирования
      */
@@ -0,0 +1,135 @@
+package com.example.investmentdatastreamservice.service.streaming;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.example.investmentdatastreamservice.utils.TokenBucket;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Неблокирующий планировщик запросов подписки
+ *
+ * Лимит API на запросы подписки ({@link SubscriptionBatcher#MAX_REQUESTS_PER_MINUTE})
+ * общий для всех stream'ов аккаунта, поэтому планировщик один на приложение.
+ * Запросы ставятся в очередь и отправляются потоком ScheduledExecutorService по мере
+ * появления токенов в {@link TokenBucket}; вызывающий поток не ждет.
+ *
+ * Ведро на {@link #BURST} запросов пополняется со скоростью
+ * (MAX_REQUESTS_PER_MINUTE - BURST) в минуту: первые BURST запросов (подписка
+ * всех батчей при старте) уходят сразу, и ни в одном окне в 60 секунд лимит
+ * не превышается.
+ */
+@Component
+public class SubscriptionRequestScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(SubscriptionRequestScheduler.class);
+
+    /**
+     * Запросы, которые можно отправить без ожидания
+     */
+    public static final int BURST = 20;
+
+    private static final long DRAIN_INTERVAL_MS = 100;
+
+    private record PendingRequest(String description, Supplier<CompletableFuture<Void>> action,
+            CompletableFuture<Void> result) {
+    }
+
+    private final TokenBucket tokenBucket;
+    private final Queue<PendingRequest> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong sent = new AtomicLong();
+    private final ScheduledExecutorService scheduler;
+
+    public SubscriptionRequestScheduler() {
+        this.tokenBucket = new TokenBucket(
+            (SubscriptionBatcher.MAX_REQUESTS_PER_MINUTE - BURST) / 60.0, BURST);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "subscription-request-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::drain,
+            DRAIN_INTERVAL_MS, DRAIN_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Постановка запроса подписки в очередь
+     *
+     * @param description описание запроса для логов
+     * @param action отправка запроса (выполняется, когда есть токен)
+     * @return CompletableFuture, завершающийся после отправки запроса
+     */
+    public CompletableFuture<Void> submit(String description, Supplier<CompletableFuture<Void>> action) {
+        PendingRequest request = new PendingRequest(description, action, new CompletableFuture<>());
+        queue.add(request);
+        int size = queued.incrementAndGet();
+        if (size > BURST) {
+            log.info("⏳ Subscription request queued: {} (queue: {})", description, size);
+        }
+        scheduler.execute(this::drain);
+        return request.result();
+    }
+
+    /**
+     * Отправка запросов из очереди, пока есть токены (поток планировщика)
+     */
+    private void drain() {
+        while (!queue.isEmpty() && tokenBucket.tryAcquire()) {
+            PendingRequest request = queue.poll();
+            if (request == null) {
+                return;
+            }
+            queued.decrementAndGet();
+            sent.incrementAndGet();
+            log.debug("Sending subscription request: {}", request.description());
+            try {
+                request.action().get().whenComplete((result, throwable) -> {
+                    if (throwable != null) {
+                        request.result().completeExceptionally(throwable);
+                    } else {
+                        request.result().complete(null);
+                    }
+                });
+            } catch (Exception e) {
+                request.result().completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Статистика планировщика
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queued", queued.get());
+        stats.put("sent", sent.get());
+        stats.put("availableTokens", tokenBucket.getAvailableTokens());
+        stats.put("maxRequestsPerMinute", SubscriptionBatcher.MAX_REQUESTS_PER_MINUTE);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        PendingRequest request;
+        while ((request = queue.poll()) != null) {
+            request.result().completeExceptionally(
+                new IllegalStateException("Subscription scheduler is shut down"));
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package com.example.investmentdatastreamservice.service.streaming;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Состояние подписки по каждому инструменту
+ *
+ * Для каждого FIGI хранится номер stream-соединения, статус подписки и число попыток.
+ * Инструменты с неуспешным статусом переподписываются по одному расписанию с
+ * экспоненциальной задержкой, сгруппированно по своему stream'у - без перезапуска
+ * остальных соединений. После восстановления упавшего stream'а
+ * ({@link #resubscribeStream(int)}) повторно подписываются только его инструменты.
+ *
+ * Отправку запроса подписки выполняет сервис-владелец через {@link Resubscriber}.
+ */
+public class SubscriptionTracker {
+
+    private static final Logger log = LoggerFactory.getLogger(SubscriptionTracker.class);
+
+    private static final long RETRY_CHECK_INTERVAL_MS = 1_000;
+    static final long INITIAL_RETRY_DELAY_MS = 2_000;
+    static final long MAX_RETRY_DELAY_MS = 60_000;
+    static final int MAX_ATTEMPTS = 8;
+
+    public static final String SEND_FAILED = "SEND_FAILED";
+
+    public enum State {
+        PENDING, SUBSCRIBED, FAILED
+    }
+
+    /**
+     * Отправка запроса подписки на инструменты через stream
+     */
+    @FunctionalInterface
+    public interface Resubscriber {
+        CompletableFuture<Void> resubscribe(int streamIndex, List<String> figis);
+    }
+
+    /**
+     * Перенос инструментов из последнего stream'а в свободные места остальных
+     *
+     * @param sourceStream индекс освобождаемого (последнего) stream'а
+     * @param targets перенесенные инструменты по индексам stream'ов назначения
+     */
+    public record Relocation(int sourceStream, Map<Integer, List<String>> targets) {
+
+        public int size() {
+            return targets.values().stream().mapToInt(List::size).sum();
+        }
+    }
+
+    private static final class Entry {
+        final int streamIndex;
+        State state = State.PENDING;
+        int attempts;
+        long nextRetryAtMillis;
+        String lastStatus;
+
+        Entry(int streamIndex) {
+            this.streamIndex = streamIndex;
+        }
+    }
+
+    private final String name;
+    private final Resubscriber resubscriber;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService retryScheduler;
+    private final LongSupplier clock;
+    private final AtomicLong retriedInstruments = new AtomicLong();
+    private final AtomicLong resubscribedStreams = new AtomicLong();
+
+    public SubscriptionTracker(String name, Resubscriber resubscriber) {
+        this(name, resubscriber, System::currentTimeMillis, Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, name + "-subscription-retry");
+            t.setDaemon(true);
+            return t;
+        }));
+    }
+
+    /**
+     * @param clock источник времени в миллисекундах (как System.currentTimeMillis())
+     * @param retryScheduler планировщик проверки повторных попыток
+     */
+    SubscriptionTracker(String name, Resubscriber resubscriber, LongSupplier clock,
+            ScheduledExecutorService retryScheduler) {
+        this.name = name;
+        this.resubscriber = resubscriber;
+        this.clock = clock;
+        this.retryScheduler = retryScheduler;
+        this.retryScheduler.scheduleWithFixedDelay(this::retryDue,
+            RETRY_CHECK_INTERVAL_MS, RETRY_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Регистрация инструментов, отправляемых в подписку через stream
+     */
+    public void track(int streamIndex, Collection<String> figis) {
+        for (String figi : figis) {
+            entries.put(figi, new Entry(streamIndex));
+        }
+    }
+
+    /**
+     * Распределение новых инструментов по stream'ам
+     *
+     * Инструменты заполняют свободные места в существующих stream'ах (по порядку),
+     * остаток - новые stream'ы с индексами от streamCount. Уже отслеживаемые
+     * инструменты пропускаются. Распределенные инструменты регистрируются как PENDING.
+     *
+     * @param figis добавляемые инструменты
+     * @param streamCapacity максимальное количество подписок в stream
+     * @param streamCount количество открытых stream'ов
+     * @return инструменты по индексам stream'ов
+     */
+    public synchronized Map<Integer, List<String>> allocate(Collection<String> figis, int streamCapacity,
+            int streamCount) {
+        int[] load = getStreamLoad(streamCount);
+        Map<Integer, List<String>> plan = new TreeMap<>();
+        int streamIndex = 0;
+        int newStreamLoad = 0;
+
+        for (String figi : figis) {
+            if (entries.containsKey(figi)) {
+                continue;
+            }
+            while (streamIndex < streamCount && load[streamIndex] >= streamCapacity) {
+                streamIndex++;
+            }
+            if (streamIndex < streamCount) {
+                load[streamIndex]++;
+            } else {
+                if (newStreamLoad >= streamCapacity) {
+                    streamIndex++;
+                    newStreamLoad = 0;
+                }
+                newStreamLoad++;
+            }
+            entries.put(figi, new Entry(streamIndex));
+            plan.computeIfAbsent(streamIndex, k -> new ArrayList<>()).add(figi);
+        }
+        return plan;
+    }
+
+    /**
+     * Снятие инструментов с отслеживания
+     *
+     * @return снятые инструменты по индексам stream'ов (для отправки UNSUBSCRIBE)
+     */
+    public synchronized Map<Integer, List<String>> untrack(Collection<String> figis) {
+        Map<Integer, List<String>> plan = new TreeMap<>();
+        for (String figi : figis) {
+            Entry entry = entries.remove(figi);
+            if (entry != null) {
+                plan.computeIfAbsent(entry.streamIndex, k -> new ArrayList<>()).add(figi);
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Планирование уплотнения stream'ов
+     *
+     * Если открыто больше stream'ов, чем нужно для отслеживаемых инструментов
+     * (ceil(total / streamCapacity)), то инструменты последнего stream'а помещаются
+     * в свободные места остальных - после этого последний stream можно закрыть.
+     * Перенесенные инструменты закрепляются за новыми stream'ами как PENDING.
+     *
+     * @return план переноса или null, если уплотнение не требуется
+     */
+    public synchronized Relocation planCompaction(int streamCapacity, int streamCount) {
+        if (streamCount <= 1) {
+            return null;
+        }
+        int requiredStreams = (entries.size() + streamCapacity - 1) / streamCapacity;
+        if (streamCount <= Math.max(1, requiredStreams)) {
+            return null;
+        }
+
+        int sourceStream = streamCount - 1;
+        int[] load = getStreamLoad(streamCount);
+        Map<Integer, List<String>> targets = new TreeMap<>();
+        int streamIndex = 0;
+        for (String figi : getStreamInstruments(sourceStream)) {
+            while (streamIndex < sourceStream && load[streamIndex] >= streamCapacity) {
+                streamIndex++;
+            }
+            if (streamIndex >= sourceStream) {
+                break;
+            }
+            load[streamIndex]++;
+            entries.put(figi, new Entry(streamIndex));
+            targets.computeIfAbsent(streamIndex, k -> new ArrayList<>()).add(figi);
+        }
+        return new Relocation(sourceStream, targets);
+    }
+
+    /**
+     * Все отслеживаемые инструменты
+     */
+    public Set<String> getTrackedInstruments() {
+        return Set.copyOf(entries.keySet());
+    }
+
+    /**
+     * Количество отслеживаемых инструментов в каждом stream
+     */
+    public int[] getStreamLoad(int streamCount) {
+        int maxIndex = streamCount - 1;
+        for (Entry entry : entries.values()) {
+            maxIndex = Math.max(maxIndex, entry.streamIndex);
+        }
+        int[] load = new int[maxIndex + 1];
+        for (Entry entry : entries.values()) {
+            load[entry.streamIndex]++;
+        }
+        return load;
+    }
+
+    /**
+     * Сброс состояния (полный перезапуск или остановка потока)
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    public void onSubscribed(String figi) {
+        Entry entry = entries.get(figi);
+        if (entry == null) {
+            return;
+        }
+        synchronized (entry) {
+            entry.state = State.SUBSCRIBED;
+            entry.attempts = 0;
+            entry.lastStatus = null;
+        }
+    }
+
+    public void onFailed(String figi, String status) {
+        Entry entry = entries.get(figi);
+        if (entry == null) {
+            return;
+        }
+        int attempts;
+        synchronized (entry) {
+            entry.state = State.FAILED;
+            entry.lastStatus = status;
+            attempts = ++entry.attempts;
+            long delay = Math.min(INITIAL_RETRY_DELAY_MS << Math.min(attempts - 1, 16), MAX_RETRY_DELAY_MS);
+            entry.nextRetryAtMillis = clock.getAsLong() + delay;
+        }
+        if (attempts == MAX_ATTEMPTS) {
+            log.warn("⚠️ [{}] {} subscription failed {} times ({}), giving up", name, figi, MAX_ATTEMPTS, status);
+        }
+    }
+
+    public void onFailed(Collection<String> figis, String status) {
+        for (String figi : figis) {
+            onFailed(figi, status);
+        }
+    }
+
+    /**
+     * Stream-соединение упало: его подписки считаются неподтвержденными до восстановления
+     */
+    public void onStreamDown(int streamIndex) {
+        for (Entry entry : entries.values()) {
+            if (entry.streamIndex == streamIndex) {
+                synchronized (entry) {
+                    if (entry.state == State.SUBSCRIBED) {
+                        entry.state = State.PENDING;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Повторная подписка всех инструментов восстановленного stream'а
+     */
+    public void resubscribeStream(int streamIndex) {
+        List<String> figis = new ArrayList<>();
+        entries.forEach((figi, entry) -> {
+            if (entry.streamIndex == streamIndex) {
+                synchronized (entry) {
+                    entry.state = State.PENDING;
+                }
+                figis.add(figi);
+            }
+        });
+        if (figis.isEmpty()) {
+            return;
+        }
+        resubscribedStreams.incrementAndGet();
+        log.info("🔁 [{}] Resubscribing {} instruments on restored stream #{}", name, figis.size(), streamIndex + 1);
+        send(streamIndex, figis);
+    }
+
+    /**
+     * Переподписка инструментов, у которых наступило время повторной попытки
+     */
+    void retryDue() {
+        try {
+            long now = clock.getAsLong();
+            Map<Integer, List<String>> dueByStream = new TreeMap<>();
+            entries.forEach((figi, entry) -> {
+                synchronized (entry) {
+                    if (entry.state == State.FAILED && entry.attempts < MAX_ATTEMPTS
+                            && entry.nextRetryAtMillis <= now) {
+                        entry.state = State.PENDING;
+                        dueByStream.computeIfAbsent(entry.streamIndex, k -> new ArrayList<>()).add(figi);
+                    }
+                }
+            });
+
+            dueByStream.forEach((streamIndex, figis) -> {
+                retriedInstruments.addAndGet(figis.size());
+                log.info("🔁 [{}] Retrying subscription for {} failed instruments on stream #{}",
+                    name, figis.size(), streamIndex + 1);
+                send(streamIndex, figis);
+            });
+        } catch (Exception e) {
+            log.error("[{}] Subscription retry check failed", name, e);
+        }
+    }
+
+    private void send(int streamIndex, List<String> figis) {
+        CompletableFuture<Void> future;
+        try {
+            future = resubscriber.resubscribe(streamIndex, figis);
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                log.warn("[{}] Failed to send subscription for {} instruments on stream #{}: {}",
+                    name, figis.size(), streamIndex + 1, throwable.getMessage());
+                onFailed(figis, SEND_FAILED);
+            }
+        });
+    }
+
+    /**
+     * Инструменты, отправленные в подписку через stream
+     */
+    public List<String> getStreamInstruments(int streamIndex) {
+        List<String> figis = new ArrayList<>();
+        entries.forEach((figi, entry) -> {
+            if (entry.streamIndex == streamIndex) {
+                figis.add(figi);
+            }
+        });
+        return figis;
+    }
+
+    /**
+     * Инструменты, подписка на которые сейчас не подтверждена, с последним статусом
+     */
+    public Map<String, String> getFailedInstruments() {
+        Map<String, String> failed = new TreeMap<>();
+        entries.forEach((figi, entry) -> {
+            synchronized (entry) {
+                if (entry.state == State.FAILED) {
+                    failed.put(figi, entry.lastStatus);
+                }
+            }
+        });
+        return failed;
+    }
+
+    /**
+     * Статистика подписок по состояниям
+     */
+    public Map<String, Object> getStats() {
+        long subscribed = 0;
+        long pending = 0;
+        long failed = 0;
+        long exhausted = 0;
+        for (Entry entry : entries.values()) {
+            synchronized (entry) {
+                switch (entry.state) {
+                    case SUBSCRIBED -> subscribed++;
+                    case PENDING -> pending++;
+                    case FAILED -> {
+                        failed++;
+                        if (entry.attempts >= MAX_ATTEMPTS) {
+                            exhausted++;
+                        }
+                    }
+                }
+            }
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("total", entries.size());
+        stats.put("subscribed", subscribed);
+        stats.put("pending", pending);
+        stats.put("failed", failed);
+        stats.put("exhausted", exhausted);
+        stats.put("retriedInstruments", retriedInstruments.get());
+        stats.put("resubscribedStreams", resubscribedStreams.get());
+        return stats;
+    }
+
+    public void shutdown() {
+        retryScheduler.shutdownNow();
+        entries.clear();
+    }
+}
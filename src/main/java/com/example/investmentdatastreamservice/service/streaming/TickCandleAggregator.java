@@ -0,0 +1,456 @@
+package com.example.investmentdatastreamservice.service.streaming;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.example.investmentdatastreamservice.config.StreamingProperties;
+import com.example.investmentdatastreamservice.entity.MinuteCandleEntity;
+import com.example.investmentdatastreamservice.service.streaming.processor.CandleRollupWriter;
+import com.example.investmentdatastreamservice.utils.FixedPointPrice;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+
+/**
+ * Сборка свечей 1m, 5m, 15m и 1h из общего потока LastPrice
+ *
+ * Агрегатор подписан на {@link LastPriceDispatcher} и для каждого FIGI держит слот
+ * с примитивными массивами OHLC по всем интервалам {@link CandleTimeframe}. Сделка
+ * обновляет все интервалы без создания объектов; незавершенные свечи (complete=false)
+ * создаются только при наличии получателей, которым они нужны
+ * ({@link AggregatedBarListener#wantsPartials()}).
+ *
+ * Свеча завершается, когда приходит сделка следующего интервала, или фоновым
+ * проходом через stream.aggregator.finalize-delay-ms после границы интервала
+ * (неликвидные инструменты). Запоздавшие сделки уже завершенного интервала
+ * отбрасываются (считаются в lateTicks), но учитываются в более длинных интервалах.
+ *
+ * Завершенные минутные свечи:
+ * - сверяются со свечами API ({@link #crossCheck}) - расхождения видны в метриках;
+ * - при stream.aggregator.persist-minute-candles=true записываются в invest.minute_candles
+ *   с ON CONFLICT DO NOTHING: свеча API имеет приоритет и перезаписывает собранную.
+ *   LastPrice не содержит объема, поэтому такие свечи записываются с volume=0.
+ *   Вставленные свечи помечают интервалы для пересчета в {@link CandleRollupWriter}.
+ */
+@Component
+public class TickCandleAggregator implements LastPriceConsumer {
+
+    private static final Logger log = LoggerFactory.getLogger(TickCandleAggregator.class);
+
+    private static final CandleTimeframe[] TIMEFRAMES = CandleTimeframe.values();
+    private static final long NONE = Long.MIN_VALUE;
+    private static final long SWEEP_INTERVAL_MS = 1_000;
+
+    private static final String INSERT_SQL = """
+        INSERT INTO invest.minute_candles
+        (figi, time, open, high, low, close, volume, is_complete,
+        price_change, price_change_percent, candle_type, body_size,
+        upper_shadow, lower_shadow, high_low_range, average_price,
+        created_at, updated_at)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+        ON CONFLICT (figi, time) DO NOTHING
+        """;
+
+    /**
+     * Текущие и последние завершенные свечи одного инструмента (индекс - ordinal интервала)
+     */
+    private static final class InstrumentBars {
+        private final long[] start = new long[TIMEFRAMES.length];
+        private final long[] open = new long[TIMEFRAMES.length];
+        private final long[] high = new long[TIMEFRAMES.length];
+        private final long[] low = new long[TIMEFRAMES.length];
+        private final long[] close = new long[TIMEFRAMES.length];
+        private final long[] closeTimeNanos = new long[TIMEFRAMES.length];
+        private final long[] ticks = new long[TIMEFRAMES.length];
+        private final AggregatedBar[] lastCompleted = new AggregatedBar[TIMEFRAMES.length];
+
+        InstrumentBars() {
+            Arrays.fill(start, NONE);
+        }
+
+        AggregatedBar snapshot(String figi, int tf, boolean complete) {
+            return new AggregatedBar(figi, TIMEFRAMES[tf], start[tf], open[tf], high[tf], low[tf], close[tf],
+                ticks[tf], complete);
+        }
+
+        AggregatedBar complete(String figi, int tf) {
+            AggregatedBar bar = snapshot(figi, tf, true);
+            lastCompleted[tf] = bar;
+            start[tf] = NONE;
+            return bar;
+        }
+
+        void open(int tf, long bucket, long timeNanos, long price) {
+            start[tf] = bucket;
+            open[tf] = price;
+            high[tf] = price;
+            low[tf] = price;
+            close[tf] = price;
+            closeTimeNanos[tf] = timeNanos;
+            ticks[tf] = 1;
+        }
+    }
+
+    private final LastPriceDispatcher dispatcher;
+    private final JdbcTemplate streamJdbcTemplate;
+    private final StreamWriteExecutor writeExecutor;
+    private final CandleRollupWriter rollupWriter;
+    private final StreamingProperties.Aggregator config;
+    private final Map<String, InstrumentBars> instruments = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<AggregatedBarListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean emitPartials;
+    private final ScheduledExecutorService sweepScheduler;
+    // Часы для завершения свечей по времени (подменяются в тестах)
+    private Clock clock = Clock.systemUTC();
+
+    // Метрики
+    private final AtomicLong ticksReceived = new AtomicLong(0);
+    private final AtomicLong lateTicks = new AtomicLong(0);
+    private final AtomicLong barsCompleted = new AtomicLong(0);
+    private final AtomicLong barsCompletedBySweep = new AtomicLong(0);
+    private final AtomicLong barsPersisted = new AtomicLong(0);
+    private final AtomicLong persistRejected = new AtomicLong(0);
+    private final AtomicLong crossCheckMatched = new AtomicLong(0);
+    private final AtomicLong crossCheckMismatched = new AtomicLong(0);
+    private final AtomicLong crossCheckMissing = new AtomicLong(0);
+
+    public TickCandleAggregator(LastPriceDispatcher dispatcher,
+                                @Qualifier("streamJdbcTemplate") JdbcTemplate streamJdbcTemplate,
+                                StreamWriteExecutor writeExecutor,
+                                CandleRollupWriter rollupWriter,
+                                StreamingProperties streamingProperties) {
+        this.dispatcher = dispatcher;
+        this.streamJdbcTemplate = streamJdbcTemplate;
+        this.writeExecutor = writeExecutor;
+        this.rollupWriter = rollupWriter;
+        this.config = streamingProperties.getAggregator();
+        this.sweepScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "candle-aggregator-sweep");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!config.isEnabled()) {
+            log.info("Tick candle aggregation disabled");
+            return;
+        }
+        dispatcher.register(this);
+        sweepScheduler.scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL_MS, SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        log.info("🕯️ Tick candle aggregation enabled: finalizeDelay={}ms, persistMinuteCandles={}",
+            config.getFinalizeDelayMs(), config.isPersistMinuteCandles());
+    }
+
+    /**
+     * Регистрация получателя свечей
+     */
+    public void addListener(AggregatedBarListener listener) {
+        listeners.addIfAbsent(listener);
+        updateEmitPartials();
+    }
+
+    public void removeListener(AggregatedBarListener listener) {
+        listeners.remove(listener);
+        updateEmitPartials();
+    }
+
+    private void updateEmitPartials() {
+        boolean wanted = false;
+        for (AggregatedBarListener listener : listeners) {
+            if (listener.wantsPartials()) {
+                wanted = true;
+                break;
+            }
+        }
+        emitPartials = wanted;
+    }
+
+    @Override
+    public String getConsumerName() {
+        return "TickCandleAggregator";
+    }
+
+    @Override
+    public void onLastPrice(LastPrice lastPrice) {
+        if (!lastPrice.hasTime() || !lastPrice.hasPrice()) {
+            return;
+        }
+        ticksReceived.incrementAndGet();
+        String figi = lastPrice.getFigi();
+        long seconds = lastPrice.getTime().getSeconds();
+        long timeNanos = seconds * 1_000_000_000L + lastPrice.getTime().getNanos();
+        long price = FixedPointPrice.fromQuotation(lastPrice.getPrice());
+
+        InstrumentBars bars = instruments.get(figi);
+        if (bars == null) {
+            bars = instruments.computeIfAbsent(figi, key -> new InstrumentBars());
+        }
+
+        boolean emitPartials = this.emitPartials;
+        List<AggregatedBar> emitted = null;
+        synchronized (bars) {
+            for (int tf = 0; tf < TIMEFRAMES.length; tf++) {
+                long bucket = TIMEFRAMES[tf].bucketStart(seconds);
+                long current = bars.start[tf];
+                if (current == NONE) {
+                    AggregatedBar previous = bars.lastCompleted[tf];
+                    if (previous != null && bucket <= previous.startEpochSecond()) {
+                        lateTicks.incrementAndGet();
+                        continue;
+                    }
+                    bars.open(tf, bucket, timeNanos, price);
+                } else if (bucket > current) {
+                    emitted = add(emitted, bars.complete(figi, tf));
+                    barsCompleted.incrementAndGet();
+                    bars.open(tf, bucket, timeNanos, price);
+                } else if (bucket < current) {
+                    lateTicks.incrementAndGet();
+                    continue;
+                } else {
+                    if (price > bars.high[tf]) {
+                        bars.high[tf] = price;
+                    }
+                    if (price < bars.low[tf]) {
+                        bars.low[tf] = price;
+                    }
+                    if (timeNanos >= bars.closeTimeNanos[tf]) {
+                        bars.close[tf] = price;
+                        bars.closeTimeNanos[tf] = timeNanos;
+                    }
+                    bars.ticks[tf]++;
+                }
+                if (emitPartials) {
+                    emitted = add(emitted, bars.snapshot(figi, tf, false));
+                }
+            }
+        }
+
+        if (emitted != null) {
+            publish(emitted);
+        }
+    }
+
+    private static List<AggregatedBar> add(List<AggregatedBar> list, AggregatedBar bar) {
+        List<AggregatedBar> result = list != null ? list : new ArrayList<>(TIMEFRAMES.length * 2);
+        result.add(bar);
+        return result;
+    }
+
+    /**
+     * Завершение свечей, интервал которых закончился (поток sweepScheduler)
+     */
+    void sweep() {
+        try {
+            long nowMillis = clock.millis();
+            for (Map.Entry<String, InstrumentBars> entry : instruments.entrySet()) {
+                List<AggregatedBar> completed = null;
+                InstrumentBars bars = entry.getValue();
+                synchronized (bars) {
+                    for (int tf = 0; tf < TIMEFRAMES.length; tf++) {
+                        long current = bars.start[tf];
+                        if (current != NONE
+                                && (current + TIMEFRAMES[tf].getSeconds()) * 1000L + config.getFinalizeDelayMs() <= nowMillis) {
+                            completed = add(completed, bars.complete(entry.getKey(), tf));
+                            barsCompleted.incrementAndGet();
+                            barsCompletedBySweep.incrementAndGet();
+                        }
+                    }
+                }
+                if (completed != null) {
+                    publish(completed);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error finalizing aggregated candles", e);
+        }
+    }
+
+    /**
+     * Передача свечей получателям и запись завершенных минутных свечей
+     */
+    private void publish(List<AggregatedBar> bars) {
+        for (AggregatedBar bar : bars) {
+            if (bar.complete() && bar.timeframe() == CandleTimeframe.M1 && config.isPersistMinuteCandles()) {
+                persist(bar);
+            }
+            for (AggregatedBarListener listener : listeners) {
+                if (!bar.complete() && !listener.wantsPartials()) {
+                    continue;
+                }
+                try {
+                    listener.onBar(bar);
+                } catch (Exception e) {
+                    log.error("Error delivering aggregated candle {} {} to listener", bar.figi(),
+                        bar.timeframe().getCode(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Запись собранной минутной свечи, если свечи API за эту минуту еще нет
+     */
+    private void persist(AggregatedBar bar) {
+        boolean accepted = writeExecutor.submit(() -> {
+            try {
+                MinuteCandleEntity entity = new MinuteCandleEntity(
+                    bar.figi(),
+                    0L,
+                    FixedPointPrice.toBigDecimal(bar.high()),
+                    FixedPointPrice.toBigDecimal(bar.low()),
+                    bar.startTime(),
+                    FixedPointPrice.toBigDecimal(bar.close()),
+                    FixedPointPrice.toBigDecimal(bar.open()),
+                    true
+                );
+                int inserted = streamJdbcTemplate.update(INSERT_SQL,
+                    entity.getFigi(),
+                    java.sql.Timestamp.from(entity.getTime()),
+                    entity.getOpen(),
+                    entity.getHigh(),
+                    entity.getLow(),
+                    entity.getClose(),
+                    entity.getVolume(),
+                    entity.isComplete(),
+                    entity.getPriceChange(),
+                    entity.getPriceChangePercent(),
+                    entity.getCandleType(),
+                    entity.getBodySize(),
+                    entity.getUpperShadow(),
+                    entity.getLowerShadow(),
+                    entity.getHighLowRange(),
+                    entity.getAveragePrice(),
+                    java.sql.Timestamp.from(entity.getCreatedAt()),
+                    java.sql.Timestamp.from(entity.getUpdatedAt())
+                );
+                barsPersisted.addAndGet(inserted);
+                if (inserted > 0) {
+                    rollupWriter.markMinute(entity.getFigi(), entity.getTime());
+                }
+            } catch (Exception e) {
+                log.error("❌ Error inserting aggregated candle for FIGI={}, Time={}: {}",
+                    bar.figi(), bar.startTime(), e.getMessage(), e);
+            }
+        });
+        if (!accepted) {
+            persistRejected.incrementAndGet();
+        }
+    }
+
+    /**
+     * Сверка свечи API с собранной из LastPrice минутной свечой
+     *
+     * Свеча API может прийти раньше, чем агрегатор завершит ту же минуту, поэтому
+     * сравнивается текущая или последняя завершенная свеча с тем же началом.
+     *
+     * @param figi FIGI инструмента
+     * @param startEpochSecond начало минуты свечи API, секунды epoch
+     * @param high максимальная цена свечи API
+     * @param low минимальная цена свечи API
+     * @param close цена закрытия свечи API
+     */
+    public void crossCheck(String figi, long startEpochSecond, long high, long low, long close) {
+        InstrumentBars bars = instruments.get(figi);
+        AggregatedBar bar = null;
+        if (bars != null) {
+            int tf = CandleTimeframe.M1.ordinal();
+            synchronized (bars) {
+                bar = bars.start[tf] == startEpochSecond
+                    ? bars.snapshot(figi, tf, false)
+                    : bars.lastCompleted[tf];
+            }
+        }
+        if (bar == null || bar.startEpochSecond() != startEpochSecond) {
+            crossCheckMissing.incrementAndGet();
+        } else if (bar.high() == high && bar.low() == low && bar.close() == close) {
+            crossCheckMatched.incrementAndGet();
+        } else {
+            crossCheckMismatched.incrementAndGet();
+            log.debug("Aggregated candle differs from API candle: FIGI={}, time={}, H={}/{}, L={}/{}, C={}/{}",
+                figi, Instant.ofEpochSecond(startEpochSecond), bar.high(), high, bar.low(), low, bar.close(), close);
+        }
+    }
+
+    /**
+     * Текущая (незавершенная) свеча или null
+     */
+    public AggregatedBar getCurrentBar(String figi, CandleTimeframe timeframe) {
+        InstrumentBars bars = figi != null ? instruments.get(figi) : null;
+        if (bars == null) {
+            return null;
+        }
+        synchronized (bars) {
+            int tf = timeframe.ordinal();
+            return bars.start[tf] != NONE ? bars.snapshot(figi, tf, false) : null;
+        }
+    }
+
+    /**
+     * Последняя завершенная свеча или null
+     */
+    public AggregatedBar getLastCompletedBar(String figi, CandleTimeframe timeframe) {
+        InstrumentBars bars = figi != null ? instruments.get(figi) : null;
+        if (bars == null) {
+            return null;
+        }
+        synchronized (bars) {
+            return bars.lastCompleted[timeframe.ordinal()];
+        }
+    }
+
+    /**
+     * Статистика агрегатора
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", config.isEnabled());
+        stats.put("instruments", instruments.size());
+        stats.put("ticksReceived", ticksReceived.get());
+        stats.put("lateTicks", lateTicks.get());
+        stats.put("barsCompleted", barsCompleted.get());
+        stats.put("barsCompletedBySweep", barsCompletedBySweep.get());
+        stats.put("persistMinuteCandles", config.isPersistMinuteCandles());
+        stats.put("barsPersisted", barsPersisted.get());
+        stats.put("persistRejected", persistRejected.get());
+        Map<String, Object> crossCheck = new LinkedHashMap<>();
+        crossCheck.put("matched", crossCheckMatched.get());
+        crossCheck.put("mismatched", crossCheckMismatched.get());
+        crossCheck.put("missing", crossCheckMissing.get());
+        stats.put("crossCheck", crossCheck);
+        stats.put("listeners", listeners.size());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.unregister(this);
+        sweepScheduler.shutdownNow();
+    }
+
+    // Getters для метрик
+    public int getInstrumentCount() { return instruments.size(); }
+    public long getTicksReceived() { return ticksReceived.get(); }
+    public long getLateTicks() { return lateTicks.get(); }
+    public long getBarsCompleted() { return barsCompleted.get(); }
+    public long getCrossCheckMismatched() { return crossCheckMismatched.get(); }
+}
@@ -0,0 +1,22 @@
+package com.example.investmentdatastreamservice.service.streaming;
+
+/**
+ * Результат синхронизации подписок потока с набором инструментов в БД
+ *
+ * @param added подписанные новые инструменты
+ * @param removed отписанные инструменты, исчезнувшие из БД
+ * @param relocated инструменты, перенесенные при уплотнении stream'ов
+ * @param closedStreams закрытые stream'ы
+ * @param streams открытые stream'ы после синхронизации
+ */
+public record UniverseSyncResult(int added, int removed, int relocated, int closedStreams, int streams) {
+
+    /**
+     * Поток не запущен, синхронизация не выполнялась
+     */
+    public static final UniverseSyncResult SKIPPED = new UniverseSyncResult(0, 0, 0, 0, 0);
+
+    public boolean hasChanges() {
+        return added > 0 || removed > 0 || relocated > 0;
+    }
+}
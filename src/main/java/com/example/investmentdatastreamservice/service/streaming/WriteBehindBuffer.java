@@ -0,0 +1,227 @@
+package com.example.investmentdatastreamservice.service.streaming;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Буфер отложенной пакетной записи (write-behind)
+ *
+ * Накапливает элементы в ограниченной очереди и передает их обработчику пакетами.
+ * Пакет сбрасывается при достижении размера batchSize или по истечении flushInterval
+ * с момента поступления первого элемента пакета - в зависимости от того, что наступит раньше.
+ *
+ * Элементы отбрасываются только при полном заполнении очереди.
+ *
+ * @param <T> тип накапливаемых элементов
+ */
+public class WriteBehindBuffer<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindBuffer.class);
+
+    private final String name;
+    private final BlockingQueue<T> queue;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Consumer<List<T>> batchWriter;
+    private final List<Thread> writerThreads = new ArrayList<>();
+    private final AtomicBoolean isRunning = new AtomicBoolean(false);
+
+    // Метрики буфера
+    private final AtomicLong batchesFlushed = new AtomicLong(0);
+    private final AtomicLong itemsFlushed = new AtomicLong(0);
+    private final AtomicLong failedBatches = new AtomicLong(0);
+    private final AtomicLong rejectedItems = new AtomicLong(0);
+    private volatile long lastFlushDurationMs = 0;
+
+    /**
+     * @param name имя буфера (для логирования и имен потоков)
+     * @param capacity максимальное количество элементов, ожидающих записи
+     * @param batchSize максимальный размер пакета
+     * @param flushIntervalMs максимальное время ожидания элемента в буфере
+     * @param batchWriter обработчик пакета (вызывается из потоков записи)
+     */
+    public WriteBehindBuffer(String name, int capacity, int batchSize, long flushIntervalMs,
+                             Consumer<List<T>> batchWriter) {
+        if (capacity <= 0 || batchSize <= 0 || flushIntervalMs <= 0) {
+            throw new IllegalArgumentException(String.format(
+                "Invalid write-behind configuration for %s: capacity=%d, batchSize=%d, flushIntervalMs=%d",
+                name, capacity, batchSize, flushIntervalMs));
+        }
+        this.name = name;
+        this.capacity = capacity;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.batchWriter = batchWriter;
+    }
+
+    /**
+     * Запуск потоков записи
+     *
+     * @param threads количество потоков, параллельно сбрасывающих пакеты
+     */
+    public void start(int threads) {
+        start(threads, Thread.ofPlatform().name(name + "-writer-", 0).daemon(true).factory());
+    }
+
+    /**
+     * Запуск потоков записи, созданных фабрикой (например, виртуальных)
+     *
+     * @param threads количество потоков, параллельно сбрасывающих пакеты
+     * @param threadFactory фабрика потоков записи
+     */
+    public void start(int threads, ThreadFactory threadFactory) {
+        if (!isRunning.compareAndSet(false, true)) {
+            return;
+        }
+        int threadCount = Math.max(1, threads);
+        for (int i = 0; i < threadCount; i++) {
+            Thread t = threadFactory.newThread(this::runFlushLoop);
+            writerThreads.add(t);
+            t.start();
+        }
+        log.info("WriteBehindBuffer[{}] started: capacity={}, batchSize={}, flushInterval={}ms, writers={}",
+            name, capacity, batchSize, TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos), threadCount);
+    }
+
+    /**
+     * Добавление элемента в буфер без блокировки
+     *
+     * @param item элемент для записи
+     * @return false, если буфер заполнен и элемент отброшен
+     */
+    public boolean offer(T item) {
+        if (queue.offer(item)) {
+            return true;
+        }
+        rejectedItems.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Цикл потока записи: ждет первый элемент, затем добирает пакет до batchSize
+     * или до истечения flushInterval с момента получения первого элемента
+     */
+    private void runFlushLoop() {
+        List<T> batch = new ArrayList<>(batchSize);
+
+        while (isRunning.get() || !queue.isEmpty()) {
+            try {
+                T first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    if (batch.size() >= batchSize) {
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    T next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flush(batch);
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                // Дописываем то, что уже набрано, прежде чем выйти
+                flush(batch);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Передача пакета обработчику
+     */
+    private void flush(List<T> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            batchWriter.accept(batch);
+            batchesFlushed.incrementAndGet();
+            itemsFlushed.addAndGet(batch.size());
+        } catch (Exception e) {
+            failedBatches.incrementAndGet();
+            log.error("WriteBehindBuffer[{}] failed to flush batch of {} items: {}",
+                name, batch.size(), e.getMessage(), e);
+        } finally {
+            lastFlushDurationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Остановка буфера с дозаписью всех накопленных элементов
+     *
+     * @param timeoutMs максимальное время ожидания дозаписи
+     */
+    public void shutdown(long timeoutMs) {
+        if (!isRunning.compareAndSet(true, false)) {
+            return;
+        }
+        log.info("WriteBehindBuffer[{}] shutting down, {} items pending", name, queue.size());
+
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        for (Thread t : writerThreads) {
+            try {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining > 0) {
+                    t.join(remaining);
+                }
+                if (t.isAlive()) {
+                    t.interrupt();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                t.interrupt();
+            }
+        }
+        writerThreads.clear();
+
+        if (!queue.isEmpty()) {
+            log.warn("WriteBehindBuffer[{}] stopped with {} unwritten items", name, queue.size());
+        }
+        log.info("WriteBehindBuffer[{}] shutdown completed: batches={}, items={}, failedBatches={}, rejected={}",
+            name, batchesFlushed.get(), itemsFlushed.get(), failedBatches.get(), rejectedItems.get());
+    }
+
+    // Getters
+    public String getName() { return name; }
+    public int getCapacity() { return capacity; }
+    public int getBatchSize() { return batchSize; }
+    public int getPendingCount() { return queue.size(); }
+    public long getBatchesFlushed() { return batchesFlushed.get(); }
+    public long getItemsFlushed() { return itemsFlushed.get(); }
+    public long getFailedBatches() { return failedBatches.get(); }
+    public long getRejectedItems() { return rejectedItems.get(); }
+    public long getLastFlushDurationMs() { return lastFlushDurationMs; }
+    public boolean isRunning() { return isRunning.get(); }
+
+    public double getUtilization() {
+        return (double) queue.size() / capacity;
+    }
+}
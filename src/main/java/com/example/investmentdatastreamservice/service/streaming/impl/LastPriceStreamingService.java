@@ -1,418 +1,182 @@
 package com.example.investmentdatastreamservice.service.streaming.impl;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import com.example.investmentdatastreamservice.repository.FutureRepository;
-import com.example.investmentdatastreamservice.repository.IndicativeRepository;
-import com.example.investmentdatastreamservice.repository.ShareRepository;
-import com.example.investmentdatastreamservice.service.streaming.MultiStreamManager;
-import com.example.investmentdatastreamservice.service.streaming.SubscriptionBatcher;
+import com.example.investmentdatastreamservice.service.streaming.LastPriceConsumer;
+import com.example.investmentdatastreamservice.service.streaming.LastPriceDispatcher;
+import com.example.investmentdatastreamservice.service.streaming.RingBufferDispatcher;
 import com.example.investmentdatastreamservice.service.streaming.StreamingMetrics;
 import com.example.investmentdatastreamservice.service.streaming.StreamingService;
+import com.example.investmentdatastreamservice.service.streaming.SubscriptionTracker;
+import com.example.investmentdatastreamservice.service.streaming.UniverseSyncResult;
 import com.example.investmentdatastreamservice.service.streaming.processor.LastPriceProcessor;
 
-import io.grpc.stub.StreamObserver;
 import ru.tinkoff.piapi.contract.v1.LastPrice;
-import ru.tinkoff.piapi.contract.v1.LastPriceInstrument;
-import ru.tinkoff.piapi.contract.v1.MarketDataRequest;
-import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
-import ru.tinkoff.piapi.contract.v1.SubscribeLastPriceRequest;
-import ru.tinkoff.piapi.contract.v1.SubscribeLastPriceResponse;
-import ru.tinkoff.piapi.contract.v1.SubscriptionAction;
 
 /**
  * Сервис для потоковой обработки цен последних сделок (LastPrice)
- * 
- * Высокопроизводительный сервис для получения и обработки цен последних сделок
- * от T-Invest API с поддержкой множественных stream-соединений для обхода
- * лимита в 300 подписок на один stream.
- * 
- * Особенности:
- * - Разделяет инструменты на батчи по 250 штук
- * - Создает отдельное gRPC соединение для каждого батча
- * - Соблюдает rate limit: 100 запросов в минуту
- * - Автоматическое переподключение при ошибках
+ *
+ * Сохраняет цены последних сделок в invest.last_prices. Собственных gRPC
+ * соединений не держит: получает сделки из общего потока {@link SharedLastPriceStream}
+ * через {@link LastPriceDispatcher}, поэтому работа вместе с мониторингом лимитов
+ * не удваивает подписки и трафик.
  */
 @Service
-public class LastPriceStreamingService implements StreamingService<LastPrice> {
-    
+public class LastPriceStreamingService implements StreamingService<LastPrice>, LastPriceConsumer {
+
     private static final Logger log = LoggerFactory.getLogger(LastPriceStreamingService.class);
-    
-    @Value("${tinkoff.api.token}")
-    private String apiToken;
-    
+
     private final LastPriceProcessor processor;
-    private final ShareRepository shareRepository;
-    private final FutureRepository futureRepository;
-    private final IndicativeRepository indicativeRepository;
-    
+    private final SharedLastPriceStream sharedStream;
+    private final LastPriceDispatcher dispatcher;
+
     private final AtomicBoolean isRunning = new AtomicBoolean(false);
     private final StreamingMetrics metrics;
-    private final SubscriptionBatcher batcher;
-    
-    // Множественные stream-соединения
-    private MultiStreamManager multiStreamManager;
-    private final AtomicInteger successfulSubscriptions = new AtomicInteger(0);
-    private final AtomicInteger failedSubscriptions = new AtomicInteger(0);
-    
+
     public LastPriceStreamingService(
             LastPriceProcessor processor,
-            ShareRepository shareRepository,
-            FutureRepository futureRepository,
-            IndicativeRepository indicativeRepository) {
-        
+            SharedLastPriceStream sharedStream,
+            LastPriceDispatcher dispatcher) {
+
         this.processor = processor;
-        this.shareRepository = shareRepository;
-        this.futureRepository = futureRepository;
-        this.indicativeRepository = indicativeRepository;
+        this.sharedStream = sharedStream;
+        this.dispatcher = dispatcher;
         this.metrics = new StreamingMetrics("LastPriceStreamingService");
-        this.batcher = new SubscriptionBatcher(); // 250 инструментов на батч
-        
-        log.info("LastPriceStreamingService initialized with multi-stream support");
+
+        log.info("LastPriceStreamingService initialized on shared LastPrice stream");
     }
-    
+
     @Override
     public CompletableFuture<Void> start() {
-        return CompletableFuture.runAsync(() -> {
-            if (isRunning.get()) {
-                log.warn("LastPrice streaming service is already running");
-                return;
-            }
-            
-            log.info("🚀 Starting LastPrice streaming service with multi-stream support...");
-            isRunning.set(true);
-            metrics.setRunning(true);
-            successfulSubscriptions.set(0);
-            failedSubscriptions.set(0);
-            
-            try {
-                // Получаем список инструментов
-                List<String> instruments = getAllInstruments();
-                
-                if (instruments.isEmpty()) {
-                    log.warn("No instruments found for LastPrice subscription");
-                    isRunning.set(false);
-                    metrics.setRunning(false);
-                    return;
-                }
-                
-                log.info("📊 Found {} instruments for LastPrice subscription", instruments.size());
-                
-                // Разделяем на батчи
-                List<List<String>> batches = batcher.createBatches(instruments);
-                SubscriptionBatcher.BatchInfo batchInfo = batcher.getBatchInfo(instruments);
-                
-                log.info("📦 Created {} batches: {}", batches.size(), batchInfo);
-                log.info("🔗 Each batch will use separate gRPC stream connection");
-                
-                // Создаем менеджер множественных стримов
-                multiStreamManager = new MultiStreamManager(apiToken, batches.size());
-                
-                // Настраиваем общий response observer для всех стримов
-                setupResponseObserver();
-                
-                // Создаем stream для каждого батча
-                for (int i = 0; i < batches.size(); i++) {
-                    multiStreamManager.createStreamForBatch(i);
-                }
-                
-                // Подключаем все stream'ы
-                multiStreamManager.connectAll()
-                    .thenCompose(v -> {
-                        log.info("✅ All stream connections established");
-                        return subscribeAllBatches(batches);
-                    })
-                    .whenComplete((result, throwable) -> {
-                        if (throwable != null) {
-                            log.error("❌ Failed to start LastPrice streaming", throwable);
-                            isRunning.set(false);
-                            metrics.setRunning(false);
-                            scheduleReconnect();
-                        } else {
-                            log.info("🎉 LastPrice streaming service started successfully");
-                            log.info("📈 Subscribed: {} successful, {} failed", 
-                                successfulSubscriptions.get(), failedSubscriptions.get());
-                        }
-                    })
-                    .join(); // Ждем завершения подписок
-                
-            } catch (Exception e) {
-                log.error("❌ Error starting LastPrice streaming service", e);
-                isRunning.set(false);
-                metrics.setRunning(false);
-                scheduleReconnect();
-            }
-        });
-    }
-    
-    /**
-     * Подписывается на все батчи с соблюдением rate limit
-     */
-    private CompletableFuture<Void> subscribeAllBatches(List<List<String>> batches) {
-        log.info("📡 Starting batch subscriptions with rate limiting...");
-        
-        List<CompletableFuture<Void>> futures = new ArrayList<>();
-        
-        for (int i = 0; i < batches.size(); i++) {
-            final int batchIndex = i;
-            final List<String> batch = batches.get(i);
-            
-            // Задержка между батчами для соблюдения rate limit (100 запросов/мин)
-            long delayMs = i * SubscriptionBatcher.BATCH_DELAY_MS;
-            
-            log.info("📤 Preparing batch {}/{}: {} instruments (delay: {}ms)", 
-                batchIndex + 1, batches.size(), batch.size(), delayMs);
-            
-            // Создаем запрос на подписку для батча
-            SubscribeLastPriceRequest request = SubscribeLastPriceRequest.newBuilder()
-                .setSubscriptionAction(SubscriptionAction.SUBSCRIPTION_ACTION_SUBSCRIBE)
-                .addAllInstruments(batch.stream()
-                    .map(figi -> LastPriceInstrument.newBuilder().setInstrumentId(figi).build())
-                    .toList())
-                .build();
-            
-            MarketDataRequest marketDataRequest = MarketDataRequest.newBuilder()
-                .setSubscribeLastPriceRequest(request)
-                .build();
-            
-            // Отправляем запрос через соответствующий stream с задержкой
-            CompletableFuture<Void> future = multiStreamManager.sendBatchSubscription(
-                batchIndex, marketDataRequest, delayMs)
-                .whenComplete((result, throwable) -> {
-                    if (throwable != null) {
-                        log.error("❌ Failed to subscribe batch {}/{}", batchIndex + 1, batches.size(), throwable);
-                    } else {
-                        log.info("✅ Batch {}/{} subscription request sent", batchIndex + 1, batches.size());
-                    }
-                });
-            
-            futures.add(future);
+        if (!isRunning.compareAndSet(false, true)) {
+            log.warn("LastPrice streaming service is already running");
+            return CompletableFuture.completedFuture(null);
         }
-        
-        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
-            .thenRun(() -> {
-                log.info("✅ All batch subscription requests completed");
+
+        log.info("🚀 Starting LastPrice streaming service...");
+        metrics.setRunning(true);
+        dispatcher.register(this);
+
+        return sharedStream.acquire(getServiceName())
+            .whenComplete((result, throwable) -> {
+                if (throwable != null) {
+                    log.error("❌ Failed to start LastPrice streaming", throwable);
+                } else {
+                    log.info("🎉 LastPrice streaming service started successfully");
+                }
             });
     }
-    
+
     @Override
     public CompletableFuture<Void> stop() {
-        return CompletableFuture.runAsync(() -> {
-            if (!isRunning.get()) {
-                log.warn("LastPrice streaming service is not running");
-                return;
-            }
-            
-            log.info("⏹️ Stopping LastPrice streaming service...");
-            isRunning.set(false);
-            metrics.setRunning(false);
-            
-            try {
-                if (multiStreamManager != null) {
-                    // Отключаем все stream'ы
-                    multiStreamManager.disconnectAll().join();
-                    log.info("✅ All streams disconnected");
+        if (!isRunning.compareAndSet(true, false)) {
+            log.warn("LastPrice streaming service is not running");
+            return CompletableFuture.completedFuture(null);
+        }
+
+        log.info("⏹️ Stopping LastPrice streaming service...");
+        metrics.setRunning(false);
+        dispatcher.unregister(this);
+
+        return sharedStream.release(getServiceName())
+            .whenComplete((result, throwable) -> {
+                if (throwable != null) {
+                    log.error("❌ Error stopping LastPrice streaming service", throwable);
+                } else {
+                    log.info("✅ LastPrice streaming service stopped successfully");
                 }
-                
-                log.info("✅ LastPrice streaming service stopped successfully");
-                
-            } catch (Exception e) {
-                log.error("❌ Error stopping LastPrice streaming service", e);
-            }
-        });
+            });
     }
-    
+
     @Override
     public CompletableFuture<Void> reconnect() {
-        return CompletableFuture.runAsync(() -> {
-            log.info("🔄 Force reconnecting LastPrice streaming service...");
-            
-            if (multiStreamManager != null) {
-                multiStreamManager.forceReconnectAll()
-                    .thenCompose(v -> start())
-                    .whenComplete((result, throwable) -> {
-                        if (throwable != null) {
-                            log.error("❌ Failed to reconnect LastPrice streaming service", throwable);
-                        } else {
-                            log.info("✅ LastPrice streaming service reconnected successfully");
-                        }
-                    });
-            } else {
-                log.warn("MultiStreamManager is null, starting fresh...");
-                start();
-            }
-        });
+        log.info("🔄 Force reconnecting shared LastPrice stream...");
+        return sharedStream.reconnect();
     }
-    
+
     @Override
     public boolean isRunning() {
         return isRunning.get();
     }
-    
+
     @Override
     public boolean isConnected() {
-        return multiStreamManager != null && multiStreamManager.isAllConnected();
+        return isRunning.get() && sharedStream.isConnected();
     }
-    
+
     @Override
     public StreamingMetrics getMetrics() {
+        metrics.setConnected(isConnected());
         return metrics;
     }
-    
-    @Override
-    public String getServiceName() {
-        return "LastPriceStreamingService";
-    }
-    
-    @Override
-    public Class<LastPrice> getDataType() {
-        return LastPrice.class;
-    }
-    
+
     /**
-     * Настройка обработчика ответов от API (общий для всех stream'ов)
+     * Задержки по этапам пути сделки: получение и раздача - в общем потоке,
+     * запись в БД - в процессоре
      */
-    private void setupResponseObserver() {
-        StreamObserver<MarketDataResponse> responseObserver = new StreamObserver<>() {
-            @Override
-            public void onNext(MarketDataResponse response) {
-                if (response.hasSubscribeLastPriceResponse()) {
-                    handleSubscriptionResponse(response.getSubscribeLastPriceResponse());
-                } else if (response.hasLastPrice()) {
-                    handleLastPriceData(response.getLastPrice());
-                }
-            }
-            
-            @Override
-            public void onError(Throwable t) {
-                log.error("❌ LastPrice stream error", t);
-                metrics.incrementErrors(); // 👈 фиксируем ошибку потока
-                metrics.setConnected(false);
-                scheduleReconnect();
-            }
-            
-            @Override
-            public void onCompleted() {
-                log.info("LastPrice stream completed");
-                metrics.setConnected(false);
-                if (isRunning.get()) {
-                    scheduleReconnect();
-                }
-            }
-        };
-        
-        if (multiStreamManager != null) {
-            multiStreamManager.setSharedResponseObserver(responseObserver);
-        }
+    public Map<String, Object> getLatencySnapshot() {
+        Map<String, Object> latency = new LinkedHashMap<>(sharedStream.getMetrics().getLatencySnapshot());
+        latency.putAll(processor.getMetrics().getLatencySnapshot());
+        return latency;
     }
-    
+
     /**
-     * Обработка ответа на подписку
+     * Кольцевой буфер общего потока (для метрик заполненности)
      */
-    private void handleSubscriptionResponse(SubscribeLastPriceResponse response) {
-        metrics.setConnected(true);
-        
-        int batchSuccessful = 0;
-        int batchFailed = 0;
-        
-        log.info("=== LASTPRICE SUBSCRIPTION RESPONSE ===");
-        log.info("Total subscriptions in response: {}", response.getLastPriceSubscriptionsList().size());
-        
-        for (var subscription : response.getLastPriceSubscriptionsList()) {
-            String status = subscription.getSubscriptionStatus().toString();
-            log.info("  FIGI {} -> {}", subscription.getFigi(), status);
-            
-            if (status.contains("SUCCESS")) {
-                batchSuccessful++;
-                successfulSubscriptions.incrementAndGet();
-            } else {
-                batchFailed++;
-                failedSubscriptions.incrementAndGet();
-            }
-        }
-        
-        log.info("Batch result: {} successful, {} failed", batchSuccessful, batchFailed);
-        log.info("Total result: {} successful, {} failed", 
-            successfulSubscriptions.get(), failedSubscriptions.get());
-        log.info("=====================================");
+    public RingBufferDispatcher<LastPrice> getRingBuffer() {
+        return sharedStream.getRingBuffer();
     }
-    
-    /**
-     * Обработка данных LastPrice
-     */
-    private void handleLastPriceData(LastPrice lastPrice) {
-        metrics.incrementReceived(); // 👈 получено новое сообщение
 
-        processor.process(lastPrice)
-            .whenComplete((result, throwable) -> {
-                if (throwable != null) {
-                    metrics.incrementErrors(); // 👈 ошибка обработки
-                    processor.handleError(throwable);
-                } else {
-                    metrics.incrementProcessed(); // 👈 успешно обработано
-                }
-            });
-    }
-    
     /**
-     * Получение списка всех инструментов
+     * Синхронизация подписок общего потока с инструментами в БД
      */
-    private List<String> getAllInstruments() {
-        List<String> instruments = new java.util.ArrayList<>();
-        
-        // Добавляем акции
-        instruments.addAll(shareRepository.findAllDistinctFigi().stream()
-            .filter(figi -> figi != null && !figi.trim().isEmpty())
-            .toList());
-        
-        // Добавляем фьючерсы
-        instruments.addAll(futureRepository.findAllFigis().stream()
-            .filter(figi -> figi != null && !figi.trim().isEmpty())
-            .toList());
-        
-        // Добавляем индикативные инструменты
-        instruments.addAll(indicativeRepository.findAllDistinctFigi().stream()
-            .filter(figi -> figi != null && !figi.trim().isEmpty())
-            .toList());
-        
-        log.info("Found {} instruments for LastPrice subscription", instruments.size());
-        return instruments;
+    public CompletableFuture<UniverseSyncResult> syncInstruments() {
+        return sharedStream.syncInstruments();
     }
-    
+
     /**
-     * Планирование переподключения
+     * Состояние подписок общего потока по инструментам
      */
-    private void scheduleReconnect() {
-        if (isRunning.get()) {
-            log.info("⏰ Scheduling reconnect in 30 seconds...");
-            CompletableFuture.runAsync(() -> {
-                try {
-                    Thread.sleep(30000); // 30 секунд
-                    if (isRunning.get()) {
-                        log.info("🔄 Attempting to reconnect LastPrice streaming service...");
-                        reconnect();
-                    }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    log.warn("Reconnect scheduling interrupted");
-                }
-            });
-        }
+    public SubscriptionTracker getSubscriptionTracker() {
+        return sharedStream.getSubscriptionTracker();
     }
-}
-
-
 
+    @Override
+    public String getServiceName() {
+        return "LastPriceStreamingService";
+    }
 
+    @Override
+    public String getConsumerName() {
+        return getServiceName();
+    }
 
+    @Override
+    public Class<LastPrice> getDataType() {
+        return LastPrice.class;
+    }
 
+    /**
+     * Обработка данных LastPrice из общего потока
+     * (вызывается в потоке-потребителе кольцевого буфера общего потока)
+     */
+    @Override
+    public void onLastPrice(LastPrice lastPrice) {
+        metrics.incrementReceived(); // 👈 получено новое сообщение
 
+        try {
+            processor.handle(lastPrice);
+            metrics.incrementProcessed(); // 👈 успешно обработано
+        } catch (Exception e) {
+            metrics.incrementErrors(); // 👈 ошибка обработки
+            processor.handleError(e);
+        }
+    }
+}
@@ -1,25 +1,44 @@
 package com.example.investmentdatastreamservice.service.streaming.impl;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.example.investmentdatastreamservice.config.GrpcChannelFactory;
+import com.example.investmentdatastreamservice.config.StreamingProperties;
 import com.example.investmentdatastreamservice.repository.FutureRepository;
 import com.example.investmentdatastreamservice.repository.ShareRepository;
+import com.example.investmentdatastreamservice.service.streaming.CandleGapBackfiller;
 import com.example.investmentdatastreamservice.service.streaming.MultiStreamManager;
+import com.example.investmentdatastreamservice.service.streaming.RingBufferDispatcher;
 import com.example.investmentdatastreamservice.service.streaming.SubscriptionBatcher;
+import com.example.investmentdatastreamservice.service.streaming.SubscriptionRequestScheduler;
+import com.example.investmentdatastreamservice.service.streaming.SubscriptionTracker;
+import com.example.investmentdatastreamservice.service.streaming.UniverseSyncResult;
 import com.example.investmentdatastreamservice.service.streaming.StreamingMetrics;
 import com.example.investmentdatastreamservice.service.streaming.StreamingService;
 import com.example.investmentdatastreamservice.service.streaming.processor.CandleProcessor;
 
 import io.grpc.stub.StreamObserver;
+import jakarta.annotation.PreDestroy;
 import ru.tinkoff.piapi.contract.v1.Candle;
 import ru.tinkoff.piapi.contract.v1.CandleInstrument;
 import ru.tinkoff.piapi.contract.v1.MarketDataRequest;
@@ -37,16 +56,26 @@ import ru.tinkoff.piapi.contract.v1.SubscriptionInterval;
  * лимита в 300 подписок на один stream.
  * 
  * Особенности:
- * - Разделяет инструменты на батчи по 250 штук
+ * - Разделяет инструменты на батчи до лимита в 300 подписок
  * - Создает отдельное gRPC соединение для каждого батча
- * - Соблюдает rate limit: 100 запросов в минуту
- * - Автоматическое переподключение при ошибках
+ * - Соблюдает rate limit: 100 запросов в минуту ({@link SubscriptionRequestScheduler})
+ * - При падении stream'а переподключается только он, подписки восстанавливает
+ *   {@link SubscriptionTracker}; неуспешные подписки повторяются по каждому FIGI
+ * - Свечи, пропущенные за время падения stream'а, дозагружает {@link CandleGapBackfiller}
+ * - Свечи передаются обработчику через кольцевой буфер, gRPC потоки не блокируются
+ * - Если не удалось поднять поток целиком, переподключение планируется на отдельном
+ *   планировщике с экспоненциальной задержкой (1с, x1.5, до 30с)
  */
 @Service
 public class MinuteCandleStreamingService implements StreamingService<Candle> {
     
     private static final Logger log = LoggerFactory.getLogger(MinuteCandleStreamingService.class);
     
+    // Конфигурация переподключений
+    private static final int INITIAL_RECONNECT_DELAY_MS = 1000;
+    private static final int MAX_RECONNECT_DELAY_MS = 30000;
+    private static final double RECONNECT_BACKOFF_MULTIPLIER = 1.5;
+    
     @Value("${tinkoff.api.token}")
     private String apiToken;
     
@@ -55,8 +84,20 @@ public class MinuteCandleStreamingService implements StreamingService<Candle> {
     private final FutureRepository futureRepository;
     
     private final AtomicBoolean isRunning = new AtomicBoolean(false);
+    private final Object subscriptionLock = new Object();
+    private final GrpcChannelFactory channelFactory;
+    private final SubscriptionRequestScheduler requestScheduler;
     private final StreamingMetrics metrics;
     private final SubscriptionBatcher batcher;
+    private final RingBufferDispatcher<Candle> ringBuffer;
+    private final SubscriptionTracker subscriptionTracker;
+    private final CandleGapBackfiller gapBackfiller;
+    private final ScheduledExecutorService reconnectScheduler;
+    private final AtomicBoolean reconnectPending = new AtomicBoolean(false);
+    private volatile int currentReconnectDelay = INITIAL_RECONNECT_DELAY_MS;
+    
+    // Момент падения stream'а (начало пропуска свечей) по индексу stream'а
+    private final Map<Integer, Instant> streamDownSince = new ConcurrentHashMap<>();
     
     // Множественные stream-соединения
     private MultiStreamManager multiStreamManager;
@@ -66,13 +107,35 @@ public class MinuteCandleStreamingService implements StreamingService<Candle> {
     public MinuteCandleStreamingService(
             CandleProcessor processor,
             ShareRepository shareRepository,
-            FutureRepository futureRepository) {
+            FutureRepository futureRepository,
+            StreamingProperties streamingProperties,
+            GrpcChannelFactory channelFactory,
+            SubscriptionRequestScheduler requestScheduler,
+            CandleGapBackfiller gapBackfiller) {
         
         this.processor = processor;
         this.shareRepository = shareRepository;
         this.futureRepository = futureRepository;
+        this.channelFactory = channelFactory;
+        this.requestScheduler = requestScheduler;
+        this.gapBackfiller = gapBackfiller;
         this.metrics = new StreamingMetrics("MinuteCandleStreamingService");
-        this.batcher = new SubscriptionBatcher(); // 250 инструментов на батч
+        this.batcher = new SubscriptionBatcher(); // до 300 подписок на stream
+        
+        StreamingProperties.Dispatch dispatchConfig = streamingProperties.getDispatch();
+        this.ringBuffer = new RingBufferDispatcher<>(
+            "candle",
+            dispatchConfig.getRingSize(),
+            dispatchConfig.getMaxBatch(),
+            this::processCandle
+        );
+        this.ringBuffer.start();
+        this.subscriptionTracker = new SubscriptionTracker("candle", this::resubscribe);
+        this.reconnectScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "candle-reconnect");
+            t.setDaemon(true);
+            return t;
+        });
         
         log.info("MinuteCandleStreamingService initialized with multi-stream support");
     }
@@ -80,75 +143,81 @@ public class MinuteCandleStreamingService implements StreamingService<Candle> {
     @Override
     public CompletableFuture<Void> start() {
         return CompletableFuture.runAsync(() -> {
-            if (isRunning.get()) {
-                log.warn("MinuteCandle streaming service is already running");
-                return;
-            }
-            
-            log.info("🚀 Starting MinuteCandle streaming service with multi-stream support...");
-            isRunning.set(true);
-            metrics.setRunning(true);
-            successfulSubscriptions.set(0);
-            failedSubscriptions.set(0);
-            
-            try {
-                // Получаем список инструментов
-                List<String> instruments = getAllInstruments();
-                
-                if (instruments.isEmpty()) {
-                    log.warn("No instruments found for MinuteCandle subscription");
-                    isRunning.set(false);
-                    metrics.setRunning(false);
+            synchronized (subscriptionLock) {
+                if (isRunning.get()) {
+                    log.warn("MinuteCandle streaming service is already running");
                     return;
                 }
-                
-                log.info("📊 Found {} instruments for MinuteCandle subscription", instruments.size());
-                
-                // Разделяем на батчи
-                List<List<String>> batches = batcher.createBatches(instruments);
-                SubscriptionBatcher.BatchInfo batchInfo = batcher.getBatchInfo(instruments);
-                
-                log.info("📦 Created {} batches: {}", batches.size(), batchInfo);
-                log.info("🔗 Each batch will use separate gRPC stream connection");
-                
-                // Создаем менеджер множественных стримов
-                multiStreamManager = new MultiStreamManager(apiToken, batches.size());
-                
-                // Настраиваем общий response observer для всех стримов
-                setupResponseObserver();
-                
-                // Создаем stream для каждого батча
-                for (int i = 0; i < batches.size(); i++) {
-                    multiStreamManager.createStreamForBatch(i);
-                }
-                
-                // Подключаем все stream'ы
-                multiStreamManager.connectAll()
-                    .thenCompose(v -> {
-                        log.info("✅ All stream connections established");
-                        return subscribeAllBatches(batches);
-                    })
-                    .whenComplete((result, throwable) -> {
-                        if (throwable != null) {
-                            log.error("❌ Failed to start MinuteCandle streaming", throwable);
-                            isRunning.set(false);
-                            metrics.setRunning(false);
-                            scheduleReconnect();
-                        } else {
-                            log.info("🎉 MinuteCandle streaming service started successfully");
-                            log.info("📈 Subscribed: {} successful, {} failed", 
-                                successfulSubscriptions.get(), failedSubscriptions.get());
-                        }
-                    })
-                    .join(); // Ждем завершения подписок
-                
-            } catch (Exception e) {
-                log.error("❌ Error starting MinuteCandle streaming service", e);
+                connect();
+            }
+        });
+    }
+    
+    /**
+     * Подключение и подписка на все инструменты (вызывается под subscriptionLock)
+     */
+    private void connect() {
+        log.info("🚀 Starting MinuteCandle streaming service with multi-stream support...");
+        isRunning.set(true);
+        metrics.setRunning(true);
+        successfulSubscriptions.set(0);
+        failedSubscriptions.set(0);
+        subscriptionTracker.clear();
+        
+        try {
+            // Получаем список инструментов
+            List<String> instruments = getAllInstruments();
+            
+            if (instruments.isEmpty()) {
+                log.warn("No instruments found for MinuteCandle subscription");
                 isRunning.set(false);
                 metrics.setRunning(false);
-                scheduleReconnect();
+                return;
             }
-        });
+            
+            log.info("📊 Found {} instruments for MinuteCandle subscription", instruments.size());
+            
+            // Разделяем на батчи
+            List<List<String>> batches = batcher.createBatches(instruments);
+            SubscriptionBatcher.BatchInfo batchInfo = batcher.getBatchInfo(instruments);
+            
+            log.info("📦 Created {} batches: {}", batches.size(), batchInfo);
+            log.info("🔗 Each batch will use separate gRPC stream connection");
+            
+            // Создаем менеджер множественных стримов
+            multiStreamManager = new MultiStreamManager(channelFactory, requestScheduler, apiToken, batches.size());
+            
+            // Настраиваем общий response observer для всех стримов
+            setupResponseObserver();
+            
+            // Создаем stream для каждого батча
+            for (int i = 0; i < batches.size(); i++) {
+                multiStreamManager.createStreamForBatch(i);
+            }
+            
+            // Подключаем все stream'ы
+            multiStreamManager.connectAll()
+                .thenCompose(v -> {
+                    log.info("✅ All stream connections established");
+                    return subscribeAllBatches(batches);
+                })
+                .whenComplete((result, throwable) -> {
+                    if (throwable != null) {
+                        log.error("❌ Failed to start MinuteCandle streaming", throwable);
+                        scheduleReconnect();
+                    } else {
+                        log.info("🎉 MinuteCandle streaming service started successfully");
+                        currentReconnectDelay = INITIAL_RECONNECT_DELAY_MS;
+                        log.info("📈 Subscribed: {} successful, {} failed", 
+                            successfulSubscriptions.get(), failedSubscriptions.get());
+                    }
+                })
+                .join(); // Ждем завершения подписок
+            
+        } catch (Exception e) {
+            log.error("❌ Error starting MinuteCandle streaming service", e);
+            scheduleReconnect();
+        }
     }
     
     /**
@@ -163,33 +232,18 @@ public class MinuteCandleStreamingService implements StreamingService<Candle> {
             final int batchIndex = i;
             final List<String> batch = batches.get(i);
             
-            // Задержка между батчами для соблюдения rate limit (100 запросов/мин)
-            long delayMs = i * SubscriptionBatcher.BATCH_DELAY_MS;
-            
-            log.info("📤 Preparing batch {}/{}: {} instruments (delay: {}ms)", 
-                batchIndex + 1, batches.size(), batch.size(), delayMs);
+            log.info("📤 Preparing batch {}/{}: {} instruments",
+                batchIndex + 1, batches.size(), batch.size());
             
-            // Создаем запрос на подписку для батча
-            SubscribeCandlesRequest request = SubscribeCandlesRequest.newBuilder()
-                .setSubscriptionAction(SubscriptionAction.SUBSCRIPTION_ACTION_SUBSCRIBE)
-                .addAllInstruments(batch.stream()
-                    .map(figi -> CandleInstrument.newBuilder()
-                        .setInstrumentId(figi)
-                        .setInterval(SubscriptionInterval.SUBSCRIPTION_INTERVAL_ONE_MINUTE)
-                        .build())
-                    .toList())
-                .build();
+            subscriptionTracker.track(batchIndex, batch);
             
-            MarketDataRequest marketDataRequest = MarketDataRequest.newBuilder()
-                .setSubscribeCandlesRequest(request)
-                .build();
-            
-            // Отправляем запрос через соответствующий stream с задержкой
+            // Запрос ставится в очередь планировщика подписок (rate limit)
             CompletableFuture<Void> future = multiStreamManager.sendBatchSubscription(
-                batchIndex, marketDataRequest, delayMs)
+                batchIndex, buildSubscribeRequest(batch))
                 .whenComplete((result, throwable) -> {
                     if (throwable != null) {
                         log.error("❌ Failed to subscribe batch {}/{}", batchIndex + 1, batches.size(), throwable);
+                        subscriptionTracker.onFailed(batch, SubscriptionTracker.SEND_FAILED);
                     } else {
                         log.info("✅ Batch {}/{} subscription request sent", batchIndex + 1, batches.size());
                     }
@@ -204,51 +258,271 @@ public class MinuteCandleStreamingService implements StreamingService<Candle> {
             });
     }
     
+    /**
+     * Запрос подписки на минутные свечи для списка инструментов
+     */
+    private MarketDataRequest buildSubscribeRequest(List<String> figis) {
+        return buildRequest(SubscriptionAction.SUBSCRIPTION_ACTION_SUBSCRIBE, figis);
+    }
+    
+    /**
+     * Запрос подписки или отписки для списка инструментов
+     */
+    private MarketDataRequest buildRequest(SubscriptionAction action, List<String> figis) {
+        SubscribeCandlesRequest request = SubscribeCandlesRequest.newBuilder()
+            .setSubscriptionAction(action)
+            .addAllInstruments(figis.stream()
+                .map(figi -> CandleInstrument.newBuilder()
+                    .setInstrumentId(figi)
+                    .setInterval(SubscriptionInterval.SUBSCRIPTION_INTERVAL_ONE_MINUTE)
+                    .build())
+                .toList())
+            .build();
+        
+        return MarketDataRequest.newBuilder()
+            .setSubscribeCandlesRequest(request)
+            .build();
+    }
+    
+    /**
+     * Добавление инструментов в работающий поток без перезапуска
+     *
+     * Инструменты занимают свободные места в открытых stream'ах, при нехватке
+     * открываются новые stream'ы.
+     *
+     * @param figis добавляемые инструменты (уже подписанные пропускаются)
+     * @return завершенный future: работа выполняется в вызывающем потоке
+     */
+    public CompletableFuture<Void> addInstruments(Collection<String> figis) {
+        return runInCallerThread(() -> {
+            synchronized (subscriptionLock) {
+                MultiStreamManager manager = multiStreamManager;
+                if (manager == null || !isRunning.get()) {
+                    log.warn("MinuteCandle stream is not running, instruments not added");
+                    return null;
+                }
+                subscribeInstruments(manager, figis);
+                return null;
+            }
+        });
+    }
+    
+    /**
+     * Отписка от инструментов в работающем потоке без перезапуска
+     *
+     * @param figis удаляемые инструменты
+     * @return завершенный future: работа выполняется в вызывающем потоке
+     */
+    public CompletableFuture<Void> removeInstruments(Collection<String> figis) {
+        return runInCallerThread(() -> {
+            synchronized (subscriptionLock) {
+                MultiStreamManager manager = multiStreamManager;
+                if (manager == null || !isRunning.get()) {
+                    return null;
+                }
+                unsubscribeInstruments(manager, figis);
+                return null;
+            }
+        });
+    }
+    
+    /**
+     * Синхронизация подписок с набором инструментов в БД без перезапуска
+     *
+     * Отписывает инструменты, которых больше нет в БД (истекшие фьючерсы, делистинг),
+     * подписывает новые и уплотняет stream'ы: пока открыто больше stream'ов, чем нужно,
+     * инструменты последнего stream'а подписываются в свободных местах остальных,
+     * после чего последний stream закрывается.
+     *
+     * @return завершенный future: работа выполняется в вызывающем потоке
+     */
+    public CompletableFuture<UniverseSyncResult> syncInstruments() {
+        return runInCallerThread(() -> {
+            synchronized (subscriptionLock) {
+                MultiStreamManager manager = multiStreamManager;
+                if (manager == null || !isRunning.get()) {
+                    return UniverseSyncResult.SKIPPED;
+                }
+    
+                Set<String> actual = new LinkedHashSet<>(getAllInstruments());
+                if (actual.isEmpty()) {
+                    log.warn("No instruments found in DB, MinuteCandle subscriptions left unchanged");
+                    return UniverseSyncResult.SKIPPED;
+                }
+                Set<String> tracked = subscriptionTracker.getTrackedInstruments();
+                List<String> removed = tracked.stream().filter(figi -> !actual.contains(figi)).toList();
+                List<String> added = actual.stream().filter(figi -> !tracked.contains(figi)).toList();
+    
+                int streamsBefore = manager.getTotalStreamCount();
+                unsubscribeInstruments(manager, removed);
+                subscribeInstruments(manager, added);
+                int relocated = compactStreams(manager);
+                int streamsAfter = manager.getTotalStreamCount();
+    
+                return new UniverseSyncResult(added.size(), removed.size(), relocated,
+                    Math.max(0, streamsBefore - streamsAfter), streamsAfter);
+            }
+        });
+    }
+    
+    /**
+     * Выполнение изменения подписок в вызывающем потоке
+     *
+     * Работа все равно ждет ответов менеджера stream'ов под блокировкой, поэтому
+     * перенос ее в общий пул только занимал бы его поток; результат и ошибка
+     * возвращаются уже завершенным future.
+     */
+    private static <T> CompletableFuture<T> runInCallerThread(Supplier<T> work) {
+        try {
+            return CompletableFuture.completedFuture(work.get());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    /**
+     * Подписка на инструменты по плану распределения (вызывается под subscriptionLock)
+     */
+    private void subscribeInstruments(MultiStreamManager manager, Collection<String> figis) {
+        Map<Integer, List<String>> plan = subscriptionTracker.allocate(
+            figis, batcher.getBatchSize(), manager.getTotalStreamCount());
+        if (plan.isEmpty()) {
+            return;
+        }
+        log.info("➕ Subscribing {} new MinuteCandle instruments on streams {}",
+            plan.values().stream().mapToInt(List::size).sum(), plan.keySet());
+        manager.applySubscriptionPlan(plan, this::buildSubscribeRequest)
+            .whenComplete((result, throwable) -> {
+                if (throwable != null) {
+                    log.error("❌ Failed to subscribe new MinuteCandle instruments", throwable);
+                    plan.values().forEach(batch ->
+                        subscriptionTracker.onFailed(batch, SubscriptionTracker.SEND_FAILED));
+                }
+            })
+            .exceptionally(throwable -> null)
+            .join();
+    }
+    
+    /**
+     * Отписка от инструментов в их stream'ах (вызывается под subscriptionLock)
+     */
+    private void unsubscribeInstruments(MultiStreamManager manager, Collection<String> figis) {
+        Map<Integer, List<String>> plan = subscriptionTracker.untrack(figis);
+        if (plan.isEmpty()) {
+            return;
+        }
+        log.info("➖ Unsubscribing {} MinuteCandle instruments on streams {}",
+            plan.values().stream().mapToInt(List::size).sum(), plan.keySet());
+        manager.applySubscriptionPlan(plan,
+            batch -> buildRequest(SubscriptionAction.SUBSCRIPTION_ACTION_UNSUBSCRIBE, batch))
+            .exceptionally(throwable -> {
+                log.error("❌ Failed to unsubscribe MinuteCandle instruments", throwable);
+                return null;
+            })
+            .join();
+    }
+    
+    /**
+     * Уплотнение stream'ов: перенос инструментов последнего stream'а и его закрытие
+     * (вызывается под subscriptionLock)
+     *
+     * Инструменты сначала подписываются на новом месте, затем stream закрывается,
+     * поэтому данные по ним не теряются.
+     *
+     * @return количество перенесенных инструментов
+     */
+    private int compactStreams(MultiStreamManager manager) {
+        int relocated = 0;
+        SubscriptionTracker.Relocation relocation;
+        while ((relocation = subscriptionTracker.planCompaction(
+                batcher.getBatchSize(), manager.getTotalStreamCount())) != null) {
+            SubscriptionTracker.Relocation current = relocation;
+            log.info("🗜️ Moving {} MinuteCandle instruments from stream #{} to streams {}",
+                current.size(), current.sourceStream() + 1, current.targets().keySet());
+            manager.applySubscriptionPlan(current.targets(), this::buildSubscribeRequest)
+                .whenComplete((result, throwable) -> {
+                    if (throwable != null) {
+                        log.error("❌ Failed to subscribe relocated MinuteCandle instruments", throwable);
+                        current.targets().values().forEach(batch ->
+                            subscriptionTracker.onFailed(batch, SubscriptionTracker.SEND_FAILED));
+                    }
+                })
+                .exceptionally(throwable -> null)
+                .join();
+            manager.closeLastStream().join();
+            relocated += current.size();
+            
+            // Закрытый stream мог быть недоступен: дозагружаем пропуск перенесенных инструментов
+            Instant gapStart = streamDownSince.remove(current.sourceStream());
+            if (gapStart != null) {
+                gapBackfiller.backfill(current.targets().values().stream().flatMap(List::stream).toList(),
+                    gapStart, Instant.now());
+            }
+        }
+        return relocated;
+    }
+    
+    /**
+     * Повторная подписка инструментов через их stream (вызывается SubscriptionTracker)
+     */
+    private CompletableFuture<Void> resubscribe(int streamIndex, List<String> figis) {
+        MultiStreamManager manager = multiStreamManager;
+        if (manager == null || !isRunning.get()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return manager.sendBatchSubscription(streamIndex, buildSubscribeRequest(figis));
+    }
+    
     @Override
     public CompletableFuture<Void> stop() {
         return CompletableFuture.runAsync(() -> {
-            if (!isRunning.get()) {
-                log.warn("MinuteCandle streaming service is not running");
-                return;
-            }
-            
-            log.info("⏹️ Stopping MinuteCandle streaming service...");
-            isRunning.set(false);
-            metrics.setRunning(false);
-            
-            try {
-                if (multiStreamManager != null) {
-                    // Отключаем все stream'ы
-                    multiStreamManager.disconnectAll().join();
-                    log.info("✅ All streams disconnected");
+            synchronized (subscriptionLock) {
+                if (!isRunning.get()) {
+                    log.warn("MinuteCandle streaming service is not running");
+                    return;
                 }
-                
-                log.info("✅ MinuteCandle streaming service stopped successfully");
-                
-            } catch (Exception e) {
-                log.error("❌ Error stopping MinuteCandle streaming service", e);
+                disconnect();
             }
         });
     }
     
+    /**
+     * Отключение всех соединений (вызывается под subscriptionLock)
+     */
+    private void disconnect() {
+        log.info("⏹️ Stopping MinuteCandle streaming service...");
+        isRunning.set(false);
+        metrics.setRunning(false);
+        subscriptionTracker.clear();
+        streamDownSince.clear();
+        
+        try {
+            if (multiStreamManager != null) {
+                // Отключаем все stream'ы
+                multiStreamManager.disconnectAll().join();
+                log.info("✅ All streams disconnected");
+            }
+            
+            log.info("✅ MinuteCandle streaming service stopped successfully");
+            
+        } catch (Exception e) {
+            log.error("❌ Error stopping MinuteCandle streaming service", e);
+        }
+    }
+    
+    /**
+     * Принудительное переподключение: все stream'ы закрываются и открываются заново
+     * по текущему списку инструментов
+     */
     @Override
     public CompletableFuture<Void> reconnect() {
         return CompletableFuture.runAsync(() -> {
-            log.info("🔄 Force reconnecting MinuteCandle streaming service...");
-            
-            if (multiStreamManager != null) {
-                multiStreamManager.forceReconnectAll()
-                    .thenCompose(v -> start())
-                    .whenComplete((result, throwable) -> {
-                        if (throwable != null) {
-                            log.error("❌ Failed to reconnect MinuteCandle streaming service", throwable);
-                        } else {
-                            log.info("✅ MinuteCandle streaming service reconnected successfully");
-                        }
-                    });
-            } else {
-                log.warn("MultiStreamManager is null, starting fresh...");
-                start();
+            synchronized (subscriptionLock) {
+                log.info("🔄 Force reconnecting MinuteCandle streaming service...");
+                if (isRunning.get()) {
+                    disconnect();
+                }
+                connect();
             }
         });
     }
@@ -296,27 +570,56 @@ public class MinuteCandleStreamingService implements StreamingService<Candle> {
                 }
             }
             
+            // Упавший stream переподключает MultiStreamManager, остальные продолжают работу
+            
             @Override
             public void onError(Throwable t) {
                 log.error("❌ MinuteCandle stream error", t);
                 metrics.setConnected(false);
                 metrics.incrementErrors(); // <--- можно считать как сетевую ошибку
-                scheduleReconnect();
             }
             
             @Override
             public void onCompleted() {
                 log.info("MinuteCandle stream completed");
                 metrics.setConnected(false);
-                if (isRunning.get()) {
-                    scheduleReconnect();
-                }
             }
         };
         
         if (multiStreamManager != null) {
             multiStreamManager.setSharedResponseObserver(responseObserver);
+            multiStreamManager.setStreamListener(new MultiStreamManager.StreamListener() {
+                @Override
+                public void onStreamDown(int streamIndex, Throwable error) {
+                    streamDownSince.putIfAbsent(streamIndex, Instant.now());
+                    subscriptionTracker.onStreamDown(streamIndex);
+                }
+                
+                @Override
+                public void onStreamRestored(int streamIndex) {
+                    subscriptionTracker.resubscribeStream(streamIndex);
+                    backfillGap(streamIndex);
+                }
+            });
+        }
+    }
+    
+    /**
+     * Дозагрузка свечей инструментов stream'а за время его падения
+     */
+    private void backfillGap(int streamIndex) {
+        Instant gapStart = streamDownSince.remove(streamIndex);
+        if (gapStart == null) {
+            return;
         }
+        gapBackfiller.backfill(subscriptionTracker.getStreamInstruments(streamIndex), gapStart, Instant.now())
+            .whenComplete((written, throwable) -> {
+                if (throwable != null) {
+                    log.error("❌ Candle backfill for stream #{} failed", streamIndex + 1, throwable);
+                } else {
+                    log.info("🧩 Stream #{}: {} missed candles backfilled", streamIndex + 1, written);
+                }
+            });
     }
     
     /**
@@ -338,9 +641,11 @@ public class MinuteCandleStreamingService implements StreamingService<Candle> {
             if (status.contains("SUCCESS")) {
                 batchSuccessful++;
                 successfulSubscriptions.incrementAndGet();
+                subscriptionTracker.onSubscribed(subscription.getFigi());
             } else {
                 batchFailed++;
                 failedSubscriptions.incrementAndGet();
+                subscriptionTracker.onFailed(subscription.getFigi(), status);
             }
         }
         
@@ -351,18 +656,54 @@ public class MinuteCandleStreamingService implements StreamingService<Candle> {
     }
     
     /**
-     * Обработка данных Candle
+     * Передача свечи в кольцевой буфер (выполняется в потоке gRPC)
+     *
+     * Обработчик свечей вызывается не здесь, а в потоке-потребителе кольцевого
+     * буфера ({@link #processCandle}).
      */
     private void handleCandleData(Candle candle) {
-        processor.process(candle)
-        .whenComplete((result, throwable) -> {
-            if (throwable != null) {
-                processor.handleError(throwable);
-                metrics.incrementErrors(); // <--- ошибка обработки
-            } else {
-                metrics.incrementProcessed(); // <--- свеча успешно обработана
-            }
-        });
+        if (candle.hasLastTradeTs()) {
+            metrics.recordLatencySince(StreamingMetrics.Stage.EXCHANGE_TO_RECEIVE,
+                candle.getLastTradeTs().getSeconds(), candle.getLastTradeTs().getNanos());
+        }
+        if (!ringBuffer.publish(candle)) {
+            metrics.incrementDropped(); // <--- буфер переполнен
+        }
+    }
+    
+    /**
+     * Обработка данных Candle (выполняется в потоке-потребителе кольцевого буфера)
+     */
+    private void processCandle(Candle candle) {
+        try {
+            processor.handle(candle);
+            metrics.incrementProcessed(); // <--- свеча успешно обработана
+            metrics.recordLatencyNanos(StreamingMetrics.Stage.RECEIVE_TO_PROCESSED, ringBuffer.getCurrentEventAgeNanos());
+        } catch (Exception e) {
+            processor.handleError(e);
+            metrics.incrementErrors(); // <--- ошибка обработки
+        }
+    }
+    
+    /**
+     * Состояние подписок по инструментам
+     */
+    public SubscriptionTracker getSubscriptionTracker() {
+        return subscriptionTracker;
+    }
+    
+    /**
+     * Статистика дозагрузки пропущенных свечей
+     */
+    public Map<String, Object> getBackfillStats() {
+        return gapBackfiller.getStats();
+    }
+    
+    /**
+     * Получение кольцевого буфера (для метрик заполненности)
+     */
+    public RingBufferDispatcher<Candle> getRingBuffer() {
+        return ringBuffer;
     }
     
     /**
@@ -386,24 +727,50 @@ public class MinuteCandleStreamingService implements StreamingService<Candle> {
     }
     
     /**
-     * Планирование переподключения
+     * Планирование переподключения с экспоненциальной задержкой
+     *
+     * Одновременно запланировано не больше одного переподключения; задержка
+     * сбрасывается после успешного запуска потока. Остановка сервиса отменяет
+     * запланированную попытку.
      */
     private void scheduleReconnect() {
-        if (isRunning.get()) {
-            log.info("⏰ Scheduling reconnect in 30 seconds...");
-            CompletableFuture.runAsync(() -> {
+        if (!isRunning.get() || !reconnectPending.compareAndSet(false, true)) {
+            return;
+        }
+        int delay = currentReconnectDelay;
+        currentReconnectDelay = Math.min(
+            (int) (currentReconnectDelay * RECONNECT_BACKOFF_MULTIPLIER),
+            MAX_RECONNECT_DELAY_MS
+        );
+        log.info("⏰ Scheduling reconnect of MinuteCandle streaming service in {}ms", delay);
+        
+        try {
+            reconnectScheduler.schedule(() -> {
+                reconnectPending.set(false);
+                if (!isRunning.get()) {
+                    return;
+                }
+                log.info("🔄 Attempting to reconnect MinuteCandle streaming service...");
                 try {
-                    Thread.sleep(30000); // 30 секунд
-                    if (isRunning.get()) {
-                        log.info("🔄 Attempting to reconnect MinuteCandle streaming service...");
-                        reconnect();
-                    }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    log.warn("Reconnect scheduling interrupted");
+                    reconnect().join();
+                } catch (Exception e) {
+                    log.error("❌ Error during MinuteCandle streaming service reconnect", e);
+                    scheduleReconnect();
                 }
-            });
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Планировщик остановлен - приложение завершает работу
+            reconnectPending.set(false);
         }
     }
+    
+    /**
+     * Обработка оставшихся в буфере свечей при остановке приложения
+     */
+    @PreDestroy
+    public void shutdown() {
+        reconnectScheduler.shutdownNow();
+        subscriptionTracker.shutdown();
+        ringBuffer.shutdown(5_000);
+    }
 }
-
@@ -0,0 +1,748 @@
+package com.example.investmentdatastreamservice.service.streaming.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.investmentdatastreamservice.config.GrpcChannelFactory;
+import com.example.investmentdatastreamservice.config.StreamingProperties;
+import com.example.investmentdatastreamservice.repository.FutureRepository;
+import com.example.investmentdatastreamservice.repository.IndicativeRepository;
+import com.example.investmentdatastreamservice.repository.ShareRepository;
+import com.example.investmentdatastreamservice.service.streaming.LastPriceDispatcher;
+import com.example.investmentdatastreamservice.service.streaming.MultiStreamManager;
+import com.example.investmentdatastreamservice.service.streaming.RingBufferDispatcher;
+import com.example.investmentdatastreamservice.service.streaming.StreamingMetrics;
+import com.example.investmentdatastreamservice.service.streaming.SubscriptionBatcher;
+import com.example.investmentdatastreamservice.service.streaming.SubscriptionRequestScheduler;
+import com.example.investmentdatastreamservice.service.streaming.SubscriptionTracker;
+import com.example.investmentdatastreamservice.service.streaming.UniverseSyncResult;
+
+import io.grpc.stub.StreamObserver;
+import jakarta.annotation.PreDestroy;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.LastPriceInstrument;
+import ru.tinkoff.piapi.contract.v1.MarketDataRequest;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+import ru.tinkoff.piapi.contract.v1.SubscribeLastPriceRequest;
+import ru.tinkoff.piapi.contract.v1.SubscribeLastPriceResponse;
+import ru.tinkoff.piapi.contract.v1.SubscriptionAction;
+
+/**
+ * Общий поток цен последних сделок (LastPrice)
+ *
+ * Единственный владелец gRPC подписок LastPrice в приложении. Каждая сделка
+ * принимается и декодируется один раз, через кольцевой буфер {@link RingBufferDispatcher}
+ * передается потоку-потребителю и раздается потребителям через {@link LastPriceDispatcher}.
+ * gRPC потоки не выполняют обработку и не блокируются.
+ *
+ * Поток работает, пока у него есть хотя бы один владелец: сервисы-потребители
+ * вызывают {@link #acquire(String)} при запуске и {@link #release(String)} при остановке.
+ * Первый владелец поднимает соединения, последний - закрывает их.
+ *
+ * С поддержкой множественных stream-соединений для обхода лимита в 300 подписок:
+ * - Разделяет инструменты на батчи до лимита в 300 подписок
+ * - Создает отдельное gRPC соединение для каждого батча
+ * - Соблюдает rate limit: 100 запросов в минуту ({@link SubscriptionRequestScheduler})
+ * - При падении stream'а переподключается только он, подписки восстанавливает
+ *   {@link SubscriptionTracker}; неуспешные подписки повторяются по каждому FIGI
+ * - Если не удалось поднять поток целиком, переподключение планируется на отдельном
+ *   планировщике с экспоненциальной задержкой (1с, x1.5, до 30с)
+ */
+@Service
+public class SharedLastPriceStream {
+
+    private static final Logger log = LoggerFactory.getLogger(SharedLastPriceStream.class);
+
+    // Конфигурация переподключений
+    private static final int INITIAL_RECONNECT_DELAY_MS = 1000;
+    private static final int MAX_RECONNECT_DELAY_MS = 30000;
+    private static final double RECONNECT_BACKOFF_MULTIPLIER = 1.5;
+
+    @Value("${tinkoff.api.token}")
+    private String apiToken;
+
+    private final LastPriceDispatcher dispatcher;
+    private final ShareRepository shareRepository;
+    private final FutureRepository futureRepository;
+    private final IndicativeRepository indicativeRepository;
+
+    private final Set<String> owners = ConcurrentHashMap.newKeySet();
+    private final Object lifecycleLock = new Object();
+    private final AtomicBoolean isRunning = new AtomicBoolean(false);
+    private final GrpcChannelFactory channelFactory;
+    private final SubscriptionRequestScheduler requestScheduler;
+    private final StreamingMetrics metrics;
+    private final SubscriptionBatcher batcher;
+    private final RingBufferDispatcher<LastPrice> ringBuffer;
+    private final SubscriptionTracker subscriptionTracker;
+    private final ScheduledExecutorService reconnectScheduler;
+    private final AtomicBoolean reconnectPending = new AtomicBoolean(false);
+    private volatile int currentReconnectDelay = INITIAL_RECONNECT_DELAY_MS;
+
+    // Множественные stream-соединения
+    private volatile MultiStreamManager multiStreamManager;
+    private final AtomicInteger successfulSubscriptions = new AtomicInteger(0);
+    private final AtomicInteger failedSubscriptions = new AtomicInteger(0);
+
+    public SharedLastPriceStream(
+            LastPriceDispatcher dispatcher,
+            ShareRepository shareRepository,
+            FutureRepository futureRepository,
+            IndicativeRepository indicativeRepository,
+            StreamingProperties streamingProperties,
+            GrpcChannelFactory channelFactory,
+            SubscriptionRequestScheduler requestScheduler) {
+
+        this.dispatcher = dispatcher;
+        this.shareRepository = shareRepository;
+        this.futureRepository = futureRepository;
+        this.indicativeRepository = indicativeRepository;
+        this.channelFactory = channelFactory;
+        this.requestScheduler = requestScheduler;
+        this.metrics = new StreamingMetrics("SharedLastPriceStream");
+        this.batcher = new SubscriptionBatcher(); // до 300 подписок на stream
+
+        StreamingProperties.Dispatch dispatchConfig = streamingProperties.getDispatch();
+        this.ringBuffer = new RingBufferDispatcher<>(
+            "lastprice",
+            dispatchConfig.getRingSize(),
+            dispatchConfig.getMaxBatch(),
+            this::dispatchLastPrice
+        );
+        this.ringBuffer.start();
+        this.subscriptionTracker = new SubscriptionTracker("lastprice", this::resubscribe);
+        this.reconnectScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "lastprice-reconnect");
+            t.setDaemon(true);
+            return t;
+        });
+
+        log.info("SharedLastPriceStream initialized with multi-stream support");
+    }
+
+    /**
+     * Захват потока владельцем. Первый владелец запускает подключение.
+     *
+     * @param owner имя сервиса-владельца
+     */
+    public CompletableFuture<Void> acquire(String owner) {
+        return CompletableFuture.runAsync(() -> {
+            synchronized (lifecycleLock) {
+                owners.add(owner);
+                log.info("🔗 {} acquired shared LastPrice stream (owners: {})", owner, owners);
+                if (!isRunning.get()) {
+                    connect();
+                }
+            }
+        });
+    }
+
+    /**
+     * Освобождение потока владельцем. Последний владелец закрывает соединения.
+     *
+     * @param owner имя сервиса-владельца
+     */
+    public CompletableFuture<Void> release(String owner) {
+        return CompletableFuture.runAsync(() -> {
+            synchronized (lifecycleLock) {
+                owners.remove(owner);
+                log.info("🔓 {} released shared LastPrice stream (owners: {})", owner, owners);
+                if (owners.isEmpty() && isRunning.get()) {
+                    disconnect();
+                }
+            }
+        });
+    }
+
+    /**
+     * Принудительное переподключение всех соединений общего потока
+     */
+    public CompletableFuture<Void> reconnect() {
+        return CompletableFuture.runAsync(() -> {
+            synchronized (lifecycleLock) {
+                log.info("🔄 Force reconnecting shared LastPrice stream...");
+                if (isRunning.get()) {
+                    disconnect();
+                }
+                if (!owners.isEmpty()) {
+                    connect();
+                } else {
+                    log.warn("Shared LastPrice stream has no owners, reconnect skipped");
+                }
+            }
+        });
+    }
+
+    /**
+     * Подключение и подписка на все инструменты (вызывается под lifecycleLock)
+     */
+    private void connect() {
+        log.info("🚀 Starting shared LastPrice stream with multi-stream support...");
+        isRunning.set(true);
+        metrics.setRunning(true);
+        successfulSubscriptions.set(0);
+        failedSubscriptions.set(0);
+        subscriptionTracker.clear();
+
+        try {
+            // Получаем список инструментов
+            List<String> instruments = getAllInstruments();
+
+            if (instruments.isEmpty()) {
+                log.warn("No instruments found for LastPrice subscription");
+                isRunning.set(false);
+                metrics.setRunning(false);
+                return;
+            }
+
+            log.info("📊 Found {} instruments for LastPrice subscription", instruments.size());
+
+            // Разделяем на батчи
+            List<List<String>> batches = batcher.createBatches(instruments);
+            SubscriptionBatcher.BatchInfo batchInfo = batcher.getBatchInfo(instruments);
+
+            log.info("📦 Created {} batches: {}", batches.size(), batchInfo);
+            log.info("🔗 Each batch will use separate gRPC stream connection");
+
+            // Создаем менеджер множественных стримов
+            multiStreamManager = new MultiStreamManager(channelFactory, requestScheduler, apiToken, batches.size());
+
+            // Настраиваем общий response observer для всех стримов
+            setupResponseObserver();
+
+            // Создаем stream для каждого батча
+            for (int i = 0; i < batches.size(); i++) {
+                multiStreamManager.createStreamForBatch(i);
+            }
+
+            // Подключаем все stream'ы
+            multiStreamManager.connectAll()
+                .thenCompose(v -> {
+                    log.info("✅ All stream connections established");
+                    return subscribeAllBatches(batches);
+                })
+                .whenComplete((result, throwable) -> {
+                    if (throwable != null) {
+                        log.error("❌ Failed to start shared LastPrice stream", throwable);
+                        scheduleReconnect();
+                    } else {
+                        log.info("🎉 Shared LastPrice stream started successfully");
+                        currentReconnectDelay = INITIAL_RECONNECT_DELAY_MS;
+                        log.info("📈 Subscribed: {} successful, {} failed",
+                            successfulSubscriptions.get(), failedSubscriptions.get());
+                    }
+                })
+                .join(); // Ждем завершения подписок
+
+        } catch (Exception e) {
+            log.error("❌ Error starting shared LastPrice stream", e);
+            scheduleReconnect();
+        }
+    }
+
+    /**
+     * Отключение всех соединений (вызывается под lifecycleLock)
+     */
+    private void disconnect() {
+        log.info("⏹️ Stopping shared LastPrice stream...");
+        isRunning.set(false);
+        metrics.setRunning(false);
+        metrics.setConnected(false);
+        subscriptionTracker.clear();
+
+        try {
+            if (multiStreamManager != null) {
+                // Отключаем все stream'ы
+                multiStreamManager.disconnectAll().join();
+                log.info("✅ All streams disconnected");
+            }
+            log.info("✅ Shared LastPrice stream stopped successfully");
+
+        } catch (Exception e) {
+            log.error("❌ Error stopping shared LastPrice stream", e);
+        }
+    }
+
+    /**
+     * Подписывается на все батчи с соблюдением rate limit
+     */
+    private CompletableFuture<Void> subscribeAllBatches(List<List<String>> batches) {
+        log.info("📡 Starting batch subscriptions with rate limiting...");
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        for (int i = 0; i < batches.size(); i++) {
+            final int batchIndex = i;
+            final List<String> batch = batches.get(i);
+
+            log.info("📤 Preparing batch {}/{}: {} instruments",
+                batchIndex + 1, batches.size(), batch.size());
+
+            subscriptionTracker.track(batchIndex, batch);
+
+            // Запрос ставится в очередь планировщика подписок (rate limit)
+            CompletableFuture<Void> future = multiStreamManager.sendBatchSubscription(
+                batchIndex, buildSubscribeRequest(batch))
+                .whenComplete((result, throwable) -> {
+                    if (throwable != null) {
+                        log.error("❌ Failed to subscribe batch {}/{}", batchIndex + 1, batches.size(), throwable);
+                        subscriptionTracker.onFailed(batch, SubscriptionTracker.SEND_FAILED);
+                    } else {
+                        log.info("✅ Batch {}/{} subscription request sent", batchIndex + 1, batches.size());
+                    }
+                });
+
+            futures.add(future);
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+            .thenRun(() -> {
+                log.info("✅ All batch subscription requests completed");
+            });
+    }
+
+    /**
+     * Запрос подписки на LastPrice для списка инструментов
+     */
+    private MarketDataRequest buildSubscribeRequest(List<String> figis) {
+        return buildRequest(SubscriptionAction.SUBSCRIPTION_ACTION_SUBSCRIBE, figis);
+    }
+
+    /**
+     * Запрос подписки или отписки для списка инструментов
+     */
+    private MarketDataRequest buildRequest(SubscriptionAction action, List<String> figis) {
+        SubscribeLastPriceRequest request = SubscribeLastPriceRequest.newBuilder()
+            .setSubscriptionAction(action)
+            .addAllInstruments(figis.stream()
+                .map(figi -> LastPriceInstrument.newBuilder().setInstrumentId(figi).build())
+                .toList())
+            .build();
+
+        return MarketDataRequest.newBuilder()
+            .setSubscribeLastPriceRequest(request)
+            .build();
+    }
+
+    /**
+     * Добавление инструментов в работающий поток без перезапуска
+     *
+     * Инструменты занимают свободные места в открытых stream'ах, при нехватке
+     * открываются новые stream'ы.
+     *
+     * @param figis добавляемые инструменты (уже подписанные пропускаются)
+     * @return завершенный future: работа выполняется в вызывающем потоке
+     */
+    public CompletableFuture<Void> addInstruments(Collection<String> figis) {
+        return runInCallerThread(() -> {
+            synchronized (lifecycleLock) {
+                MultiStreamManager manager = multiStreamManager;
+                if (manager == null || !isRunning.get()) {
+                    log.warn("LastPrice stream is not running, instruments not added");
+                    return null;
+                }
+                subscribeInstruments(manager, figis);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Отписка от инструментов в работающем потоке без перезапуска
+     *
+     * @param figis удаляемые инструменты
+     * @return завершенный future: работа выполняется в вызывающем потоке
+     */
+    public CompletableFuture<Void> removeInstruments(Collection<String> figis) {
+        return runInCallerThread(() -> {
+            synchronized (lifecycleLock) {
+                MultiStreamManager manager = multiStreamManager;
+                if (manager == null || !isRunning.get()) {
+                    return null;
+                }
+                unsubscribeInstruments(manager, figis);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Синхронизация подписок с набором инструментов в БД без перезапуска
+     *
+     * Отписывает инструменты, которых больше нет в БД (истекшие фьючерсы, делистинг),
+     * подписывает новые и уплотняет stream'ы: пока открыто больше stream'ов, чем нужно,
+     * инструменты последнего stream'а подписываются в свободных местах остальных,
+     * после чего последний stream закрывается.
+     *
+     * @return завершенный future: работа выполняется в вызывающем потоке
+     */
+    public CompletableFuture<UniverseSyncResult> syncInstruments() {
+        return runInCallerThread(() -> {
+            synchronized (lifecycleLock) {
+                MultiStreamManager manager = multiStreamManager;
+                if (manager == null || !isRunning.get()) {
+                    return UniverseSyncResult.SKIPPED;
+                }
+
+                Set<String> actual = new LinkedHashSet<>(getAllInstruments());
+                if (actual.isEmpty()) {
+                    log.warn("No instruments found in DB, LastPrice subscriptions left unchanged");
+                    return UniverseSyncResult.SKIPPED;
+                }
+                Set<String> tracked = subscriptionTracker.getTrackedInstruments();
+                List<String> removed = tracked.stream().filter(figi -> !actual.contains(figi)).toList();
+                List<String> added = actual.stream().filter(figi -> !tracked.contains(figi)).toList();
+
+                int streamsBefore = manager.getTotalStreamCount();
+                unsubscribeInstruments(manager, removed);
+                subscribeInstruments(manager, added);
+                int relocated = compactStreams(manager);
+                int streamsAfter = manager.getTotalStreamCount();
+
+                return new UniverseSyncResult(added.size(), removed.size(), relocated,
+                    Math.max(0, streamsBefore - streamsAfter), streamsAfter);
+            }
+        });
+    }
+
+    /**
+     * Выполнение изменения подписок в вызывающем потоке
+     *
+     * Работа все равно ждет ответов менеджера stream'ов под блокировкой, поэтому
+     * перенос ее в общий пул только занимал бы его поток; результат и ошибка
+     * возвращаются уже завершенным future.
+     */
+    private static <T> CompletableFuture<T> runInCallerThread(Supplier<T> work) {
+        try {
+            return CompletableFuture.completedFuture(work.get());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Подписка на инструменты по плану распределения (вызывается под lifecycleLock)
+     */
+    private void subscribeInstruments(MultiStreamManager manager, Collection<String> figis) {
+        Map<Integer, List<String>> plan = subscriptionTracker.allocate(
+            figis, batcher.getBatchSize(), manager.getTotalStreamCount());
+        if (plan.isEmpty()) {
+            return;
+        }
+        log.info("➕ Subscribing {} new LastPrice instruments on streams {}",
+            plan.values().stream().mapToInt(List::size).sum(), plan.keySet());
+        manager.applySubscriptionPlan(plan, this::buildSubscribeRequest)
+            .whenComplete((result, throwable) -> {
+                if (throwable != null) {
+                    log.error("❌ Failed to subscribe new LastPrice instruments", throwable);
+                    plan.values().forEach(batch ->
+                        subscriptionTracker.onFailed(batch, SubscriptionTracker.SEND_FAILED));
+                }
+            })
+            .exceptionally(throwable -> null)
+            .join();
+    }
+
+    /**
+     * Отписка от инструментов в их stream'ах (вызывается под lifecycleLock)
+     */
+    private void unsubscribeInstruments(MultiStreamManager manager, Collection<String> figis) {
+        Map<Integer, List<String>> plan = subscriptionTracker.untrack(figis);
+        if (plan.isEmpty()) {
+            return;
+        }
+        log.info("➖ Unsubscribing {} LastPrice instruments on streams {}",
+            plan.values().stream().mapToInt(List::size).sum(), plan.keySet());
+        manager.applySubscriptionPlan(plan,
+            batch -> buildRequest(SubscriptionAction.SUBSCRIPTION_ACTION_UNSUBSCRIBE, batch))
+            .exceptionally(throwable -> {
+                log.error("❌ Failed to unsubscribe LastPrice instruments", throwable);
+                return null;
+            })
+            .join();
+    }
+
+    /**
+     * Уплотнение stream'ов: перенос инструментов последнего stream'а и его закрытие
+     * (вызывается под lifecycleLock)
+     *
+     * Инструменты сначала подписываются на новом месте, затем stream закрывается,
+     * поэтому данные по ним не теряются.
+     *
+     * @return количество перенесенных инструментов
+     */
+    private int compactStreams(MultiStreamManager manager) {
+        int relocated = 0;
+        SubscriptionTracker.Relocation relocation;
+        while ((relocation = subscriptionTracker.planCompaction(
+                batcher.getBatchSize(), manager.getTotalStreamCount())) != null) {
+            SubscriptionTracker.Relocation current = relocation;
+            log.info("🗜️ Moving {} LastPrice instruments from stream #{} to streams {}",
+                current.size(), current.sourceStream() + 1, current.targets().keySet());
+            manager.applySubscriptionPlan(current.targets(), this::buildSubscribeRequest)
+                .whenComplete((result, throwable) -> {
+                    if (throwable != null) {
+                        log.error("❌ Failed to subscribe relocated LastPrice instruments", throwable);
+                        current.targets().values().forEach(batch ->
+                            subscriptionTracker.onFailed(batch, SubscriptionTracker.SEND_FAILED));
+                    }
+                })
+                .exceptionally(throwable -> null)
+                .join();
+            manager.closeLastStream().join();
+            relocated += current.size();
+        }
+        return relocated;
+    }
+
+    /**
+     * Повторная подписка инструментов через их stream (вызывается SubscriptionTracker)
+     */
+    private CompletableFuture<Void> resubscribe(int streamIndex, List<String> figis) {
+        MultiStreamManager manager = multiStreamManager;
+        if (manager == null || !isRunning.get()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return manager.sendBatchSubscription(streamIndex, buildSubscribeRequest(figis));
+    }
+
+    /**
+     * Настройка обработчика ответов от API (общий для всех stream'ов)
+     */
+    private void setupResponseObserver() {
+        StreamObserver<MarketDataResponse> responseObserver = new StreamObserver<>() {
+            @Override
+            public void onNext(MarketDataResponse response) {
+                if (response.hasSubscribeLastPriceResponse()) {
+                    handleSubscriptionResponse(response.getSubscribeLastPriceResponse());
+                } else if (response.hasLastPrice()) {
+                    handleLastPriceData(response.getLastPrice());
+                }
+            }
+
+            // Упавший stream переподключает MultiStreamManager, остальные продолжают работу
+
+            @Override
+            public void onError(Throwable t) {
+                log.error("❌ Shared LastPrice stream error", t);
+                metrics.incrementErrors();
+                metrics.setConnected(false);
+            }
+
+            @Override
+            public void onCompleted() {
+                log.info("Shared LastPrice stream completed");
+                metrics.setConnected(false);
+            }
+        };
+
+        if (multiStreamManager != null) {
+            multiStreamManager.setSharedResponseObserver(responseObserver);
+            multiStreamManager.setStreamListener(new MultiStreamManager.StreamListener() {
+                @Override
+                public void onStreamDown(int streamIndex, Throwable error) {
+                    subscriptionTracker.onStreamDown(streamIndex);
+                }
+
+                @Override
+                public void onStreamRestored(int streamIndex) {
+                    subscriptionTracker.resubscribeStream(streamIndex);
+                }
+            });
+        }
+    }
+
+    /**
+     * Обработка ответа на подписку
+     */
+    private void handleSubscriptionResponse(SubscribeLastPriceResponse response) {
+        metrics.setConnected(true);
+
+        int batchSuccessful = 0;
+        int batchFailed = 0;
+
+        log.info("=== SHARED LASTPRICE SUBSCRIPTION RESPONSE ===");
+        log.info("Total subscriptions in response: {}", response.getLastPriceSubscriptionsList().size());
+
+        for (var subscription : response.getLastPriceSubscriptionsList()) {
+            String status = subscription.getSubscriptionStatus().toString();
+            log.info("  FIGI {} -> {}", subscription.getFigi(), status);
+
+            if (status.contains("SUCCESS")) {
+                batchSuccessful++;
+                successfulSubscriptions.incrementAndGet();
+                subscriptionTracker.onSubscribed(subscription.getFigi());
+            } else {
+                batchFailed++;
+                failedSubscriptions.incrementAndGet();
+                subscriptionTracker.onFailed(subscription.getFigi(), status);
+            }
+        }
+
+        log.info("Batch result: {} successful, {} failed", batchSuccessful, batchFailed);
+        log.info("Total result: {} successful, {} failed",
+            successfulSubscriptions.get(), failedSubscriptions.get());
+        log.info("==============================================");
+    }
+
+    /**
+     * Передача сделки в кольцевой буфер (выполняется в потоке gRPC)
+     *
+     * Потребители {@link LastPriceDispatcher} вызываются не здесь, а в потоке-потребителе
+     * кольцевого буфера ({@link #dispatchLastPrice}).
+     */
+    private void handleLastPriceData(LastPrice lastPrice) {
+        metrics.incrementReceived();
+        if (lastPrice.hasTime()) {
+            metrics.recordLatencySince(StreamingMetrics.Stage.EXCHANGE_TO_RECEIVE,
+                lastPrice.getTime().getSeconds(), lastPrice.getTime().getNanos());
+        }
+        if (!ringBuffer.publish(lastPrice)) {
+            metrics.incrementDropped();
+            if (ringBuffer.getRejectedCount() % 1000 == 1) {
+                log.warn("⚠️ LastPrice ring buffer is full, dropped {} ticks so far", ringBuffer.getRejectedCount());
+            }
+        }
+    }
+
+    /**
+     * Раздача сделки потребителям (выполняется в потоке-потребителе кольцевого буфера)
+     */
+    private void dispatchLastPrice(LastPrice lastPrice) {
+        dispatcher.dispatch(lastPrice);
+        metrics.incrementProcessed();
+        metrics.recordLatencyNanos(StreamingMetrics.Stage.RECEIVE_TO_PROCESSED, ringBuffer.getCurrentEventAgeNanos());
+    }
+
+    /**
+     * Получение списка всех инструментов
+     */
+    private List<String> getAllInstruments() {
+        List<String> instruments = new ArrayList<>();
+
+        // Добавляем акции
+        instruments.addAll(shareRepository.findAllDistinctFigi().stream()
+            .filter(figi -> figi != null && !figi.trim().isEmpty())
+            .toList());
+
+        // Добавляем фьючерсы
+        instruments.addAll(futureRepository.findAllFigis().stream()
+            .filter(figi -> figi != null && !figi.trim().isEmpty())
+            .toList());
+
+        // Добавляем индикативные инструменты
+        instruments.addAll(indicativeRepository.findAllDistinctFigi().stream()
+            .filter(figi -> figi != null && !figi.trim().isEmpty())
+            .toList());
+
+        log.info("Found {} instruments for LastPrice subscription", instruments.size());
+        return instruments;
+    }
+
+    /**
+     * Планирование переподключения с экспоненциальной задержкой
+     *
+     * Одновременно запланировано не больше одного переподключения; задержка
+     * сбрасывается после успешного запуска потока.
+     */
+    private void scheduleReconnect() {
+        if (!isRunning.get() || !reconnectPending.compareAndSet(false, true)) {
+            return;
+        }
+        int delay = currentReconnectDelay;
+        currentReconnectDelay = Math.min(
+            (int) (currentReconnectDelay * RECONNECT_BACKOFF_MULTIPLIER),
+            MAX_RECONNECT_DELAY_MS
+        );
+        log.info("⏰ Scheduling reconnect of shared LastPrice stream in {}ms", delay);
+
+        try {
+            reconnectScheduler.schedule(() -> {
+                reconnectPending.set(false);
+                if (!isRunning.get()) {
+                    return;
+                }
+                log.info("🔄 Attempting to reconnect shared LastPrice stream...");
+                try {
+                    reconnect().join();
+                } catch (Exception e) {
+                    log.error("❌ Error during shared LastPrice stream reconnect", e);
+                    scheduleReconnect();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Планировщик остановлен - приложение завершает работу
+            reconnectPending.set(false);
+        }
+    }
+
+    public boolean isRunning() {
+        return isRunning.get();
+    }
+
+    public boolean isConnected() {
+        MultiStreamManager manager = multiStreamManager;
+        return manager != null && manager.isAllConnected();
+    }
+
+    /**
+     * Состояние подписок по инструментам
+     */
+    public SubscriptionTracker getSubscriptionTracker() {
+        return subscriptionTracker;
+    }
+
+    public Set<String> getOwners() {
+        return Set.copyOf(owners);
+    }
+
+    public StreamingMetrics getMetrics() {
+        return metrics;
+    }
+
+    public RingBufferDispatcher<LastPrice> getRingBuffer() {
+        return ringBuffer;
+    }
+
+    /**
+     * Корректное завершение работы общего потока
+     */
+    @PreDestroy
+    public void shutdown() {
+        log.info("Завершение работы общего потока LastPrice...");
+        owners.clear();
+        reconnectScheduler.shutdownNow();
+        if (isRunning.get()) {
+            try {
+                CompletableFuture.runAsync(() -> {
+                    synchronized (lifecycleLock) {
+                        disconnect();
+                    }
+                }).get(30, TimeUnit.SECONDS);
+                log.info("Общий поток LastPrice корректно остановлен");
+            } catch (Exception e) {
+                log.error("Ошибка при остановке общего потока LastPrice", e);
+            }
+        }
+        subscriptionTracker.shutdown();
+        ringBuffer.shutdown(5_000);
+    }
+}
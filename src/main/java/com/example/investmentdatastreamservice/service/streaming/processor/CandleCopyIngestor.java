@@ -0,0 +1,269 @@
+package com.example.investmentdatastreamservice.service.streaming.processor;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import com.example.investmentdatastreamservice.config.StreamingProperties;
+import com.example.investmentdatastreamservice.entity.MinuteCandleEntity;
+import com.example.investmentdatastreamservice.service.streaming.StreamWriteExecutor;
+import com.example.investmentdatastreamservice.service.streaming.StreamingMetrics;
+import com.example.investmentdatastreamservice.service.streaming.WriteBehindBuffer;
+
+/**
+ * Загрузка минутных свечей через PostgreSQL COPY
+ *
+ * Создается {@link CandleProcessor} при stream.candles.ingest-mode=COPY. Свечи накапливаются в буфере
+ * и пакетами загружаются командой COPY в нежурналируемую таблицу
+ * invest_candles.minute_candles_staging (db/14-minute-candles-staging.sql).
+ * Периодический перенос забирает все загруженные строки из staging и одним
+ * INSERT ... ON CONFLICT записывает их в invest.minute_candles; перенесенные свечи
+ * помечают интервалы для пересчета в {@link CandleRollupWriter}.
+ *
+ * Режим рассчитан на всплески (догрузка после переподключения, backfill),
+ * когда построчный upsert не успевает за входящим потоком.
+ */
+public class CandleCopyIngestor {
+
+    private static final Logger log = LoggerFactory.getLogger(CandleCopyIngestor.class);
+
+    private static final String COPY_SQL = """
+        COPY invest_candles.minute_candles_staging
+        (figi, time, open, high, low, close, volume, is_complete,
+        price_change, price_change_percent, candle_type, body_size,
+        upper_shadow, lower_shadow, high_low_range, average_price,
+        created_at, updated_at)
+        FROM STDIN WITH (FORMAT csv)
+        """;
+
+    /**
+     * Перенос из staging: DELETE ... RETURNING забирает только строки, видимые
+     * на момент начала запроса, поэтому параллельные COPY не теряются.
+     * DISTINCT ON оставляет последнюю загруженную версию свечи.
+     * RETURNING возвращает перенесенные свечи для пометки интервалов сборки.
+     */
+    private static final String MERGE_SQL = """
+        WITH moved AS (
+            DELETE FROM invest_candles.minute_candles_staging
+            RETURNING *
+        )
+        INSERT INTO invest.minute_candles
+        (figi, time, open, high, low, close, volume, is_complete,
+        price_change, price_change_percent, candle_type, body_size,
+        upper_shadow, lower_shadow, high_low_range, average_price,
+        created_at, updated_at)
+        SELECT DISTINCT ON (figi, time)
+            figi, time, open, high, low, close, volume, is_complete,
+            price_change, price_change_percent, candle_type, body_size,
+            upper_shadow, lower_shadow, high_low_range, average_price,
+            created_at, updated_at
+        FROM moved
+        ORDER BY figi, time, seq DESC
+        ON CONFLICT (figi, time) DO UPDATE SET
+        open = EXCLUDED.open, high = EXCLUDED.high, low = EXCLUDED.low,
+        close = EXCLUDED.close, volume = EXCLUDED.volume,
+        is_complete = EXCLUDED.is_complete,
+        price_change = EXCLUDED.price_change,
+        price_change_percent = EXCLUDED.price_change_percent,
+        candle_type = EXCLUDED.candle_type,
+        body_size = EXCLUDED.body_size,
+        upper_shadow = EXCLUDED.upper_shadow,
+        lower_shadow = EXCLUDED.lower_shadow,
+        high_low_range = EXCLUDED.high_low_range,
+        average_price = EXCLUDED.average_price,
+        updated_at = EXCLUDED.updated_at
+        RETURNING figi, time
+        """;
+
+    private static final long SHUTDOWN_TIMEOUT_MS = 30_000;
+
+    private final JdbcTemplate streamJdbcTemplate;
+    private final StreamingMetrics metrics;
+    private final CandleRollupWriter rollupWriter;
+    private final WriteBehindBuffer<MinuteCandleEntity> copyBuffer;
+    private final ScheduledExecutorService mergeScheduler;
+
+    // Метрики
+    private final AtomicLong rowsCopied = new AtomicLong(0);
+    private final AtomicLong rowsMerged = new AtomicLong(0);
+    private final AtomicLong mergeErrors = new AtomicLong(0);
+    private volatile long lastMergeDurationMs = 0;
+
+    /**
+     * @param streamJdbcTemplate JdbcTemplate пула потоковых данных
+     * @param config настройки записи свечей
+     * @param metrics метрики процессора: загруженные в staging свечи считаются обработанными
+     * @param writeExecutor исполнитель записей (ограничение по соединениям пула stream)
+     * @param rollupWriter сборка свечей 5m/15m/1h/1d из перенесенных минутных свечей
+     */
+    public CandleCopyIngestor(JdbcTemplate streamJdbcTemplate, StreamingProperties.Candles config,
+                              StreamingMetrics metrics, StreamWriteExecutor writeExecutor,
+                              CandleRollupWriter rollupWriter) {
+        this.streamJdbcTemplate = streamJdbcTemplate;
+        this.metrics = metrics;
+        this.rollupWriter = rollupWriter;
+
+        this.copyBuffer = new WriteBehindBuffer<>(
+            "candle-copy",
+            config.getQueueCapacity(),
+            config.getBatchSize(),
+            config.getFlushIntervalMs(),
+            batch -> writeExecutor.execute(() -> copyBatch(batch))
+        );
+        this.copyBuffer.start(config.getWriterThreads(), writeExecutor.writerThreadFactory("candle-copy-writer"));
+
+        this.mergeScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "candle-staging-merge");
+            t.setDaemon(true);
+            return t;
+        });
+        this.mergeScheduler.scheduleWithFixedDelay(this::mergeStaging,
+            config.getMergeIntervalMs(), config.getMergeIntervalMs(), TimeUnit.MILLISECONDS);
+
+        log.info("🚚 Candle ingest mode: COPY (batch={}, mergeInterval={}ms)",
+            config.getBatchSize(), config.getMergeIntervalMs());
+    }
+
+    /**
+     * Постановка свечи в очередь COPY
+     *
+     * @return false, если буфер заполнен и свеча отброшена
+     */
+    public boolean offer(MinuteCandleEntity entity) {
+        return copyBuffer.offer(entity);
+    }
+
+    /**
+     * Загрузка пакета свечей в staging-таблицу одной командой COPY
+     */
+    private void copyBatch(List<MinuteCandleEntity> batch) {
+        StringBuilder csv = new StringBuilder(batch.size() * 200);
+        for (MinuteCandleEntity entity : batch) {
+            appendCsvRow(csv, entity);
+        }
+
+        try {
+            Long copied = streamJdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+                try {
+                    return connection.unwrap(PGConnection.class)
+                        .getCopyAPI()
+                        .copyIn(COPY_SQL, new StringReader(csv.toString()));
+                } catch (IOException e) {
+                    throw new SQLException("COPY stream failed", e);
+                }
+            });
+
+            rowsCopied.addAndGet(copied != null ? copied : 0);
+            metrics.addProcessed(batch.size());
+            log.debug("📥 CANDLE → STAGING: {} rows", copied);
+
+        } catch (Exception e) {
+            metrics.addErrors(batch.size());
+            log.error("❌ Error copying {} candles into staging: {}", batch.size(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Перенос свечей из staging-таблицы в invest.minute_candles
+     */
+    public void mergeStaging() {
+        long start = System.currentTimeMillis();
+        try {
+            AtomicLong mergedRows = new AtomicLong(0);
+            streamJdbcTemplate.query(MERGE_SQL, (RowCallbackHandler) rs -> {
+                rollupWriter.markMinute(rs.getString(1), rs.getTimestamp(2).toInstant());
+                mergedRows.incrementAndGet();
+            });
+            long merged = mergedRows.get();
+            rowsMerged.addAndGet(merged);
+            lastMergeDurationMs = System.currentTimeMillis() - start;
+
+            if (merged > 0) {
+                log.info("✅ STAGING → minute_candles: {} candles merged in {}ms", merged, lastMergeDurationMs);
+            }
+        } catch (Exception e) {
+            mergeErrors.incrementAndGet();
+            log.error("❌ Error merging minute candles from staging: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Строка CSV в порядке колонок COPY_SQL. Пустое значение без кавычек COPY трактует как NULL.
+     */
+    private static void appendCsvRow(StringBuilder sb, MinuteCandleEntity e) {
+        sb.append(e.getFigi()).append(',');
+        appendInstant(sb, e.getTime()).append(',');
+        appendDecimal(sb, e.getOpen()).append(',');
+        appendDecimal(sb, e.getHigh()).append(',');
+        appendDecimal(sb, e.getLow()).append(',');
+        appendDecimal(sb, e.getClose()).append(',');
+        sb.append(e.getVolume()).append(',');
+        sb.append(e.isComplete()).append(',');
+        appendDecimal(sb, e.getPriceChange()).append(',');
+        appendDecimal(sb, e.getPriceChangePercent()).append(',');
+        if (e.getCandleType() != null) {
+            sb.append(e.getCandleType());
+        }
+        sb.append(',');
+        appendDecimal(sb, e.getBodySize()).append(',');
+        appendDecimal(sb, e.getUpperShadow()).append(',');
+        appendDecimal(sb, e.getLowerShadow()).append(',');
+        appendDecimal(sb, e.getHighLowRange()).append(',');
+        appendDecimal(sb, e.getAveragePrice()).append(',');
+        appendInstant(sb, e.getCreatedAt()).append(',');
+        appendInstant(sb, e.getUpdatedAt()).append('\n');
+    }
+
+    private static StringBuilder appendDecimal(StringBuilder sb, BigDecimal value) {
+        return value != null ? sb.append(value.toPlainString()) : sb;
+    }
+
+    private static StringBuilder appendInstant(StringBuilder sb, Instant value) {
+        // ISO-8601 в UTC (с суффиксом Z) однозначно разбирается PostgreSQL как timestamptz
+        return value != null ? sb.append(value) : sb;
+    }
+
+    // Getters для метрик
+    public long getRowsCopied() { return rowsCopied.get(); }
+    public long getRowsMerged() { return rowsMerged.get(); }
+    public long getMergeErrors() { return mergeErrors.get(); }
+    public long getLastMergeDurationMs() { return lastMergeDurationMs; }
+    public int getPendingCount() { return copyBuffer.getPendingCount(); }
+    public long getRejectedCount() { return copyBuffer.getRejectedItems(); }
+
+    /**
+     * Дозагрузка буфера и финальный перенос staging перед остановкой
+     */
+    public void shutdown() {
+        log.info("Shutting down CandleCopyIngestor...");
+        copyBuffer.shutdown(SHUTDOWN_TIMEOUT_MS);
+
+        mergeScheduler.shutdown();
+        try {
+            if (!mergeScheduler.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                mergeScheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            mergeScheduler.shutdownNow();
+        }
+
+        mergeStaging();
+        log.info("CandleCopyIngestor shutdown completed: copied={}, merged={}, mergeErrors={}",
+            rowsCopied.get(), rowsMerged.get(), mergeErrors.get());
+    }
+}
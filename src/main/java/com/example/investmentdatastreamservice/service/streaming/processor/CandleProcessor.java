@@ -2,10 +2,6 @@ package com.example.investmentdatastreamservice.service.streaming.processor;
 
 import java.math.BigDecimal;
 import java.time.Instant;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Semaphore;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,9 +9,15 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
+import com.example.investmentdatastreamservice.config.StreamingProperties;
 import com.example.investmentdatastreamservice.entity.MinuteCandleEntity;
+import com.example.investmentdatastreamservice.service.HistoricalExtremeTracker;
+import com.example.investmentdatastreamservice.service.streaming.StreamWriteExecutor;
 import com.example.investmentdatastreamservice.service.streaming.StreamingMetrics;
+import com.example.investmentdatastreamservice.service.streaming.TickCandleAggregator;
+import com.example.investmentdatastreamservice.utils.FixedPointPrice;
 
+import jakarta.annotation.PreDestroy;
 import ru.tinkoff.piapi.contract.v1.Candle;
 
 /**
@@ -23,6 +25,18 @@ import ru.tinkoff.piapi.contract.v1.Candle;
  * 
  * Высокопроизводительная обработка минутных свечей с асинхронным сохранением
  * в базу данных и детальным мониторингом производительности.
+ *
+ * Режим записи задается stream.candles.ingest-mode:
+ * - UPSERT - построчный INSERT ... ON CONFLICT (по умолчанию)
+ * - COPY - пакетная загрузка через {@link CandleCopyIngestor}
+ *
+ * Записи выполняет {@link StreamWriteExecutor}: свеча отбрасывается только при
+ * заполнении очереди ожидания свободного соединения.
+ *
+ * Каждая свеча сверяется с минутной свечой, собранной {@link TickCandleAggregator}
+ * из потока LastPrice. Записанные свечи помечают интервалы для пересчета
+ * свечей 5m/15m/1h/1d в {@link CandleRollupWriter}, а максимум и минимум свечи
+ * передаются в {@link HistoricalExtremeTracker}.
  */
 @Component
 public class CandleProcessor implements DataProcessor<Candle> {
@@ -31,46 +45,66 @@ public class CandleProcessor implements DataProcessor<Candle> {
     
     private final JdbcTemplate streamJdbcTemplate;
     private final StreamingMetrics metrics;
-    private final ExecutorService insertExecutor;
-    private final Semaphore insertSemaphore;
+    private final StreamWriteExecutor writeExecutor;
+    private final CandleCopyIngestor copyIngestor;
+    private final TickCandleAggregator candleAggregator;
+    private final CandleRollupWriter rollupWriter;
+    private final HistoricalExtremeTracker historicalExtremeTracker;
     
-    // Конфигурация производительности
-    private static final int INSERT_THREADS = Runtime.getRuntime().availableProcessors() * 4;
-    private static final int MAX_CONCURRENT_INSERTS = 200;
-    
-    public CandleProcessor(@Qualifier("streamJdbcTemplate") JdbcTemplate streamJdbcTemplate) {
+    public CandleProcessor(@Qualifier("streamJdbcTemplate") JdbcTemplate streamJdbcTemplate,
+                           StreamingProperties streamingProperties,
+                           StreamWriteExecutor writeExecutor,
+                           TickCandleAggregator candleAggregator,
+                           CandleRollupWriter rollupWriter,
+                           HistoricalExtremeTracker historicalExtremeTracker) {
         this.streamJdbcTemplate = streamJdbcTemplate;
+        this.writeExecutor = writeExecutor;
+        this.candleAggregator = candleAggregator;
+        this.rollupWriter = rollupWriter;
+        this.historicalExtremeTracker = historicalExtremeTracker;
         this.metrics = new StreamingMetrics("CandleProcessor");
-        this.insertExecutor = Executors.newFixedThreadPool(INSERT_THREADS, r -> {
-            Thread t = new Thread(r, "candle-insert-" + System.currentTimeMillis());
-            t.setDaemon(true);
-            return t;
-        });
-        this.insertSemaphore = new Semaphore(MAX_CONCURRENT_INSERTS);
+        
+        StreamingProperties.Candles config = streamingProperties.getCandles();
+        this.copyIngestor = config.getIngestMode() == StreamingProperties.CandleIngestMode.COPY
+            ? new CandleCopyIngestor(streamJdbcTemplate, config, metrics, writeExecutor, rollupWriter)
+            : null;
     }
     
     @Override
-    public CompletableFuture<Void> process(Candle candle) {
-        return CompletableFuture.runAsync(() -> {
-            try {
-                metrics.incrementReceived();
-                
-                // Создаем MinuteCandleEntity для сохранения
-                MinuteCandleEntity entity = createCandleEntity(candle);
-                
-                // Асинхронное сохранение
+    public void handle(Candle candle) {
+        try {
+            metrics.incrementReceived();
+            
+            long high = FixedPointPrice.fromQuotation(candle.getHigh());
+            long low = FixedPointPrice.fromQuotation(candle.getLow());
+            
+            // Сверка со свечой, собранной из LastPrice
+            candleAggregator.crossCheck(candle.getFigi(), candle.getTime().getSeconds(),
+                high, low, FixedPointPrice.fromQuotation(candle.getClose()));
+            
+            // Максимум и минимум свечи могут обновить исторические экстремумы
+            historicalExtremeTracker.onCandle(candle.getFigi(), high, low,
+                Instant.ofEpochSecond(candle.getTime().getSeconds()));
+            
+            // Создаем MinuteCandleEntity для сохранения
+            MinuteCandleEntity entity = createCandleEntity(candle);
+            
+            // Асинхронное сохранение
+            if (copyIngestor != null) {
+                enqueueCandleForCopy(entity);
+            } else {
                 insertCandleDataAsync(entity);
-                
-                // Логирование каждые 100 записей
-                if (metrics.getTotalReceived() % 100 == 0) {
-                    log.info("Candle processing: {}", metrics);
-                }
-                
-            } catch (Exception e) {
-                metrics.incrementErrors();
-                log.error("Error processing Candle for FIGI: {}", candle.getFigi(), e);
             }
-        });
+            
+            // Логирование каждые 100 записей
+            if (metrics.getTotalReceived() % 100 == 0) {
+                log.info("Candle processing: {}", metrics);
+            }
+            
+        } catch (Exception e) {
+            metrics.incrementErrors();
+            log.error("Error processing Candle for FIGI: {}", candle.getFigi(), e);
+        }
     }
     
     @Override
@@ -88,10 +122,11 @@ public class CandleProcessor implements DataProcessor<Candle> {
             candle.getTime().getNanos()
         );
         
-        BigDecimal open = convertQuotationToBigDecimal(candle.getOpen());
-        BigDecimal high = convertQuotationToBigDecimal(candle.getHigh());
-        BigDecimal low = convertQuotationToBigDecimal(candle.getLow());
-        BigDecimal close = convertQuotationToBigDecimal(candle.getClose());
+        // Цены преобразуются в BigDecimal один раз - сущность уходит прямо в JDBC
+        BigDecimal open = FixedPointPrice.toBigDecimal(FixedPointPrice.fromQuotation(candle.getOpen()));
+        BigDecimal high = FixedPointPrice.toBigDecimal(FixedPointPrice.fromQuotation(candle.getHigh()));
+        BigDecimal low = FixedPointPrice.toBigDecimal(FixedPointPrice.fromQuotation(candle.getLow()));
+        BigDecimal close = FixedPointPrice.toBigDecimal(FixedPointPrice.fromQuotation(candle.getClose()));
         
         return new MinuteCandleEntity(
             candle.getFigi(),
@@ -106,24 +141,20 @@ public class CandleProcessor implements DataProcessor<Candle> {
     }
     
     /**
-     * Конвертирует Quotation в BigDecimal
+     * Постановка свечи в очередь пакетной загрузки через COPY
      */
-    private BigDecimal convertQuotationToBigDecimal(ru.tinkoff.piapi.contract.v1.Quotation quotation) {
-        return BigDecimal.valueOf(quotation.getUnits())
-            .add(BigDecimal.valueOf(quotation.getNano()).movePointLeft(9));
+    private void enqueueCandleForCopy(MinuteCandleEntity entity) {
+        if (!copyIngestor.offer(entity)) {
+            metrics.incrementDropped();
+            log.warn("COPY buffer is full, dropping Candle for {}", entity.getFigi());
+        }
     }
     
     /**
      * Асинхронная вставка данных в базу
      */
     private void insertCandleDataAsync(MinuteCandleEntity entity) {
-        if (!insertSemaphore.tryAcquire()) {
-            metrics.incrementDropped();
-            log.warn("Too many concurrent inserts, dropping Candle for {}", entity.getFigi());
-            return;
-        }
-        
-        insertExecutor.submit(() -> {
+        boolean accepted = writeExecutor.submit(() -> {
             try {
                 final String sql = """
                     INSERT INTO invest.minute_candles 
@@ -173,6 +204,7 @@ public class CandleProcessor implements DataProcessor<Candle> {
                 );
                 
                 metrics.incrementProcessed();
+                rollupWriter.markMinute(entity.getFigi(), entity.getTime());
                 
                 // Детальное логирование каждой свечи
                 log.info("✅ CANDLE → DB: FIGI={}, Time={}, O={}, H={}, L={}, C={}, Vol={}, Type={}", 
@@ -189,10 +221,13 @@ public class CandleProcessor implements DataProcessor<Candle> {
                 metrics.incrementErrors();
                 log.error("❌ Error inserting Candle for FIGI={}, Time={}: {}", 
                     entity.getFigi(), entity.getTime(), e.getMessage(), e);
-            } finally {
-                insertSemaphore.release();
             }
         });
+        
+        if (!accepted) {
+            metrics.incrementDropped();
+            log.warn("DB write queue is full, dropping Candle for {}", entity.getFigi());
+        }
     }
     
     /**
@@ -202,20 +237,23 @@ public class CandleProcessor implements DataProcessor<Candle> {
         return metrics;
     }
     
+    /**
+     * Получение загрузчика COPY (null в режиме UPSERT)
+     */
+    public CandleCopyIngestor getCopyIngestor() {
+        return copyIngestor;
+    }
+    
     /**
      * Завершение работы процессора
      */
+    @PreDestroy
     public void shutdown() {
         log.info("Shutting down CandleProcessor...");
         
-        insertExecutor.shutdown();
-        try {
-            if (!insertExecutor.awaitTermination(30, java.util.concurrent.TimeUnit.SECONDS)) {
-                insertExecutor.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            insertExecutor.shutdownNow();
+        // Принятые построчные записи дописывает StreamWriteExecutor при своем завершении
+        if (copyIngestor != null) {
+            copyIngestor.shutdown();
         }
         
         log.info("CandleProcessor shutdown completed: {}", metrics);
@@ -0,0 +1,299 @@
+package com.example.investmentdatastreamservice.service.streaming.processor;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.example.investmentdatastreamservice.config.StreamingProperties;
+import com.example.investmentdatastreamservice.service.streaming.StreamWriteExecutor;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Инкрементальная сборка свечей 5m, 15m, 1h и 1d из минутных свечей
+ *
+ * После записи минутной свечи ({@link CandleProcessor}, {@link CandleCopyIngestor})
+ * вызывается {@link #markMinute}: затронутые интервалы каждого таймфрейма попадают
+ * в набор "грязных". Раз в stream.rollup.flush-interval-ms набор забирается и для
+ * каждого таймфрейма выполняется пакетный INSERT ... ON CONFLICT в
+ * invest_candles.candle_rollups (db/15-candle-rollups.sql) по списку (figi, начало интервала).
+ *
+ * Интервал пересчитывается целиком по минутным свечам, а не дополняется приращением:
+ * минутная свеча API обновляется несколько раз, и сложение объема дало бы двойной учет.
+ * Дневная свеча строится из уже пересчитанных часовых строк, поэтому день не требует
+ * чтения всех минут. Частые обновления одной минуты между сбросами схлопываются в одну
+ * пометку интервала.
+ */
+@Component
+public class CandleRollupWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(CandleRollupWriter.class);
+
+    /**
+     * Смещение московского времени: границы дня для таймфрейма 1d
+     */
+    private static final long MOSCOW_OFFSET_SECONDS = 3 * 3_600;
+
+    /**
+     * Таймфреймы в порядке пересчета: 1d строится из 1h того же сброса
+     */
+    enum Timeframe {
+        M5("5m", 300, false),
+        M15("15m", 900, false),
+        H1("1h", 3_600, false),
+        D1("1d", 86_400, true);
+
+        private final String code;
+        private final int seconds;
+        private final boolean fromHourly;
+
+        Timeframe(String code, int seconds, boolean fromHourly) {
+            this.code = code;
+            this.seconds = seconds;
+            this.fromHourly = fromHourly;
+        }
+
+        /**
+         * Начало интервала по московскому времени (для интервалов до часа совпадает с epoch)
+         */
+        long bucketStart(long epochSecond) {
+            return Math.floorDiv(epochSecond + MOSCOW_OFFSET_SECONDS, seconds) * seconds - MOSCOW_OFFSET_SECONDS;
+        }
+    }
+
+    private record BucketKey(String figi, long startEpochSecond) {}
+
+    private static final String FROM_MINUTES_SQL = """
+        INSERT INTO invest_candles.candle_rollups
+        (figi, timeframe, time, open, high, low, close, volume, minute_count, is_complete, updated_at)
+        SELECT m.figi, ?, b.bucket,
+            (array_agg(m.open ORDER BY m.time))[1],
+            max(m.high), min(m.low),
+            (array_agg(m.close ORDER BY m.time DESC))[1],
+            sum(m.volume), count(*),
+            b.bucket + make_interval(secs => ?) <= now(), now()
+        FROM unnest(?::varchar[], ?::timestamptz[]) AS b(figi, bucket)
+        JOIN invest_candles.minute_candles m
+            ON m.figi = b.figi AND m.time >= b.bucket AND m.time < b.bucket + make_interval(secs => ?)
+        GROUP BY m.figi, b.bucket
+        ON CONFLICT (figi, timeframe, time) DO UPDATE SET
+        open = EXCLUDED.open, high = EXCLUDED.high, low = EXCLUDED.low,
+        close = EXCLUDED.close, volume = EXCLUDED.volume,
+        minute_count = EXCLUDED.minute_count,
+        is_complete = EXCLUDED.is_complete,
+        updated_at = EXCLUDED.updated_at
+        """;
+
+    private static final String FROM_HOURLY_SQL = """
+        INSERT INTO invest_candles.candle_rollups
+        (figi, timeframe, time, open, high, low, close, volume, minute_count, is_complete, updated_at)
+        SELECT h.figi, ?, b.bucket,
+            (array_agg(h.open ORDER BY h.time))[1],
+            max(h.high), min(h.low),
+            (array_agg(h.close ORDER BY h.time DESC))[1],
+            sum(h.volume), sum(h.minute_count),
+            b.bucket + make_interval(secs => ?) <= now(), now()
+        FROM unnest(?::varchar[], ?::timestamptz[]) AS b(figi, bucket)
+        JOIN invest_candles.candle_rollups h
+            ON h.figi = b.figi AND h.timeframe = '1h'
+            AND h.time >= b.bucket AND h.time < b.bucket + make_interval(secs => ?)
+        GROUP BY h.figi, b.bucket
+        ON CONFLICT (figi, timeframe, time) DO UPDATE SET
+        open = EXCLUDED.open, high = EXCLUDED.high, low = EXCLUDED.low,
+        close = EXCLUDED.close, volume = EXCLUDED.volume,
+        minute_count = EXCLUDED.minute_count,
+        is_complete = EXCLUDED.is_complete,
+        updated_at = EXCLUDED.updated_at
+        """;
+
+    private final JdbcTemplate streamJdbcTemplate;
+    private final StreamWriteExecutor writeExecutor;
+    private final StreamingProperties.Rollup config;
+    private final Map<Timeframe, Set<BucketKey>> dirty = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flushScheduler;
+
+    // Метрики
+    private final AtomicLong minutesMarked = new AtomicLong(0);
+    private final AtomicLong bucketsFlushed = new AtomicLong(0);
+    private final AtomicLong rowsUpserted = new AtomicLong(0);
+    private final AtomicLong statementsExecuted = new AtomicLong(0);
+    private final AtomicLong flushErrors = new AtomicLong(0);
+    private volatile long lastFlushDurationMs = 0;
+
+    public CandleRollupWriter(@Qualifier("streamJdbcTemplate") JdbcTemplate streamJdbcTemplate,
+                              StreamWriteExecutor writeExecutor,
+                              StreamingProperties streamingProperties) {
+        this.streamJdbcTemplate = streamJdbcTemplate;
+        this.writeExecutor = writeExecutor;
+        this.config = streamingProperties.getRollup();
+        for (Timeframe timeframe : Timeframe.values()) {
+            dirty.put(timeframe, ConcurrentHashMap.newKeySet());
+        }
+        this.flushScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "candle-rollup-flush");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!config.isEnabled()) {
+            log.info("Candle rollups disabled");
+            return;
+        }
+        flushScheduler.scheduleWithFixedDelay(this::flush,
+            config.getFlushIntervalMs(), config.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+        log.info("📚 Candle rollups enabled: 5m/15m/1h/1d, flushInterval={}ms, batchSize={}",
+            config.getFlushIntervalMs(), config.getBatchSize());
+    }
+
+    /**
+     * Пометка интервалов, в которые попадает записанная минутная свеча
+     *
+     * @param figi FIGI инструмента
+     * @param minuteTime начало минутной свечи
+     */
+    public void markMinute(String figi, Instant minuteTime) {
+        if (!config.isEnabled() || figi == null || minuteTime == null) {
+            return;
+        }
+        long epochSecond = minuteTime.getEpochSecond();
+        for (Timeframe timeframe : Timeframe.values()) {
+            dirty.get(timeframe).add(new BucketKey(figi, timeframe.bucketStart(epochSecond)));
+        }
+        minutesMarked.incrementAndGet();
+    }
+
+    /**
+     * Пересчет помеченных интервалов (поток flushScheduler)
+     */
+    public void flush() {
+        long start = System.currentTimeMillis();
+        int flushed = 0;
+        for (Timeframe timeframe : Timeframe.values()) {
+            List<BucketKey> keys = drain(dirty.get(timeframe));
+            for (int from = 0; from < keys.size(); from += config.getBatchSize()) {
+                List<BucketKey> batch = keys.subList(from, Math.min(keys.size(), from + config.getBatchSize()));
+                try {
+                    writeExecutor.execute(() -> upsert(timeframe, batch));
+                    flushed += batch.size();
+                } catch (Exception e) {
+                    // Интервалы остаются помеченными до следующего сброса
+                    dirty.get(timeframe).addAll(batch);
+                    flushErrors.incrementAndGet();
+                    log.error("❌ Error flushing {} candle rollups ({} buckets): {}",
+                        timeframe.code, batch.size(), e.getMessage(), e);
+                }
+            }
+        }
+        if (flushed > 0) {
+            bucketsFlushed.addAndGet(flushed);
+            lastFlushDurationMs = System.currentTimeMillis() - start;
+            log.debug("Candle rollups: {} buckets recomputed in {}ms", flushed, lastFlushDurationMs);
+        }
+    }
+
+    /**
+     * Забрать помеченные интервалы: пометка, добавленная после удаления ключа,
+     * остается в наборе и попадет в следующий сброс
+     */
+    private static List<BucketKey> drain(Set<BucketKey> set) {
+        List<BucketKey> keys = new ArrayList<>();
+        for (Iterator<BucketKey> it = set.iterator(); it.hasNext(); ) {
+            keys.add(it.next());
+            it.remove();
+        }
+        return keys;
+    }
+
+    private void upsert(Timeframe timeframe, List<BucketKey> batch) {
+        String[] figis = new String[batch.size()];
+        Timestamp[] buckets = new Timestamp[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            BucketKey key = batch.get(i);
+            figis[i] = key.figi();
+            buckets[i] = Timestamp.from(Instant.ofEpochSecond(key.startEpochSecond()));
+        }
+        int rows = streamJdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(timeframe.fromHourly ? FROM_HOURLY_SQL : FROM_MINUTES_SQL);
+            ps.setString(1, timeframe.code);
+            ps.setInt(2, timeframe.seconds);
+            ps.setArray(3, con.createArrayOf("varchar", figis));
+            ps.setArray(4, con.createArrayOf("timestamptz", buckets));
+            ps.setInt(5, timeframe.seconds);
+            return ps;
+        });
+        rowsUpserted.addAndGet(rows);
+        statementsExecuted.incrementAndGet();
+    }
+
+    /**
+     * Количество интервалов, ожидающих пересчета
+     */
+    public int getPendingBuckets() {
+        int pending = 0;
+        for (Set<BucketKey> keys : dirty.values()) {
+            pending += keys.size();
+        }
+        return pending;
+    }
+
+    /**
+     * Статистика сборки
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", config.isEnabled());
+        stats.put("flushIntervalMs", config.getFlushIntervalMs());
+        stats.put("minutesMarked", minutesMarked.get());
+        Map<String, Object> pending = new LinkedHashMap<>();
+        for (Timeframe timeframe : Timeframe.values()) {
+            pending.put(timeframe.code, dirty.get(timeframe).size());
+        }
+        stats.put("pendingBuckets", pending);
+        stats.put("bucketsFlushed", bucketsFlushed.get());
+        stats.put("rowsUpserted", rowsUpserted.get());
+        stats.put("statementsExecuted", statementsExecuted.get());
+        stats.put("flushErrors", flushErrors.get());
+        stats.put("lastFlushDurationMs", lastFlushDurationMs);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushScheduler.shutdown();
+        try {
+            flushScheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (config.isEnabled()) {
+            flush();
+        }
+    }
+
+    // Getters для метрик
+    public long getMinutesMarked() { return minutesMarked.get(); }
+    public long getBucketsFlushed() { return bucketsFlushed.get(); }
+    public long getRowsUpserted() { return rowsUpserted.get(); }
+    public long getFlushErrors() { return flushErrors.get(); }
+}
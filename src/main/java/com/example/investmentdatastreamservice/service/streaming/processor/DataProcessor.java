@@ -12,13 +12,30 @@ import java.util.concurrent.CompletableFuture;
  */
 public interface DataProcessor<T> {
     
+    /**
+     * Синхронная обработка единичного элемента данных
+     * 
+     * Вызывается напрямую из потока-потребителя {@code RingBufferDispatcher}
+     * без создания CompletableFuture на каждый элемент.
+     * 
+     * @param data данные для обработки
+     */
+    void handle(T data);
+    
     /**
      * Обработка единичного элемента данных
      * 
      * @param data данные для обработки
      * @return CompletableFuture, завершающийся при обработке
      */
-    CompletableFuture<Void> process(T data);
+    default CompletableFuture<Void> process(T data) {
+        try {
+            handle(data);
+            return CompletableFuture.completedFuture(null);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
     
     /**
      * Обработка ошибок
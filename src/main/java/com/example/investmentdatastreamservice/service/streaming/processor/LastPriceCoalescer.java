@@ -0,0 +1,205 @@
+package com.example.investmentdatastreamservice.service.streaming.processor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Схлопывание цен последних сделок по FIGI перед сохранением
+ *
+ * Для каждого FIGI хранится только последняя цена в текущем временном окне
+ * (bucket) длительностью bucketMs по времени сделки. В БД передается одна
+ * запись на окно - последняя сделка окна с ее исходным временем и ценой,
+ * поэтому ряд в invest.last_prices точен с гранулярностью окна.
+ *
+ * Окно отдается на запись:
+ * - сразу, когда по FIGI приходит сделка из следующего окна;
+ * - фоновым сбросом, когда с конца окна по времени сделки прошло больше graceMs
+ *   (неликвидные инструменты). Запас graceMs покрывает задержку доставки сделок
+ *   и расхождение часов биржи и сервера: окно не закрывается, пока в него еще
+ *   могут прийти сделки.
+ *
+ * Сброшенное фоном окно остается в таблице отметкой без сделки до следующей сделки
+ * по FIGI. Запоздавшие сделки из уже закрытого окна передаются на запись без
+ * схлопывания, чтобы не потерять их и не затереть более новую цену.
+ */
+public class LastPriceCoalescer {
+
+    private static final Logger log = LoggerFactory.getLogger(LastPriceCoalescer.class);
+
+    /**
+     * Текущее окно FIGI: номер окна и последняя сделка (null - окно уже сброшено)
+     */
+    private record Slot(long bucket, long eventMillis, LastPriceTick tick) {}
+
+    private final long bucketMs;
+    private final long graceMs;
+    private final LongSupplier clock;
+    private final Consumer<LastPriceTick> sink;
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flushScheduler;
+
+    // Метрики
+    private final AtomicLong ticksReceived = new AtomicLong(0);
+    private final AtomicLong rowsEmitted = new AtomicLong(0);
+    private final AtomicLong ticksAbsorbed = new AtomicLong(0);
+    private final AtomicLong lateTicks = new AtomicLong(0);
+
+    /**
+     * @param bucketMs длительность окна схлопывания
+     * @param graceMs ожидание запоздавших сделок после конца окна до фонового сброса
+     * @param sink получатель записей, переживших схлопывание
+     */
+    public LastPriceCoalescer(long bucketMs, long graceMs, Consumer<LastPriceTick> sink) {
+        this(bucketMs, graceMs, sink, System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock текущее время в epoch millis
+     */
+    LastPriceCoalescer(long bucketMs, long graceMs, Consumer<LastPriceTick> sink, LongSupplier clock) {
+        if (bucketMs <= 0) {
+            throw new IllegalArgumentException("Coalescing bucket must be positive: " + bucketMs);
+        }
+        if (graceMs < 0) {
+            throw new IllegalArgumentException("Coalescing grace must not be negative: " + graceMs);
+        }
+        this.bucketMs = bucketMs;
+        this.graceMs = graceMs;
+        this.sink = sink;
+        this.clock = clock;
+        this.flushScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "lastprice-coalesce-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        this.flushScheduler.scheduleWithFixedDelay(this::flushStale, bucketMs, bucketMs, TimeUnit.MILLISECONDS);
+
+        log.info("🧮 LastPrice coalescing enabled: bucket={}ms, grace={}ms", bucketMs, graceMs);
+    }
+
+    /**
+     * Прием сделки
+     *
+     * @param tick цена для сохранения
+     * @return true, если одна из сделок окна поглощена схлопыванием и не будет записана
+     */
+    public boolean offer(LastPriceTick tick) {
+        ticksReceived.incrementAndGet();
+
+        long eventMillis = tick.epochMillis();
+        long bucket = eventMillis / bucketMs;
+        String figi = tick.figi();
+        LastPriceTick[] evicted = new LastPriceTick[1];
+        boolean[] absorbed = new boolean[1];
+
+        slots.compute(figi, (key, current) -> {
+            if (current == null) {
+                return new Slot(bucket, eventMillis, tick);
+            }
+            if (bucket > current.bucket()) {
+                // Началось новое окно: предыдущее (если еще не сброшено) уходит на запись
+                evicted[0] = current.tick();
+                return new Slot(bucket, eventMillis, tick);
+            }
+            if (bucket == current.bucket() && current.tick() != null) {
+                // То же окно: оставляем более позднюю сделку
+                absorbed[0] = true;
+                return eventMillis >= current.eventMillis()
+                    ? new Slot(bucket, eventMillis, tick)
+                    : current;
+            }
+            // Запоздавшая сделка из уже закрытого или сброшенного окна
+            lateTicks.incrementAndGet();
+            evicted[0] = tick;
+            return current;
+        });
+
+        if (evicted[0] != null) {
+            emit(evicted[0]);
+        }
+        if (absorbed[0]) {
+            ticksAbsorbed.incrementAndGet();
+        }
+        return absorbed[0];
+    }
+
+    /**
+     * Сброс окон, конец которых наступил больше graceMs назад
+     */
+    void flushStale() {
+        try {
+            // Окна с номером меньше lastClosedBucket закончились не позднее now - graceMs
+            long lastClosedBucket = (clock.getAsLong() - graceMs) / bucketMs;
+            for (Map.Entry<String, Slot> entry : slots.entrySet()) {
+                Slot slot = entry.getValue();
+                // replace(key, old, new) не сработает, если окно успели обновить - тогда его отдаст offer()
+                if (slot.tick() != null && slot.bucket() < lastClosedBucket
+                        && slots.replace(entry.getKey(), slot, new Slot(slot.bucket(), slot.eventMillis(), null))) {
+                    emit(slot.tick());
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error flushing coalesced LastPrice buckets", e);
+        }
+    }
+
+    private void emit(LastPriceTick tick) {
+        rowsEmitted.incrementAndGet();
+        sink.accept(tick);
+    }
+
+    /**
+     * Остановка с передачей на запись всех открытых окон
+     */
+    public void shutdown() {
+        flushScheduler.shutdown();
+        try {
+            flushScheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (String figi : slots.keySet()) {
+            Slot slot = slots.remove(figi);
+            if (slot != null && slot.tick() != null) {
+                emit(slot.tick());
+            }
+        }
+        log.info("LastPriceCoalescer shutdown completed: received={}, emitted={}, late={}",
+            ticksReceived.get(), rowsEmitted.get(), lateTicks.get());
+    }
+
+    // Getters для метрик
+    public long getBucketMs() { return bucketMs; }
+    public long getGraceMs() { return graceMs; }
+    public long getTicksReceived() { return ticksReceived.get(); }
+    public long getRowsEmitted() { return rowsEmitted.get(); }
+    public long getTicksAbsorbed() { return ticksAbsorbed.get(); }
+    public long getLateTicks() { return lateTicks.get(); }
+    public int getOpenBuckets() {
+        int open = 0;
+        for (Slot slot : slots.values()) {
+            if (slot.tick() != null) {
+                open++;
+            }
+        }
+        return open;
+    }
+
+    /**
+     * Отношение числа полученных сделок к числу записанных строк
+     */
+    public double getCoalescingRatio() {
+        long emitted = rowsEmitted.get();
+        return emitted > 0 ? (double) ticksReceived.get() / emitted : 0.0;
+    }
+}
@@ -1,185 +1,275 @@
 package com.example.investmentdatastreamservice.service.streaming.processor;
 
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Semaphore;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 
-import com.example.investmentdatastreamservice.entity.LastPriceEntity;
+import com.example.investmentdatastreamservice.config.StreamingProperties;
+import com.example.investmentdatastreamservice.entity.LastPriceKey;
+import com.example.investmentdatastreamservice.service.InstrumentMetadataIndex;
+import com.example.investmentdatastreamservice.service.streaming.StreamWriteExecutor;
 import com.example.investmentdatastreamservice.service.streaming.StreamingMetrics;
+import com.example.investmentdatastreamservice.service.streaming.WriteBehindBuffer;
 
+import jakarta.annotation.PreDestroy;
 import ru.tinkoff.piapi.contract.v1.LastPrice;
 
 /**
  * Процессор для обработки данных LastPrice
- * 
- * Высокопроизводительная обработка цен последних сделок с асинхронным сохранением
+ *
+ * Высокопроизводительная обработка цен последних сделок с отложенной пакетной записью
  * в базу данных и детальным мониторингом производительности.
+ *
+ * Тики накапливаются в буфере {@link WriteBehindBuffer} и сохраняются одним
+ * batch-запросом при достижении stream.last-price.batch-size записей или
+ * по истечении stream.last-price.flush-interval-ms.
+ *
+ * При stream.last-price.coalesce-enabled=true перед буфером работает
+ * {@link LastPriceCoalescer}: на запись уходит только последняя цена FIGI
+ * в каждом окне stream.last-price.coalesce-bucket-ms.
+ *
+ * До записи цена хранится как {@link LastPriceTick} (цена с фиксированной точкой),
+ * BigDecimal и LocalDateTime создаются только при формировании batch-запроса.
+ *
+ * Пакеты записываются через {@link StreamWriteExecutor}: число одновременных
+ * batch-запросов ограничено соединениями пула stream, а не числом потоков записи.
+ * Пакет, запись которого завершилась ошибкой, повторяется до
+ * stream.last-price.write-retries раз с удваивающейся паузой; пауза выдерживается
+ * без занятого соединения. После последней попытки исключение передается буферу,
+ * и пакет учитывается в failedBatches буфера и failed исполнителя записи.
  */
 @Component
 public class LastPriceProcessor implements DataProcessor<LastPrice> {
-    
+
     private static final Logger log = LoggerFactory.getLogger(LastPriceProcessor.class);
-    
+
+    private static final String INSERT_SQL = """
+        INSERT INTO invest.last_prices
+        (figi, time, price, currency, exchange)
+        VALUES (?, ?, ?, ?, ?)
+        ON CONFLICT (figi, time) DO UPDATE SET
+        price = EXCLUDED.price,
+        currency = EXCLUDED.currency,
+        exchange = EXCLUDED.exchange
+        """;
+
+    private static final long SHUTDOWN_TIMEOUT_MS = 30_000;
+
+    private static final String CURRENCY = "RUB";
+    private static final String EXCHANGE = "MOEX";
+
     private final JdbcTemplate streamJdbcTemplate;
     private final StreamingMetrics metrics;
-    private final ExecutorService insertExecutor;
-    private final Semaphore insertSemaphore;
-    
-    // Конфигурация производительности
-    private static final int INSERT_THREADS = Runtime.getRuntime().availableProcessors() * 4;
-    private static final int MAX_CONCURRENT_INSERTS = 100;
-    
+    private final WriteBehindBuffer<LastPriceTick> writeBuffer;
+    private final LastPriceCoalescer coalescer;
+    private final InstrumentMetadataIndex instrumentIndex;
+    private final StreamWriteExecutor writeExecutor;
+    private final int writeRetries;
+    private final long writeRetryBackoffMs;
+
     // Счетчики по типам инструментов
     private final AtomicLong sharesProcessed = new AtomicLong(0);
     private final AtomicLong futuresProcessed = new AtomicLong(0);
     private final AtomicLong indicativesProcessed = new AtomicLong(0);
-    
-    public LastPriceProcessor(@Qualifier("streamJdbcTemplate") JdbcTemplate streamJdbcTemplate) {
+
+    public LastPriceProcessor(@Qualifier("streamJdbcTemplate") JdbcTemplate streamJdbcTemplate,
+                              StreamingProperties streamingProperties,
+                              InstrumentMetadataIndex instrumentIndex,
+                              StreamWriteExecutor writeExecutor) {
         this.streamJdbcTemplate = streamJdbcTemplate;
+        this.instrumentIndex = instrumentIndex;
+        this.writeExecutor = writeExecutor;
         this.metrics = new StreamingMetrics("LastPriceProcessor");
-        this.insertExecutor = Executors.newFixedThreadPool(INSERT_THREADS, r -> {
-            Thread t = new Thread(r, "lastprice-insert-" + System.currentTimeMillis());
-            t.setDaemon(true);
-            return t;
-        });
-        this.insertSemaphore = new Semaphore(MAX_CONCURRENT_INSERTS);
+
+        StreamingProperties.LastPrice config = streamingProperties.getLastPrice();
+        this.writeRetries = Math.max(0, config.getWriteRetries());
+        this.writeRetryBackoffMs = Math.max(1, config.getWriteRetryBackoffMs());
+        this.writeBuffer = new WriteBehindBuffer<>(
+            "lastprice",
+            config.getQueueCapacity(),
+            config.getBatchSize(),
+            config.getFlushIntervalMs(),
+            this::writeBatchWithRetry
+        );
+        this.writeBuffer.start(config.getWriterThreads(), writeExecutor.writerThreadFactory("lastprice-writer"));
+
+        this.coalescer = config.isCoalesceEnabled()
+            ? new LastPriceCoalescer(config.getCoalesceBucketMs(), config.getCoalesceGraceMs(), this::enqueueForWrite)
+            : null;
     }
-    
+
     @Override
-    public CompletableFuture<Void> process(LastPrice lastPrice) {
-        return CompletableFuture.runAsync(() -> {
-            try {
-                metrics.incrementReceived();
-                
-                // Создаем LastPriceEntity для сохранения
-                LastPriceEntity entity = createLastPriceEntity(lastPrice);
-                
-                // Асинхронное сохранение
-                insertLastPriceDataAsync(entity);
-                
-                // Обновляем счетчики по типам инструментов
-                updateInstrumentCounters(lastPrice.getFigi());
-                
-                // Логирование каждые 1000 записей
-                if (metrics.getTotalReceived() % 1000 == 0) {
-                    log.info("LastPrice processing: {}", metrics);
+    public void handle(LastPrice lastPrice) {
+        try {
+            metrics.incrementReceived();
+
+            // Цена с фиксированной точкой, без промежуточного BigDecimal
+            LastPriceTick tick = LastPriceTick.from(lastPrice);
+
+            // Ставим в очередь отложенной записи (через схлопывание, если оно включено)
+            if (coalescer != null) {
+                if (coalescer.offer(tick)) {
+                    // Поглощенная сделка не будет записана - считаем ее обработанной
+                    metrics.incrementProcessed();
                 }
-                
-            } catch (Exception e) {
-                metrics.incrementErrors();
-                log.error("Error processing LastPrice for FIGI: {}", lastPrice.getFigi(), e);
+            } else {
+                enqueueForWrite(tick);
             }
-        });
+
+            // Обновляем счетчики по типам инструментов
+            updateInstrumentCounters(lastPrice.getFigi());
+
+            // Логирование каждые 1000 записей
+            if (metrics.getTotalReceived() % 1000 == 0) {
+                log.info("LastPrice processing: {}, buffered={}", metrics, writeBuffer.getPendingCount());
+            }
+
+        } catch (Exception e) {
+            metrics.incrementErrors();
+            log.error("Error processing LastPrice for FIGI: {}", lastPrice.getFigi(), e);
+        }
     }
-    
+
     @Override
     public void handleError(Throwable error) {
         metrics.incrementErrors();
         log.error("LastPrice processor error", error);
     }
-    
+
     /**
-     * Создание LastPriceEntity из LastPrice
+     * Постановка цены в буфер отложенной записи
      */
-    private LastPriceEntity createLastPriceEntity(LastPrice lastPrice) {
-        java.time.Instant eventInstant = java.time.Instant.ofEpochSecond(
-            lastPrice.getTime().getSeconds(), 
-            lastPrice.getTime().getNanos()
-        );
-        
-        java.time.LocalDateTime eventTime = java.time.LocalDateTime.ofInstant(
-            eventInstant, 
-            java.time.ZoneOffset.of("+3")
-        );
-        
-        java.math.BigDecimal priceValue = java.math.BigDecimal.valueOf(lastPrice.getPrice().getUnits())
-            .add(java.math.BigDecimal.valueOf(lastPrice.getPrice().getNano()).movePointLeft(9));
-        
-        return new LastPriceEntity(
-            lastPrice.getFigi(),
-            eventTime,
-            priceValue,
-            "RUB",
-            "MOEX"
-        );
+    private void enqueueForWrite(LastPriceTick tick) {
+        if (!writeBuffer.offer(tick)) {
+            metrics.incrementDropped();
+            log.warn("Write-behind buffer is full, dropping LastPrice for {}", tick.figi());
+        }
     }
-    
+
     /**
-     * Асинхронная вставка данных в базу
+     * Запись пакета с повторами (вызывается потоками записи буфера)
+     *
+     * Между попытками соединение пула не удерживается. Если все попытки неуспешны,
+     * цены пакета учитываются как ошибки, а исключение передается буферу.
      */
-    private void insertLastPriceDataAsync(LastPriceEntity entity) {
-        if (!insertSemaphore.tryAcquire()) {
-            metrics.incrementDropped();
-            log.warn("Too many concurrent inserts, dropping LastPrice for {}", entity.getId().getFigi());
-            return;
-        }
-        
-        insertExecutor.submit(() -> {
+    private void writeBatchWithRetry(List<LastPriceTick> batch) {
+        long backoffMs = writeRetryBackoffMs;
+        for (int attempt = 0; ; attempt++) {
+            try {
+                writeExecutor.execute(() -> insertLastPriceBatch(batch));
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= writeRetries) {
+                    metrics.addErrors(batch.size());
+                    log.error("❌ Error inserting LastPrice batch of {} rows after {} attempts: {}",
+                        batch.size(), attempt + 1, e.getMessage(), e);
+                    throw e;
+                }
+                log.warn("⚠️ LastPrice batch of {} rows failed (attempt {}/{}), retrying in {} ms: {}",
+                    batch.size(), attempt + 1, writeRetries + 1, backoffMs, e.getMessage());
+            }
             try {
-                final String sql = """
-                    INSERT INTO invest.last_prices 
-                    (figi, time, price, currency, exchange) 
-                    VALUES (?, ?, ?, ?, ?) 
-                    ON CONFLICT (figi, time) DO UPDATE SET 
-                    price = EXCLUDED.price, 
-                    currency = EXCLUDED.currency, 
-                    exchange = EXCLUDED.exchange
-                    """;
-                
-                java.sql.Timestamp ts = java.sql.Timestamp.valueOf(entity.getId().getTime());
-                
-                streamJdbcTemplate.update(sql,
-                    entity.getId().getFigi(),
-                    ts,
-                    entity.getPrice(),
-                    entity.getCurrency(),
-                    entity.getExchange()
-                );
-                
-                metrics.incrementProcessed();
-                
-                // Детальное логирование каждой цены
-                log.info("💰 LAST_PRICE → DB: FIGI={}, Time={}, Price={}, Currency={}, Exchange={}", 
-                    entity.getId().getFigi(), 
-                    ts, 
-                    entity.getPrice(), 
-                    entity.getCurrency(), 
-                    entity.getExchange());
-                
-            } catch (Exception e) {
-                metrics.incrementErrors();
-                log.error("❌ Error inserting LastPrice for FIGI={}, Time={}: {}", 
-                    entity.getId().getFigi(), entity.getId().getTime(), e.getMessage(), e);
-            } finally {
-                insertSemaphore.release();
+                Thread.sleep(backoffMs);
+            } catch (InterruptedException e) {
+                // Остановка: пакет не записан, повторять некогда
+                Thread.currentThread().interrupt();
+                metrics.addErrors(batch.size());
+                throw new IllegalStateException("Interrupted while retrying LastPrice batch", e);
+            }
+            backoffMs *= 2;
+        }
+    }
+
+    /**
+     * Пакетная вставка данных в базу
+     *
+     * Внутри пакета оставляем только последнюю цену для каждой пары (figi, time):
+     * при reWriteBatchedInserts пакет превращается в один multi-row INSERT,
+     * а ON CONFLICT DO UPDATE не может изменить одну и ту же строку дважды.
+     * Ошибка записи передается вызывающему коду.
+     */
+    private void insertLastPriceBatch(List<LastPriceTick> batch) {
+        Map<LastPriceKey, LastPriceTick> unique = new LinkedHashMap<>(batch.size() * 2);
+        for (LastPriceTick tick : batch) {
+            unique.put(new LastPriceKey(tick.figi(), tick.localTime()), tick);
+        }
+        List<Map.Entry<LastPriceKey, LastPriceTick>> rows = new ArrayList<>(unique.entrySet());
+
+        streamJdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Map.Entry<LastPriceKey, LastPriceTick> row = rows.get(i);
+                ps.setString(1, row.getKey().getFigi());
+                ps.setTimestamp(2, java.sql.Timestamp.valueOf(row.getKey().getTime()));
+                ps.setBigDecimal(3, row.getValue().priceAsBigDecimal());
+                ps.setString(4, CURRENCY);
+                ps.setString(5, EXCHANGE);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
             }
         });
+
+        // Дубликаты внутри пакета считаются обработанными - их цена перезаписана последней
+        metrics.addProcessed(batch.size());
+        recordCommitLatency(batch);
+
+        log.debug("💰 LAST_PRICE → DB: batch of {} rows ({} unique)", batch.size(), rows.size());
     }
-    
+
+    /**
+     * Задержки до фиксации пакета: от обработки тика и от времени сделки на бирже
+     */
+    private void recordCommitLatency(List<LastPriceTick> batch) {
+        long nowNanos = System.nanoTime();
+        for (LastPriceTick tick : batch) {
+            metrics.recordLatencyNanos(StreamingMetrics.Stage.PROCESSED_TO_COMMITTED, nowNanos - tick.processedAtNanos());
+            metrics.recordLatencySince(StreamingMetrics.Stage.EXCHANGE_TO_COMMITTED, tick.timeSeconds(), tick.timeNanos());
+        }
+    }
+
     /**
-     * Обновление счетчиков по типам инструментов
+     * Обновление счетчиков по типам инструментов (тип берется из индекса инструментов)
      */
     private void updateInstrumentCounters(String figi) {
-        // Здесь можно добавить логику определения типа инструмента
-        // Пока просто увеличиваем общий счетчик
-        // В реальной реализации можно использовать кэш типов инструментов
+        InstrumentMetadataIndex.InstrumentType type = instrumentIndex.getType(figi);
+        if (type == null) {
+            return;
+        }
+        switch (type) {
+            case SHARE -> sharesProcessed.incrementAndGet();
+            case FUTURE -> futuresProcessed.incrementAndGet();
+            case INDICATIVE -> indicativesProcessed.incrementAndGet();
+        }
     }
-    
+
     /**
      * Получение метрик процессора
      */
     public StreamingMetrics getMetrics() {
         return metrics;
     }
-    
+
+    /**
+     * Получение слоя схлопывания (null, если схлопывание выключено)
+     */
+    public LastPriceCoalescer getCoalescer() {
+        return coalescer;
+    }
+
     /**
      * Получение детализированных метрик
      */
@@ -192,30 +282,29 @@ public class LastPriceProcessor implements DataProcessor<LastPrice> {
             sharesProcessed.get(),
             futuresProcessed.get(),
             indicativesProcessed.get(),
-            insertSemaphore.availablePermits(),
-            MAX_CONCURRENT_INSERTS
+            writeBuffer.getPendingCount(),
+            writeBuffer.getCapacity(),
+            writeBuffer.getBatchesFlushed(),
+            writeBuffer.getLastFlushDurationMs()
         );
     }
-    
+
     /**
-     * Завершение работы процессора
+     * Завершение работы процессора с дозаписью накопленных цен
      */
+    @PreDestroy
     public void shutdown() {
         log.info("Shutting down LastPriceProcessor...");
-        
-        insertExecutor.shutdown();
-        try {
-            if (!insertExecutor.awaitTermination(30, java.util.concurrent.TimeUnit.SECONDS)) {
-                insertExecutor.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            insertExecutor.shutdownNow();
+
+        // Сначала отдаем открытые окна в буфер, затем дописываем буфер
+        if (coalescer != null) {
+            coalescer.shutdown();
         }
-        
+        writeBuffer.shutdown(SHUTDOWN_TIMEOUT_MS);
+
         log.info("LastPriceProcessor shutdown completed: {}", metrics);
     }
-    
+
     /**
      * Детализированные метрики для LastPrice
      */
@@ -227,12 +316,15 @@ public class LastPriceProcessor implements DataProcessor<LastPrice> {
         private final long sharesProcessed;
         private final long futuresProcessed;
         private final long indicativesProcessed;
-        private final int availableInserts;
-        private final int maxConcurrentInserts;
-        
-        public LastPriceMetrics(long totalReceived, long totalProcessed, long totalErrors, 
-                              long totalDropped, long sharesProcessed, long futuresProcessed, 
-                              long indicativesProcessed, int availableInserts, int maxConcurrentInserts) {
+        private final int bufferedInserts;
+        private final int bufferCapacity;
+        private final long batchesFlushed;
+        private final long lastFlushDurationMs;
+
+        public LastPriceMetrics(long totalReceived, long totalProcessed, long totalErrors,
+                              long totalDropped, long sharesProcessed, long futuresProcessed,
+                              long indicativesProcessed, int bufferedInserts, int bufferCapacity,
+                              long batchesFlushed, long lastFlushDurationMs) {
             this.totalReceived = totalReceived;
             this.totalProcessed = totalProcessed;
             this.totalErrors = totalErrors;
@@ -240,10 +332,12 @@ public class LastPriceProcessor implements DataProcessor<LastPrice> {
             this.sharesProcessed = sharesProcessed;
             this.futuresProcessed = futuresProcessed;
             this.indicativesProcessed = indicativesProcessed;
-            this.availableInserts = availableInserts;
-            this.maxConcurrentInserts = maxConcurrentInserts;
+            this.bufferedInserts = bufferedInserts;
+            this.bufferCapacity = bufferCapacity;
+            this.batchesFlushed = batchesFlushed;
+            this.lastFlushDurationMs = lastFlushDurationMs;
         }
-        
+
         // Getters
         public long getTotalReceived() { return totalReceived; }
         public long getTotalProcessed() { return totalProcessed; }
@@ -252,12 +346,14 @@ public class LastPriceProcessor implements DataProcessor<LastPrice> {
         public long getSharesProcessed() { return sharesProcessed; }
         public long getFuturesProcessed() { return futuresProcessed; }
         public long getIndicativesProcessed() { return indicativesProcessed; }
-        public int getAvailableInserts() { return availableInserts; }
-        public int getMaxConcurrentInserts() { return maxConcurrentInserts; }
-        
-        public double getInsertUtilization() {
-            return maxConcurrentInserts > 0 
-                ? (double) (maxConcurrentInserts - availableInserts) / maxConcurrentInserts 
+        public int getBufferedInserts() { return bufferedInserts; }
+        public int getBufferCapacity() { return bufferCapacity; }
+        public long getBatchesFlushed() { return batchesFlushed; }
+        public long getLastFlushDurationMs() { return lastFlushDurationMs; }
+
+        public double getBufferUtilization() {
+            return bufferCapacity > 0
+                ? (double) bufferedInserts / bufferCapacity
                 : 0.0;
         }
     }
@@ -0,0 +1,56 @@
+package com.example.investmentdatastreamservice.service.streaming.processor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import com.example.investmentdatastreamservice.utils.FixedPointPrice;
+
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+
+/**
+ * Цена последней сделки на пути от gRPC потока до записи в БД
+ *
+ * Хранит время и цену в примитивах (цена - {@link FixedPointPrice}), поэтому
+ * постановка в буфер записи не создает BigDecimal и LocalDateTime. Преобразование
+ * в типы колонок invest.last_prices выполняется при пакетной записи.
+ *
+ * @param figi FIGI инструмента
+ * @param timeSeconds время сделки, секунды epoch
+ * @param timeNanos время сделки, наносекунды
+ * @param price цена с фиксированной точкой
+ * @param processedAtNanos момент обработки (System.nanoTime()) - для метрики задержки записи
+ */
+public record LastPriceTick(String figi, long timeSeconds, int timeNanos, long price, long processedAtNanos) {
+
+    private static final ZoneOffset MOSCOW_OFFSET = ZoneOffset.of("+3");
+
+    public static LastPriceTick from(LastPrice lastPrice) {
+        return new LastPriceTick(
+            lastPrice.getFigi(),
+            lastPrice.getTime().getSeconds(),
+            lastPrice.getTime().getNanos(),
+            FixedPointPrice.fromQuotation(lastPrice.getPrice()),
+            System.nanoTime()
+        );
+    }
+
+    /**
+     * Время сделки в epoch millis
+     */
+    public long epochMillis() {
+        return timeSeconds * 1000L + timeNanos / 1_000_000;
+    }
+
+    /**
+     * Время сделки в UTC+3 (московское время), как оно хранится в invest.last_prices
+     */
+    public LocalDateTime localTime() {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(timeSeconds, timeNanos), MOSCOW_OFFSET);
+    }
+
+    public BigDecimal priceAsBigDecimal() {
+        return FixedPointPrice.toBigDecimal(price);
+    }
+}
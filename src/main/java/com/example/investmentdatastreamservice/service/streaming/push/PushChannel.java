@@ -0,0 +1,64 @@
+package com.example.investmentdatastreamservice.service.streaming.push;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Типы событий push-API
+ */
+public enum PushChannel {
+    /**
+     * Цены последних сделок (LastPrice)
+     */
+    PRICE("price"),
+
+    /**
+     * Завершенные свечи, собранные из потока LastPrice
+     */
+    CANDLE("candle"),
+
+    /**
+     * Уведомления о приближении к лимитам и историческим экстремумам
+     */
+    ALERT("alert");
+
+    private final String code;
+
+    PushChannel(String code) {
+        this.code = code;
+    }
+
+    /**
+     * Имя события в SSE и поле type в WebSocket
+     */
+    public String getCode() { return code; }
+
+    /**
+     * Разбор списка каналов через запятую ("price,alert"); пустой список - все каналы
+     *
+     * @throws IllegalArgumentException если канал неизвестен
+     */
+    public static Set<PushChannel> parse(String codes) {
+        if (codes == null || codes.isBlank()) {
+            return EnumSet.allOf(PushChannel.class);
+        }
+        Set<PushChannel> channels = EnumSet.noneOf(PushChannel.class);
+        for (String code : codes.split(",")) {
+            String trimmed = code.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            channels.add(fromCode(trimmed));
+        }
+        return channels.isEmpty() ? EnumSet.allOf(PushChannel.class) : channels;
+    }
+
+    private static PushChannel fromCode(String code) {
+        for (PushChannel channel : values()) {
+            if (channel.code.equalsIgnoreCase(code)) {
+                return channel;
+            }
+        }
+        throw new IllegalArgumentException("Unknown push channel: " + code + " (expected price, candle, alert)");
+    }
+}
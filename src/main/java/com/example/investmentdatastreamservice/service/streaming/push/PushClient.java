@@ -0,0 +1,220 @@
+package com.example.investmentdatastreamservice.service.streaming.push;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Подписчик push-API с собственными фильтрами и буферами
+ *
+ * Цены и свечи схлопываются по ключу (FIGI, FIGI:интервал): пока клиент не успевает
+ * принимать, новое значение заменяет неотправленное (последнее значение выигрывает),
+ * поэтому медленный клиент получает актуальные цены, а не очередь устаревших.
+ * Количество ключей ограничено - новые ключи сверх лимита отбрасываются.
+ * Уведомления не схлопываются и идут через отдельную ограниченную очередь.
+ *
+ * Отправка выполняется одной задачей на клиента в исполнителе {@link PushHub}:
+ * публикующий поток только кладет значение в буфер и не ждет сеть.
+ */
+public class PushClient {
+
+    private static final Logger log = LoggerFactory.getLogger(PushClient.class);
+
+    /**
+     * Подготовленное событие
+     */
+    record PushMessage(String event, String json) {}
+
+    private final long id;
+    private final String transport;
+    private final PushSink sink;
+    private final Executor sender;
+    private final Consumer<PushClient> onClose;
+    private final int maxPendingKeys;
+    private final long connectedAtMillis = System.currentTimeMillis();
+
+    private volatile Set<PushChannel> channels;
+    private volatile Set<String> figis;
+
+    private final Map<String, PushMessage> latest = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<String> pendingKeys = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingKeyCount = new AtomicInteger(0);
+    private final ArrayBlockingQueue<PushMessage> alerts;
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    // Метрики
+    private final AtomicLong sent = new AtomicLong(0);
+    private final AtomicLong conflated = new AtomicLong(0);
+    private final AtomicLong dropped = new AtomicLong(0);
+
+    PushClient(long id, String transport, PushSink sink, Executor sender, Consumer<PushClient> onClose,
+               int maxPendingKeys, int alertBufferSize, Set<PushChannel> channels, Set<String> figis) {
+        this.id = id;
+        this.transport = transport;
+        this.sink = sink;
+        this.sender = sender;
+        this.onClose = onClose;
+        this.maxPendingKeys = maxPendingKeys;
+        this.alerts = new ArrayBlockingQueue<>(alertBufferSize);
+        setFilter(channels, figis);
+    }
+
+    /**
+     * Замена фильтров
+     *
+     * @param channels каналы событий
+     * @param figis FIGI инструментов; пустое множество или null - все инструменты
+     */
+    void setFilter(Set<PushChannel> channels, Set<String> figis) {
+        this.channels = Collections.unmodifiableSet(channels);
+        this.figis = figis == null || figis.isEmpty() ? null : Set.copyOf(figis);
+    }
+
+    boolean accepts(PushChannel channel) {
+        return channels.contains(channel);
+    }
+
+    boolean accepts(PushChannel channel, String figi) {
+        Set<String> filter = figis;
+        return channels.contains(channel) && (filter == null || filter.contains(figi));
+    }
+
+    /**
+     * Значение, заменяющее неотправленное значение с тем же ключом
+     */
+    void offerLatest(String key, PushMessage message) {
+        if (closed.get()) {
+            return;
+        }
+        if (pendingKeyCount.get() >= maxPendingKeys && !latest.containsKey(key)) {
+            dropped.incrementAndGet();
+            return;
+        }
+        if (latest.put(key, message) != null) {
+            conflated.incrementAndGet();
+        } else {
+            pendingKeyCount.incrementAndGet();
+            pendingKeys.add(key);
+        }
+        scheduleDrain();
+    }
+
+    /**
+     * Событие, которое нельзя схлопнуть (уведомление)
+     */
+    void offer(PushMessage message) {
+        if (closed.get()) {
+            return;
+        }
+        if (!alerts.offer(message)) {
+            dropped.incrementAndGet();
+            return;
+        }
+        scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                sender.execute(this::drain);
+            } catch (Exception e) {
+                draining.set(false);
+                log.warn("Push client {} send task rejected: {}", id, e.getMessage());
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            PushMessage message;
+            while (!closed.get() && (message = next()) != null) {
+                sink.send(message.event(), message.json());
+                sent.incrementAndGet();
+            }
+        } catch (Exception e) {
+            log.debug("Push client {} ({}) disconnected: {}", id, transport, e.getMessage());
+            close();
+            return;
+        } finally {
+            draining.set(false);
+        }
+        // Значение могло появиться после последней проверки буферов
+        if (!closed.get() && (!alerts.isEmpty() || !pendingKeys.isEmpty())) {
+            scheduleDrain();
+        }
+    }
+
+    private PushMessage next() {
+        PushMessage alert = alerts.poll();
+        if (alert != null) {
+            return alert;
+        }
+        String key;
+        while ((key = pendingKeys.poll()) != null) {
+            PushMessage message = latest.remove(key);
+            pendingKeyCount.decrementAndGet();
+            if (message != null) {
+                return message;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Отключение клиента (идемпотентно)
+     */
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            latest.clear();
+            alerts.clear();
+            try {
+                sink.close();
+            } catch (Exception e) {
+                log.debug("Error closing push client {}: {}", id, e.getMessage());
+            }
+            onClose.accept(this);
+        }
+    }
+
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * Состояние клиента для статистики
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("id", id);
+        stats.put("transport", transport);
+        stats.put("channels", channels.stream().map(PushChannel::getCode).toList());
+        stats.put("figis", figis != null ? figis.size() : "all");
+        stats.put("connectedForMs", System.currentTimeMillis() - connectedAtMillis);
+        stats.put("pendingKeys", pendingKeyCount.get());
+        stats.put("pendingAlerts", alerts.size());
+        stats.put("sent", sent.get());
+        stats.put("conflated", conflated.get());
+        stats.put("dropped", dropped.get());
+        return stats;
+    }
+
+    // Getters
+    public long getId() { return id; }
+    public String getTransport() { return transport; }
+    public long getSent() { return sent.get(); }
+    public long getConflated() { return conflated.get(); }
+    public long getDropped() { return dropped.get(); }
+}
@@ -0,0 +1,354 @@
+package com.example.investmentdatastreamservice.service.streaming.push;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.example.investmentdatastreamservice.config.StreamingProperties;
+import com.example.investmentdatastreamservice.dto.LimitAlertDto;
+import com.example.investmentdatastreamservice.service.streaming.AggregatedBar;
+import com.example.investmentdatastreamservice.service.streaming.AggregatedBarListener;
+import com.example.investmentdatastreamservice.service.streaming.LastPriceConsumer;
+import com.example.investmentdatastreamservice.service.streaming.LastPriceDispatcher;
+import com.example.investmentdatastreamservice.service.streaming.TickCandleAggregator;
+import com.example.investmentdatastreamservice.utils.FixedPointPrice;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+
+/**
+ * Раздача цен, свечей и уведомлений подписчикам push-API (SSE и WebSocket)
+ *
+ * Хаб подписан на {@link LastPriceDispatcher} - тот же внутрипроцессный поток сделок,
+ * что и запись в БД и мониторинг лимитов, - и на завершенные свечи
+ * {@link TickCandleAggregator}. Уведомления передает {@code LimitMonitorService}.
+ *
+ * Без подписчиков обработка сделки - одна проверка пустого списка. Событие
+ * сериализуется в JSON один раз и только если хотя бы один клиент его ждет;
+ * дальше оно кладется в буферы {@link PushClient} с учетом фильтров клиента.
+ * Получателем свечей агрегатора хаб становится, только пока есть подписчики
+ * канала candle, и получает только завершенные свечи: ради хаба агрегатор
+ * не создает незавершенные свечи на каждой сделке.
+ */
+@Component
+public class PushHub implements LastPriceConsumer, AggregatedBarListener {
+
+    private static final Logger log = LoggerFactory.getLogger(PushHub.class);
+
+    private static final ZoneOffset MOSCOW_OFFSET = ZoneOffset.of("+3");
+    private static final String HEARTBEAT_EVENT = "heartbeat";
+
+    private final LastPriceDispatcher dispatcher;
+    private final TickCandleAggregator candleAggregator;
+    private final ObjectMapper objectMapper;
+    private final StreamingProperties.Push config;
+    private final CopyOnWriteArrayList<PushClient> clients = new CopyOnWriteArrayList<>();
+    // Проверка предела подключений и добавление клиента выполняются атомарно
+    private final Object subscribeLock = new Object();
+    private final ExecutorService sender;
+    private final ScheduledExecutorService heartbeatScheduler;
+    private final AtomicLong clientIds = new AtomicLong(0);
+    private final AtomicBoolean candleListenerRegistered = new AtomicBoolean(false);
+
+    // Метрики
+    private final AtomicLong pricesPublished = new AtomicLong(0);
+    private final AtomicLong candlesPublished = new AtomicLong(0);
+    private final AtomicLong alertsPublished = new AtomicLong(0);
+    private final AtomicLong clientsConnected = new AtomicLong(0);
+    private final AtomicLong clientsDisconnected = new AtomicLong(0);
+    private final AtomicLong clientsRejected = new AtomicLong(0);
+    private final AtomicLong serializationErrors = new AtomicLong(0);
+
+    public PushHub(LastPriceDispatcher dispatcher,
+                   TickCandleAggregator candleAggregator,
+                   ObjectMapper objectMapper,
+                   StreamingProperties streamingProperties) {
+        this.dispatcher = dispatcher;
+        this.candleAggregator = candleAggregator;
+        this.objectMapper = objectMapper;
+        this.config = streamingProperties.getPush();
+        // Отправка блокируется на сокете медленного клиента - по виртуальному потоку на задачу
+        this.sender = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("push-sender-", 0).factory());
+        this.heartbeatScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "push-heartbeat");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!config.isEnabled()) {
+            log.info("Push API disabled");
+            return;
+        }
+        dispatcher.register(this);
+        heartbeatScheduler.scheduleWithFixedDelay(this::heartbeat,
+            config.getHeartbeatIntervalMs(), config.getHeartbeatIntervalMs(), TimeUnit.MILLISECONDS);
+        log.info("📡 Push API enabled: maxClients={}, maxPendingKeys={}, alertBuffer={}",
+            config.getMaxClients(), config.getMaxPendingKeys(), config.getAlertBufferSize());
+    }
+
+    /**
+     * Подключение клиента
+     *
+     * @param transport транспорт ("sse", "websocket") для статистики
+     * @param sink доставка событий клиенту
+     * @param channels каналы событий
+     * @param figis FIGI инструментов; пустое множество или null - все инструменты
+     * @return клиент или null, если push-API выключен или достигнут предел подключений
+     */
+    public PushClient subscribe(String transport, PushSink sink, Set<PushChannel> channels, Set<String> figis) {
+        PushClient client;
+        synchronized (subscribeLock) {
+            if (!config.isEnabled() || clients.size() >= config.getMaxClients()) {
+                clientsRejected.incrementAndGet();
+                return null;
+            }
+            client = new PushClient(clientIds.incrementAndGet(), transport, sink, sender,
+                this::onClientClosed, config.getMaxPendingKeys(), config.getAlertBufferSize(), channels, figis);
+            clients.add(client);
+        }
+        clientsConnected.incrementAndGet();
+        updateCandleListener();
+        log.info("➕ Push client {} connected via {}: channels={}, figis={} (total: {})",
+            client.getId(), transport, channels, figis == null || figis.isEmpty() ? "all" : figis.size(),
+            clients.size());
+        return client;
+    }
+
+    /**
+     * Смена фильтров подключенного клиента
+     */
+    public void updateFilter(PushClient client, Set<PushChannel> channels, Set<String> figis) {
+        client.setFilter(channels, figis);
+        updateCandleListener();
+    }
+
+    /**
+     * Отключение клиента
+     */
+    public void unsubscribe(PushClient client) {
+        if (client != null) {
+            client.close();
+        }
+    }
+
+    private void onClientClosed(PushClient client) {
+        if (clients.remove(client)) {
+            clientsDisconnected.incrementAndGet();
+            updateCandleListener();
+            log.info("➖ Push client {} disconnected: sent={}, conflated={}, dropped={} (total: {})",
+                client.getId(), client.getSent(), client.getConflated(), client.getDropped(), clients.size());
+        }
+    }
+
+    private void updateCandleListener() {
+        boolean needed = false;
+        for (PushClient client : clients) {
+            if (client.accepts(PushChannel.CANDLE)) {
+                needed = true;
+                break;
+            }
+        }
+        if (needed && candleListenerRegistered.compareAndSet(false, true)) {
+            candleAggregator.addListener(this);
+        } else if (!needed && candleListenerRegistered.compareAndSet(true, false)) {
+            candleAggregator.removeListener(this);
+        }
+    }
+
+    @Override
+    public String getConsumerName() {
+        return "PushHub";
+    }
+
+    @Override
+    public void onLastPrice(LastPrice lastPrice) {
+        if (clients.isEmpty() || !lastPrice.hasPrice()) {
+            return;
+        }
+        String figi = lastPrice.getFigi();
+        PushClient.PushMessage message = null;
+        for (PushClient client : clients) {
+            if (!client.accepts(PushChannel.PRICE, figi)) {
+                continue;
+            }
+            if (message == null) {
+                message = toMessage(PushChannel.PRICE.getCode(), priceMap(lastPrice));
+                if (message == null) {
+                    return;
+                }
+                pricesPublished.incrementAndGet();
+            }
+            client.offerLatest(figi, message);
+        }
+    }
+
+    /**
+     * Клиентам отправляются только завершенные свечи
+     */
+    @Override
+    public boolean wantsPartials() {
+        return false;
+    }
+
+    @Override
+    public void onBar(AggregatedBar bar) {
+        if (!bar.complete() || clients.isEmpty()) {
+            return;
+        }
+        PushClient.PushMessage message = null;
+        String key = null;
+        for (PushClient client : clients) {
+            if (!client.accepts(PushChannel.CANDLE, bar.figi())) {
+                continue;
+            }
+            if (message == null) {
+                message = toMessage(PushChannel.CANDLE.getCode(), bar.toMap());
+                if (message == null) {
+                    return;
+                }
+                key = bar.figi() + ":" + bar.timeframe().getCode();
+                candlesPublished.incrementAndGet();
+            }
+            client.offerLatest(key, message);
+        }
+    }
+
+    /**
+     * Рассылка уведомления мониторинга лимитов
+     */
+    public void publishAlert(LimitAlertDto alert) {
+        if (clients.isEmpty()) {
+            return;
+        }
+        PushClient.PushMessage message = null;
+        for (PushClient client : clients) {
+            if (!client.accepts(PushChannel.ALERT, alert.getFigi())) {
+                continue;
+            }
+            if (message == null) {
+                message = toMessage(PushChannel.ALERT.getCode(), alert);
+                if (message == null) {
+                    return;
+                }
+                alertsPublished.incrementAndGet();
+            }
+            client.offer(message);
+        }
+    }
+
+    private void heartbeat() {
+        try {
+            if (clients.isEmpty()) {
+                return;
+            }
+            PushClient.PushMessage message = toMessage(HEARTBEAT_EVENT,
+                Map.of("time", LocalDateTime.now(MOSCOW_OFFSET).toString(), "clients", clients.size()));
+            if (message == null) {
+                return;
+            }
+            // Отправка в закрытое соединение завершается ошибкой - так обнаруживаются отключившиеся клиенты
+            for (PushClient client : clients) {
+                client.offerLatest(HEARTBEAT_EVENT, message);
+            }
+        } catch (Exception e) {
+            log.error("Error sending push heartbeat", e);
+        }
+    }
+
+    /**
+     * Разбор списка FIGI через запятую; пустой список - все инструменты
+     */
+    public static Set<String> parseFigis(String figis) {
+        if (figis == null || figis.isBlank()) {
+            return Set.of();
+        }
+        Set<String> result = new HashSet<>();
+        for (String figi : figis.split(",")) {
+            String trimmed = figi.trim();
+            if (!trimmed.isEmpty()) {
+                result.add(trimmed);
+            }
+        }
+        return result;
+    }
+
+    private static Map<String, Object> priceMap(LastPrice lastPrice) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("figi", lastPrice.getFigi());
+        map.put("price", FixedPointPrice.toBigDecimal(FixedPointPrice.fromQuotation(lastPrice.getPrice())));
+        map.put("time", LocalDateTime.ofEpochSecond(lastPrice.getTime().getSeconds(),
+            lastPrice.getTime().getNanos(), MOSCOW_OFFSET).toString());
+        return map;
+    }
+
+    private PushClient.PushMessage toMessage(String event, Object data) {
+        try {
+            return new PushClient.PushMessage(event, objectMapper.writeValueAsString(data));
+        } catch (JsonProcessingException e) {
+            serializationErrors.incrementAndGet();
+            log.error("Error serializing push event {}: {}", event, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Статистика push-API
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", config.isEnabled());
+        stats.put("clients", clients.size());
+        stats.put("maxClients", config.getMaxClients());
+        stats.put("clientsConnected", clientsConnected.get());
+        stats.put("clientsDisconnected", clientsDisconnected.get());
+        stats.put("clientsRejected", clientsRejected.get());
+        stats.put("pricesPublished", pricesPublished.get());
+        stats.put("candlesPublished", candlesPublished.get());
+        stats.put("alertsPublished", alertsPublished.get());
+        stats.put("serializationErrors", serializationErrors.get());
+        List<Map<String, Object>> clientStats = new ArrayList<>();
+        for (PushClient client : clients) {
+            clientStats.add(client.getStats());
+        }
+        stats.put("clientDetails", clientStats);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.unregister(this);
+        candleAggregator.removeListener(this);
+        heartbeatScheduler.shutdownNow();
+        for (PushClient client : clients) {
+            client.close();
+        }
+        sender.shutdownNow();
+    }
+
+    // Getters для метрик
+    public int getClientCount() { return clients.size(); }
+    public long getPricesPublished() { return pricesPublished.get(); }
+    public long getAlertsPublished() { return alertsPublished.get(); }
+}
@@ -0,0 +1,26 @@
+package com.example.investmentdatastreamservice.service.streaming.push;
+
+import java.io.IOException;
+
+/**
+ * Транспорт доставки событий одному клиенту (SSE, WebSocket)
+ *
+ * Вызывается только из задачи отправки клиента {@link PushClient}, поэтому
+ * реализация не обязана поддерживать параллельные вызовы.
+ */
+public interface PushSink {
+
+    /**
+     * Отправка события
+     *
+     * @param event тип события ({@link PushChannel#getCode()} или "heartbeat")
+     * @param json данные события
+     * @throws IOException если соединение закрыто клиентом
+     */
+    void send(String event, String json) throws IOException;
+
+    /**
+     * Закрытие соединения со стороны сервера
+     */
+    void close();
+}
@@ -0,0 +1,105 @@
+package com.example.investmentdatastreamservice.utils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import ru.tinkoff.piapi.contract.v1.Quotation;
+
+/**
+ * Цена в формате с фиксированной точкой
+ *
+ * Цена хранится в примитивном long как число миллиардных долей (units * 10^9 + nano),
+ * то есть с тем же масштабом 9, что и Quotation из T-Invest API. Такое представление
+ * используется на горячем пути обработки сделок: сравнения и проверки лимитов
+ * выполняются над long без создания объектов. BigDecimal создается только на границе
+ * с JDBC и REST через {@link #toBigDecimal(long)}.
+ *
+ * Диапазон: до ~9.2 * 10^9 в целой части, что покрывает все цены инструментов MOEX.
+ * Значения вне диапазона не усекаются: преобразования бросают ArithmeticException.
+ */
+public final class FixedPointPrice {
+
+    /** Количество знаков после запятой */
+    public static final int SCALE = 9;
+
+    /** Значение 1.0 в формате с фиксированной точкой */
+    public static final long ONE = 1_000_000_000L;
+
+    /** Признак отсутствующей цены (аналог null для BigDecimal) */
+    public static final long NONE = Long.MIN_VALUE;
+
+    private FixedPointPrice() {
+    }
+
+    /**
+     * Преобразование Quotation в цену с фиксированной точкой
+     *
+     * @param quotation объект Quotation из T-Invest API
+     * @return цена или 0, если quotation null
+     * @throws ArithmeticException если значение не помещается в long
+     */
+    public static long fromQuotation(Quotation quotation) {
+        if (quotation == null) {
+            return 0L;
+        }
+        return of(quotation.getUnits(), quotation.getNano());
+    }
+
+    /**
+     * Цена из целой и дробной частей в формате Quotation
+     *
+     * @param units целая часть
+     * @param nano дробная часть в миллиардных долях (знак совпадает со знаком units)
+     * @throws ArithmeticException если значение не помещается в long
+     */
+    public static long of(long units, int nano) {
+        return Math.addExact(Math.multiplyExact(units, ONE), nano);
+    }
+
+    /**
+     * Преобразование в BigDecimal (масштаб 9, как у прежнего преобразования Quotation)
+     *
+     * @param price цена с фиксированной точкой
+     * @return BigDecimal значение или null для {@link #NONE}
+     */
+    public static BigDecimal toBigDecimal(long price) {
+        return price == NONE ? null : BigDecimal.valueOf(price, SCALE);
+    }
+
+    /**
+     * Преобразование BigDecimal в цену с фиксированной точкой
+     *
+     * Используется вне горячего пути: при загрузке лимитов и экстремумов.
+     * Знаки после 9-го округляются HALF_UP.
+     *
+     * @param value BigDecimal значение
+     * @return цена или {@link #NONE}, если value null
+     * @throws ArithmeticException если значение не помещается в long
+     */
+    public static long fromBigDecimal(BigDecimal value) {
+        if (value == null) {
+            return NONE;
+        }
+        return value.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Относительное расстояние |target - price| / price, округленное до 4 знаков
+     * (для уведомлений и логирования, вне горячего пути)
+     */
+    public static BigDecimal distance(long price, long target) {
+        if (price == 0 || price == NONE || target == NONE) {
+            return BigDecimal.ZERO;
+        }
+        return BigDecimal.valueOf(Math.abs(target - price), SCALE)
+                .divide(BigDecimal.valueOf(price, SCALE), 4, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Порог в процентах (1.0 = 1%) в десятитысячных долях с округлением до 4 знаков,
+     * как у десятичного порога LimitMonitorService (1.0% -> 0.0100 -> 100)
+     */
+    public static long percentToBasisPoints(BigDecimal percent) {
+        return percent.divide(BigDecimal.valueOf(100), 4, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+}
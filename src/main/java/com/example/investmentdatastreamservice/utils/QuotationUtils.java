@@ -35,15 +35,8 @@ public class QuotationUtils {
         }
         
         try {
-            // Преобразуем units (целая часть) в BigDecimal
-            BigDecimal units = BigDecimal.valueOf(quotation.getUnits());
-            
-            // Преобразуем nano (дробная часть) в BigDecimal
-            // nano представляет наносекунды, нужно разделить на 10^9
-            BigDecimal nano = BigDecimal.valueOf(quotation.getNano()).movePointLeft(9);
-            
-            // Суммируем целую и дробную части
-            BigDecimal result = units.add(nano);
+            // units и nano упаковываются в цену с фиксированной точкой (масштаб 9)
+            BigDecimal result = toExactBigDecimal(quotation);
             
             if (logger.isDebugEnabled()) {
                 logger.debug("Converted Quotation: units={}, nano={}, result={}", 
@@ -57,6 +50,18 @@ public class QuotationUtils {
         }
     }
 
+    /**
+     * Значение Quotation с масштабом 9: через long, а вне диапазона {@link FixedPointPrice} -
+     * сложением BigDecimal
+     */
+    private static BigDecimal toExactBigDecimal(Quotation quotation) {
+        try {
+            return FixedPointPrice.toBigDecimal(FixedPointPrice.fromQuotation(quotation));
+        } catch (ArithmeticException e) {
+            return BigDecimal.valueOf(quotation.getUnits()).add(BigDecimal.valueOf(quotation.getNano(), 9));
+        }
+    }
+
     /**
      * Преобразование Quotation в BigDecimal с указанием масштаба
      * 
@@ -126,10 +131,11 @@ public class QuotationUtils {
             return 1;
         }
         
-        BigDecimal bd1 = toBigDecimal(q1);
-        BigDecimal bd2 = toBigDecimal(q2);
-        
-        return bd1.compareTo(bd2);
+        try {
+            return Long.compare(FixedPointPrice.fromQuotation(q1), FixedPointPrice.fromQuotation(q2));
+        } catch (ArithmeticException e) {
+            return toExactBigDecimal(q1).compareTo(toExactBigDecimal(q2));
+        }
     }
 
     /**
@@ -0,0 +1,100 @@
+package com.example.investmentdatastreamservice.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Ограничитель частоты запросов по алгоритму "ведро токенов"
+ *
+ * Токены пополняются равномерно с частотой permitsPerSecond, но не более capacity.
+ * Каждый запрос забирает один токен; при пустом ведре {@link #acquire()} ждет
+ * ровно до появления следующего токена. Ведро создается полным, поэтому первые
+ * capacity запросов уходят без ожидания.
+ */
+public final class TokenBucket {
+
+    private final long capacity;
+    private final long nanosPerToken;
+    private final LongSupplier nanoClock;
+
+    private long availableTokens;
+    private long lastRefillNanos;
+
+    /**
+     * @param permitsPerSecond средняя частота выдачи токенов
+     * @param capacity максимальное количество накопленных токенов
+     */
+    public TokenBucket(double permitsPerSecond, int capacity) {
+        this(permitsPerSecond, capacity, System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock источник времени в наносекундах (как System.nanoTime())
+     */
+    TokenBucket(double permitsPerSecond, int capacity, LongSupplier nanoClock) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("Permits per second must be positive: " + permitsPerSecond);
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.nanosPerToken = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.nanoClock = nanoClock;
+        this.availableTokens = capacity;
+        this.lastRefillNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * Получение токена с ожиданием
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        while ((waitNanos = tryReserve()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Получение токена без ожидания
+     *
+     * @return true, если токен получен
+     */
+    public boolean tryAcquire() {
+        return tryReserve() == 0;
+    }
+
+    /**
+     * Забирает токен, если он есть
+     *
+     * @return 0, если токен получен, иначе время до появления следующего токена в наносекундах
+     */
+    private synchronized long tryReserve() {
+        long now = nanoClock.getAsLong();
+        refill(now);
+        if (availableTokens > 0) {
+            availableTokens--;
+            return 0;
+        }
+        return Math.max(1L, nanosPerToken - (now - lastRefillNanos));
+    }
+
+    private void refill(long now) {
+        long newTokens = (now - lastRefillNanos) / nanosPerToken;
+        if (newTokens <= 0) {
+            return;
+        }
+        if (availableTokens + newTokens >= capacity) {
+            availableTokens = capacity;
+            lastRefillNanos = now;
+        } else {
+            availableTokens += newTokens;
+            lastRefillNanos += newTokens * nanosPerToken;
+        }
+    }
+
+    public synchronized long getAvailableTokens() {
+        refill(nanoClock.getAsLong());
+        return availableTokens;
+    }
+}
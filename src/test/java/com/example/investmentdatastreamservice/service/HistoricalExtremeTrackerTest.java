@@ -0,0 +1,208 @@
+package com.example.investmentdatastreamservice.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.investmentdatastreamservice.dto.HistoricalPriceDto;
+import com.example.investmentdatastreamservice.service.streaming.StreamWriteExecutor;
+import com.example.investmentdatastreamservice.utils.FixedPointPrice;
+
+/**
+ * Тесты для HistoricalExtremeTracker
+ *
+ * Проверяет, что цены внутри известного диапазона ничего не меняют, что выход за
+ * экстремум обновляет кэш, сбрасывает полосу инструмента и записывает экстремум в БД,
+ * что нулевые цены и инструменты без истории пропускаются, и сверку с БД.
+ */
+class HistoricalExtremeTrackerTest {
+
+    private static final String FIGI = "BBG004730N88";
+    private static final ZoneOffset MOSCOW_OFFSET = ZoneOffset.ofHours(3);
+    private static final OffsetDateTime HISTORY_DATE = OffsetDateTime.of(2024, 3, 1, 10, 0, 0, 0, MOSCOW_OFFSET);
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 10, 15, 12, 30);
+
+    private HistoricalPricesService historicalPricesService;
+    private LimitAlertBandRegistry bandRegistry;
+    private ConcurrentMapCacheManager cacheManager;
+    private JdbcTemplate jdbcTemplate;
+    private StreamWriteExecutor writeExecutor;
+    private HistoricalExtremeTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        historicalPricesService = mock(HistoricalPricesService.class);
+        bandRegistry = new LimitAlertBandRegistry();
+        cacheManager = new ConcurrentMapCacheManager("historicalPricesCache");
+        jdbcTemplate = mock(JdbcTemplate.class);
+        writeExecutor = mock(StreamWriteExecutor.class);
+        // Запись выполняется сразу в вызывающем потоке
+        when(writeExecutor.submit(any())).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return true;
+        });
+        when(historicalPricesService.getHistoricalPriceByFigi(FIGI)).thenReturn(history("300", "100"));
+        tracker = new HistoricalExtremeTracker(historicalPricesService, bandRegistry, cacheManager,
+            jdbcTemplate, writeExecutor);
+    }
+
+    @Test
+    void testPriceInsideRangeChangesNothing() {
+        tracker.onPrice(FIGI, price("100"), NOW);
+        tracker.onPrice(FIGI, price("300"), NOW);
+        tracker.onCandle(FIGI, price("250"), price("150"), Instant.now());
+
+        assertEquals(0, tracker.getNewHighs());
+        assertEquals(0, tracker.getNewLows());
+        assertEquals(0, bandRegistry.getFigiInvalidationCount());
+        verify(writeExecutor, never()).submit(any());
+    }
+
+    @Test
+    void testNewHighUpdatesCacheBandAndDb() {
+        bandRegistry.put(LimitAlertBand.empty(FIGI, bandRegistry.currentGeneration(), Long.MAX_VALUE));
+
+        tracker.onPrice(FIGI, price("310.5"), NOW);
+
+        assertEquals(1, tracker.getNewHighs());
+        assertEquals(0, tracker.getNewLows());
+        assertNull(bandRegistry.get(FIGI, System.currentTimeMillis()));
+        assertEquals(1, bandRegistry.getFigiInvalidationCount());
+
+        HistoricalPriceDto cached = cachedDto();
+        assertEquals(0, new BigDecimal("310.5").compareTo(cached.getHistoricalHigh()));
+        assertEquals(OffsetDateTime.of(NOW, MOSCOW_OFFSET), cached.getHistoricalHighDate());
+        assertEquals(0, new BigDecimal("100").compareTo(cached.getHistoricalLow()));
+        assertEquals(HISTORY_DATE, cached.getHistoricalLowDate());
+
+        verify(jdbcTemplate).update(anyString(), eq(FIGI), any(), any(), any(), any());
+    }
+
+    @Test
+    void testCandleLowBelowHistoryIsNewLow() {
+        Instant time = Instant.parse("2026-10-15T09:31:00Z");
+        tracker.onCandle(FIGI, price("200"), price("95"), time);
+
+        assertEquals(0, tracker.getNewHighs());
+        assertEquals(1, tracker.getNewLows());
+        HistoricalPriceDto cached = cachedDto();
+        assertEquals(0, new BigDecimal("95").compareTo(cached.getHistoricalLow()));
+        assertEquals(OffsetDateTime.ofInstant(time, MOSCOW_OFFSET), cached.getHistoricalLowDate());
+    }
+
+    @Test
+    void testZeroAndNegativePricesAreIgnored() {
+        bandRegistry.put(LimitAlertBand.empty(FIGI, bandRegistry.currentGeneration(), Long.MAX_VALUE));
+
+        // LastPrice без цены приходит как 0 - это не исторический минимум
+        tracker.onPrice(FIGI, 0L, NOW);
+        tracker.onPrice(FIGI, -FixedPointPrice.ONE, NOW);
+        tracker.onCandle(FIGI, price("200"), 0L, Instant.now());
+        tracker.onCandle(FIGI, price("400"), -FixedPointPrice.ONE, Instant.now());
+
+        assertEquals(0, tracker.getNewHighs());
+        assertEquals(0, tracker.getNewLows());
+        assertEquals(0, bandRegistry.getFigiInvalidationCount());
+        verify(writeExecutor, never()).submit(any());
+        verify(historicalPricesService, never()).getHistoricalPriceByFigi(FIGI);
+    }
+
+    @Test
+    void testInstrumentWithoutHistoryIsNotTracked() {
+        String newFigi = "TCS00A0ZZAC4";
+        when(historicalPricesService.getHistoricalPriceByFigi(newFigi)).thenReturn(null);
+
+        tracker.onPrice(newFigi, price("10"), NOW);
+        tracker.onPrice(newFigi, price("1000"), NOW);
+
+        assertEquals(0, tracker.getNewHighs());
+        assertEquals(0, tracker.getNewLows());
+        // История загружается один раз, дальше инструмент помечен как отсутствующий
+        verify(historicalPricesService, times(1)).getHistoricalPriceByFigi(newFigi);
+        verify(writeExecutor, never()).submit(any());
+    }
+
+    @Test
+    void testRejectedWriteIsRetriedOnNextExtreme() {
+        when(writeExecutor.submit(any())).thenReturn(false);
+        tracker.onPrice(FIGI, price("310"), NOW);
+        verify(jdbcTemplate, never()).update(anyString(), eq(FIGI), any(), any(), any(), any());
+
+        when(writeExecutor.submit(any())).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return true;
+        });
+        tracker.onPrice(FIGI, price("320"), NOW);
+
+        assertEquals(1L, tracker.getStats().get("persistRejected"));
+        assertEquals(1L, tracker.getStats().get("persisted"));
+    }
+
+    @Test
+    void testReconcileKeepsWiderRange() {
+        tracker.onPrice(FIGI, price("310"), NOW);
+
+        // В БД максимум еще старый, зато минимум ниже
+        HistoricalExtremeTracker.ReconcileResult result = tracker.reconcile(history("300", "90"));
+
+        assertTrue(result.changed());
+        assertEquals(0, new BigDecimal("310").compareTo(result.historicalPrice().getHistoricalHigh()));
+        assertEquals(0, new BigDecimal("90").compareTo(result.historicalPrice().getHistoricalLow()));
+        // Память впереди БД по максимуму - запись повторяется
+        verify(jdbcTemplate, times(2)).update(anyString(), eq(FIGI), any(), any(), any(), any());
+    }
+
+    @Test
+    void testReconcileUntrackedInstrumentPassesDbValues() {
+        HistoricalPriceDto dto = history("500", "50");
+
+        HistoricalExtremeTracker.ReconcileResult result = tracker.reconcile(dto);
+
+        assertFalse(result.changed());
+        assertSame(dto, result.historicalPrice());
+        assertNull(cacheManager.getCache("historicalPricesCache").get(FIGI));
+    }
+
+    private HistoricalPriceDto cachedDto() {
+        Cache cache = cacheManager.getCache("historicalPricesCache");
+        return cache.get(FIGI, HistoricalPriceDto.class);
+    }
+
+    private static long price(String value) {
+        return FixedPointPrice.fromBigDecimal(new BigDecimal(value));
+    }
+
+    private static HistoricalPriceDto history(String high, String low) {
+        return HistoricalPriceDto.builder()
+            .figi(FIGI)
+            .ticker("SBER")
+            .instrumentType("share")
+            .historicalHigh(new BigDecimal(high))
+            .historicalHighDate(HISTORY_DATE)
+            .historicalLow(new BigDecimal(low))
+            .historicalLowDate(HISTORY_DATE)
+            .build();
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.investmentdatastreamservice.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.investmentdatastreamservice.entity.LastPriceEntity;
+import com.example.investmentdatastreamservice.repository.LastPriceRepository;
+import com.example.investmentdatastreamservice.service.streaming.LastPriceDispatcher;
+import com.example.investmentdatastreamservice.utils.TimeZoneUtils;
+import com.google.protobuf.Timestamp;
+
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.Quotation;
+
+/**
+ * Тесты для LatestPriceStore
+ *
+ * Проверяет, что более ранняя сделка не вытесняет более позднюю, выдачу изменившихся
+ * снимков по версии и заполнение из последней непустой дневной партиции.
+ */
+class LatestPriceStoreTest {
+
+    private static final String FIGI = "BBG004730N88";
+    private static final String OTHER_FIGI = "BBG004730ZJ9";
+    private static final ZoneOffset MOSCOW_OFFSET = ZoneOffset.ofHours(3);
+    private static final LocalDate TODAY = LocalDate.of(2026, 10, 15);
+
+    private LastPriceRepository lastPriceRepository;
+    private LastPriceDispatcher dispatcher;
+    private LatestPriceStore store;
+
+    @BeforeEach
+    void setUp() {
+        lastPriceRepository = mock(LastPriceRepository.class);
+        dispatcher = new LastPriceDispatcher();
+        store = new LatestPriceStore(lastPriceRepository, dispatcher);
+        ReflectionTestUtils.setField(store, "clock",
+            Clock.fixed(TODAY.atTime(10, 0).toInstant(MOSCOW_OFFSET), TimeZoneUtils.getMoscowZone()));
+    }
+
+    @Test
+    void testOlderTickNeverOverwritesNewer() {
+        store.init();
+
+        dispatcher.dispatch(lastPrice(FIGI, TODAY.atTime(10, 0, 5), 101));
+        long version = store.get(FIGI).version();
+
+        // Запоздавшая сделка
+        dispatcher.dispatch(lastPrice(FIGI, TODAY.atTime(10, 0, 4), 99));
+        assertPrice("101", store.get(FIGI));
+        assertEquals(version, store.get(FIGI).version());
+        // Повтор той же сделки
+        dispatcher.dispatch(lastPrice(FIGI, TODAY.atTime(10, 0, 5), 101));
+        assertEquals(version, store.get(FIGI).version());
+        assertEquals(2, store.getStaleTicks());
+
+        // Другая цена в то же время и более поздняя сделка заменяют снимок
+        dispatcher.dispatch(lastPrice(FIGI, TODAY.atTime(10, 0, 5), 102));
+        assertPrice("102", store.get(FIGI));
+        dispatcher.dispatch(lastPrice(FIGI, TODAY.atTime(10, 0, 6), 103));
+        assertPrice("103", store.get(FIGI));
+        assertEquals(TODAY.atTime(10, 0, 6), store.get(FIGI).getTime());
+        assertTrue(store.get(FIGI).version() > version);
+        assertEquals(3, store.getUpdates());
+    }
+
+    @Test
+    void testSinceVersionReturnsOnlyChangedSnapshots() {
+        store.init();
+        dispatcher.dispatch(lastPrice(FIGI, TODAY.atTime(10, 0), 100));
+        dispatcher.dispatch(lastPrice(OTHER_FIGI, TODAY.atTime(10, 0), 200));
+        long version = store.getVersion();
+
+        dispatcher.dispatch(lastPrice(OTHER_FIGI, TODAY.atTime(10, 1), 201));
+
+        List<String> missing = new ArrayList<>();
+        List<LatestPriceStore.PriceSnapshot> changed =
+            store.getAll(List.of(FIGI, OTHER_FIGI, "UNKNOWN"), version, missing);
+        assertEquals(1, changed.size());
+        assertEquals(OTHER_FIGI, changed.get(0).figi());
+        assertEquals(List.of("UNKNOWN"), missing);
+        assertEquals(2, store.getAll(List.of(), 0, null).size());
+    }
+
+    @Test
+    void testSeedsFromLastNonEmptyDay() {
+        LocalDate lastDay = TODAY.minusDays(2);
+        when(lastPriceRepository.existsInRange(lastDay.atStartOfDay(), lastDay.plusDays(1).atStartOfDay()))
+            .thenReturn(true);
+        when(lastPriceRepository.findLatestPerFigiInRange(lastDay.atStartOfDay(), lastDay.plusDays(1).atStartOfDay()))
+            .thenReturn(List.of(
+                new LastPriceEntity(FIGI, lastDay.atTime(23, 49, 30), new BigDecimal("250.5"), "RUB", "MOEX"),
+                new LastPriceEntity(OTHER_FIGI, lastDay.atTime(18, 40), new BigDecimal("0.25"), "RUB", "MOEX")));
+
+        store.init();
+
+        // Проверены сегодня, вчера и день последней сделки - дальше не ищем
+        verify(lastPriceRepository, times(3)).existsInRange(any(), any());
+        assertEquals(2, store.size());
+        assertPrice("250.5", store.get(FIGI));
+        assertEquals(lastDay.atTime(23, 49, 30), store.get(FIGI).getTime());
+        assertPrice("0.25", store.get(OTHER_FIGI));
+
+        // Поток продолжает заполненное из БД состояние
+        dispatcher.dispatch(lastPrice(FIGI, lastDay.atTime(23, 49), 249));
+        assertPrice("250.5", store.get(FIGI));
+        dispatcher.dispatch(lastPrice(FIGI, TODAY.atTime(10, 0), 252));
+        assertPrice("252", store.get(FIGI));
+    }
+
+    @Test
+    void testNoSeedWithoutRecentData() {
+        store.init();
+
+        verify(lastPriceRepository, times(LatestPriceStore.SEED_LOOKBACK_DAYS)).existsInRange(any(), any());
+        verify(lastPriceRepository, never()).findLatestPerFigiInRange(any(), any());
+        assertEquals(0, store.size());
+        assertNull(store.get(FIGI));
+    }
+
+    private static void assertPrice(String expected, LatestPriceStore.PriceSnapshot snapshot) {
+        assertEquals(0, new BigDecimal(expected).compareTo(snapshot.getPrice()),
+            () -> "expected " + expected + " but was " + snapshot.getPrice());
+    }
+
+    private static LastPrice lastPrice(String figi, LocalDateTime moscowTime, long units) {
+        return LastPrice.newBuilder()
+            .setFigi(figi)
+            .setPrice(Quotation.newBuilder().setUnits(units).build())
+            .setTime(Timestamp.newBuilder().setSeconds(moscowTime.toEpochSecond(MOSCOW_OFFSET)).build())
+            .build();
+    }
+}
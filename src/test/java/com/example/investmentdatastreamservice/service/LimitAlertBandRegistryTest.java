@@ -0,0 +1,82 @@
+package com.example.investmentdatastreamservice.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Тесты для LimitAlertBandRegistry
+ *
+ * Проверяет, что сброс полосы одного инструмента не затрагивает остальные,
+ * что полоса, сборка которой началась до сброса, не сохраняется, и что общий сброс
+ * отбрасывает полосы всех инструментов.
+ */
+class LimitAlertBandRegistryTest {
+
+    private static final String FIGI = "BBG004730N88";
+    private static final String OTHER_FIGI = "BBG004730ZJ9";
+    private static final long NOW = 1_000_000L;
+    private static final long VALID_UNTIL = NOW + 60_000;
+
+    private final LimitAlertBandRegistry registry = new LimitAlertBandRegistry();
+
+    @Test
+    void testInvalidateDropsOnlyThatInstrument() {
+        long generation = registry.currentGeneration();
+        registry.put(LimitAlertBand.empty(FIGI, generation, VALID_UNTIL));
+        LimitAlertBand other = LimitAlertBand.empty(OTHER_FIGI, generation, VALID_UNTIL);
+        registry.put(other);
+
+        registry.invalidate(FIGI, "обновлены лимиты");
+
+        assertNull(registry.get(FIGI, NOW));
+        assertSame(other, registry.get(OTHER_FIGI, NOW));
+        assertEquals(1, registry.getFigiInvalidationCount());
+        assertEquals(0, registry.getInvalidationCount());
+    }
+
+    @Test
+    void testBandCompiledBeforeInvalidationIsNotStored() {
+        // Сборка начата до сброса: полоса могла прочитать прежние лимиты
+        long staleGeneration = registry.currentGeneration();
+        registry.invalidate(FIGI, "обновлены лимиты");
+        registry.put(LimitAlertBand.empty(FIGI, staleGeneration, VALID_UNTIL));
+        assertNull(registry.get(FIGI, NOW));
+
+        // Сброс одного инструмента не мешает сохранять полосы других
+        registry.put(LimitAlertBand.empty(OTHER_FIGI, staleGeneration, VALID_UNTIL));
+        assertNotNull(registry.get(OTHER_FIGI, NOW));
+
+        // Сборка после сброса сохраняется
+        registry.put(LimitAlertBand.empty(FIGI, registry.currentGeneration(), VALID_UNTIL));
+        assertNotNull(registry.get(FIGI, NOW));
+        assertEquals(2, registry.getCompiledCount());
+    }
+
+    @Test
+    void testInvalidateAllDropsOlderBands() {
+        long generation = registry.currentGeneration();
+        registry.put(LimitAlertBand.empty(FIGI, generation, VALID_UNTIL));
+        registry.invalidateAll("изменен порог");
+
+        assertNull(registry.get(FIGI, NOW));
+        assertEquals(0, registry.size());
+        // Полоса, собранная параллельно со сбросом, не возвращается
+        registry.put(LimitAlertBand.empty(OTHER_FIGI, generation, VALID_UNTIL));
+        assertNull(registry.get(OTHER_FIGI, NOW));
+
+        registry.put(LimitAlertBand.empty(OTHER_FIGI, registry.currentGeneration(), VALID_UNTIL));
+        assertNotNull(registry.get(OTHER_FIGI, NOW));
+    }
+
+    @Test
+    void testExpiredBandIsNotReturned() {
+        registry.put(LimitAlertBand.empty(FIGI, registry.currentGeneration(), VALID_UNTIL));
+
+        assertNotNull(registry.get(FIGI, VALID_UNTIL - 1));
+        assertNull(registry.get(FIGI, VALID_UNTIL));
+    }
+}
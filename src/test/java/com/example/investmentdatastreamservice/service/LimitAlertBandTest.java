@@ -0,0 +1,155 @@
+package com.example.investmentdatastreamservice.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import com.example.investmentdatastreamservice.dto.HistoricalPriceDto;
+import com.example.investmentdatastreamservice.utils.FixedPointPrice;
+
+/**
+ * Тесты для LimitAlertBand
+ *
+ * Цены срабатывания полосы рассчитываются целочисленными неравенствами. Тесты сверяют
+ * их с прежним правилом LimitMonitorService: уровень достигнут или
+ * round(|уровень - цена| / цена, 4) <= порог (HALF_UP, calculateDistanceToLimit).
+ */
+class LimitAlertBandTest {
+
+    private static final String FIGI = "BBG004730N88";
+
+    /**
+     * Уровни и пороги (в десятитысячных долях) для сверки с прежним правилом
+     */
+    static Stream<Arguments> levelsAndThresholds() {
+        List<Arguments> cases = new ArrayList<>();
+        String[] levels = { "314.02", "256.92", "100", "0.012345", "1.5", "24999.5", "7.000000001" };
+        long[] thresholds = { 1, 50, 100, 150, 250, 1000 };
+        for (int level = 0; level < LimitAlertBand.levelCount(); level++) {
+            for (String price : levels) {
+                for (long threshold : thresholds) {
+                    cases.add(Arguments.of(level, price, threshold));
+                }
+            }
+        }
+        return cases.stream();
+    }
+
+    @ParameterizedTest
+    @MethodSource("levelsAndThresholds")
+    void testTriggerMatchesBigDecimalRuleAroundThreshold(int level, String levelPrice, long thresholdBp) {
+        BigDecimal levelValue = new BigDecimal(levelPrice);
+        LimitAlertBand band = bandWithLevel(level, levelValue, thresholdBp);
+        boolean up = LimitAlertBand.isUpLevel(level);
+
+        BigDecimal threshold = BigDecimal.valueOf(thresholdBp, 4);
+        BigDecimal roundingEdge = threshold.add(new BigDecimal("0.00005"));
+        List<Long> prices = new ArrayList<>();
+        // Точная граница порога, граница округления t + 0.00005 и сам уровень
+        for (BigDecimal distance : List.of(threshold, roundingEdge, BigDecimal.ZERO)) {
+            long boundary = priceAtDistance(levelValue, distance, up);
+            for (long delta : new long[] { -1_000_000, -1_000, -10, -1, 0, 1, 10, 1_000, 1_000_000 }) {
+                prices.add(boundary + delta);
+            }
+        }
+        // Цены далеко внутри и снаружи полосы
+        long reached = FixedPointPrice.fromBigDecimal(levelValue);
+        prices.add(reached / 2);
+        prices.add(reached * 2);
+
+        for (long price : prices) {
+            if (price <= 0) {
+                continue;
+            }
+            boolean expected = bigDecimalRule(FixedPointPrice.toBigDecimal(price), levelValue, threshold, up);
+            assertEquals(expected, band.isApproached(level, price),
+                String.format("level=%d, уровень=%s, порог=%d, цена=%s", level, levelPrice, thresholdBp,
+                    FixedPointPrice.toBigDecimal(price)));
+            if (expected) {
+                assertTrue(band.isTriggered(price), "Полоса должна пропустить цену " + price);
+            }
+        }
+    }
+
+    /**
+     * Граница округления: |L - p| / p = t + 0.00005 округляется вверх и не срабатывает,
+     * значение на шаг цены ближе к уровню округляется до t и срабатывает
+     */
+    @ParameterizedTest
+    @CsvSource({
+        // level, уровень, цена, порог (б.п.), срабатывает
+        "0, 101.005, 100, 100, false",
+        "0, 101.005, 100.000000001, 100, true",
+        "0, 101.00499, 100, 100, true",
+        "1, 98.995, 100, 100, false",
+        "1, 98.995, 99.999999999, 100, true",
+        "1, 98.99501, 100, 100, true",
+        "2, 100.505, 100, 50, false",
+        "2, 100.50499, 100, 50, true",
+        "3, 99.495, 100, 50, false",
+        "3, 99.49501, 100, 50, true",
+        "0, 101, 100, 100, true",
+        "1, 99, 100, 100, true",
+        "0, 100, 100, 100, true",
+        "1, 100, 100, 100, true",
+    })
+    void testRoundingEdge(int level, String levelPrice, String price, long thresholdBp, boolean triggered) {
+        BigDecimal levelValue = new BigDecimal(levelPrice);
+        BigDecimal priceValue = new BigDecimal(price);
+        LimitAlertBand band = bandWithLevel(level, levelValue, thresholdBp);
+
+        boolean expected = bigDecimalRule(priceValue, levelValue, BigDecimal.valueOf(thresholdBp, 4),
+            LimitAlertBand.isUpLevel(level));
+        assertEquals(triggered, expected, "Ошибка в данных теста");
+        assertEquals(triggered, band.isApproached(level, FixedPointPrice.fromBigDecimal(priceValue)));
+    }
+
+    /**
+     * Прежнее правило: уровень достигнут или округленное расстояние не больше порога
+     */
+    private static boolean bigDecimalRule(BigDecimal price, BigDecimal level, BigDecimal threshold, boolean up) {
+        boolean reached = up ? price.compareTo(level) >= 0 : price.compareTo(level) <= 0;
+        BigDecimal distance = level.subtract(price).abs().divide(price, 4, RoundingMode.HALF_UP);
+        return reached || distance.compareTo(threshold) <= 0;
+    }
+
+    /**
+     * Цена, отстоящая от уровня на заданную долю цены: L / (1 + d) для UP, L / (1 - d) для DOWN
+     */
+    private static long priceAtDistance(BigDecimal level, BigDecimal distance, boolean up) {
+        BigDecimal divisor = up ? BigDecimal.ONE.add(distance) : BigDecimal.ONE.subtract(distance);
+        return FixedPointPrice.fromBigDecimal(level.divide(divisor, MathContext.DECIMAL64)
+            .setScale(FixedPointPrice.SCALE, RoundingMode.HALF_UP));
+    }
+
+    /**
+     * Полоса, в которой задан только проверяемый уровень
+     */
+    private static LimitAlertBand bandWithLevel(int level, BigDecimal price, long thresholdBp) {
+        BigDecimal limitDown = level == LimitAlertBand.EXCHANGE_DOWN ? price : null;
+        BigDecimal limitUp = level == LimitAlertBand.EXCHANGE_UP ? price : null;
+        HistoricalPriceDto historicalPrice = null;
+        if (LimitAlertBand.isHistoricalLevel(level)) {
+            // Второй экстремум вынесен так далеко, что не срабатывает на ценах теста
+            boolean up = LimitAlertBand.isUpLevel(level);
+            historicalPrice = HistoricalPriceDto.builder()
+                .figi(FIGI)
+                .historicalHigh(up ? price : new BigDecimal("1000000000"))
+                .historicalLow(up ? new BigDecimal("0.000000001") : price)
+                .build();
+        }
+        return LimitAlertBand.compile(FIGI, 0, Long.MAX_VALUE, null, limitDown, limitUp, historicalPrice,
+            thresholdBp, thresholdBp);
+    }
+}
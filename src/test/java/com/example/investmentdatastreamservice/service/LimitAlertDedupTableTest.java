@@ -0,0 +1,200 @@
+package com.example.investmentdatastreamservice.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.investmentdatastreamservice.config.LimitMonitorProperties;
+
+/**
+ * Тесты для LimitAlertDedupTable
+ *
+ * Проверяет отметку уведомлений (одна успешная отметка из нескольких одновременных),
+ * снятие отметки, сброс отметок сменой торгового дня и восстановление отметок
+ * из снимка после перезапуска.
+ */
+class LimitAlertDedupTableTest {
+
+    private static final String FIGI = "BBG004730N88";
+    private static final String OTHER_FIGI = "BBG004730ZJ9";
+    private static final ZoneId MOSCOW_ZONE = ZoneId.of("Europe/Moscow");
+
+    private static final int LIMIT_UP_APPROACH = LimitAlertDedupTable.alertBit(false, true, false);
+    private static final int LIMIT_UP_REACHED = LimitAlertDedupTable.alertBit(false, true, true);
+    private static final int HISTORICAL_DOWN_REACHED = LimitAlertDedupTable.alertBit(true, false, true);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testTryMarkSuppressesRepeatedAlert() {
+        LimitAlertDedupTable table = newTable(null);
+
+        assertTrue(table.tryMark(FIGI, LIMIT_UP_APPROACH));
+        assertFalse(table.tryMark(FIGI, LIMIT_UP_APPROACH));
+        // Другой тип уведомления и другой инструмент отмечаются независимо
+        assertTrue(table.tryMark(FIGI, LIMIT_UP_REACHED));
+        assertTrue(table.tryMark(OTHER_FIGI, LIMIT_UP_APPROACH));
+
+        assertEquals(3, table.getActiveCount());
+        assertEquals(3L, table.getStats().get("marked"));
+        assertEquals(1L, table.getStats().get("suppressed"));
+    }
+
+    @Test
+    void testConcurrentTryMarkSucceedsOnce() throws Exception {
+        LimitAlertDedupTable table = newTable(null);
+        int threads = 8;
+        int rounds = 200;
+
+        for (int round = 0; round < rounds; round++) {
+            String figi = "FIGI" + round;
+            AtomicInteger winners = new AtomicInteger();
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                // Разные биты одного слота меняются через тот же CAS и не должны теряться
+                int otherBit = t % LimitAlertDedupTable.ALERT_TYPES;
+                Thread worker = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    if (table.tryMark(figi, LIMIT_UP_APPROACH)) {
+                        winners.incrementAndGet();
+                    }
+                    table.tryMark(figi, otherBit);
+                });
+                worker.start();
+                workers.add(worker);
+            }
+            start.countDown();
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            assertEquals(1, winners.get(), "Уведомление " + figi + " отмечено больше одного раза");
+        }
+        assertEquals((long) rounds * LimitAlertDedupTable.ALERT_TYPES, table.getActiveCount());
+    }
+
+    @Test
+    void testUnmarkAllowsRetry() {
+        LimitAlertDedupTable table = newTable(null);
+
+        assertTrue(table.tryMark(FIGI, LIMIT_UP_APPROACH));
+        assertTrue(table.tryMark(FIGI, LIMIT_UP_REACHED));
+        table.unmark(FIGI, LIMIT_UP_APPROACH);
+
+        // Снимается только указанный бит
+        assertTrue(table.tryMark(FIGI, LIMIT_UP_APPROACH));
+        assertFalse(table.tryMark(FIGI, LIMIT_UP_REACHED));
+
+        // Снятие отметки неизвестного инструмента ничего не делает
+        table.unmark(OTHER_FIGI, LIMIT_UP_APPROACH);
+        assertEquals(2, table.getActiveCount());
+    }
+
+    @Test
+    void testAdvanceTradingDayResetsMarks() {
+        LimitAlertDedupTable table = newTable(null);
+        assertTrue(table.tryMark(FIGI, LIMIT_UP_APPROACH));
+        assertTrue(table.tryMark(OTHER_FIGI, HISTORICAL_DOWN_REACHED));
+        long epoch = (Long) table.getStats().get("epoch");
+
+        table.advanceTradingDay();
+
+        assertEquals(epoch + 1, table.getStats().get("epoch"));
+        assertEquals(0, table.getActiveCount());
+        assertTrue(table.tryMark(FIGI, LIMIT_UP_APPROACH));
+        assertTrue(table.tryMark(OTHER_FIGI, HISTORICAL_DOWN_REACHED));
+        assertFalse(table.tryMark(FIGI, LIMIT_UP_APPROACH));
+    }
+
+    @Test
+    void testSnapshotRestoresMarksAfterRestart() {
+        Path snapshot = tempDir.resolve("dedup.snapshot");
+        LimitAlertDedupTable before = newTable(snapshot);
+        before.init();
+        assertTrue(before.tryMark(FIGI, LIMIT_UP_APPROACH));
+        assertTrue(before.tryMark(FIGI, LIMIT_UP_REACHED));
+        assertTrue(before.tryMark(OTHER_FIGI, HISTORICAL_DOWN_REACHED));
+        before.shutdown();
+        assertTrue(Files.exists(snapshot));
+
+        LimitAlertDedupTable after = newTable(snapshot);
+        after.init();
+        try {
+            assertEquals(3, after.getActiveCount());
+            assertFalse(after.tryMark(FIGI, LIMIT_UP_APPROACH));
+            assertFalse(after.tryMark(FIGI, LIMIT_UP_REACHED));
+            assertFalse(after.tryMark(OTHER_FIGI, HISTORICAL_DOWN_REACHED));
+            assertTrue(after.tryMark(OTHER_FIGI, LIMIT_UP_APPROACH));
+        } finally {
+            after.shutdown();
+        }
+    }
+
+    @Test
+    void testSnapshotOfTodayIsLoaded() throws Exception {
+        Path snapshot = tempDir.resolve("today.snapshot");
+        long bits = (1L << LIMIT_UP_APPROACH) | (1L << HISTORICAL_DOWN_REACHED);
+        Files.writeString(snapshot, LocalDate.now(MOSCOW_ZONE) + "\n" + FIGI + " " + bits + "\n",
+            StandardCharsets.UTF_8);
+
+        LimitAlertDedupTable table = newTable(snapshot);
+        table.init();
+        try {
+            assertEquals(2, table.getActiveCount());
+            assertFalse(table.tryMark(FIGI, LIMIT_UP_APPROACH));
+            assertFalse(table.tryMark(FIGI, HISTORICAL_DOWN_REACHED));
+            assertTrue(table.tryMark(FIGI, LIMIT_UP_REACHED));
+            // Восстановленные отметки не считаются новыми
+            assertEquals(1L, table.getStats().get("marked"));
+        } finally {
+            table.shutdown();
+        }
+    }
+
+    @Test
+    void testStaleSnapshotIsIgnored() throws Exception {
+        Path snapshot = tempDir.resolve("stale.snapshot");
+        long bits = 1L << LIMIT_UP_APPROACH;
+        Files.writeString(snapshot, LocalDate.now(MOSCOW_ZONE).minusDays(1) + "\n" + FIGI + " " + bits + "\n",
+            StandardCharsets.UTF_8);
+
+        LimitAlertDedupTable table = newTable(snapshot);
+        table.init();
+        try {
+            assertEquals(0, table.getActiveCount());
+            assertTrue(table.tryMark(FIGI, LIMIT_UP_APPROACH));
+        } finally {
+            table.shutdown();
+        }
+    }
+
+    /**
+     * Таблица со снимком в указанном файле (null - без снимка)
+     */
+    private static LimitAlertDedupTable newTable(Path snapshot) {
+        LimitMonitorProperties properties = new LimitMonitorProperties();
+        properties.getDedup().setSnapshotPath(snapshot != null ? snapshot.toString() : "");
+        // Снимок пишется только при остановке - периодическая запись тестам не нужна
+        properties.getDedup().setSnapshotIntervalMs(60_000);
+        return new LimitAlertDedupTable(properties);
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.investmentdatastreamservice.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.investmentdatastreamservice.entity.LastPriceEntity;
+import com.example.investmentdatastreamservice.repository.LastPriceRepository;
+import com.example.investmentdatastreamservice.service.streaming.LastPriceDispatcher;
+import com.example.investmentdatastreamservice.utils.TimeZoneUtils;
+import com.google.protobuf.Timestamp;
+
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.Quotation;
+
+/**
+ * Тесты для SessionPriceTracker
+ *
+ * Проверяет отнесение сделок к сессиям на границах окон (18:45 / 18:46 и 19:04 / 19:05
+ * по Москве), сброс цен прошлого дня после полуночи и заполнение трекера из БД при старте.
+ */
+class SessionPriceTrackerTest {
+
+    private static final String FIGI = "BBG004730N88";
+    private static final ZoneOffset MOSCOW_OFFSET = ZoneOffset.ofHours(3);
+    private static final LocalDate TODAY = LocalDate.of(2026, 10, 15);
+
+    private LastPriceRepository lastPriceRepository;
+    private LastPriceDispatcher dispatcher;
+    private SessionPriceTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        lastPriceRepository = mock(LastPriceRepository.class);
+        dispatcher = new LastPriceDispatcher();
+        tracker = new SessionPriceTracker(lastPriceRepository, dispatcher);
+        setNow(TODAY.atTime(23, 55));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        // время по Москве, наносекунды, сессия (пусто - вне сессий)
+        "08:59:59, 999999999, ",
+        "09:00:00, 0, MAIN",
+        "18:44:59, 999999999, MAIN",
+        "18:45:00, 0, MAIN",
+        "18:45:00, 1, ",
+        "18:46:00, 0, ",
+        "19:04:59, 999999999, ",
+        "19:05:00, 0, EVENING",
+        "23:50:00, 0, EVENING",
+        "23:50:00, 1, ",
+    })
+    void testSessionBoundaries(String time, int nanos, SessionPriceTracker.Session expected) {
+        int secondOfDay = LocalTime.parse(time).toSecondOfDay();
+        assertEquals(expected, SessionPriceTracker.Session.of(secondOfDay, nanos));
+    }
+
+    @Test
+    void testTicksAtBoundariesGoToTheirSession() {
+        tracker.init();
+
+        dispatcher.dispatch(lastPrice(TODAY.atTime(18, 45), 100));
+        dispatcher.dispatch(lastPrice(TODAY.atTime(18, 46), 101));
+        dispatcher.dispatch(lastPrice(TODAY.atTime(19, 4, 59), 102));
+        assertPrice("100", tracker.getLastPrice(FIGI, "OS"));
+        assertNull(tracker.getLastPrice(FIGI, "EVENING"));
+
+        dispatcher.dispatch(lastPrice(TODAY.atTime(19, 5), 103));
+        assertPrice("103", tracker.getLastPrice(FIGI, "EVENING"));
+        // Более ранняя сделка не вытесняет более позднюю
+        dispatcher.dispatch(lastPrice(TODAY.atTime(18, 0), 99));
+        assertPrice("100", tracker.getLastPrice(FIGI, "OS"));
+    }
+
+    @Test
+    void testPricesResetAfterMidnight() {
+        tracker.init();
+        dispatcher.dispatch(lastPrice(TODAY.atTime(12, 0), 100));
+        dispatcher.dispatch(lastPrice(TODAY.atTime(23, 50), 110));
+        assertPrice("110", tracker.getLastPrice(FIGI, "EVENING"));
+
+        // После полуночи цены прошлого дня отсутствуют
+        setNow(TODAY.plusDays(1).atTime(0, 0, 1));
+        assertNull(tracker.getLastPrice(FIGI, "OS"));
+        assertNull(tracker.getLastPrice(FIGI, "EVENING"));
+
+        // Сделка нового дня заменяет цену только своей сессии
+        dispatcher.dispatch(lastPrice(TODAY.plusDays(1).atTime(9, 30), 120));
+        assertPrice("120", tracker.getLastPrice(FIGI, "OS"));
+        assertNull(tracker.getLastPrice(FIGI, "EVENING"));
+        // Запоздавшая сделка прошлого дня не возвращает старую цену
+        dispatcher.dispatch(lastPrice(TODAY.atTime(23, 49), 109));
+        assertNull(tracker.getLastPrice(FIGI, "EVENING"));
+        assertEquals(1, tracker.size());
+    }
+
+    @Test
+    void testSeedsFromDatabaseForToday() {
+        LocalDateTime mainFrom = TODAY.atTime(9, 0);
+        LocalDateTime mainTo = TODAY.atTime(18, 45);
+        LocalDateTime eveningFrom = TODAY.atTime(19, 5);
+        LocalDateTime eveningTo = TODAY.atTime(23, 50);
+        when(lastPriceRepository.findLatestPerFigiBetween(mainFrom, mainTo)).thenReturn(List.of(
+            new LastPriceEntity(FIGI, TODAY.atTime(18, 44, 30), new BigDecimal("250.5"), "RUB", "MOEX"),
+            new LastPriceEntity("BBG004730ZJ9", TODAY.atTime(10, 0), new BigDecimal("0.25"), "RUB", "MOEX")));
+        when(lastPriceRepository.findLatestPerFigiBetween(eveningFrom, eveningTo)).thenReturn(List.of(
+            new LastPriceEntity(FIGI, TODAY.atTime(19, 30), new BigDecimal("251"), "RUB", "MOEX")));
+
+        tracker.init();
+
+        assertEquals(2, tracker.size());
+        assertPrice("250.5", tracker.getLastPrice(FIGI, "OS"));
+        assertPrice("251", tracker.getLastPrice(FIGI, "EVENING"));
+        assertPrice("0.25", tracker.getLastPrice("BBG004730ZJ9", "OS"));
+        assertNull(tracker.getLastPrice("BBG004730ZJ9", "EVENING"));
+
+        // Поток продолжает заполненное из БД состояние
+        dispatcher.dispatch(lastPrice(TODAY.atTime(18, 44, 10), 249));
+        assertPrice("250.5", tracker.getLastPrice(FIGI, "OS"));
+        dispatcher.dispatch(lastPrice(TODAY.atTime(18, 45), 252));
+        assertPrice("252", tracker.getLastPrice(FIGI, "OS"));
+    }
+
+    private void setNow(LocalDateTime moscowTime) {
+        ReflectionTestUtils.setField(tracker, "clock",
+            Clock.fixed(moscowTime.toInstant(MOSCOW_OFFSET), TimeZoneUtils.getMoscowZone()));
+    }
+
+    private static LastPrice lastPrice(LocalDateTime moscowTime, long units) {
+        return LastPrice.newBuilder()
+            .setFigi(FIGI)
+            .setPrice(Quotation.newBuilder().setUnits(units).build())
+            .setTime(Timestamp.newBuilder().setSeconds(moscowTime.toEpochSecond(MOSCOW_OFFSET)).build())
+            .build();
+    }
+
+    private static void assertPrice(String expected, BigDecimal actual) {
+        assertNotNull(actual, "Нет цены, ожидалась " + expected);
+        assertEquals(0, new BigDecimal(expected).compareTo(actual), "Ожидалась " + expected + ", получена " + actual);
+    }
+}
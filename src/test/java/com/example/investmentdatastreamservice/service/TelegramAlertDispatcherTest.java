@@ -0,0 +1,150 @@
+package com.example.investmentdatastreamservice.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import com.example.investmentdatastreamservice.config.LimitMonitorProperties;
+
+/**
+ * Тесты для TelegramAlertDispatcher
+ *
+ * Telegram подменяется заглушкой. Проверяет ограничение частоты сообщений в чат
+ * с откладыванием сводок и однократным учетом отложенного уведомления, снятие отметок
+ * неотправленных уведомлений и отправку уже поставленных уведомлений при остановке.
+ */
+class TelegramAlertDispatcherTest {
+
+    private static final long TIMEOUT_MS = 10_000;
+    private static final String CHAT_A = "chat-a";
+    private static final String CHAT_B = "chat-b";
+    private static final String FIGI = "BBG004730N88";
+    private static final int ALERT_BIT = 1;
+
+    private TgBotService bot;
+    private LimitAlertDedupTable dedupTable;
+    private LimitMonitorProperties properties;
+    private TelegramAlertDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        bot = mock(TgBotService.class);
+        dedupTable = mock(LimitAlertDedupTable.class);
+        properties = new LimitMonitorProperties();
+        properties.getAlerts().setCoalesceWindowMs(0);
+        properties.getAlerts().setRetryBackoffMs(1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    void testRateLimitDefersAndCountsEachAlertOnce() throws Exception {
+        // Один токен в минуту: за время теста ведро не пополняется
+        properties.getAlerts().setMessagesPerMinute(1);
+        properties.getAlerts().setBurst(2);
+        dispatcher = new TelegramAlertDispatcher(bot, dedupTable, properties);
+
+        // Отправка первого сообщения в чат B удерживается, пока тест ставит новые уведомления
+        CountDownLatch sendingToB = new CountDownLatch(1);
+        CountDownLatch releaseB = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            sendingToB.countDown();
+            releaseB.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            return null;
+        }).when(bot).sendMessage(eq(CHAT_B), eq(text("b1")));
+
+        // Длинные тексты не помещаются в одну сводку: каждое уведомление - отдельное сообщение
+        dispatcher.enqueue(CHAT_A, text("a1"), FIGI, ALERT_BIT);
+        dispatcher.enqueue(CHAT_A, text("a2"), FIGI, ALERT_BIT);
+        dispatcher.enqueue(CHAT_A, text("a3"), "FIGI_A3", ALERT_BIT);
+        dispatcher.enqueue(CHAT_B, text("b1"), FIGI, ALERT_BIT);
+        dispatcher.start();
+
+        assertTrue(sendingToB.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        // Чат A исчерпал ведро: третье сообщение отложено, чат B не ждет чат A
+        verify(bot).sendMessage(CHAT_A, text("a1"));
+        verify(bot).sendMessage(CHAT_A, text("a2"));
+        verify(bot, never()).sendMessage(CHAT_A, text("a3"));
+        assertEquals(1L, dispatcher.getStats().get("deferredAlerts"));
+
+        // Следующая попытка: a3 откладывается повторно вместе с новым a4, b2 отправляется
+        dispatcher.enqueue(CHAT_A, text("a4"), "FIGI_A4", ALERT_BIT);
+        dispatcher.enqueue(CHAT_B, text("b2"), FIGI, ALERT_BIT);
+        releaseB.countDown();
+
+        verify(bot, timeout(TIMEOUT_MS)).sendMessage(CHAT_B, text("b2"));
+        verify(bot, never()).sendMessage(CHAT_A, text("a3"));
+        verify(bot, never()).sendMessage(CHAT_A, text("a4"));
+        assertEquals(2L, dispatcher.getStats().get("deferredAlerts"));
+
+        // Отложенные до остановки уведомления не отправлены - отметки сняты
+        dispatcher.shutdown();
+        verify(dedupTable, timeout(TIMEOUT_MS)).unmark("FIGI_A3", ALERT_BIT);
+        verify(dedupTable, timeout(TIMEOUT_MS)).unmark("FIGI_A4", ALERT_BIT);
+        verify(dedupTable, never()).unmark(FIGI, ALERT_BIT);
+        assertEquals(4L, dispatcher.getStats().get("messagesSent"));
+        assertEquals(2L, dispatcher.getStats().get("deferredAlerts"));
+    }
+
+    @Test
+    void testRejectedMessageReleasesDedupMark() throws Exception {
+        doThrow(new TelegramApiRequestException("Bad Request: chat not found"))
+            .when(bot).sendMessage(anyString(), anyString());
+        dispatcher = new TelegramAlertDispatcher(bot, dedupTable, properties);
+        dispatcher.start();
+
+        dispatcher.enqueue(CHAT_A, "alert", FIGI, ALERT_BIT);
+
+        // Ошибка API без 429 не повторяется
+        verify(dedupTable, timeout(TIMEOUT_MS)).unmark(FIGI, ALERT_BIT);
+        verify(bot, times(1)).sendMessage(anyString(), anyString());
+        assertEquals(1L, dispatcher.getStats().get("failedMessages"));
+        assertEquals(0L, dispatcher.getStats().get("retries"));
+    }
+
+    @Test
+    void testShutdownFlushesQueuedAlertsAsDigest() throws Exception {
+        properties.getAlerts().setCoalesceWindowMs(200);
+        dispatcher = new TelegramAlertDispatcher(bot, dedupTable, properties);
+        dispatcher.enqueue(CHAT_A, "first", FIGI, ALERT_BIT);
+        dispatcher.enqueue(CHAT_A, "second", FIGI, ALERT_BIT + 1);
+        dispatcher.start();
+
+        dispatcher.shutdown();
+
+        verify(bot).sendMessage(eq(CHAT_A),
+            argThat(text -> text.startsWith("📬 Сводка уведомлений: 2") && text.contains("first")
+                && text.contains("second")));
+        assertEquals(0, dispatcher.getQueueDepth());
+        assertEquals(2L, dispatcher.getStats().get("alertsSent"));
+        assertEquals(1L, dispatcher.getStats().get("digestsSent"));
+        verify(dedupTable, never()).unmark(anyString(), anyInt());
+    }
+
+    private static String text(String id) {
+        return id + " " + "x".repeat(3_000);
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.investmentdatastreamservice.service.streaming;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Тесты для RingBufferDispatcher
+ *
+ * Проверяет порядок доставки от нескольких производителей, отказ при заполненном буфере,
+ * остановку потребителя на занятом, но еще не опубликованном слоте и обработку
+ * опубликованных событий при остановке.
+ */
+class RingBufferDispatcherTest {
+
+    private static final long TIMEOUT_MS = 10_000;
+
+    private RingBufferDispatcher<?> dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown(TIMEOUT_MS);
+        }
+    }
+
+    @Test
+    void testDeliversEventsOfEachProducerInOrder() throws Exception {
+        int producers = 4;
+        int eventsPerProducer = 20_000;
+        List<long[]> received = Collections.synchronizedList(new ArrayList<>());
+        RingBufferDispatcher<long[]> ring = new RingBufferDispatcher<>("test", 256, 64, received::add);
+        dispatcher = ring;
+        ring.start();
+
+        CountDownLatch startSignal = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long producerId = p;
+            Thread thread = new Thread(() -> {
+                try {
+                    startSignal.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (long i = 0; i < eventsPerProducer; i++) {
+                    // Буфер меньше объема теста: при отказе повторяем публикацию
+                    while (!ring.publish(new long[] { producerId, i })) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        startSignal.countDown();
+        for (Thread thread : threads) {
+            thread.join(TIMEOUT_MS);
+        }
+
+        long total = (long) producers * eventsPerProducer;
+        awaitCondition(() -> ring.getConsumedCount() == total);
+
+        long[] lastSeen = new long[producers];
+        Arrays.fill(lastSeen, -1);
+        synchronized (received) {
+            assertEquals(total, received.size());
+            for (long[] event : received) {
+                int producerId = (int) event[0];
+                assertEquals(lastSeen[producerId] + 1, event[1],
+                    "Нарушен порядок событий производителя " + producerId);
+                lastSeen[producerId] = event[1];
+            }
+        }
+        for (int p = 0; p < producers; p++) {
+            assertEquals(eventsPerProducer - 1, lastSeen[p]);
+        }
+        assertEquals(total, ring.getPublishedCount());
+        assertEquals(0, ring.getHandlerErrors());
+    }
+
+    @Test
+    void testRejectsWhenFullAndReportsFillMetrics() throws Exception {
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        RingBufferDispatcher<Integer> ring = new RingBufferDispatcher<>("test", 3, 16, received::add);
+        dispatcher = ring;
+
+        // Емкость округляется до степени двойки; потребитель не запущен - буфер заполняется
+        assertEquals(4, ring.getCapacity());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.publish(i));
+        }
+        assertFalse(ring.publish(4));
+        assertFalse(ring.publish(5));
+
+        assertEquals(2, ring.getRejectedCount());
+        assertEquals(4, ring.getPublishedCount());
+        assertEquals(4, ring.getFillLevel());
+        assertEquals(1.0, ring.getFillRatio());
+        assertEquals(2L, ring.getMetricsSnapshot().get("rejected"));
+
+        ring.start();
+        awaitCondition(() -> ring.getConsumedCount() == 4);
+        assertEquals(List.of(0, 1, 2, 3), received);
+        assertEquals(0, ring.getFillLevel());
+        assertEquals(0.0, ring.getFillRatio());
+        assertEquals(4, ring.getMaxFillObserved());
+
+        // После освобождения слотов публикация снова принимается
+        assertTrue(ring.publish(6));
+        awaitCondition(() -> ring.getConsumedCount() == 5);
+        assertEquals(2, ring.getRejectedCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testStopsAtClaimedButUnpublishedSlot() throws Exception {
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        RingBufferDispatcher<String> ring = new RingBufferDispatcher<>("test", 8, 16, received::add);
+        dispatcher = ring;
+
+        assertTrue(ring.publish("a"));
+        // Производитель занял последовательность 1, но еще не записал событие
+        AtomicLong claimSequence = (AtomicLong) ReflectionTestUtils.getField(ring, "claimSequence");
+        long claimed = claimSequence.incrementAndGet();
+        assertEquals(1, claimed);
+        assertTrue(ring.publish("c"));
+
+        ring.start();
+        awaitCondition(() -> ring.getConsumedCount() == 1);
+        // Событие "c" опубликовано, но идет после незаполненного слота и не доставляется
+        Thread.sleep(50);
+        assertEquals(List.of("a"), received);
+        assertEquals(1, ring.getConsumedCount());
+        assertEquals(2, ring.getFillLevel());
+
+        // Производитель дописывает слот - доставка продолжается в порядке последовательностей
+        AtomicReferenceArray<String> slots = (AtomicReferenceArray<String>) ReflectionTestUtils.getField(ring, "slots");
+        AtomicLongArray published = (AtomicLongArray) ReflectionTestUtils.getField(ring, "published");
+        int index = (int) (claimed & (ring.getCapacity() - 1));
+        slots.set(index, "b");
+        published.set(index, claimed);
+
+        awaitCondition(() -> ring.getConsumedCount() == 3);
+        assertEquals(List.of("a", "b", "c"), received);
+        assertEquals(0, ring.getFillLevel());
+    }
+
+    @Test
+    void testShutdownDrainsPublishedEvents() throws Exception {
+        CountDownLatch handlerBlocked = new CountDownLatch(1);
+        CountDownLatch releaseHandler = new CountDownLatch(1);
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        RingBufferDispatcher<Integer> ring = new RingBufferDispatcher<>("test", 256, 8, event -> {
+            if (event == 0) {
+                handlerBlocked.countDown();
+                try {
+                    releaseHandler.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            received.add(event);
+        });
+        ring.start();
+
+        assertTrue(ring.publish(0));
+        assertTrue(handlerBlocked.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        int events = 100;
+        for (int i = 1; i <= events; i++) {
+            assertTrue(ring.publish(i));
+        }
+
+        // Остановка запрошена, пока обработчик занят: оставшиеся события должны быть обработаны
+        Thread stopper = new Thread(() -> ring.shutdown(TIMEOUT_MS));
+        stopper.start();
+        awaitCondition(() -> !ring.isRunning());
+        releaseHandler.countDown();
+        stopper.join(TIMEOUT_MS);
+
+        assertFalse(stopper.isAlive());
+        assertEquals(events + 1, received.size());
+        for (int i = 0; i <= events; i++) {
+            assertEquals(i, received.get(i));
+        }
+        assertEquals(events + 1, ring.getConsumedCount());
+        assertEquals(0, ring.getFillLevel());
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Условие не выполнено за " + TIMEOUT_MS + " мс");
+            }
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.investmentdatastreamservice.service.streaming;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Тесты для SubscriptionTracker
+ *
+ * Время задается подменяемыми часами, проверка повторных попыток вызывается тестом.
+ * Проверяет распределение инструментов с учетом емкости stream'а, экспоненциальную
+ * задержку повторных подписок и отказ после последней попытки, планирование уплотнения
+ * недозаполненных stream'ов и переподписку восстановленного stream'а.
+ */
+class SubscriptionTrackerTest {
+
+    private static final int CAPACITY = 3;
+
+    /**
+     * Запрос подписки, переданный сервису-владельцу
+     */
+    private record Call(int streamIndex, Set<String> figis) {}
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final List<Call> calls = new ArrayList<>();
+    private volatile boolean sendFails;
+    private SubscriptionTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        tracker = new SubscriptionTracker("test", (streamIndex, figis) -> {
+            calls.add(new Call(streamIndex, new HashSet<>(figis)));
+            return sendFails
+                ? CompletableFuture.failedFuture(new IllegalStateException("stream is down"))
+                : CompletableFuture.completedFuture(null);
+        }, now::get, mock(ScheduledExecutorService.class));
+    }
+
+    @Test
+    void testAllocateRespectsStreamCapacity() {
+        tracker.track(0, List.of("A1", "A2", "A3"));
+        tracker.track(1, List.of("B1"));
+
+        Map<Integer, List<String>> plan = tracker.allocate(
+            List.of("A1", "N1", "N2", "N3", "N4", "N5", "N6"), CAPACITY, 2);
+
+        // Уже отслеживаемый A1 пропущен, полный stream #0 не используется
+        assertEquals(Map.of(
+            1, List.of("N1", "N2"),
+            2, List.of("N3", "N4", "N5"),
+            3, List.of("N6")), plan);
+        assertArrayEquals(new int[] {3, 3, 3, 1}, tracker.getStreamLoad(4));
+        assertEquals(10L, tracker.getStats().get("pending"));
+    }
+
+    @Test
+    void testUntrackReturnsInstrumentsByStream() {
+        tracker.track(0, List.of("A1", "A2"));
+        tracker.track(1, List.of("B1"));
+
+        Map<Integer, List<String>> plan = tracker.untrack(List.of("A2", "B1", "UNKNOWN"));
+
+        assertEquals(Map.of(0, List.of("A2"), 1, List.of("B1")), plan);
+        assertEquals(Set.of("A1"), tracker.getTrackedInstruments());
+    }
+
+    @Test
+    void testRetryBackoffAndGiveUp() {
+        tracker.track(0, List.of("F1"));
+        long[] expectedDelays = {2_000, 4_000, 8_000, 16_000, 32_000, 60_000, 60_000};
+
+        for (long delay : expectedDelays) {
+            tracker.onFailed("F1", "NOT_FOUND");
+            int before = calls.size();
+
+            now.addAndGet(delay - 1);
+            tracker.retryDue();
+            assertEquals(before, calls.size(), "retried before delay " + delay);
+
+            now.addAndGet(1);
+            tracker.retryDue();
+            assertEquals(before + 1, calls.size(), "not retried after delay " + delay);
+            assertEquals(new Call(0, Set.of("F1")), calls.get(calls.size() - 1));
+        }
+
+        // Восьмая неудача - последняя: инструмент больше не переподписывается
+        tracker.onFailed("F1", "NOT_FOUND");
+        now.addAndGet(SubscriptionTracker.MAX_RETRY_DELAY_MS * 10);
+        tracker.retryDue();
+        assertEquals(SubscriptionTracker.MAX_ATTEMPTS - 1, calls.size());
+        assertEquals(Map.of("F1", "NOT_FOUND"), tracker.getFailedInstruments());
+        assertEquals(1L, tracker.getStats().get("exhausted"));
+        assertEquals(7L, tracker.getStats().get("retriedInstruments"));
+    }
+
+    @Test
+    void testSuccessfulSubscriptionResetsAttempts() {
+        tracker.track(0, List.of("F1"));
+        tracker.onFailed("F1", "NOT_FOUND");
+        tracker.onFailed("F1", "NOT_FOUND");
+        tracker.onSubscribed("F1");
+
+        // После подтверждения отсчет задержки начинается заново
+        tracker.onFailed("F1", "NOT_FOUND");
+        now.addAndGet(SubscriptionTracker.INITIAL_RETRY_DELAY_MS);
+        tracker.retryDue();
+        assertEquals(1, calls.size());
+    }
+
+    @Test
+    void testRetriesAreGroupedByStream() {
+        tracker.track(0, List.of("A1", "A2"));
+        tracker.track(1, List.of("B1"));
+        tracker.onFailed(List.of("A1", "A2", "B1"), "NOT_FOUND");
+
+        now.addAndGet(SubscriptionTracker.INITIAL_RETRY_DELAY_MS);
+        tracker.retryDue();
+
+        assertEquals(List.of(new Call(0, Set.of("A1", "A2")), new Call(1, Set.of("B1"))), calls);
+    }
+
+    @Test
+    void testCompactionMovesLastStreamIntoFreeSlots() {
+        tracker.track(0, List.of("A1", "A2"));
+        tracker.track(1, List.of("B1", "B2"));
+        tracker.track(2, List.of("C1"));
+
+        // 5 инструментов помещаются в 2 stream'а - последний освобождается
+        SubscriptionTracker.Relocation relocation = tracker.planCompaction(CAPACITY, 3);
+
+        assertNotNull(relocation);
+        assertEquals(2, relocation.sourceStream());
+        assertEquals(Map.of(0, List.of("C1")), relocation.targets());
+        assertEquals(1, relocation.size());
+        assertTrue(tracker.getStreamInstruments(2).isEmpty());
+        assertArrayEquals(new int[] {3, 2}, tracker.getStreamLoad(2));
+
+        // После закрытия stream'а уплотнять больше нечего
+        assertNull(tracker.planCompaction(CAPACITY, 2));
+    }
+
+    @Test
+    void testNoCompactionWhenStreamsAreNeeded() {
+        tracker.track(0, List.of("A1", "A2", "A3"));
+        tracker.track(1, List.of("B1"));
+
+        assertNull(tracker.planCompaction(CAPACITY, 2));
+        assertNull(tracker.planCompaction(CAPACITY, 1));
+    }
+
+    @Test
+    void testResubscribeOnlyRestoredStream() {
+        tracker.track(0, List.of("A1", "A2"));
+        tracker.track(1, List.of("B1"));
+        List.of("A1", "A2", "B1").forEach(tracker::onSubscribed);
+
+        tracker.onStreamDown(0);
+        assertEquals(2L, tracker.getStats().get("pending"));
+        assertEquals(1L, tracker.getStats().get("subscribed"));
+
+        tracker.resubscribeStream(0);
+
+        assertEquals(List.of(new Call(0, Set.of("A1", "A2"))), calls);
+        assertEquals(1L, tracker.getStats().get("resubscribedStreams"));
+
+        // Stream без инструментов не переподписывается
+        tracker.resubscribeStream(5);
+        assertEquals(1, calls.size());
+    }
+
+    @Test
+    void testFailedResubscribeIsRetried() {
+        tracker.track(0, List.of("A1"));
+        sendFails = true;
+
+        tracker.resubscribeStream(0);
+
+        assertEquals(Map.of("A1", SubscriptionTracker.SEND_FAILED), tracker.getFailedInstruments());
+        sendFails = false;
+        now.addAndGet(SubscriptionTracker.INITIAL_RETRY_DELAY_MS);
+        tracker.retryDue();
+        assertEquals(2, calls.size());
+        assertTrue(tracker.getFailedInstruments().isEmpty());
+    }
+}
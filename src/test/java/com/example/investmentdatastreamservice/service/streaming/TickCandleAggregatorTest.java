@@ -0,0 +1,201 @@
+package com.example.investmentdatastreamservice.service.streaming;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.investmentdatastreamservice.config.StreamingProperties;
+import com.example.investmentdatastreamservice.service.streaming.processor.CandleRollupWriter;
+import com.example.investmentdatastreamservice.utils.FixedPointPrice;
+import com.google.protobuf.Timestamp;
+
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.Quotation;
+
+/**
+ * Тесты для TickCandleAggregator
+ *
+ * Сделки передаются агрегатору напрямую, время фонового прохода задается подменяемыми
+ * часами. Проверяет завершение свечи на границе интервала, обработку сделок не по порядку
+ * и запоздавших сделок, завершение свечей неликвидных инструментов фоновым проходом
+ * и сверку со свечами API.
+ */
+class TickCandleAggregatorTest {
+
+    private static final String FIGI = "BBG004730N88";
+    // 10:00 по Москве - граница всех интервалов до часа
+    private static final long T = Instant.parse("2026-10-15T07:00:00Z").getEpochSecond();
+
+    private final List<AggregatedBar> completed = new ArrayList<>();
+    private StreamingProperties properties;
+    private TickCandleAggregator aggregator;
+
+    @BeforeEach
+    void setUp() {
+        properties = new StreamingProperties();
+        aggregator = new TickCandleAggregator(new LastPriceDispatcher(), mock(JdbcTemplate.class),
+            mock(StreamWriteExecutor.class), mock(CandleRollupWriter.class), properties);
+        aggregator.addListener(new AggregatedBarListener() {
+            @Override
+            public void onBar(AggregatedBar bar) {
+                completed.add(bar);
+            }
+
+            @Override
+            public boolean wantsPartials() {
+                return false;
+            }
+        });
+    }
+
+    @Test
+    void testBarCompletesOnNextIntervalTick() {
+        tick(T + 10, 0, 100);
+        tick(T + 30, 0, 105);
+        tick(T + 50, 0, 98);
+        tick(T + 59, 999_999_999, 101);
+        assertTrue(completed.isEmpty());
+        assertBar(aggregator.getCurrentBar(FIGI, CandleTimeframe.M1), T, 100, 105, 98, 101, 4, false);
+
+        // Первая сделка следующей минуты завершает только минутную свечу
+        tick(T + 60, 0, 110);
+
+        assertEquals(1, completed.size());
+        assertBar(completed.get(0), T, 100, 105, 98, 101, 4, true);
+        assertEquals(CandleTimeframe.M1, completed.get(0).timeframe());
+        assertBar(aggregator.getCurrentBar(FIGI, CandleTimeframe.M1), T + 60, 110, 110, 110, 110, 1, false);
+        assertBar(aggregator.getCurrentBar(FIGI, CandleTimeframe.M5), T, 100, 110, 98, 110, 5, false);
+
+        // Граница 5 минут завершает 1m и 5m
+        tick(T + 300, 0, 111);
+        assertEquals(3, completed.size());
+        assertEquals(CandleTimeframe.M1, completed.get(1).timeframe());
+        assertEquals(T + 60, completed.get(1).startEpochSecond());
+        assertBar(completed.get(2), T, 100, 110, 98, 110, 5, true);
+        assertEquals(CandleTimeframe.M5, completed.get(2).timeframe());
+        assertEquals(3, aggregator.getBarsCompleted());
+    }
+
+    @Test
+    void testOutOfOrderAndLateTicks() {
+        tick(T + 10, 0, 100);
+        tick(T + 20, 0, 102);
+        // Сделка не по порядку внутри минуты меняет экстремумы, но не цену закрытия
+        tick(T + 15, 0, 99);
+        assertBar(aggregator.getCurrentBar(FIGI, CandleTimeframe.M1), T, 100, 102, 99, 102, 3, false);
+
+        tick(T + 70, 0, 103);
+        // Запоздавшая сделка завершенной минуты отбрасывается, но попадает в 5m
+        tick(T + 30, 0, 90);
+
+        assertEquals(1, aggregator.getLateTicks());
+        assertBar(aggregator.getLastCompletedBar(FIGI, CandleTimeframe.M1), T, 100, 102, 99, 102, 3, true);
+        assertBar(aggregator.getCurrentBar(FIGI, CandleTimeframe.M1), T + 60, 103, 103, 103, 103, 1, false);
+        AggregatedBar m5 = aggregator.getCurrentBar(FIGI, CandleTimeframe.M5);
+        assertEquals(FixedPointPrice.of(90, 0), m5.low());
+        assertEquals(FixedPointPrice.of(103, 0), m5.close());
+        assertEquals(5, m5.tickCount());
+    }
+
+    @Test
+    void testSweepCompletesIdleBars() {
+        long delayMs = properties.getAggregator().getFinalizeDelayMs();
+        tick(T + 10, 0, 100);
+
+        setNow((T + 60) * 1000 + delayMs - 1);
+        aggregator.sweep();
+        assertTrue(completed.isEmpty());
+
+        setNow((T + 60) * 1000 + delayMs);
+        aggregator.sweep();
+        assertEquals(1, completed.size());
+        assertBar(completed.get(0), T, 100, 100, 100, 100, 1, true);
+        assertNull(aggregator.getCurrentBar(FIGI, CandleTimeframe.M1));
+        assertEquals(1L, aggregator.getStats().get("barsCompletedBySweep"));
+
+        // Сделка уже завершенной минуты - запоздавшая, следующая минута открывает новую свечу
+        tick(T + 30, 0, 95);
+        assertEquals(1, aggregator.getLateTicks());
+        assertNull(aggregator.getCurrentBar(FIGI, CandleTimeframe.M1));
+        tick(T + 65, 0, 104);
+        assertBar(aggregator.getCurrentBar(FIGI, CandleTimeframe.M1), T + 60, 104, 104, 104, 104, 1, false);
+        // Свеча, завершенная проходом, не завершается повторно
+        assertEquals(1, completed.size());
+    }
+
+    @Test
+    void testCrossCheckAgainstApiCandles() {
+        tick(T + 10, 0, 100);
+        tick(T + 20, 0, 103);
+        tick(T + 30, 0, 101);
+
+        // Свеча API пришла раньше завершения минуты - сравнивается текущая свеча
+        aggregator.crossCheck(FIGI, T, price(103), price(100), price(101));
+        tick(T + 60, 0, 102);
+        // После завершения - последняя завершенная
+        aggregator.crossCheck(FIGI, T, price(103), price(99), price(101));
+        // Минуты без собранной свечи и неизвестный инструмент
+        aggregator.crossCheck(FIGI, T - 60, price(100), price(100), price(100));
+        aggregator.crossCheck("UNKNOWN", T, price(100), price(100), price(100));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> crossCheck = (Map<String, Object>) aggregator.getStats().get("crossCheck");
+        assertEquals(1L, crossCheck.get("matched"));
+        assertEquals(1L, crossCheck.get("mismatched"));
+        assertEquals(2L, crossCheck.get("missing"));
+    }
+
+    @Test
+    void testPartialsOnlyForListenersThatWantThem() {
+        List<AggregatedBar> partials = new ArrayList<>();
+        AggregatedBarListener partialListener = partials::add;
+        aggregator.addListener(partialListener);
+
+        tick(T + 10, 0, 100);
+
+        // Незавершенная свеча каждого интервала
+        assertEquals(CandleTimeframe.values().length, partials.size());
+        assertTrue(partials.stream().noneMatch(AggregatedBar::complete));
+        assertTrue(completed.isEmpty());
+
+        aggregator.removeListener(partialListener);
+        tick(T + 20, 0, 101);
+        assertEquals(CandleTimeframe.values().length, partials.size());
+    }
+
+    private void tick(long epochSecond, int nanos, long units) {
+        aggregator.onLastPrice(LastPrice.newBuilder()
+            .setFigi(FIGI)
+            .setPrice(Quotation.newBuilder().setUnits(units).build())
+            .setTime(Timestamp.newBuilder().setSeconds(epochSecond).setNanos(nanos).build())
+            .build());
+    }
+
+    private void setNow(long epochMillis) {
+        ReflectionTestUtils.setField(aggregator, "clock",
+            Clock.fixed(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC));
+    }
+
+    private static long price(long units) {
+        return FixedPointPrice.of(units, 0);
+    }
+
+    private static void assertBar(AggregatedBar bar, long start, long open, long high, long low, long close,
+            long ticks, boolean complete) {
+        assertEquals(new AggregatedBar(bar.figi(), bar.timeframe(), start, price(open), price(high), price(low),
+            price(close), ticks, complete), bar);
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.investmentdatastreamservice.service.streaming;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Тесты для WriteBehindBuffer
+ *
+ * Проверяет сброс пакета по размеру и по истечении интервала, отказ в приеме
+ * только при заполненной очереди и дозапись накопленных элементов при остановке.
+ */
+class WriteBehindBufferTest {
+
+    private static final long TIMEOUT_MS = 10_000;
+
+    private final List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<>());
+    private WriteBehindBuffer<Integer> buffer;
+
+    @AfterEach
+    void tearDown() {
+        if (buffer != null) {
+            buffer.shutdown(TIMEOUT_MS);
+        }
+    }
+
+    @Test
+    void testFlushesOnBatchSize() throws Exception {
+        // Интервал заведомо больше времени теста: пакеты сбрасываются только по размеру
+        buffer = new WriteBehindBuffer<>("test", 100, 10, 60_000, this::record);
+        for (int i = 0; i < 25; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        buffer.start(1);
+
+        awaitCondition(() -> buffer.getBatchesFlushed() == 2);
+        synchronized (batches) {
+            assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), batches.get(0));
+            assertEquals(List.of(10, 11, 12, 13, 14, 15, 16, 17, 18, 19), batches.get(1));
+        }
+        assertEquals(20, buffer.getItemsFlushed());
+
+        // Неполный пакет ждет интервала и при остановке дописывается
+        buffer.shutdown(100);
+        awaitCondition(() -> buffer.getItemsFlushed() == 25);
+        assertEquals(List.of(20, 21, 22, 23, 24), batches.get(2));
+    }
+
+    @Test
+    void testFlushesOnDeadline() throws Exception {
+        long flushIntervalMs = 50;
+        buffer = new WriteBehindBuffer<>("test", 100, 1_000, flushIntervalMs, this::record);
+        buffer.start(1);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        awaitCondition(() -> buffer.getBatchesFlushed() == 1);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Неполный пакет сбрасывается не раньше интервала с момента первого элемента
+        assertTrue(elapsedMs >= flushIntervalMs, "Пакет сброшен через " + elapsedMs + " мс");
+        assertEquals(List.of(0, 1, 2), batches.get(0));
+        assertEquals(0, buffer.getPendingCount());
+    }
+
+    @Test
+    void testRejectsOnlyWhenQueueIsFull() throws Exception {
+        buffer = new WriteBehindBuffer<>("test", 5, 10, 10, this::record);
+
+        // Потоки записи не запущены - очередь заполняется
+        for (int i = 0; i < 5; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(5));
+        assertEquals(1, buffer.getRejectedItems());
+        assertEquals(5, buffer.getPendingCount());
+        assertEquals(1.0, buffer.getUtilization());
+
+        buffer.start(1);
+        awaitCondition(() -> buffer.getItemsFlushed() == 5);
+
+        // После освобождения очереди элементы снова принимаются
+        assertTrue(buffer.offer(6));
+        awaitCondition(() -> buffer.getItemsFlushed() == 6);
+        assertEquals(1, buffer.getRejectedItems());
+    }
+
+    @Test
+    void testShutdownDrainsPendingItems() throws Exception {
+        CountDownLatch writerBlocked = new CountDownLatch(1);
+        CountDownLatch releaseWriter = new CountDownLatch(1);
+        buffer = new WriteBehindBuffer<>("test", 10_000, 100, 10, batch -> {
+            writerBlocked.countDown();
+            try {
+                releaseWriter.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            record(batch);
+        });
+        buffer.start(2);
+
+        int items = 5_000;
+        assertTrue(buffer.offer(0));
+        assertTrue(writerBlocked.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        for (int i = 1; i < items; i++) {
+            assertTrue(buffer.offer(i));
+        }
+
+        // Остановка запрошена, пока запись занята: очередь должна быть дописана
+        Thread stopper = new Thread(() -> buffer.shutdown(TIMEOUT_MS));
+        stopper.start();
+        awaitCondition(() -> !buffer.isRunning());
+        releaseWriter.countDown();
+        stopper.join(TIMEOUT_MS);
+
+        assertFalse(stopper.isAlive());
+        assertEquals(items, buffer.getItemsFlushed());
+        assertEquals(0, buffer.getPendingCount());
+        assertEquals(0, buffer.getFailedBatches());
+        List<Integer> written = new ArrayList<>();
+        synchronized (batches) {
+            for (List<Integer> batch : batches) {
+                assertTrue(batch.size() <= 100);
+                written.addAll(batch);
+            }
+        }
+        Collections.sort(written);
+        for (int i = 0; i < items; i++) {
+            assertEquals(i, written.get(i));
+        }
+    }
+
+    private void record(List<Integer> batch) {
+        // Буфер переиспользует список пакета после записи
+        batches.add(List.copyOf(batch));
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Условие не выполнено за " + TIMEOUT_MS + " мс");
+            }
+            Thread.sleep(1);
+        }
+    }
+}
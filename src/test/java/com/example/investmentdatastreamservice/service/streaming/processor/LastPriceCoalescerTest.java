@@ -0,0 +1,147 @@
+package com.example.investmentdatastreamservice.service.streaming.processor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Тесты для LastPriceCoalescer
+ *
+ * Проверяет схлопывание сделок одного окна, сохранение окна до конца окна по времени
+ * сделки плюс запас на запоздавшие сделки (а не по моменту открытия окна),
+ * запись запоздавших сделок без схлопывания и сброс открытых окон при остановке.
+ */
+class LastPriceCoalescerTest {
+
+    private static final String FIGI = "BBG004730N88";
+    private static final String OTHER_FIGI = "BBG004730ZJ9";
+    private static final long BUCKET_MS = 1_000;
+    private static final long GRACE_MS = 500;
+    // Начало окна, выровненное по BUCKET_MS
+    private static final long BUCKET_START = 1_760_000_000_000L;
+
+    private final AtomicLong now = new AtomicLong(BUCKET_START);
+    private final List<LastPriceTick> written = Collections.synchronizedList(new ArrayList<>());
+    private LastPriceCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        coalescer = new LastPriceCoalescer(BUCKET_MS, GRACE_MS, written::add, now::get);
+    }
+
+    @AfterEach
+    void tearDown() {
+        coalescer.shutdown();
+    }
+
+    @Test
+    void testKeepsLatestTickOfBucket() {
+        assertFalse(coalescer.offer(tick(FIGI, BUCKET_START + 100, 10)));
+        assertTrue(coalescer.offer(tick(FIGI, BUCKET_START + 300, 12)));
+        // Более ранняя сделка того же окна не вытесняет более позднюю
+        assertTrue(coalescer.offer(tick(FIGI, BUCKET_START + 200, 11)));
+        assertTrue(written.isEmpty());
+
+        // Сделка следующего окна отдает предыдущее на запись
+        coalescer.offer(tick(FIGI, BUCKET_START + BUCKET_MS + 1, 13));
+
+        assertEquals(List.of(12L), prices());
+        assertEquals(4, coalescer.getTicksReceived());
+        assertEquals(2, coalescer.getTicksAbsorbed());
+        assertEquals(1, coalescer.getOpenBuckets());
+    }
+
+    @Test
+    void testBucketSurvivesUntilEndPlusGrace() {
+        coalescer.offer(tick(FIGI, BUCKET_START + 900, 10));
+
+        // С открытия окна прошло больше bucketMs, но конец окна + запас еще не наступил
+        now.set(BUCKET_START + BUCKET_MS + GRACE_MS - 1);
+        coalescer.flushStale();
+        assertTrue(written.isEmpty());
+        assertEquals(1, coalescer.getOpenBuckets());
+
+        // Запоздавшая доставка сделки того же окна еще схлопывается
+        assertTrue(coalescer.offer(tick(FIGI, BUCKET_START + 950, 11)));
+
+        now.set(BUCKET_START + BUCKET_MS + GRACE_MS);
+        coalescer.flushStale();
+        coalescer.flushStale();
+        assertEquals(List.of(11L), prices());
+        assertEquals(0, coalescer.getOpenBuckets());
+    }
+
+    @Test
+    void testLateTickAfterFlushIsWrittenSeparately() {
+        coalescer.offer(tick(FIGI, BUCKET_START + 100, 10));
+        now.set(BUCKET_START + BUCKET_MS + GRACE_MS);
+        coalescer.flushStale();
+        assertEquals(List.of(10L), prices());
+
+        // Окно уже записано: сделка того же окна не открывает его заново
+        assertFalse(coalescer.offer(tick(FIGI, BUCKET_START + 200, 11)));
+        assertEquals(List.of(10L, 11L), prices());
+        assertEquals(1, coalescer.getLateTicks());
+        assertEquals(0, coalescer.getOpenBuckets());
+
+        // Сделка следующего окна открывает новое окно
+        assertFalse(coalescer.offer(tick(FIGI, BUCKET_START + 2 * BUCKET_MS, 12)));
+        assertEquals(1, coalescer.getOpenBuckets());
+        assertEquals(2, written.size());
+    }
+
+    @Test
+    void testLateTickFromClosedBucketKeepsCurrentBucket() {
+        coalescer.offer(tick(FIGI, BUCKET_START + 100, 10));
+        coalescer.offer(tick(FIGI, BUCKET_START + BUCKET_MS + 100, 20));
+        assertEquals(List.of(10L), prices());
+
+        // Сделка из закрытого окна записывается сразу и не затирает цену текущего окна
+        assertFalse(coalescer.offer(tick(FIGI, BUCKET_START + 500, 15)));
+        assertEquals(List.of(10L, 15L), prices());
+        assertEquals(1, coalescer.getLateTicks());
+
+        coalescer.offer(tick(FIGI, BUCKET_START + 2 * BUCKET_MS, 30));
+        assertEquals(List.of(10L, 15L, 20L), prices());
+    }
+
+    @Test
+    void testShutdownFlushesOpenBuckets() {
+        coalescer.offer(tick(FIGI, BUCKET_START + 100, 10));
+        coalescer.offer(tick(OTHER_FIGI, BUCKET_START + 100, 50));
+        now.set(BUCKET_START + BUCKET_MS + GRACE_MS);
+        coalescer.flushStale();
+        coalescer.offer(tick(OTHER_FIGI, BUCKET_START + BUCKET_MS + 600, 51));
+        assertEquals(2, written.size());
+
+        coalescer.shutdown();
+
+        // Сброшенное окно FIGI повторно не записывается
+        assertEquals(3, written.size());
+        assertEquals(51L, written.get(2).price());
+        assertEquals(3, coalescer.getRowsEmitted());
+    }
+
+    private List<Long> prices() {
+        synchronized (written) {
+            List<Long> prices = new ArrayList<>();
+            for (LastPriceTick tick : written) {
+                prices.add(tick.price());
+            }
+            return prices;
+        }
+    }
+
+    private static LastPriceTick tick(String figi, long epochMillis, long price) {
+        return new LastPriceTick(figi, epochMillis / 1000, (int) (epochMillis % 1000) * 1_000_000, price, 0);
+    }
+}
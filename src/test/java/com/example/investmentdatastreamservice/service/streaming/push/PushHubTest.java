@@ -0,0 +1,216 @@
+package com.example.investmentdatastreamservice.service.streaming.push;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.investmentdatastreamservice.config.StreamingProperties;
+import com.example.investmentdatastreamservice.service.streaming.LastPriceDispatcher;
+import com.example.investmentdatastreamservice.service.streaming.TickCandleAggregator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.Timestamp;
+
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.Quotation;
+
+/**
+ * Тесты для PushHub и PushClient
+ *
+ * Проверяет схлопывание цен по FIGI у не успевающего клиента (последнее значение
+ * выигрывает), независимость доставки остальным клиентам от медленного клиента
+ * и соблюдение предела подключений при одновременных подписках.
+ */
+class PushHubTest {
+
+    private static final long TIMEOUT_MS = 10_000;
+    private static final String FIGI_A = "BBG004730N88";
+    private static final String FIGI_B = "BBG004730ZJ9";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private StreamingProperties properties;
+    private PushHub hub;
+
+    /**
+     * Клиент, сохраняющий полученные цены как "FIGI=цена"; первая отправка
+     * может удерживаться до сигнала теста
+     */
+    private class RecordingSink implements PushSink {
+        final List<String> received = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch firstSendStarted = new CountDownLatch(1);
+        private final CountDownLatch releaseFirstSend;
+
+        RecordingSink(CountDownLatch releaseFirstSend) {
+            this.releaseFirstSend = releaseFirstSend;
+        }
+
+        @Override
+        public void send(String event, String json) throws IOException {
+            if (firstSendStarted.getCount() > 0) {
+                firstSendStarted.countDown();
+                try {
+                    releaseFirstSend.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted", e);
+                }
+            }
+            JsonNode node = objectMapper.readTree(json);
+            received.add(node.get("figi").asText() + "=" + node.get("price").asInt());
+        }
+
+        @Override
+        public void close() {
+        }
+
+        String lastFor(String figi) {
+            synchronized (received) {
+                for (int i = received.size() - 1; i >= 0; i--) {
+                    if (received.get(i).startsWith(figi + "=")) {
+                        return received.get(i);
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        properties = new StreamingProperties();
+        hub = new PushHub(new LastPriceDispatcher(), mock(TickCandleAggregator.class), objectMapper, properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        hub.shutdown();
+    }
+
+    @Test
+    void testLatestValueWinsPerFigi() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSink sink = new RecordingSink(release);
+        PushClient client = hub.subscribe("test", sink, Set.of(PushChannel.PRICE), Set.of());
+
+        publish(FIGI_A, 100);
+        assertTrue(sink.firstSendStarted.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+        // Клиент занят отправкой: новые цены по FIGI заменяют неотправленную
+        publish(FIGI_A, 101);
+        publish(FIGI_A, 102);
+        publish(FIGI_B, 200);
+        publish(FIGI_A, 103);
+        assertEquals(2, client.getConflated());
+        release.countDown();
+
+        awaitCondition(() -> client.getSent() == 3);
+        assertEquals(List.of(FIGI_A + "=100", FIGI_A + "=103", FIGI_B + "=200"), sink.received);
+        assertEquals(0, client.getDropped());
+    }
+
+    @Test
+    void testSlowClientDoesNotBlockOthers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSink slowSink = new RecordingSink(release);
+        RecordingSink fastSink = new RecordingSink(new CountDownLatch(0));
+        PushClient slow = hub.subscribe("test", slowSink, Set.of(PushChannel.PRICE), Set.of());
+        hub.subscribe("test", fastSink, Set.of(PushChannel.PRICE), Set.of());
+
+        publish(FIGI_A, 100);
+        assertTrue(slowSink.firstSendStarted.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        publish(FIGI_A, 101);
+        publish(FIGI_B, 200);
+
+        // Медленный клиент все еще в первой отправке, быстрый получил последние цены
+        awaitCondition(() -> (FIGI_A + "=101").equals(fastSink.lastFor(FIGI_A))
+            && (FIGI_B + "=200").equals(fastSink.lastFor(FIGI_B)));
+        assertEquals(0, slow.getSent());
+
+        release.countDown();
+        awaitCondition(() -> slow.getSent() == 3);
+        assertEquals(List.of(FIGI_A + "=100", FIGI_A + "=101", FIGI_B + "=200"), slowSink.received);
+    }
+
+    @Test
+    void testMaxClientsUnderConcurrentSubscribe() throws Exception {
+        int maxClients = 5;
+        int subscribers = 32;
+        properties.getPush().setMaxClients(maxClients);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < subscribers; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                PushClient client = hub.subscribe("test", new RecordingSink(new CountDownLatch(0)),
+                    Set.of(PushChannel.PRICE), Set.of());
+                if (client != null) {
+                    accepted.incrementAndGet();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join(TIMEOUT_MS);
+        }
+
+        assertEquals(maxClients, accepted.get());
+        assertEquals(maxClients, hub.getClientCount());
+        assertEquals((long) (subscribers - maxClients), hub.getStats().get("clientsRejected"));
+    }
+
+    @Test
+    void testDisconnectFreesSlot() {
+        properties.getPush().setMaxClients(1);
+        PushClient first = hub.subscribe("test", new RecordingSink(new CountDownLatch(0)),
+            Set.of(PushChannel.PRICE), Set.of());
+        assertNotNull(first);
+
+        hub.unsubscribe(first);
+
+        assertNotNull(hub.subscribe("test", new RecordingSink(new CountDownLatch(0)),
+            Set.of(PushChannel.PRICE), Set.of()));
+        assertEquals(1, hub.getClientCount());
+    }
+
+    private void publish(String figi, long units) {
+        hub.onLastPrice(LastPrice.newBuilder()
+            .setFigi(figi)
+            .setPrice(Quotation.newBuilder().setUnits(units).build())
+            .setTime(Timestamp.newBuilder().setSeconds(1_760_511_600L).build())
+            .build());
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Условие не выполнено за " + TIMEOUT_MS + " мс");
+            }
+            Thread.sleep(1);
+        }
+    }
+}
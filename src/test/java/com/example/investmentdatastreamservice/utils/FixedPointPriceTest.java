@@ -0,0 +1,99 @@
+package com.example.investmentdatastreamservice.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import ru.tinkoff.piapi.contract.v1.Quotation;
+
+/**
+ * Тесты для FixedPointPrice
+ *
+ * Сверяет упаковку units/nano с прежним преобразованием Quotation через BigDecimal
+ * (units + nano / 10^9), в том числе для отрицательных значений, проверяет масштаб 9,
+ * обратное преобразование и отказ при выходе за диапазон long вместо тихого переполнения.
+ */
+class FixedPointPriceTest {
+
+    private static final long MAX_UNITS = Long.MAX_VALUE / FixedPointPrice.ONE;
+
+    @ParameterizedTest
+    @CsvSource({
+        "0, 0, 0.000000000",
+        "314, 20000000, 314.020000000",
+        "0, 1, 0.000000001",
+        "0, -1, -0.000000001",
+        "-1, 0, -1.000000000",
+        "-1, -500000000, -1.500000000",
+        "-42, -999999999, -42.999999999",
+        "9223372036, 854775807, 9223372036.854775807",
+    })
+    void testOfMatchesBigDecimalConversion(long units, int nano, String expected) {
+        BigDecimal exact = BigDecimal.valueOf(units).add(BigDecimal.valueOf(nano).movePointLeft(9));
+
+        BigDecimal result = FixedPointPrice.toBigDecimal(FixedPointPrice.of(units, nano));
+
+        assertEquals(new BigDecimal(expected), result);
+        assertEquals(0, exact.compareTo(result));
+        assertEquals(FixedPointPrice.SCALE, result.scale());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "250.5",
+        "-17.25",
+        "0.012345",
+        "7.000000001",
+        "24999",
+    })
+    void testRoundTripThroughBigDecimal(String value) {
+        BigDecimal decimal = new BigDecimal(value);
+
+        long price = FixedPointPrice.fromBigDecimal(decimal);
+        BigDecimal result = FixedPointPrice.toBigDecimal(price);
+
+        assertEquals(0, decimal.compareTo(result));
+        assertEquals(FixedPointPrice.SCALE, result.scale());
+        assertEquals(price, FixedPointPrice.fromBigDecimal(result));
+    }
+
+    @Test
+    void testFromBigDecimalRoundsHalfUpToScale9() {
+        assertEquals(FixedPointPrice.of(1, 1), FixedPointPrice.fromBigDecimal(new BigDecimal("1.0000000005")));
+        assertEquals(FixedPointPrice.of(1, 0), FixedPointPrice.fromBigDecimal(new BigDecimal("1.0000000004")));
+    }
+
+    @Test
+    void testNoneAndNull() {
+        assertEquals(FixedPointPrice.NONE, FixedPointPrice.fromBigDecimal(null));
+        assertNull(FixedPointPrice.toBigDecimal(FixedPointPrice.NONE));
+        assertEquals(0L, FixedPointPrice.fromQuotation(null));
+    }
+
+    @Test
+    void testOverflowIsRejected() {
+        assertThrows(ArithmeticException.class, () -> FixedPointPrice.of(MAX_UNITS + 1, 0));
+        assertThrows(ArithmeticException.class, () -> FixedPointPrice.of(MAX_UNITS, 854775808));
+        assertThrows(ArithmeticException.class, () -> FixedPointPrice.of(-MAX_UNITS - 1, -854775809));
+        assertThrows(ArithmeticException.class, () -> FixedPointPrice.of(Long.MAX_VALUE, 0));
+        assertThrows(ArithmeticException.class,
+            () -> FixedPointPrice.fromBigDecimal(new BigDecimal("9223372037")));
+    }
+
+    @Test
+    void testQuotationUtilsKeepsExactValueOutsideLongRange() {
+        Quotation huge = Quotation.newBuilder().setUnits(Long.MAX_VALUE).setNano(500_000_000).build();
+        Quotation small = Quotation.newBuilder().setUnits(1).build();
+
+        assertEquals(new BigDecimal("9223372036854775807.500000000"), QuotationUtils.toBigDecimal(huge));
+        assertEquals(1, QuotationUtils.compare(huge, small));
+        assertEquals(-1, QuotationUtils.compare(small, huge));
+        assertEquals(new BigDecimal("1.000000000"), QuotationUtils.toBigDecimal(small));
+    }
+}
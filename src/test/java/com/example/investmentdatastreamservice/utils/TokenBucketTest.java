@@ -0,0 +1,120 @@
+package com.example.investmentdatastreamservice.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Тесты для TokenBucket
+ *
+ * Время задается подменяемыми часами. Проверяет частоту пополнения (с сохранением
+ * неполного интервала), ограничение накопления токенов емкостью ведра и ожидание
+ * в {@link TokenBucket#acquire()} до появления токена.
+ */
+class TokenBucketTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AtomicLong now = new AtomicLong(1_000_000 * MS);
+
+    @Test
+    void testStartsFullAndCapsBurst() {
+        TokenBucket bucket = new TokenBucket(10, 3, now::get);
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(bucket.tryAcquire());
+        }
+        assertFalse(bucket.tryAcquire());
+
+        // За 10 секунд простоя накапливается не больше емкости ведра
+        now.addAndGet(10_000 * MS);
+        assertEquals(3, bucket.getAvailableTokens());
+        for (int i = 0; i < 3; i++) {
+            assertTrue(bucket.tryAcquire());
+        }
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    void testRefillsAtConfiguredRate() {
+        // 10 токенов в секунду - один токен каждые 100 мс
+        TokenBucket bucket = new TokenBucket(10, 1, now::get);
+        assertTrue(bucket.tryAcquire());
+
+        now.addAndGet(99 * MS);
+        assertFalse(bucket.tryAcquire());
+        now.addAndGet(MS);
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+
+        // Неполный интервал не теряется: 150 + 50 мс дают два токена
+        TokenBucket wide = new TokenBucket(10, 5, now::get);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(wide.tryAcquire());
+        }
+        now.addAndGet(150 * MS);
+        assertEquals(1, wide.getAvailableTokens());
+        now.addAndGet(50 * MS);
+        assertEquals(2, wide.getAvailableTokens());
+    }
+
+    @Test
+    void testAcquireBlocksUntilTokenRefills() throws Exception {
+        TokenBucket bucket = new TokenBucket(100, 1, now::get);
+        bucket.acquire();
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                bucket.acquire();
+                acquired.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+
+        // Часы стоят - токен не появляется, acquire() продолжает ждать
+        assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+        assertTrue(waiter.isAlive());
+
+        now.addAndGet(10 * MS);
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        waiter.join(5_000);
+        assertEquals(0, bucket.getAvailableTokens());
+    }
+
+    @Test
+    void testAcquireIsInterruptible() throws Exception {
+        TokenBucket bucket = new TokenBucket(1, 1, now::get);
+        bucket.acquire();
+
+        AtomicLong interrupted = new AtomicLong();
+        Thread waiter = new Thread(() -> {
+            try {
+                bucket.acquire();
+            } catch (InterruptedException e) {
+                interrupted.incrementAndGet();
+            }
+        });
+        waiter.start();
+        waiter.interrupt();
+        waiter.join(5_000);
+
+        assertFalse(waiter.isAlive());
+        assertEquals(1, interrupted.get());
+    }
+
+    @Test
+    void testRejectsInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 0));
+    }
+}